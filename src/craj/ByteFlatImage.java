@@ -0,0 +1,54 @@
+package craj;
+
+/**
+ * A {@link FlatImage} backed by a <code>byte[]</code>. The pixel values are
+ * treated as unsigned 8 bit values like in <tt>ByteProcessor</tt>.
+ */
+public class ByteFlatImage extends FlatImage {
+
+	/**
+	 * the backing array of this image
+	 */
+	public final byte[] pixels;
+
+	/**
+	 * Creates a <tt>ByteFlatImage</tt> with a new zero filled backing array.
+	 * 
+	 * @param width
+	 *            the width of the image
+	 * @param height
+	 *            the height of the image
+	 */
+	public ByteFlatImage(final int width, final int height) {
+		this(width, height, width, new byte[width * height]);
+	}
+
+	/**
+	 * Creates a <tt>ByteFlatImage</tt> which uses the given array as backing
+	 * array without copying it.
+	 * 
+	 * @param width
+	 *            the width of the image
+	 * @param height
+	 *            the height of the image
+	 * @param stride
+	 *            the distance between two rows in the backing array
+	 * @param pixels
+	 *            the backing array
+	 */
+	public ByteFlatImage(final int width, final int height, final int stride,
+			final byte[] pixels) {
+		super(width, height, stride, pixels.length);
+		this.pixels = pixels;
+	}
+
+	@Override
+	public int get(final int index) {
+		return pixels[index] & 0xff;
+	}
+
+	@Override
+	public void set(final int index, final int value) {
+		pixels[index] = (byte) value;
+	}
+}
@@ -5,8 +5,12 @@ import ij.process.ImageProcessor;
 import ij.process.ShortProcessor;
 
 import java.awt.Font;
+import java.awt.Rectangle;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
 
 import processing.core.PApplet;
 
@@ -20,14 +24,43 @@ import processing.core.PApplet;
  */
 public class CircleCalculationResultTable {
 
+	/**
+	 * orders the circle findings column by column like the original search,
+	 * which visited the columns in the outer loop
+	 */
+	private static final Comparator<CircleFinding> COLUMN_MAJOR = new Comparator<CircleFinding>() {
+		@Override
+		public int compare(final CircleFinding first, final CircleFinding second) {
+			final int comparison = Integer.compare(first.x, second.x);
+			if (comparison != 0) {
+				return comparison;
+			}
+			return Integer.compare(first.y, second.y);
+		}
+	};
+
 	private static final Font FONT = new Font("Courier New", Font.PLAIN, 8);
 
 	private static final int INITIAL_MAX_CROSS_COUNT = -1;
 	private static final int INITIAL_MAX_CROSS_VALUE = -1;
 
-	private final int[][] crossCounts;
+	/**
+	 * the minimum count of rows of a strip which is searched in parallel
+	 */
+	private static final int MIN_STRIP_HEIGHT = 32;
+
+	private static IntFlatImage toFlatImage(final int[][] data,
+			final String name) {
+		if (data.length == 0 || data[0].length == 0) {
+			throw new IllegalArgumentException("Width and height of the 2D-array "
+					+ name + " can't be 0");
+		}
+		return IntFlatImage.fromIntArray(data);
+	}
+
+	private final IntFlatImage crossCounts;
 
-	private final int[][] crossValues;
+	private final IntFlatImage crossValues;
 	private int maxCrossCount = CircleCalculationResultTable.INITIAL_MAX_CROSS_COUNT;
 
 	private int maxCrossValue = CircleCalculationResultTable.INITIAL_MAX_CROSS_VALUE;
@@ -48,17 +81,27 @@ public class CircleCalculationResultTable {
 	public CircleCalculationResultTable(final int[][] crossValues,
 			final int[][] crossValueCounts,
 			final ReferenceCircle referenceCircle) {
+		this(toFlatImage(crossValues, "crossValues"), toFlatImage(
+				crossValueCounts, "crossValueCounts"), referenceCircle);
+	}
 
-		if (crossValues.length == 0 || crossValues[0].length == 0) {
-			throw new IllegalArgumentException(
-					"Width and height of the 2D-array crossValues can't be 0");
-		}
-		if (crossValueCounts.length == 0 || crossValueCounts[0].length == 0) {
-			throw new IllegalArgumentException(
-					"Width and height of the 2D-array crossValueCounts can't be 0");
-		}
-		if (crossValueCounts.length != crossValues.length
-				&& crossValueCounts[0].length != crossValues[0].length) {
+	/**
+	 * Construct a CircleCalculationResultTable for the given referenceCircle
+	 * and the flat crossValues and crossValueCounts.
+	 * 
+	 * @param crossValues
+	 *            the cross values for the image for this reference circle
+	 * @param crossValueCounts
+	 *            the cross counts for the image for this reference circle
+	 * @param referenceCircle
+	 *            the reference circle for this result data
+	 */
+	public CircleCalculationResultTable(final IntFlatImage crossValues,
+			final IntFlatImage crossValueCounts,
+			final ReferenceCircle referenceCircle) {
+
+		if (crossValueCounts.width != crossValues.width
+				|| crossValueCounts.height != crossValues.height) {
 			throw new IllegalArgumentException(
 					"Width and height of crossValues and crossValueCounts have to be equal.");
 		}
@@ -68,26 +111,68 @@ public class CircleCalculationResultTable {
 		this.referenceCircle = referenceCircle;
 	}
 
-	private int calculateMaxCrossCount() {
-		int currentMaxCrossCount = 0;
-		for (int x = 0; x < crossCounts.length; x++) {
-			for (int y = 0; y < crossCounts[0].length; y++) {
-				currentMaxCrossCount = Math.max(currentMaxCrossCount,
-						crossCounts[x][y]);
+	private void addCircleFindings(
+			final RowPrefixSums blackValueEdgesRowPrefixSums,
+			final int fromRow, final int toRow, final int fromColumn,
+			final int toColumn, final int tableLeft, final int tableTop,
+			final List<CircleFinding> circleCoordinates) {
+
+		final int[] crossValuePixels = crossValues.pixels;
+		final int[] crossCountPixels = crossCounts.pixels;
+
+		final int minCrossValue = referenceCircle.minCrossValue;
+		final int minCrossCount = referenceCircle.minCrossCount;
+		final int minBlackValue = referenceCircle.minBlackValue;
+
+		for (int y = fromRow; y < toRow; y++) {
+			for (int x = fromColumn; x < toColumn; x++) {
+
+				final int pixelCrossValue = crossValuePixels[crossValues
+						.getIndex(x, y)];
+				final int pixelCrossCount = crossCountPixels[crossCounts
+						.getIndex(x, y)];
+
+				if (pixelCrossValue >= minCrossValue
+						&& pixelCrossCount >= minCrossCount) {
+
+					final CircleFinding circleCandidate = new CircleFinding(x
+							+ tableLeft, y + tableTop, referenceCircle,
+							blackValueEdgesRowPrefixSums, pixelCrossValue,
+							pixelCrossCount);
+
+					final float averagePixelBlackValue = circleCandidate.averagePixelBlackValue;
+
+					if (averagePixelBlackValue >= minBlackValue) {
+						circleCoordinates.add(circleCandidate);
+					}
+				}
 			}
 		}
-		return currentMaxCrossCount;
 	}
 
-	private int calculateMaxCrossValue() {
-		int currentMaxCrossValue = 0;
-		for (int x = 0; x < crossValues.length; x++) {
-			for (int y = 0; y < crossValues[0].length; y++) {
-				currentMaxCrossValue = Math.max(currentMaxCrossValue,
-						crossValues[x][y]);
+	private int calculateMax(final IntFlatImage table) {
+		final int width = table.width;
+		final int height = table.height;
+		final int stride = table.stride;
+		final int[] pixels = table.pixels;
+
+		int currentMax = 0;
+		for (int y = 0; y < height; y++) {
+			final int rowStart = y * stride;
+			final int rowEnd = rowStart + width;
+			for (int i = rowStart; i < rowEnd; i++) {
+				currentMax = Math.max(currentMax, pixels[i]);
 			}
 		}
-		return currentMaxCrossValue;
+		return currentMax;
+	}
+
+	private int calculateMaxCrossCount() {
+		return calculateMax(crossCounts);
+	}
+
+	private int calculateMaxCrossValue() {
+		return calculateMax(crossValues);
 	}
 
 	/**
@@ -97,28 +182,26 @@ public class CircleCalculationResultTable {
 	 */
 	public ImagePlus getCalculationOutputImage() {
 
-		final int width = crossValues.length;
-		final int height = crossValues[0].length;
+		final int width = crossValues.width;
+		final int height = crossValues.height;
 
-		final int[][] outputValues = new int[width][height];
+		final ShortProcessor shortProcessor = new ShortProcessor(width, height);
 
 		final int maxValue = getMaxCrossValue();
 
-		for (int x = 0; x < width; x++) {
-			for (int y = 0; y < height; y++) {
+		for (int y = 0; y < height; y++) {
+			for (int x = 0; x < width; x++) {
 
-				final int pixelValue = crossValues[x][y];
+				final int pixelValue = crossValues.get(x, y);
 
 				final float mapRgb = PApplet.map(pixelValue, 0, maxValue, 0,
 						255);
 				final int interpolatedPixelValue = Math.round(mapRgb);
 
-				outputValues[x][y] = interpolatedPixelValue;
+				shortProcessor.set(x, y, interpolatedPixelValue);
 
 			}
 		}
-		final ShortProcessor shortProcessor = new ShortProcessor(width, height);
-		shortProcessor.setIntArray(outputValues);
 
 		final int diameter = referenceCircle.diameter;
 		final String title = String.format("Calculation Output Image: %d",
@@ -161,8 +244,8 @@ public class CircleCalculationResultTable {
 		for (int x = 0; x < width; x++) {
 			for (int y = 0; y < height; y++) {
 
-				final int pixelCrossValue = crossValues[x][y];
-				final int pixelCrossCount = crossCounts[x][y];
+				final int pixelCrossValue = crossValues.get(x, y);
+				final int pixelCrossCount = crossCounts.get(x, y);
 
 				final int mapedCrossValue = Math.round(PApplet.map(
 						pixelCrossValue, 0, referenceCrossValue, 0, 999));
@@ -199,41 +282,146 @@ public class CircleCalculationResultTable {
 	 */
 	public List<CircleFinding> getCircleFindings(
 			final int[][] blackValueEdgesData) {
+		return getCircleFindings(IntFlatImage.fromIntArray(blackValueEdgesData));
+	}
 
-		final int width = crossValues.length;
-		final int height = crossValues[0].length;
-
-		final int minCrossValue = referenceCircle.minCrossValue;
-		final int minCrossCount = referenceCircle.minCrossCount;
-		final int minBlackValue = referenceCircle.minBlackValue;
+	/**
+	 * Returns the circle findings regarding the reference circle and the given
+	 * flat blackValueEdgesData where the coordinate of the circle finding is
+	 * searched to approve, that the average black value in the inner circle is
+	 * high enough to declare it a circle finding.
+	 * 
+	 * @param blackValueEdgesData
+	 *            the edges data where all circle candidates are searched to
+	 *            calculate the average inner circle black value
+	 * @return the circle findings
+	 */
+	public List<CircleFinding> getCircleFindings(
+			final IntFlatImage blackValueEdgesData) {
+		return getCircleFindings(new RowPrefixSums(blackValueEdgesData));
+	}
 
-		final ArrayList<CircleFinding> circleCoordinates = new ArrayList<>();
+	/**
+	 * Returns the circle findings like
+	 * {@link #getCircleFindings(IntFlatImage)}, but with the already
+	 * calculated row prefix sums of the black value edges data, which can be
+	 * shared by the result tables of all reference circles.
+	 * 
+	 * @param blackValueEdgesRowPrefixSums
+	 *            the row prefix sums of the edges data that is used to
+	 *            calculate the black value of the inner circles
+	 * @return a list of circle findings
+	 */
+	public List<CircleFinding> getCircleFindings(
+			final RowPrefixSums blackValueEdgesRowPrefixSums) {
+		return getCircleFindings(blackValueEdgesRowPrefixSums, null);
+	}
 
-		for (int x = 0; x < width; x++) {
-			for (int y = 0; y < height; y++) {
+	/**
+	 * Returns the circle findings like
+	 * {@link #getCircleFindings(RowPrefixSums)}, but searches strips of rows
+	 * in parallel in the given <tt>ForkJoinPool</tt>. The circle findings are
+	 * returned in the same order as without a pool, column by column from the
+	 * left and from the top inside a column.
+	 * 
+	 * @param blackValueEdgesRowPrefixSums
+	 *            the row prefix sums of the edges data that is used to
+	 *            calculate the black value of the inner circles
+	 * @param forkJoinPool
+	 *            the pool the strips are searched in, or <code>null</code> to
+	 *            search them in the calling thread
+	 * @return a list of circle findings
+	 */
+	public List<CircleFinding> getCircleFindings(
+			final RowPrefixSums blackValueEdgesRowPrefixSums,
+			final ForkJoinPool forkJoinPool) {
+		return getCircleFindings(blackValueEdgesRowPrefixSums, new Rectangle(
+				crossValues.width, crossValues.height), 0, 0, forkJoinPool);
+	}
 
-				final int pixelCrossValue = crossValues[x][y];
-				final int pixelCrossCount = crossCounts[x][y];
+	/**
+	 * Returns the circle findings like
+	 * {@link #getCircleFindings(RowPrefixSums, ForkJoinPool)}, but for a
+	 * result table which covers only an area of the image and only inside the
+	 * given search area. The coordinates of the circle findings and of the
+	 * search area are coordinates of the image.
+	 * 
+	 * @param blackValueEdgesRowPrefixSums
+	 *            the row prefix sums of the edges data of the whole image that
+	 *            is used to calculate the black value of the inner circles
+	 * @param searchArea
+	 *            the area of the image in which circle findings are searched,
+	 *            which must lie inside the area covered by this result table
+	 * @param tableLeft
+	 *            the x coordinate of the image which is the first column of
+	 *            this result table
+	 * @param tableTop
+	 *            the y coordinate of the image which is the first row of this
+	 *            result table
+	 * @param forkJoinPool
+	 *            the pool the strips are searched in, or <code>null</code> to
+	 *            search them in the calling thread
+	 * @return a list of circle findings
+	 */
+	public List<CircleFinding> getCircleFindings(
+			final RowPrefixSums blackValueEdgesRowPrefixSums,
+			final Rectangle searchArea, final int tableLeft,
+			final int tableTop, final ForkJoinPool forkJoinPool) {
 
-				if (pixelCrossValue >= minCrossValue
-						&& pixelCrossCount >= minCrossCount) {
+		final int fromColumn = searchArea.x - tableLeft;
+		final int toColumn = fromColumn + searchArea.width;
+		final int firstRow = searchArea.y - tableTop;
 
-					final CircleFinding circleCandidate = new CircleFinding(x,
-							y, referenceCircle, blackValueEdgesData,
-							pixelCrossValue, pixelCrossCount);
+		final ParallelStrips rowStrips = new ParallelStrips(forkJoinPool,
+				searchArea.height,
+				CircleCalculationResultTable.MIN_STRIP_HEIGHT);
 
-					final float averagePixelBlackValue = circleCandidate.averagePixelBlackValue;
+		final List<List<CircleFinding>> circleCoordinatesOfStrips = new ArrayList<>();
+		for (int strip = 0; strip < rowStrips.getStripCount(); strip++) {
+			circleCoordinatesOfStrips.add(new ArrayList<CircleFinding>());
+		}
 
-					if (averagePixelBlackValue >= minBlackValue) {
-						circleCoordinates.add(circleCandidate);
-					}
-				}
+		rowStrips.invoke(new ParallelStrips.Strip() {
+			@Override
+			public void compute(final int stripIndex, final int fromRow,
+					final int toRow) {
+				addCircleFindings(blackValueEdgesRowPrefixSums, firstRow
+						+ fromRow, firstRow + toRow, fromColumn, toColumn,
+						tableLeft, tableTop,
+						circleCoordinatesOfStrips.get(stripIndex));
 			}
+		});
+
+		final ArrayList<CircleFinding> circleCoordinates = new ArrayList<>();
+		for (final List<CircleFinding> circleCoordinatesOfStrip : circleCoordinatesOfStrips) {
+			circleCoordinates.addAll(circleCoordinatesOfStrip);
 		}
+		// the strips are searched row by row, but the findings have always
+		// been returned column by column
+		Collections.sort(circleCoordinates,
+				CircleCalculationResultTable.COLUMN_MAJOR);
 
 		return circleCoordinates;
 	}
 
+	/**
+	 * Returns the cross counts of this result table.
+	 * 
+	 * @return the cross counts of this result table
+	 */
+	public IntFlatImage getCrossCounts() {
+		return crossCounts;
+	}
+
+	/**
+	 * Returns the cross values of this result table.
+	 * 
+	 * @return the cross values of this result table
+	 */
+	public IntFlatImage getCrossValues() {
+		return crossValues;
+	}
+
 	/**
 	 * Returns the maximum cross count. The maximum is only calculated the fist
 	 * time this method is called. If this method is not called, the calculation
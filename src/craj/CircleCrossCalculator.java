@@ -1,7 +1,5 @@
 package craj;
 
-import craj.PerfectCircleCoordinates.DifferenceFromOrigin;
-
 /**
  * This class is used to calculate the count and the sum of intensity of circles
  * drawn around every pixel in an given edges image.
@@ -26,14 +24,20 @@ import craj.PerfectCircleCoordinates.DifferenceFromOrigin;
  * Finally for all circle candidate the average black value of the inner circle
  * pixels is calculated. If the black value is higher oder equal the reference
  * black value, the pixel is considered to be a circle finding.
+ * <p>
+ * Optionally the Sobel gradient of the edges image can be given. Then every
+ * edge pixel only draws the part of the circle whose direction lies within an
+ * angular window around the gradient direction of the edge pixel or the
+ * opposite direction, because only there the origin of a circle the edge pixel
+ * belongs to can be found.
  * 
  * @author Alexander Johr u26865 m18927, Caroline Rhling u26864 m18926
  * 
  */
 public class CircleCrossCalculator {
 
-	private final int[][] crossValueCounts;
-	private final int[][] crossValues;
+	private final IntFlatImage crossValueCounts;
+	private final IntFlatImage crossValues;
 	private final ReferenceCircle referenceCircle;
 
 	/**
@@ -57,49 +61,119 @@ public class CircleCrossCalculator {
 	public CircleCrossCalculator(final ReferenceCircle referenceCircle,
 			final int[][] edgesDataArray,
 			final PerfectCircleCoordinates circleCoordinates) {
+		this(referenceCircle, IntFlatImage.fromIntArray(edgesDataArray),
+				circleCoordinates);
+	}
+
+	/**
+	 * Create a <tt>CircleCrossCalculator</tt> for the given reference circle
+	 * and circle pixel coordinates which draws circles around every edge pixel
+	 * in the given flat edges data.
+	 * 
+	 * @param referenceCircle
+	 *            the reference circle for the resulting
+	 *            <tt>CircleCalculationResultTable</tt>
+	 * @param edgesData
+	 *            the edges image data where for every edge pixel a circle is
+	 *            drawn in the result tables
+	 * @param circleCoordinates
+	 *            the pixel data of the circle which is drawn around every edge
+	 *            pixel
+	 */
+	public CircleCrossCalculator(final ReferenceCircle referenceCircle,
+			final IntFlatImage edgesData,
+			final PerfectCircleCoordinates circleCoordinates) {
+		this(referenceCircle, edgesData, circleCoordinates, null, 0);
+	}
+
+	/**
+	 * Create a <tt>CircleCrossCalculator</tt> for the given reference circle
+	 * and circle pixel coordinates which draws only the part of the circle in
+	 * the gradient direction of every edge pixel in the given flat edges data.
+	 * 
+	 * @param referenceCircle
+	 *            the reference circle for the resulting
+	 *            <tt>CircleCalculationResultTable</tt>
+	 * @param edgesData
+	 *            the edges image data where for every edge pixel a circle is
+	 *            drawn in the result tables
+	 * @param circleCoordinates
+	 *            the pixel data of the circle which is drawn around every edge
+	 *            pixel
+	 * @param gradient
+	 *            the gradient of the edges image data, or <code>null</code> if
+	 *            the whole circle should be drawn
+	 * @param angleTolerance
+	 *            the maximum difference in degrees between the gradient
+	 *            direction of an edge pixel and the direction of the drawn
+	 *            circle pixels
+	 */
+	public CircleCrossCalculator(final ReferenceCircle referenceCircle,
+			final IntFlatImage edgesData,
+			final PerfectCircleCoordinates circleCoordinates,
+			final SobelGradient gradient, final float angleTolerance) {
 		super();
 
-		final int width = edgesDataArray.length;
-		final int height = edgesDataArray[0].length;
+		final int width = edgesData.width;
+		final int height = edgesData.height;
 
 		this.referenceCircle = referenceCircle;
 
-		crossValues = new int[width][height];
-		crossValueCounts = new int[width][height];
+		crossValues = new IntFlatImage(width, height);
+		crossValueCounts = new IntFlatImage(width, height);
 
-		calcCrossValues(edgesDataArray, referenceCircle, circleCoordinates);
+		calcCrossValues(edgesData, circleCoordinates, gradient, angleTolerance);
 	}
 
-	private void calcCrossValues(final int[][] edgesDataArray,
-			final ReferenceCircle referenceCircle,
-			final PerfectCircleCoordinates circleCoordinates) {
+	private void calcCrossValues(final IntFlatImage edgesData,
+			final PerfectCircleCoordinates circleCoordinates,
+			final SobelGradient gradient, final float angleTolerance) {
 
-		final int width = edgesDataArray.length;
-		final int height = edgesDataArray[0].length;
+		final int width = edgesData.width;
+		final int height = edgesData.height;
+		final int stride = edgesData.stride;
+		final int[] edgesPixels = edgesData.pixels;
 
-		// Iterate over all pixels of the edge detection image
-		for (int x = 0; x < width; x++) {
-			for (int y = 0; y < height; y++) {
+		if (gradient != null
+				&& (gradient.width != width || gradient.height != height)) {
+			throw new IllegalArgumentException(
+					"The gradient must have the same size as the edges data.");
+		}
 
-				final boolean isEdgePixel = edgesDataArray[x][y] != 0;
+		final CircleVotingKernel votingKernel = new CircleVotingKernel(
+				new CircleVotingOffsets(circleCoordinates), width, height);
+		final int directionBinWindow = CircleVotingOffsets
+				.getDirectionBinWindow(angleTolerance);
 
-				if (isEdgePixel) {
+		final int[] crossValuePixels = crossValues.pixels;
+		final int[] crossCountPixels = crossValueCounts.pixels;
 
-					final int edgesDataPixel = edgesDataArray[x][y];
+		// Iterate over all pixels of the edge detection image
+		for (int y = 0; y < height; y++) {
+			for (int x = 0; x < width; x++) {
 
-					for (final DifferenceFromOrigin point : circleCoordinates
-							.getEdgeDifferencesFromCircleOrigin()) {
-						// Clockwise + + ; + - ; - - ; - +
+				final int edgesDataPixel = edgesPixels[y * stride + x];
 
-						final int xPlusX = x + point.x;
-						final int yPlusY = y + point.y;
+				final boolean isEdgePixel = edgesDataPixel != 0;
 
-						increaseIfInRange(edgesDataPixel, xPlusX, yPlusY);
+				if (isEdgePixel) {
+					final int gradientIndex = y * width + x;
+
+					if (gradient == null || gradient.isZero(gradientIndex)) {
+						votingKernel.vote(x, y, edgesDataPixel,
+								crossValuePixels, crossCountPixels);
+					} else {
+						final int directionBin = CircleVotingOffsets
+								.getDirectionBin(gradient
+										.getDirection(gradientIndex));
+
+						votingKernel.voteInDirection(x, y, edgesDataPixel,
+								directionBin, directionBinWindow,
+								crossValuePixels, crossCountPixels);
 					}
 				}
 			}
 		}
-
 	}
 
 	/**
@@ -116,22 +190,4 @@ public class CircleCrossCalculator {
 		return resultTable;
 	}
 
-	private void increaseIfInRange(final int edgesDataPixel, final int xToSet,
-			final int yToSet) {
-
-		if (isInRange(crossValues, xToSet, yToSet)) {
-			crossValues[xToSet][yToSet] += edgesDataPixel;
-			crossValueCounts[xToSet][yToSet]++;
-		}
-
-	}
-
-	private boolean isInRange(final int[][] data, final int cx, final int cy) {
-		if (cx >= 0 && cx < data.length && cy >= 0 && cy < data[0].length) {
-			return true;
-		} else {
-			return false;
-		}
-	}
-
 }
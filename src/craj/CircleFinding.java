@@ -3,7 +3,6 @@ package craj;
 import ij.process.ImageProcessor;
 
 import java.awt.Color;
-import java.util.Map;
 
 /**
  * This class holds the data of a circle finding. It is used to store in which
@@ -40,6 +39,61 @@ public class CircleFinding {
 			final ReferenceCircle referenceCircle,
 			final int[][] sourceImageData, final int pixelCrossValue,
 			final int pixelCrossCount) {
+		this(x, y, referenceCircle, IntFlatImage.fromIntArray(sourceImageData),
+				pixelCrossValue, pixelCrossCount);
+	}
+
+	/**
+	 * Create a circle finding with the given coordinate, the flat source image
+	 * data, the reference circle and the calculated cross value and cross
+	 * count.
+	 * 
+	 * @param x
+	 *            the x coordinate of the circle finding in the image
+	 * @param y
+	 *            the y coordinate of the circle finding in the image
+	 * @param referenceCircle
+	 *            the reference circle of this circle finding
+	 * @param sourceImageData
+	 *            the image data where the circle finding was found
+	 * @param pixelCrossValue
+	 *            the calculated cross value of this circle finding
+	 * @param pixelCrossCount
+	 *            the calculated cross count of this circle finding
+	 */
+	public CircleFinding(final int x, final int y,
+			final ReferenceCircle referenceCircle,
+			final IntFlatImage sourceImageData, final int pixelCrossValue,
+			final int pixelCrossCount) {
+		this(x, y, referenceCircle, new RowPrefixSums(sourceImageData),
+				pixelCrossValue, pixelCrossCount);
+	}
+
+	/**
+	 * Create a circle finding with the given coordinate, the row prefix sums
+	 * of the source image data, the reference circle and the calculated cross
+	 * value and cross count. The row prefix sums can be shared by all circle
+	 * findings of the same source image, so the inner circle average costs
+	 * only one subtraction per row.
+	 * 
+	 * @param x
+	 *            the x coordinate of the circle finding in the image
+	 * @param y
+	 *            the y coordinate of the circle finding in the image
+	 * @param referenceCircle
+	 *            the reference circle of this circle finding
+	 * @param sourceRowPrefixSums
+	 *            the row prefix sums of the image data where the circle
+	 *            finding was found
+	 * @param pixelCrossValue
+	 *            the calculated cross value of this circle finding
+	 * @param pixelCrossCount
+	 *            the calculated cross count of this circle finding
+	 */
+	public CircleFinding(final int x, final int y,
+			final ReferenceCircle referenceCircle,
+			final RowPrefixSums sourceRowPrefixSums, final int pixelCrossValue,
+			final int pixelCrossCount) {
 
 		this.x = x;
 		this.y = y;
@@ -48,11 +102,40 @@ public class CircleFinding {
 		this.pixelCrossCount = pixelCrossCount;
 
 		final float averagePixelValue = getAveragePixelValue(x, y,
-				referenceCircle, sourceImageData);
+				referenceCircle, sourceRowPrefixSums);
 		averagePixelBlackValue = ReferenceCircle.REFERENCE_BLACK_VALUE
 				- averagePixelValue;
 	}
 
+	/**
+	 * Create a circle finding whose values were calculated before, for
+	 * example a circle finding which is read from a file.
+	 * 
+	 * @param x
+	 *            the x coordinate of the circle finding in the image
+	 * @param y
+	 *            the y coordinate of the circle finding in the image
+	 * @param referenceCircle
+	 *            the reference circle of this circle finding
+	 * @param pixelCrossValue
+	 *            the calculated cross value of this circle finding
+	 * @param pixelCrossCount
+	 *            the calculated cross count of this circle finding
+	 * @param averagePixelBlackValue
+	 *            the calculated black value of the inner circle of this
+	 *            circle finding
+	 */
+	public CircleFinding(final int x, final int y,
+			final ReferenceCircle referenceCircle, final int pixelCrossValue,
+			final int pixelCrossCount, final float averagePixelBlackValue) {
+		this.x = x;
+		this.y = y;
+		this.referenceCircle = referenceCircle;
+		this.pixelCrossValue = pixelCrossValue;
+		this.pixelCrossCount = pixelCrossCount;
+		this.averagePixelBlackValue = averagePixelBlackValue;
+	}
+
 	/**
 	 * Draws the circle finding with the given color in the given image
 	 * processor, to show where the circle finding appears in the image.
@@ -77,13 +160,14 @@ public class CircleFinding {
 	}
 
 	private float getAveragePixelValue(final int sourceX, final int sourceY,
-			final ReferenceCircle referenceCircle, final int[][] sourceImageData) {
+			final ReferenceCircle referenceCircle,
+			final RowPrefixSums sourceRowPrefixSums) {
 
 		final PerfectCircleCoordinates perfectCircleCoordinates = referenceCircle
 				.getPerfectCircleCoordinates();
 
-		final Map<Byte, Byte> innerCircleLineBounds = perfectCircleCoordinates
-				.getInnerCircleLineBounds();
+		final int[] innerCircleLineBounds = perfectCircleCoordinates
+				.getInnerCircleLineBoundsByRow();
 
 		final int diameter = referenceCircle.diameter;
 		final int halfDiameter = diameter / 2;
@@ -91,8 +175,8 @@ public class CircleFinding {
 		final int circleTop = -halfDiameter + 1;
 		final int circleBottom = +halfDiameter - 1;
 
-		final int width = sourceImageData.length;
-		final int height = sourceImageData[0].length;
+		final int width = sourceRowPrefixSums.width;
+		final int height = sourceRowPrefixSums.height;
 
 		final int circleInImageTop = sourceY + circleTop;
 
@@ -106,17 +190,15 @@ public class CircleFinding {
 		final int intersectTop = Math.max(imageTop, circleInImageTop);
 		final int intersectBottom = Math.min(imageBottom, circleInImageBottom);
 
-		double sumPixelValue = 0;
+		long sumPixelValue = 0;
 		int pixelCount = 0;
 
-		for (int imageY = intersectTop, circleY = circleTop; imageY <= intersectBottom; imageY++, circleY++) {
+		for (int imageY = intersectTop, circleRow = 0; imageY <= intersectBottom; imageY++, circleRow++) {
 
-			final Byte rightFirstEdgePointForY;
-			rightFirstEdgePointForY = innerCircleLineBounds.get(new Byte(
-					(byte) circleY));
+			final int rightFirstEdgePointForY = innerCircleLineBounds[circleRow];
 
-			final Byte leftLineBound = (byte) -(rightFirstEdgePointForY - 1);
-			final Byte rightLineBound = (byte) (rightFirstEdgePointForY - 1);
+			final int leftLineBound = -(rightFirstEdgePointForY - 1);
+			final int rightLineBound = rightFirstEdgePointForY - 1;
 
 			final int circleLeftLineBoundInImage = sourceX + leftLineBound;
 			final int circleRightLineBoundInImage = sourceX + rightLineBound;
@@ -126,19 +208,38 @@ public class CircleFinding {
 			final int intersectRight = Math.min(imageRight,
 					circleRightLineBoundInImage);
 
-			for (int imageX = intersectLeft; imageX <= intersectRight; imageX++) {
-				final int imageDataPixelValue = sourceImageData[imageX][imageY];
-
-				pixelCount++;
-				sumPixelValue += imageDataPixelValue;
+			if (intersectLeft <= intersectRight) {
+				pixelCount += intersectRight - intersectLeft + 1;
+				sumPixelValue += sourceRowPrefixSums.getSum(imageY,
+						intersectLeft, intersectRight);
 			}
 		}
 
-		final int averageInnerCirclePixelValue = (int) (sumPixelValue / pixelCount);
+		final int averageInnerCirclePixelValue = (int) ((double) sumPixelValue / pixelCount);
 
 		return averageInnerCirclePixelValue;
 	}
 
+	/**
+	 * Returns the count of edge pixels whose circles cross this circle
+	 * finding.
+	 * 
+	 * @return the calculated cross count of this circle finding
+	 */
+	public int getPixelCrossCount() {
+		return pixelCrossCount;
+	}
+
+	/**
+	 * Returns the sum of the values of the edge pixels whose circles cross
+	 * this circle finding.
+	 * 
+	 * @return the calculated cross value of this circle finding
+	 */
+	public int getPixelCrossValue() {
+		return pixelCrossValue;
+	}
+
 	@Override
 	public String toString() {
 
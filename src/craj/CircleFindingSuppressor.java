@@ -0,0 +1,183 @@
+package craj;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Removes the circle findings which describe the same circle as a better
+ * circle finding.
+ * <p>
+ * <tt>CircleCalculationResultTable.getCircleFindings</tt> returns every pixel
+ * which passes the thresholds, so a single circle in the image usually results
+ * in a blob of neighboring circle findings for several diameters and for every
+ * contrast enhancer. This class keeps only the local maxima: the circle
+ * findings are visited from the best to the worst, and a circle finding is
+ * dropped if its center is near the center of an already kept circle finding.
+ * Circle findings of the same circle which were found with different contrast
+ * enhancers are merged the same way.
+ * <p>
+ * The circle findings are rated by their cross value relative to the reference
+ * cross value of their reference circle, then by their relative cross count
+ * and then by their average black value. The already kept circle findings are
+ * held in a grid of cells, so only the kept circle findings of the
+ * neighboring cells have to be compared.
+ */
+public class CircleFindingSuppressor {
+
+	private static final Comparator<CircleFinding> BEST_FIRST = new Comparator<CircleFinding>() {
+		@Override
+		public int compare(final CircleFinding first, final CircleFinding second) {
+			int comparison = Double.compare(getRelativeCrossValue(second),
+					getRelativeCrossValue(first));
+			if (comparison == 0) {
+				comparison = Double.compare(getRelativeCrossCount(second),
+						getRelativeCrossCount(first));
+			}
+			if (comparison == 0) {
+				comparison = Float.compare(second.averagePixelBlackValue,
+						first.averagePixelBlackValue);
+			}
+			if (comparison == 0) {
+				comparison = Integer.compare(first.y, second.y);
+			}
+			if (comparison == 0) {
+				comparison = Integer.compare(first.x, second.x);
+			}
+			if (comparison == 0) {
+				comparison = Integer.compare(first.referenceCircle.diameter,
+						second.referenceCircle.diameter);
+			}
+			return comparison;
+		}
+	};
+
+	private static double getRelativeCrossCount(final CircleFinding circleFinding) {
+		return (double) circleFinding.getPixelCrossCount()
+				/ circleFinding.referenceCircle.referenceCrossCount;
+	}
+
+	private static double getRelativeCrossValue(final CircleFinding circleFinding) {
+		return (double) circleFinding.getPixelCrossValue()
+				/ circleFinding.referenceCircle.referenceCrossValue;
+	}
+
+	private final float maxCenterDistanceFactor;
+
+	/**
+	 * Construct a <tt>CircleFindingSuppressor</tt> with the given distance
+	 * factor.
+	 * 
+	 * @param maxCenterDistanceFactor
+	 *            the factor of the larger radius of two circle findings, up to
+	 *            which their centers are considered to belong to the same
+	 *            circle. Should be lower than 2, because two touching circles
+	 *            have a center distance of twice their radius.
+	 */
+	public CircleFindingSuppressor(final float maxCenterDistanceFactor) {
+		if (maxCenterDistanceFactor < 0) {
+			throw new IllegalArgumentException(
+					"The center distance factor can't be negative.");
+		}
+
+		this.maxCenterDistanceFactor = maxCenterDistanceFactor;
+	}
+
+	private long getCellKey(final int cellX, final int cellY) {
+		return ((long) cellX << 32) ^ (cellY & 0xffffffffL);
+	}
+
+	private boolean isSuppressed(final CircleFinding circleFinding,
+			final int cellX, final int cellY,
+			final Map<Long, List<CircleFinding>> keptCircleFindingsByCell) {
+		for (int neighborY = cellY - 1; neighborY <= cellY + 1; neighborY++) {
+			for (int neighborX = cellX - 1; neighborX <= cellX + 1; neighborX++) {
+				final List<CircleFinding> cell = keptCircleFindingsByCell
+						.get(getCellKey(neighborX, neighborY));
+
+				if (cell != null) {
+					for (final CircleFinding keptCircleFinding : cell) {
+						if (isSuppressedBy(circleFinding, keptCircleFinding)) {
+							return true;
+						}
+					}
+				}
+			}
+		}
+
+		return false;
+	}
+
+	private boolean isSuppressedBy(final CircleFinding circleFinding,
+			final CircleFinding keptCircleFinding) {
+		final int radius = Math.max(circleFinding.referenceCircle.diameter,
+				keptCircleFinding.referenceCircle.diameter) / 2;
+		final double maxCenterDistance = maxCenterDistanceFactor * radius;
+
+		final long xDistance = circleFinding.x - keptCircleFinding.x;
+		final long yDistance = circleFinding.y - keptCircleFinding.y;
+
+		return xDistance * xDistance + yDistance * yDistance <= maxCenterDistance
+				* maxCenterDistance;
+	}
+
+	/**
+	 * Returns the circle findings which are not suppressed by a better circle
+	 * finding of the same circle.
+	 * 
+	 * @param circleFindings
+	 *            the circle findings of an image, possibly of several diameters
+	 *            and contrast enhancers
+	 * @return the kept circle findings in the order of the given list
+	 */
+	public List<CircleFinding> suppress(final List<CircleFinding> circleFindings) {
+		int maxDiameter = 0;
+		for (final CircleFinding circleFinding : circleFindings) {
+			maxDiameter = Math.max(maxDiameter,
+					circleFinding.referenceCircle.diameter);
+		}
+
+		final int cellSize = Math.max(1,
+				(int) Math.ceil(maxCenterDistanceFactor * (maxDiameter / 2)));
+
+		final List<CircleFinding> bestFirst = new ArrayList<>(circleFindings);
+		Collections.sort(bestFirst, CircleFindingSuppressor.BEST_FIRST);
+
+		final Map<Long, List<CircleFinding>> keptCircleFindingsByCell = new HashMap<>();
+		final Map<CircleFinding, Boolean> keptCircleFindings = new IdentityHashMap<>();
+
+		for (final CircleFinding circleFinding : bestFirst) {
+			final int cellX = circleFinding.x / cellSize;
+			final int cellY = circleFinding.y / cellSize;
+
+			if (!isSuppressed(circleFinding, cellX, cellY,
+					keptCircleFindingsByCell)) {
+				final long cellKey = getCellKey(cellX, cellY);
+
+				List<CircleFinding> cell = keptCircleFindingsByCell
+						.get(cellKey);
+				if (cell == null) {
+					cell = new ArrayList<>();
+					keptCircleFindingsByCell.put(cellKey, cell);
+				}
+
+				cell.add(circleFinding);
+				keptCircleFindings.put(circleFinding, Boolean.TRUE);
+			}
+		}
+
+		final List<CircleFinding> result = new ArrayList<>(
+				keptCircleFindings.size());
+		for (final CircleFinding circleFinding : circleFindings) {
+			if (keptCircleFindings.containsKey(circleFinding)) {
+				result.add(circleFinding);
+			}
+		}
+
+		return result;
+	}
+}
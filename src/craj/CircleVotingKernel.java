@@ -0,0 +1,333 @@
+package craj;
+
+/**
+ * The <tt>CircleVotingOffsets</tt> of a circle compiled for result tables of
+ * a fixed size.
+ * <p>
+ * Every offset is packed into a single linear offset
+ * <code>dy * width + dx</code>. Edge pixels whose circle lies completely
+ * inside the result tables, which are the edge pixels at least one radius
+ * away from the border, vote with these linear offsets without any range
+ * check. Only the edge pixels in the border band check every circle pixel.
+ * <p>
+ * The votes can also be written to partial tables, which hold only the rows
+ * from a given top row on, but have the full width. This is used to let
+ * several threads vote for different edge pixels without sharing tables.
+ */
+public class CircleVotingKernel {
+
+	private final int[] directionBinStarts;
+
+	private final int height;
+
+	private final int interiorMaxX;
+	private final int interiorMaxY;
+	private final int interiorMinX;
+	private final int interiorMinY;
+
+	private final int[] linearOffsets;
+
+	private final int maxOffsetY;
+	private final int minOffsetY;
+
+	private final int[] offsetXs;
+	private final int[] offsetYs;
+
+	private final int width;
+
+	/**
+	 * Compiles the given voting offsets for result tables with the given size.
+	 * 
+	 * @param votingOffsets
+	 *            the voting offsets of the circle
+	 * @param width
+	 *            the width of the result tables
+	 * @param height
+	 *            the height of the result tables
+	 */
+	public CircleVotingKernel(final CircleVotingOffsets votingOffsets,
+			final int width, final int height) {
+		this.width = width;
+		this.height = height;
+
+		offsetXs = votingOffsets.offsetXs;
+		offsetYs = votingOffsets.offsetYs;
+		directionBinStarts = votingOffsets.directionBinStarts;
+
+		linearOffsets = new int[offsetXs.length];
+
+		int minOffsetX = 0;
+		int maxOffsetX = 0;
+		int minOffsetY = 0;
+		int maxOffsetY = 0;
+
+		for (int offset = 0; offset < offsetXs.length; offset++) {
+			linearOffsets[offset] = offsetYs[offset] * width + offsetXs[offset];
+
+			minOffsetX = Math.min(minOffsetX, offsetXs[offset]);
+			maxOffsetX = Math.max(maxOffsetX, offsetXs[offset]);
+			minOffsetY = Math.min(minOffsetY, offsetYs[offset]);
+			maxOffsetY = Math.max(maxOffsetY, offsetYs[offset]);
+		}
+
+		this.minOffsetY = minOffsetY;
+		this.maxOffsetY = maxOffsetY;
+
+		interiorMinX = -minOffsetX;
+		interiorMaxX = width - 1 - maxOffsetX;
+		interiorMinY = -minOffsetY;
+		interiorMaxY = height - 1 - maxOffsetY;
+	}
+
+	/**
+	 * Returns the greatest y difference of a circle pixel from the edge pixel.
+	 * 
+	 * @return the greatest y offset
+	 */
+	public int getMaxOffsetY() {
+		return maxOffsetY;
+	}
+
+	/**
+	 * Returns the lowest y difference of a circle pixel from the edge pixel,
+	 * which is zero or negative.
+	 * 
+	 * @return the lowest y offset
+	 */
+	public int getMinOffsetY() {
+		return minOffsetY;
+	}
+
+	/**
+	 * Returns the count of circle pixels an edge pixel with the given
+	 * direction bin votes for, including the circle pixels outside of the
+	 * result tables.
+	 * 
+	 * @param directionBin
+	 *            the direction bin of the gradient of the edge pixel, or -1 if
+	 *            it votes for the whole circle
+	 * @param directionBinWindow
+	 *            the count of neighbor bins on each side of the direction bin
+	 * @return the count of votes of the edge pixel
+	 * @see #voteInDirection(int, int, int, int, int, int[], int[])
+	 */
+	public int getVoteCount(final int directionBin,
+			final int directionBinWindow) {
+		final int halfCircle = CircleVotingOffsets.DIRECTION_BIN_COUNT / 2;
+
+		if (directionBin < 0 || 2 * directionBinWindow + 1 >= halfCircle) {
+			return offsetXs.length;
+		}
+
+		return getWindowOffsetCount(directionBin - directionBinWindow,
+				directionBin + directionBinWindow)
+				+ getWindowOffsetCount(directionBin + halfCircle
+						- directionBinWindow, directionBin + halfCircle
+						+ directionBinWindow);
+	}
+
+	/**
+	 * Returns the count of offsets of the direction bins from the first bin to
+	 * the last bin like {@link #voteInWindow}.
+	 */
+	private int getWindowOffsetCount(final int firstBin, final int lastBin) {
+		final int binCount = CircleVotingOffsets.DIRECTION_BIN_COUNT;
+		final int from = (firstBin % binCount + binCount) % binCount;
+		final int to = from + lastBin - firstBin + 1;
+
+		if (to <= binCount) {
+			return directionBinStarts[to] - directionBinStarts[from];
+		} else {
+			return directionBinStarts[binCount] - directionBinStarts[from]
+					+ directionBinStarts[to - binCount] - directionBinStarts[0];
+		}
+	}
+
+	/**
+	 * Returns if the whole circle around the given edge pixel lies inside the
+	 * result tables.
+	 * 
+	 * @param x
+	 *            the x coordinate of the edge pixel
+	 * @param y
+	 *            the y coordinate of the edge pixel
+	 * @return <code>true</code> if no circle pixel has to be range checked
+	 */
+	public boolean isInterior(final int x, final int y) {
+		return x >= interiorMinX && x <= interiorMaxX && y >= interiorMinY
+				&& y <= interiorMaxY;
+	}
+
+	/**
+	 * Increases the cross values and cross counts of all circle pixels around
+	 * the given edge pixel which lie inside the result tables.
+	 * 
+	 * @param x
+	 *            the x coordinate of the edge pixel
+	 * @param y
+	 *            the y coordinate of the edge pixel
+	 * @param edgesDataPixel
+	 *            the value of the edge pixel
+	 * @param crossValues
+	 *            the cross values which are increased by the edge pixel value
+	 * @param crossCounts
+	 *            the cross counts which are increased by one
+	 */
+	public void vote(final int x, final int y, final int edgesDataPixel,
+			final int[] crossValues, final int[] crossCounts) {
+		vote(x, y, edgesDataPixel, crossValues, crossCounts, 0);
+	}
+
+	/**
+	 * Does the same as {@link #vote(int, int, int, int[], int[])}, but for
+	 * partial tables which start at the given row. The partial tables must
+	 * hold all rows the circle around the edge pixel crosses.
+	 * 
+	 * @param x
+	 *            the x coordinate of the edge pixel
+	 * @param y
+	 *            the y coordinate of the edge pixel
+	 * @param edgesDataPixel
+	 *            the value of the edge pixel
+	 * @param crossValues
+	 *            the partial cross values which are increased by the edge
+	 *            pixel value
+	 * @param crossCounts
+	 *            the partial cross counts which are increased by one
+	 * @param tableTopRow
+	 *            the row of the result tables which is the first row of the
+	 *            partial tables
+	 */
+	public void vote(final int x, final int y, final int edgesDataPixel,
+			final int[] crossValues, final int[] crossCounts,
+			final int tableTopRow) {
+		voteInRange(0, linearOffsets.length, x, y, edgesDataPixel,
+				crossValues, crossCounts, tableTopRow);
+	}
+
+	/**
+	 * Does the same as {@link #vote(int, int, int, int[], int[])}, but only
+	 * for the circle pixels whose direction from the edge pixel lies within
+	 * the given count of direction bins around the given direction bin or the
+	 * opposite direction bin. If the window covers the whole circle, all
+	 * circle pixels are increased.
+	 * 
+	 * @param x
+	 *            the x coordinate of the edge pixel
+	 * @param y
+	 *            the y coordinate of the edge pixel
+	 * @param edgesDataPixel
+	 *            the value of the edge pixel
+	 * @param directionBin
+	 *            the direction bin of the gradient of the edge pixel
+	 * @param directionBinWindow
+	 *            the count of neighbor bins on each side of the direction bin
+	 * @param crossValues
+	 *            the cross values which are increased by the edge pixel value
+	 * @param crossCounts
+	 *            the cross counts which are increased by one
+	 * @see CircleVotingOffsets
+	 */
+	public void voteInDirection(final int x, final int y,
+			final int edgesDataPixel, final int directionBin,
+			final int directionBinWindow, final int[] crossValues,
+			final int[] crossCounts) {
+		voteInDirection(x, y, edgesDataPixel, directionBin,
+				directionBinWindow, crossValues, crossCounts, 0);
+	}
+
+	/**
+	 * Does the same as
+	 * {@link #voteInDirection(int, int, int, int, int, int[], int[])}, but for
+	 * partial tables which start at the given row.
+	 * 
+	 * @param x
+	 *            the x coordinate of the edge pixel
+	 * @param y
+	 *            the y coordinate of the edge pixel
+	 * @param edgesDataPixel
+	 *            the value of the edge pixel
+	 * @param directionBin
+	 *            the direction bin of the gradient of the edge pixel
+	 * @param directionBinWindow
+	 *            the count of neighbor bins on each side of the direction bin
+	 * @param crossValues
+	 *            the partial cross values which are increased by the edge
+	 *            pixel value
+	 * @param crossCounts
+	 *            the partial cross counts which are increased by one
+	 * @param tableTopRow
+	 *            the row of the result tables which is the first row of the
+	 *            partial tables
+	 * @see #vote(int, int, int, int[], int[], int)
+	 */
+	public void voteInDirection(final int x, final int y,
+			final int edgesDataPixel, final int directionBin,
+			final int directionBinWindow, final int[] crossValues,
+			final int[] crossCounts, final int tableTopRow) {
+		final int halfCircle = CircleVotingOffsets.DIRECTION_BIN_COUNT / 2;
+
+		if (2 * directionBinWindow + 1 >= halfCircle) {
+			vote(x, y, edgesDataPixel, crossValues, crossCounts, tableTopRow);
+			return;
+		}
+
+		voteInWindow(directionBin - directionBinWindow, directionBin
+				+ directionBinWindow, x, y, edgesDataPixel, crossValues,
+				crossCounts, tableTopRow);
+		voteInWindow(directionBin + halfCircle - directionBinWindow,
+				directionBin + halfCircle + directionBinWindow, x, y,
+				edgesDataPixel, crossValues, crossCounts, tableTopRow);
+	}
+
+	private void voteInRange(final int fromOffset, final int toOffset,
+			final int x, final int y, final int edgesDataPixel,
+			final int[] crossValues, final int[] crossCounts,
+			final int tableTopRow) {
+		if (isInterior(x, y)) {
+			final int origin = (y - tableTopRow) * width + x;
+
+			for (int offset = fromOffset; offset < toOffset; offset++) {
+				final int index = origin + linearOffsets[offset];
+				crossValues[index] += edgesDataPixel;
+				crossCounts[index]++;
+			}
+		} else {
+			for (int offset = fromOffset; offset < toOffset; offset++) {
+				final int xToSet = x + offsetXs[offset];
+				final int yToSet = y + offsetYs[offset];
+
+				if (xToSet >= 0 && xToSet < width && yToSet >= 0
+						&& yToSet < height) {
+					final int index = (yToSet - tableTopRow) * width + xToSet;
+					crossValues[index] += edgesDataPixel;
+					crossCounts[index]++;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Votes for the offsets of the direction bins from the first bin to the
+	 * last bin, both inclusive, where bins outside the bin count wrap around.
+	 */
+	private void voteInWindow(final int firstBin, final int lastBin,
+			final int x, final int y, final int edgesDataPixel,
+			final int[] crossValues, final int[] crossCounts,
+			final int tableTopRow) {
+		final int binCount = CircleVotingOffsets.DIRECTION_BIN_COUNT;
+		final int from = (firstBin % binCount + binCount) % binCount;
+		final int to = from + lastBin - firstBin + 1;
+
+		if (to <= binCount) {
+			voteInRange(directionBinStarts[from], directionBinStarts[to], x, y,
+					edgesDataPixel, crossValues, crossCounts, tableTopRow);
+		} else {
+			voteInRange(directionBinStarts[from], directionBinStarts[binCount],
+					x, y, edgesDataPixel, crossValues, crossCounts, tableTopRow);
+			voteInRange(directionBinStarts[0], directionBinStarts[to
+					- binCount], x, y, edgesDataPixel, crossValues,
+					crossCounts, tableTopRow);
+		}
+	}
+}
@@ -0,0 +1,162 @@
+package craj;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import craj.PerfectCircleCoordinates.DifferenceFromOrigin;
+
+/**
+ * Holds the edge differences from the circle origin of a
+ * <tt>PerfectCircleCoordinates</tt> object as plain arrays, sorted by their
+ * direction from the origin into {@link #DIRECTION_BIN_COUNT} direction bins.
+ * <p>
+ * An edge pixel of a circle has a gradient which points to the origin of the
+ * circle or away from it. Therefore an edge pixel can vote only for the
+ * offsets whose direction lies within a small angular window around its
+ * gradient direction or the opposite direction, instead of voting for the
+ * whole circle. The sorting makes the offsets of such a window a few
+ * contiguous ranges of the arrays.
+ * <p>
+ * The perimeter of a large circle is sampled down to about
+ * {@link #MAX_OFFSET_COUNT} offsets by taking every n-th offset in the order of
+ * their direction, so the samples are spread evenly around the circle and the
+ * cost of a vote does not grow with the radius. The reference values of a
+ * reference circle are calculated with the same samples, so the sampled cross
+ * values and counts stay comparable.
+ * <p>
+ * The votes themselves are done by a {@link CircleVotingKernel}, which is
+ * compiled from these offsets for the size of the result tables.
+ */
+public class CircleVotingOffsets {
+
+	/**
+	 * the count of direction bins the full circle is divided into
+	 */
+	public static final int DIRECTION_BIN_COUNT = 360;
+
+	/**
+	 * the count of offsets above which the perimeter of a circle is sampled
+	 */
+	public static final int MAX_OFFSET_COUNT = 512;
+
+	/**
+	 * Returns the direction bin of the given direction.
+	 * 
+	 * @param direction
+	 *            the direction in radians between -pi and pi
+	 * @return the direction bin between 0 and {@link #DIRECTION_BIN_COUNT} - 1
+	 */
+	public static int getDirectionBin(final double direction) {
+		final int bin = (int) Math.floor((direction + Math.PI)
+				/ (2 * Math.PI) * CircleVotingOffsets.DIRECTION_BIN_COUNT);
+
+		return (bin % CircleVotingOffsets.DIRECTION_BIN_COUNT + CircleVotingOffsets.DIRECTION_BIN_COUNT)
+				% CircleVotingOffsets.DIRECTION_BIN_COUNT;
+	}
+
+	/**
+	 * Returns the count of direction bins on each side of a direction bin
+	 * which are needed to cover the given angle tolerance.
+	 * 
+	 * @param angleTolerance
+	 *            the maximum difference in degrees between the gradient
+	 *            direction of an edge pixel and the direction of the offsets
+	 *            it votes for
+	 * @return the count of neighbor bins on each side
+	 */
+	public static int getDirectionBinWindow(final float angleTolerance) {
+		return (int) Math.ceil(angleTolerance
+				* CircleVotingOffsets.DIRECTION_BIN_COUNT / 360f);
+	}
+
+	/**
+	 * Returns the step between the sampled offsets of a circle with the given
+	 * count of edge pixels.
+	 * 
+	 * @param edgePixelCount
+	 *            the count of edge pixels of the circle
+	 * @return 1 if all edge pixels are used, otherwise the step between the
+	 *         sampled edge pixels
+	 */
+	public static int getSamplingStep(final int edgePixelCount) {
+		return Math.max(1,
+				(edgePixelCount + CircleVotingOffsets.MAX_OFFSET_COUNT - 1)
+						/ CircleVotingOffsets.MAX_OFFSET_COUNT);
+	}
+
+	/**
+	 * the start index of every direction bin in the offset arrays, followed by
+	 * the count of offsets
+	 */
+	public final int[] directionBinStarts;
+
+	/**
+	 * the x differences from the circle origin sorted by direction
+	 */
+	public final int[] offsetXs;
+
+	/**
+	 * the y differences from the circle origin sorted by direction
+	 */
+	public final int[] offsetYs;
+
+	/**
+	 * Create the <tt>CircleVotingOffsets</tt> for the given circle
+	 * coordinates.
+	 * 
+	 * @param circleCoordinates
+	 *            the pixel data of the circle which is drawn around every edge
+	 *            pixel
+	 */
+	public CircleVotingOffsets(final PerfectCircleCoordinates circleCoordinates) {
+		final List<DifferenceFromOrigin> differences = new ArrayList<>(
+				circleCoordinates.getEdgeDifferencesFromCircleOrigin());
+
+		Collections.sort(differences, new Comparator<DifferenceFromOrigin>() {
+			@Override
+			public int compare(final DifferenceFromOrigin first,
+					final DifferenceFromOrigin second) {
+				return Integer.compare(getDirectionBin(first),
+						getDirectionBin(second));
+			}
+		});
+
+		final int samplingStep = CircleVotingOffsets
+				.getSamplingStep(differences.size());
+		final int offsetCount = (differences.size() + samplingStep - 1)
+				/ samplingStep;
+
+		offsetXs = new int[offsetCount];
+		offsetYs = new int[offsetCount];
+		directionBinStarts = new int[CircleVotingOffsets.DIRECTION_BIN_COUNT + 1];
+
+		for (int i = 0; i < offsetCount; i++) {
+			final DifferenceFromOrigin difference = differences.get(i
+					* samplingStep);
+			offsetXs[i] = difference.x;
+			offsetYs[i] = difference.y;
+
+			directionBinStarts[getDirectionBin(difference) + 1]++;
+		}
+
+		for (int bin = 0; bin < CircleVotingOffsets.DIRECTION_BIN_COUNT; bin++) {
+			directionBinStarts[bin + 1] += directionBinStarts[bin];
+		}
+	}
+
+	private int getDirectionBin(final DifferenceFromOrigin difference) {
+		return CircleVotingOffsets.getDirectionBin(Math.atan2(difference.y,
+				difference.x));
+	}
+
+	/**
+	 * Returns the count of offsets of the whole circle.
+	 * 
+	 * @return the count of offsets
+	 */
+	public int getOffsetCount() {
+		return offsetXs.length;
+	}
+}
@@ -0,0 +1,220 @@
+package craj;
+
+import java.awt.Rectangle;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Searches the circles of an image in a scaled down copy of the image first,
+ * to find the areas of the image where the search in full resolution is
+ * worthwhile.
+ * <p>
+ * The image is scaled down by averaging blocks of pixels, and the circles are
+ * searched with the given edge detectors and with scaled down copies of the
+ * reference circles, whose tolerances are relaxed. Every circle finding of the
+ * scaled down image becomes a search area around its position in the full
+ * image. Overlapping search areas are merged, so the returned search areas are
+ * disjoint. An image without any circle finding in the scaled down image
+ * returns no search area at all and does not have to be searched in full
+ * resolution.
+ */
+public class CoarseCandidateSearch {
+
+	/**
+	 * the distance in pixels of the scaled down image that a circle finding
+	 * in the full image may lie away from the scaled up circle finding
+	 */
+	private static final int POSITION_TOLERANCE = 2;
+
+	/**
+	 * the factor the tolerances of the scaled down reference circles are
+	 * multiplied with
+	 */
+	private static final float TOLERANCE_FACTOR = 0.8f;
+
+	private static void addMerged(final List<Rectangle> searchAreas,
+			final Rectangle searchArea) {
+		Rectangle mergedSearchArea = searchArea;
+
+		boolean merged = true;
+		while (merged) {
+			merged = false;
+
+			final Iterator<Rectangle> iterator = searchAreas.iterator();
+			while (iterator.hasNext()) {
+				final Rectangle otherSearchArea = iterator.next();
+
+				if (otherSearchArea.contains(mergedSearchArea)) {
+					return;
+				}
+
+				if (otherSearchArea.intersects(mergedSearchArea)) {
+					mergedSearchArea = mergedSearchArea.union(otherSearchArea);
+					iterator.remove();
+					merged = true;
+				}
+			}
+		}
+
+		searchAreas.add(mergedSearchArea);
+	}
+
+	/**
+	 * Scales the given image down by averaging blocks of the given size. The
+	 * pixels of incomplete blocks at the right and bottom border are dropped.
+	 * 
+	 * @param image
+	 *            the image to scale down
+	 * @param scale
+	 *            the width and height of the blocks which are averaged
+	 * @return the scaled down image, which is at least one pixel wide and high
+	 */
+	public static IntFlatImage scaleDown(final FlatImage image, final int scale) {
+		final int width = Math.max(1, image.width / scale);
+		final int height = Math.max(1, image.height / scale);
+
+		final int blockWidth = Math.min(scale, image.width);
+		final int blockHeight = Math.min(scale, image.height);
+		final int blockSize = blockWidth * blockHeight;
+
+		final IntFlatImage scaledImage = new IntFlatImage(width, height);
+		final int[] sums = new int[width];
+
+		for (int y = 0; y < height; y++) {
+			for (int blockY = 0; blockY < blockHeight; blockY++) {
+				final int rowStart = image.getIndex(0, y * scale + blockY);
+
+				for (int x = 0; x < width; x++) {
+					final int blockStart = rowStart + x * scale;
+					for (int blockX = 0; blockX < blockWidth; blockX++) {
+						sums[x] += image.get(blockStart + blockX);
+					}
+				}
+			}
+
+			final int scaledRowStart = y * width;
+			for (int x = 0; x < width; x++) {
+				scaledImage.pixels[scaledRowStart + x] = sums[x] / blockSize;
+				sums[x] = 0;
+			}
+		}
+
+		return scaledImage;
+	}
+
+	private final EdgeDetector edgeDetectorForBlackValueCalculation;
+
+	private final EdgeDetector edgeDetectorForCrossValueCalculation;
+
+	private final List<ReferenceCircle> scaledReferenceCircles;
+
+	private final int scale;
+
+	/**
+	 * Construct a <tt>CoarseCandidateSearch</tt> which scales the image down by
+	 * the given factor and searches it for scaled down copies of the given
+	 * reference circles.
+	 * 
+	 * @param referenceCircles
+	 *            the reference circles which are searched in the full image
+	 * @param scale
+	 *            the factor the image is scaled down by, usually 2 or 4
+	 * @param edgeDetectorForBlackValueCalculation
+	 *            an edge detector for the calculation of the inner areas of
+	 *            the circle-candidates in the scaled down image
+	 * @param edgeDetectorForCrossValueCalculation
+	 *            an edge detector for the calculation of the crosses of the
+	 *            circles in the scaled down image
+	 */
+	public CoarseCandidateSearch(final List<ReferenceCircle> referenceCircles,
+			final int scale,
+			final EdgeDetector edgeDetectorForBlackValueCalculation,
+			final EdgeDetector edgeDetectorForCrossValueCalculation) {
+		if (scale < 2) {
+			throw new IllegalArgumentException(
+					"The image has to be scaled down by at least 2.");
+		}
+
+		this.scale = scale;
+		this.edgeDetectorForBlackValueCalculation = edgeDetectorForBlackValueCalculation;
+		this.edgeDetectorForCrossValueCalculation = edgeDetectorForCrossValueCalculation;
+
+		scaledReferenceCircles = new ArrayList<>();
+		int lastScaledDiameter = 0;
+		for (final ReferenceCircle referenceCircle : referenceCircles) {
+			final ReferenceCircle scaledReferenceCircle = referenceCircle
+					.getScaledDown(scale, CoarseCandidateSearch.TOLERANCE_FACTOR,
+							false);
+
+			// neighboring diameters are often scaled down to the same diameter
+			if (scaledReferenceCircle.diameter != lastScaledDiameter) {
+				scaledReferenceCircles.add(scaledReferenceCircle);
+				lastScaledDiameter = scaledReferenceCircle.diameter;
+			}
+		}
+	}
+
+	/**
+	 * Returns the disjoint areas of the given image in which the circles have
+	 * to be searched in full resolution.
+	 * 
+	 * @param imageData
+	 *            the grey image data in which the circles are searched
+	 * @param forkJoinPool
+	 *            the pool the scaled down image is calculated in, or
+	 *            <code>null</code> to calculate it in the calling thread
+	 * @return the search areas, which are empty if the image contains no
+	 *         circle
+	 */
+	public List<Rectangle> getSearchAreas(final FlatImage imageData,
+			final ForkJoinPool forkJoinPool) {
+		final IntFlatImage scaledImageData = CoarseCandidateSearch.scaleDown(
+				imageData, scale);
+
+		final IntFlatImage crossValueEdgesData = edgeDetectorForCrossValueCalculation
+				.getEdgesData(scaledImageData, null, forkJoinPool);
+		final RowPrefixSums blackValueEdgesRowPrefixSums = new RowPrefixSums(
+				edgeDetectorForBlackValueCalculation.getEdgesData(
+						scaledImageData, null, forkJoinPool));
+
+		final List<CircleCalculationResultTable> resultTables = new MultiRadiusCircleCrossCalculator(
+				scaledReferenceCircles, crossValueEdgesData).getResultTables(
+				0, scaledReferenceCircles.size(), forkJoinPool);
+
+		final Rectangle imageArea = new Rectangle(imageData.width,
+				imageData.height);
+		final List<Rectangle> searchAreas = new ArrayList<>();
+
+		for (final CircleCalculationResultTable resultTable : resultTables) {
+			for (final CircleFinding circleFinding : resultTable
+					.getCircleFindings(blackValueEdgesRowPrefixSums,
+							forkJoinPool)) {
+				final int x = circleFinding.x * scale + scale / 2;
+				final int y = circleFinding.y * scale + scale / 2;
+				final int margin = scale
+						* (circleFinding.referenceCircle.diameter / 4 + CoarseCandidateSearch.POSITION_TOLERANCE);
+
+				final Rectangle searchArea = new Rectangle(x - margin, y
+						- margin, 2 * margin + 1, 2 * margin + 1)
+						.intersection(imageArea);
+
+				if (!searchArea.isEmpty()) {
+					CoarseCandidateSearch.addMerged(searchAreas, searchArea);
+				}
+			}
+		}
+
+		return searchAreas;
+	}
+
+	/**
+	 * Returns the factor the image is scaled down by.
+	 * 
+	 * @return the factor the image is scaled down by
+	 */
+	public int getScale() {
+		return scale;
+	}
+}
@@ -53,9 +53,71 @@ public class ContrastEnhancer {
 	 *            the image data which contrast should be increased
 	 */
 	public void enhanceContrast(final int[][] imageData) {
+		final IntFlatImage flatImageData = IntFlatImage.fromIntArray(imageData);
+
+		enhanceContrast(flatImageData);
+
+		final int width = flatImageData.width;
+		final int height = flatImageData.height;
+		final int[] pixels = flatImageData.pixels;
+
+		for (int x = 0; x < width; x++) {
+			for (int y = 0; y < height; y++) {
+				imageData[x][y] = pixels[y * width + x];
+			}
+		}
+	}
+
+	/**
+	 * Enhance the given flat <code>imageData</code> in place with the
+	 * specified lower bound percentage and upper bound percentage
+	 * 
+	 * @param imageData
+	 *            the RGB image data which contrast should be increased
+	 */
+	public void enhanceContrast(final IntFlatImage imageData) {
 
 		final Histogram histogram = new Histogram(imageData);
 
+		final int[] lookupTable = getLookupTable(histogram);
+
+		final int width = imageData.width;
+		final int height = imageData.height;
+		final int stride = imageData.stride;
+		final int[] pixels = imageData.pixels;
+
+		for (int y = 0; y < height; y++) {
+			final int rowStart = y * stride;
+			final int rowEnd = rowStart + width;
+
+			for (int i = rowStart; i < rowEnd; i++) {
+
+				final int pixelValue = pixels[i];
+
+				final int red = (pixelValue & 0x00ff0000) >> 16;
+				final int green = (pixelValue & 0x0000ff00) >> 8;
+				final int blue = pixelValue & 0x000000ff;
+
+				final int mappedValue = 0x00000000 | lookupTable[red] << 16
+						| lookupTable[green] << 8 | lookupTable[blue];
+
+				pixels[i] = mappedValue;
+			}
+		}
+
+		showIfVerbose(imageData);
+	}
+
+	/**
+	 * Returns the lookup table which maps every channel value from 0 to 255 to
+	 * its enhanced value, where the lower bound and upper bound are taken from
+	 * the given histogram.
+	 * 
+	 * @param histogram
+	 *            the histogram of the image which contrast should be increased
+	 * @return the 256 enhanced channel values
+	 */
+	public int[] getLookupTable(final Histogram histogram) {
 		final int min = histogram.getMin(lowerBoundPercentage);
 		int max = histogram.getMax(upperBoundPercentage);
 
@@ -69,43 +131,35 @@ public class ContrastEnhancer {
 		final int outputStart = 0;
 		final int outputStop = 255;
 
-		final int width = imageData.length;
-		final int height = imageData[0].length;
-
-		for (int x = 0; x < width; x++) {
-			for (int y = 0; y < height; y++) {
-
-				final int pixelValue = imageData[x][y];
-
-				final int red = (pixelValue & 0x00ff0000) >> 16;
-				final int green = (pixelValue & 0x0000ff00) >> 8;
-				final int blue = pixelValue & 0x000000ff;
+		final int[] lookupTable = new int[256];
 
-				final int clampedRed = Math.max(inputStart,
-						Math.min(inputStop, red));
-				final int clampedGreen = Math.max(inputStart,
-						Math.min(inputStop, green));
-				final int clampedBlue = Math.max(inputStart,
-						Math.min(inputStop, blue));
+		for (int channelValue = 0; channelValue < lookupTable.length; channelValue++) {
+			final int clampedValue = Math.max(inputStart,
+					Math.min(inputStop, channelValue));
 
-				final int mappedRed = Math.round(PApplet.map(clampedRed,
-						inputStart, inputStop, outputStart, outputStop));
-				final int mappedGreen = Math.round(PApplet.map(clampedGreen,
-						inputStart, inputStop, outputStart, outputStop));
-				final int mappedBlue = Math.round(PApplet.map(clampedBlue,
-						inputStart, inputStop, outputStart, outputStop));
+			lookupTable[channelValue] = Math.round(PApplet.map(clampedValue,
+					inputStart, inputStop, outputStart, outputStop));
+		}
 
-				final int mappedValue = 0x00000000 | mappedRed << 16
-						| mappedGreen << 8 | mappedBlue;
+		return lookupTable;
+	}
 
-				imageData[x][y] = mappedValue;
-			}
-		}
+	/**
+	 * Returns if this enhancer shows the enhanced images.
+	 * 
+	 * @return <code>true</code> if this enhancer is verbose
+	 */
+	public boolean isVerbose() {
+		return verbose;
+	}
 
+	/**
+	 * Shows the given enhanced image data, if this enhancer is verbose.
+	 */
+	void showIfVerbose(final IntFlatImage enhancedImageData) {
 		if (verbose) {
-			final ColorProcessor colorProcessor = new ColorProcessor(width,
-					height);
-			colorProcessor.setIntArray(imageData);
+			final ColorProcessor colorProcessor = enhancedImageData
+					.toColorProcessor();
 
 			final String outputTitle = String.format(
 					"After Contrast Enchancer %f %f", lowerBoundPercentage,
@@ -0,0 +1,213 @@
+package craj;
+
+import ij.process.ColorProcessor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Enhances the contrast of an image with several <tt>ContrastEnhancer</tt>s
+ * at once.
+ * <p>
+ * The histogram of the image is calculated only once, and every enhancer turns
+ * its lower and upper bound into a lookup table for the channel values. Then
+ * all enhanced images are written in one pass over the source pixels, so an
+ * additional enhancer only costs its lookups and its output image.
+ * <p>
+ * The enhanced images can also be written directly as grey images, which
+ * have the same values as an enhanced image converted by
+ * <code>ColorProcessor.convertToShortProcessor(true)</code>, without the RGB
+ * image and the conversion in between.
+ */
+public class ContrastEnhancerBank {
+
+	private final List<ContrastEnhancer> contrastEnhancerList;
+
+	/**
+	 * Construct a <tt>ContrastEnhancerBank</tt> for the given enhancers.
+	 * 
+	 * @param contrastEnhancerList
+	 *            the enhancers which are applied to every image
+	 */
+	public ContrastEnhancerBank(
+			final List<ContrastEnhancer> contrastEnhancerList) {
+		this.contrastEnhancerList = contrastEnhancerList;
+	}
+
+	private static IntFlatImage toIntFlatImage(final FlatImage imageData) {
+		if (imageData instanceof IntFlatImage) {
+			return (IntFlatImage) imageData;
+		} else {
+			return IntFlatImage.copyOf(imageData);
+		}
+	}
+
+	/**
+	 * Returns the given RGB image data enhanced by every enhancer, without
+	 * changing the given image data.
+	 * 
+	 * @param imageData
+	 *            the RGB image data which contrast should be increased
+	 * @return the enhanced image data in the order of the enhancers
+	 */
+	public List<IntFlatImage> enhanceContrast(final FlatImage imageData) {
+		final IntFlatImage sourceImageData = ContrastEnhancerBank
+				.toIntFlatImage(imageData);
+
+		final int enhancerCount = contrastEnhancerList.size();
+
+		final int[][] lookupTables = getLookupTables(sourceImageData);
+		final int[][] enhancedPixels = new int[enhancerCount][];
+		final List<IntFlatImage> enhancedImages = new ArrayList<>();
+
+		final int width = sourceImageData.width;
+		final int height = sourceImageData.height;
+
+		for (int enhancer = 0; enhancer < enhancerCount; enhancer++) {
+			final IntFlatImage enhancedImage = new IntFlatImage(width, height);
+			enhancedPixels[enhancer] = enhancedImage.pixels;
+			enhancedImages.add(enhancedImage);
+		}
+
+		final int[] pixels = sourceImageData.pixels;
+
+		for (int y = 0; y < height; y++) {
+			final int rowStart = sourceImageData.getIndex(0, y);
+			final int enhancedRowStart = y * width;
+
+			for (int x = 0; x < width; x++) {
+				final int pixelValue = pixels[rowStart + x];
+
+				final int red = (pixelValue & 0x00ff0000) >> 16;
+				final int green = (pixelValue & 0x0000ff00) >> 8;
+				final int blue = pixelValue & 0x000000ff;
+
+				for (int enhancer = 0; enhancer < enhancerCount; enhancer++) {
+					final int[] lookupTable = lookupTables[enhancer];
+
+					enhancedPixels[enhancer][enhancedRowStart + x] = lookupTable[red] << 16
+							| lookupTable[green] << 8 | lookupTable[blue];
+				}
+			}
+		}
+
+		for (int enhancer = 0; enhancer < enhancerCount; enhancer++) {
+			contrastEnhancerList.get(enhancer).showIfVerbose(
+					enhancedImages.get(enhancer));
+		}
+
+		return enhancedImages;
+	}
+
+	/**
+	 * Returns the given RGB image data enhanced by every enhancer and
+	 * converted to grey values, without changing the given image data.
+	 * <p>
+	 * Every channel is enhanced by the lookup table of the enhancer, then the
+	 * channels are weighted with the weighting factors of the
+	 * <tt>ColorProcessor</tt> like in
+	 * <code>ColorProcessor.convertToShortProcessor(true)</code>, so the grey
+	 * values are equal to the ones of the enhanced RGB image converted by
+	 * ImageJ. The enhanced RGB image is only created for verbose enhancers,
+	 * which show it.
+	 * 
+	 * @param imageData
+	 *            the RGB image data which contrast should be increased
+	 * @return the enhanced grey image data in the order of the enhancers
+	 */
+	public List<ByteFlatImage> enhanceContrastToGrey(final FlatImage imageData) {
+		final IntFlatImage sourceImageData = ContrastEnhancerBank
+				.toIntFlatImage(imageData);
+
+		final int enhancerCount = contrastEnhancerList.size();
+
+		final int[][] lookupTables = getLookupTables(sourceImageData);
+
+		final double[] weightingFactors = ColorProcessor.getWeightingFactors();
+		final double[][] redGreyValues = new double[enhancerCount][256];
+		final double[][] greenGreyValues = new double[enhancerCount][256];
+		final double[][] blueGreyValues = new double[enhancerCount][256];
+
+		final int width = sourceImageData.width;
+		final int height = sourceImageData.height;
+
+		final byte[][] greyPixels = new byte[enhancerCount][];
+		final int[][] enhancedPixels = new int[enhancerCount][];
+		final List<ByteFlatImage> greyImages = new ArrayList<>();
+		final List<IntFlatImage> enhancedImages = new ArrayList<>();
+
+		for (int enhancer = 0; enhancer < enhancerCount; enhancer++) {
+			final int[] lookupTable = lookupTables[enhancer];
+			for (int channelValue = 0; channelValue < 256; channelValue++) {
+				redGreyValues[enhancer][channelValue] = lookupTable[channelValue]
+						* weightingFactors[0];
+				greenGreyValues[enhancer][channelValue] = lookupTable[channelValue]
+						* weightingFactors[1];
+				blueGreyValues[enhancer][channelValue] = lookupTable[channelValue]
+						* weightingFactors[2];
+			}
+
+			final ByteFlatImage greyImage = new ByteFlatImage(width, height);
+			greyPixels[enhancer] = greyImage.pixels;
+			greyImages.add(greyImage);
+
+			if (contrastEnhancerList.get(enhancer).isVerbose()) {
+				final IntFlatImage enhancedImage = new IntFlatImage(width,
+						height);
+				enhancedPixels[enhancer] = enhancedImage.pixels;
+				enhancedImages.add(enhancedImage);
+			} else {
+				enhancedImages.add(null);
+			}
+		}
+
+		final int[] pixels = sourceImageData.pixels;
+
+		for (int y = 0; y < height; y++) {
+			final int rowStart = sourceImageData.getIndex(0, y);
+			final int greyRowStart = y * width;
+
+			for (int x = 0; x < width; x++) {
+				final int pixelValue = pixels[rowStart + x];
+
+				final int red = (pixelValue & 0x00ff0000) >> 16;
+				final int green = (pixelValue & 0x0000ff00) >> 8;
+				final int blue = pixelValue & 0x000000ff;
+
+				for (int enhancer = 0; enhancer < enhancerCount; enhancer++) {
+					greyPixels[enhancer][greyRowStart + x] = (byte) (redGreyValues[enhancer][red]
+							+ greenGreyValues[enhancer][green]
+							+ blueGreyValues[enhancer][blue] + 0.5);
+
+					if (enhancedPixels[enhancer] != null) {
+						final int[] lookupTable = lookupTables[enhancer];
+
+						enhancedPixels[enhancer][greyRowStart + x] = lookupTable[red] << 16
+								| lookupTable[green] << 8 | lookupTable[blue];
+					}
+				}
+			}
+		}
+
+		for (int enhancer = 0; enhancer < enhancerCount; enhancer++) {
+			if (enhancedImages.get(enhancer) != null) {
+				contrastEnhancerList.get(enhancer).showIfVerbose(
+						enhancedImages.get(enhancer));
+			}
+		}
+
+		return greyImages;
+	}
+
+	private int[][] getLookupTables(final IntFlatImage sourceImageData) {
+		final Histogram histogram = new Histogram(sourceImageData);
+
+		final int[][] lookupTables = new int[contrastEnhancerList.size()][];
+		for (int enhancer = 0; enhancer < lookupTables.length; enhancer++) {
+			lookupTables[enhancer] = contrastEnhancerList.get(enhancer)
+					.getLookupTable(histogram);
+		}
+
+		return lookupTables;
+	}
+}
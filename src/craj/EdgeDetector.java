@@ -3,6 +3,10 @@ package craj;
 import ij.ImagePlus;
 import ij.process.ImageProcessor;
 import ij.process.ShortProcessor;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+
 import processing.core.PApplet;
 
 /**
@@ -18,6 +22,8 @@ public class EdgeDetector {
 	 */
 	public static class EdgeDetectorParameter {
 		private final int edgeDetectionTolerance;
+		private final int maxEdgePixelCount;
+		private final float maxEdgePixelFraction;
 		private final int sobelMatrixSize;
 		private final boolean verbose;
 
@@ -36,15 +42,64 @@ public class EdgeDetector {
 		 */
 		public EdgeDetectorParameter(final int sobelMatrixSize,
 				final int edgeDetectionTolerance, final boolean verbose) {
+			this(sobelMatrixSize, edgeDetectionTolerance, verbose, 0, 0);
+		}
+
+		/**
+		 * Construct a <tt>EdgeDetectorParameter</tt> parameter object with an
+		 * edge budget. If an image has more edge pixels than the budget
+		 * allows, the edge detection tolerance of the image is raised to the
+		 * lowest edge value which keeps the edge pixels within the budget, so
+		 * the cost of the voting of highly textured images is bounded.
+		 * 
+		 * @param sobelMatrixSize
+		 *            the size of the generated Sobel-matrix. Should always be
+		 *            greater or equal 3 and odd
+		 * @param edgeDetectionTolerance
+		 *            the minimum pixel value to be considered an edge pixel
+		 * @param verbose
+		 *            a boolean which indicates if the methods of this class
+		 *            should show it's output
+		 * @param maxEdgePixelCount
+		 *            the maximum count of edge pixels of an image, or 0 for no
+		 *            maximum count
+		 * @param maxEdgePixelFraction
+		 *            the maximum fraction of the pixels of an image which are
+		 *            edge pixels, or 0 for no maximum fraction
+		 */
+		public EdgeDetectorParameter(final int sobelMatrixSize,
+				final int edgeDetectionTolerance, final boolean verbose,
+				final int maxEdgePixelCount, final float maxEdgePixelFraction) {
 			super();
+			if (maxEdgePixelCount < 0 || maxEdgePixelFraction < 0
+					|| maxEdgePixelFraction > 1) {
+				throw new IllegalArgumentException(
+						"The edge budget must not be negative and the fraction at most 1.");
+			}
+
 			this.sobelMatrixSize = sobelMatrixSize;
 			this.edgeDetectionTolerance = edgeDetectionTolerance;
 			this.verbose = verbose;
+			this.maxEdgePixelCount = maxEdgePixelCount;
+			this.maxEdgePixelFraction = maxEdgePixelFraction;
 		}
 	}
 
+	/**
+	 * the count of edge values, which are mapped to 0 to 255
+	 */
+	static final int EDGE_VALUE_COUNT = 256;
+
+	/**
+	 * the greatest Sobel value which is mapped with a lookup table, greater
+	 * Sobel values are mapped one by one
+	 */
+	private static final int MAX_LOOKUP_TABLE_LENGTH = 1 << 16;
+
 	private final EdgeDetectorParameter parameters;
 
+	private final PrefixSumSobel sobel;
+
 	/**
 	 * Create an EdgeDetector object with the specified parameters.
 	 * 
@@ -58,54 +113,80 @@ public class EdgeDetector {
 	public EdgeDetector(final EdgeDetectorParameter parameters) {
 		super();
 		this.parameters = parameters;
+		sobel = new PrefixSumSobel(parameters.sobelMatrixSize);
 	}
 
-	private int[][] findEdges(final int[][] imageDataToFindEdgesIn,
-			final EdgeDetectorParameter parameters) {
-
-		final int sobelMatrixSize = parameters.sobelMatrixSize;
-		final SobelMatrix sobelMatrix = new SobelMatrix(sobelMatrixSize);
-
-		final int sobelMiddle = sobelMatrix.getMiddle();
-
-		final int width = imageDataToFindEdgesIn.length;
-		final int height = imageDataToFindEdgesIn[0].length;
-
-		final int xStart = sobelMiddle;
-		final int yStart = sobelMiddle;
-
-		final int xEnd = width - sobelMiddle;
-		final int yEnd = height - sobelMiddle;
+	/**
+	 * Counts the edge values of the Sobel values of the given range of
+	 * indices. The lookup table has to be the one of the edge detection
+	 * tolerance 0, so the edge values are counted before the tolerance is
+	 * applied.
+	 */
+	void countEdgeValues(final int[] sobelValues, final int maxSobelValue,
+			final int[] lookupTable, final int[] edgeValueCounts,
+			final int fromIndex, final int toIndex) {
+		if (lookupTable != null) {
+			for (int i = fromIndex; i < toIndex; i++) {
+				edgeValueCounts[lookupTable[sobelValues[i]]]++;
+			}
+		} else {
+			for (int i = fromIndex; i < toIndex; i++) {
+				edgeValueCounts[getEdgeValue(sobelValues[i], maxSobelValue, 0)]++;
+			}
+		}
+	}
 
-		final int[][] foundEdges = new int[width][height];
+	private IntFlatImage findEdges(final FlatImage imageDataToFindEdgesIn,
+			final SobelGradient gradient, final ForkJoinPool forkJoinPool) {
+		return new EdgeDetectorBank(Arrays.asList(this)).getEdgesData(
+				imageDataToFindEdgesIn, Arrays.asList(gradient), forkJoinPool)
+				.get(0);
+	}
 
-		int maxSobelValue = 0;
+	/**
+	 * Returns the edge detection tolerance of an image whose edge values are
+	 * counted in the given array, which is the configured tolerance, or the
+	 * lowest higher tolerance which keeps the edge pixels within the edge
+	 * budget. An edge value above 255 means that no pixel is an edge pixel.
+	 */
+	int getEdgeBudgetTolerance(final int[] edgeValueCounts,
+			final long pixelCount) {
+		final int tolerance = parameters.edgeDetectionTolerance;
+		if (!hasEdgeBudget()) {
+			return tolerance;
+		}
 
-		for (int x = xStart; x < xEnd; x++) {
-			for (int y = yStart; y < yEnd; y++) {
-				final int sobelValue = sobelMatrix.getSobelValueForPixel(
-						imageDataToFindEdgesIn, x, y);
+		long maxEdgePixelCount = Long.MAX_VALUE;
+		if (parameters.maxEdgePixelCount > 0) {
+			maxEdgePixelCount = parameters.maxEdgePixelCount;
+		}
+		if (parameters.maxEdgePixelFraction > 0) {
+			maxEdgePixelCount = Math.min(maxEdgePixelCount,
+					(long) (parameters.maxEdgePixelFraction * pixelCount));
+		}
 
-				maxSobelValue = Math.max(maxSobelValue, sobelValue);
+		// the edge value 0 never votes, so it is not counted
+		final int lowestEdgeValue = Math.max(1, tolerance);
 
-				foundEdges[x][y] = sobelValue;
+		long edgePixelCount = 0;
+		for (int edgeValue = EdgeDetector.EDGE_VALUE_COUNT - 1; edgeValue >= lowestEdgeValue; edgeValue--) {
+			edgePixelCount += edgeValueCounts[edgeValue];
+			if (edgePixelCount > maxEdgePixelCount) {
+				return edgeValue + 1;
 			}
 		}
 
-		mapEdgesData(foundEdges, maxSobelValue);
-
-		final boolean verbose = parameters.verbose;
-		if (verbose) {
-			final ShortProcessor processor = new ShortProcessor(width, height);
-			processor.setIntArray(foundEdges);
-
-			final String title = String.format(
-					"Sharped Edges with sobel matrix size %d", sobelMatrixSize);
-
-			new ImagePlus(title, processor).show();
-		}
+		return tolerance;
+	}
 
-		return foundEdges;
+	/**
+	 * Returns the configured minimum pixel value to be considered an edge
+	 * pixel.
+	 * 
+	 * @return the configured edge detection tolerance
+	 */
+	public int getEdgeDetectionTolerance() {
+		return parameters.edgeDetectionTolerance;
 	}
 
 	/**
@@ -116,39 +197,145 @@ public class EdgeDetector {
 	 * @return the edges data of the given <tt>ImageProcessor</tt>
 	 */
 	public int[][] getEdgesData(final ImageProcessor imageProcessor) {
-		final int[][] edgesImage = findEdges(imageProcessor.getIntArray(),
-				parameters);
+		final IntFlatImage edgesImage = findEdges(
+				FlatImage.wrap(imageProcessor), null, null);
+
+		return edgesImage.toIntArray();
+	}
 
-		return edgesImage;
+	/**
+	 * Returns the edges data of the given flat image data.
+	 * 
+	 * @param imageData
+	 *            the grey image data in which the edges should be found.
+	 * @return the edges data of the given image data
+	 */
+	public IntFlatImage getEdgesData(final FlatImage imageData) {
+		return findEdges(imageData, null, null);
 	}
 
-	private void mapEdgesData(final int[][] foundEdges, final int maxValue) {
-		final int width = foundEdges.length;
-		final int height = foundEdges[0].length;
+	/**
+	 * Returns the edges data of the given flat image data and writes the Sobel
+	 * gradient of every pixel to the given <tt>SobelGradient</tt>.
+	 * 
+	 * @param imageData
+	 *            the grey image data in which the edges should be found.
+	 * @param gradient
+	 *            the gradient with the same size as the image data the
+	 *            gradient is written to
+	 * @return the edges data of the given image data
+	 */
+	public IntFlatImage getEdgesData(final FlatImage imageData,
+			final SobelGradient gradient) {
+		return findEdges(imageData, gradient, null);
+	}
 
-		for (int x = 0; x < width; x++) {
-			for (int y = 0; y < height; y++) {
+	/**
+	 * Returns the edges data of the given flat image data like
+	 * {@link #getEdgesData(FlatImage, SobelGradient)}, but calculates strips
+	 * of rows in parallel in the given <tt>ForkJoinPool</tt>.
+	 * 
+	 * @param imageData
+	 *            the grey image data in which the edges should be found.
+	 * @param gradient
+	 *            the gradient with the same size as the image data the
+	 *            gradient is written to, or <code>null</code> if the gradient
+	 *            is not needed
+	 * @param forkJoinPool
+	 *            the pool the strips are calculated in, or <code>null</code> to
+	 *            calculate them in the calling thread
+	 * @return the edges data of the given image data
+	 */
+	public IntFlatImage getEdgesData(final FlatImage imageData,
+			final SobelGradient gradient, final ForkJoinPool forkJoinPool) {
+		return findEdges(imageData, gradient, forkJoinPool);
+	}
 
-				final int edgesPixelValue = foundEdges[x][y];
+	/**
+	 * Returns the edge value of a Sobel value, which is the Sobel value mapped
+	 * from 0 to the maximum Sobel value of the image to 0 to 255, or 0 if it
+	 * is lower than the given edge detection tolerance.
+	 */
+	private int getEdgeValue(final int sobelValue, final int maxSobelValue,
+			final int tolerance) {
+		final int mappedSobelValue = (int) PApplet.map(sobelValue, 0,
+				maxSobelValue, 0, 255);
 
-				final float mappedEdgesPixelValue = PApplet.map(
-						edgesPixelValue, 0, maxValue, 0, 255);
+		if (mappedSobelValue >= tolerance) {
+			return mappedSobelValue;
+		} else {
+			return 0;
+		}
+	}
 
-				setEdgePixelWithTolerance(foundEdges, x, y,
-						(int) mappedEdgesPixelValue);
-			}
+	/**
+	 * Returns the lookup table of the edge values of all Sobel values up to
+	 * the given maximum Sobel value with the given edge detection tolerance,
+	 * or <code>null</code> if the maximum is too large for a table.
+	 */
+	int[] getEdgeValueLookupTable(final int maxSobelValue, final int tolerance) {
+		if (maxSobelValue >= EdgeDetector.MAX_LOOKUP_TABLE_LENGTH) {
+			return null;
+		}
+
+		final int[] lookupTable = new int[maxSobelValue + 1];
+		for (int sobelValue = 0; sobelValue <= maxSobelValue; sobelValue++) {
+			lookupTable[sobelValue] = getEdgeValue(sobelValue, maxSobelValue,
+					tolerance);
 		}
+
+		return lookupTable;
 	}
 
-	private void setEdgePixelWithTolerance(final int[][] edgesPixelData,
-			final int x, final int y, final int value) {
+	/**
+	 * Returns the Sobel calculation of the Sobel-matrix size of this edge
+	 * detector.
+	 */
+	PrefixSumSobel getPrefixSumSobel() {
+		return sobel;
+	}
 
-		final int detectionTolerance = parameters.edgeDetectionTolerance;
+	/**
+	 * Returns if the count of edge pixels of an image is limited by an edge
+	 * budget.
+	 */
+	boolean hasEdgeBudget() {
+		return parameters.maxEdgePixelCount > 0
+				|| parameters.maxEdgePixelFraction > 0;
+	}
 
-		if (value >= detectionTolerance) {
-			edgesPixelData[x][y] = value;
+	/**
+	 * Replaces the Sobel values of the given range of indices with their edge
+	 * values. The edge values of all Sobel values up to the maximum are
+	 * looked up in a table, unless the maximum is too large for a table.
+	 */
+	void mapEdgesData(final int[] sobelValues, final int maxSobelValue,
+			final int[] lookupTable, final int tolerance, final int fromIndex,
+			final int toIndex) {
+		if (lookupTable != null) {
+			for (int i = fromIndex; i < toIndex; i++) {
+				sobelValues[i] = lookupTable[sobelValues[i]];
+			}
 		} else {
-			edgesPixelData[x][y] = 0;
+			for (int i = fromIndex; i < toIndex; i++) {
+				sobelValues[i] = getEdgeValue(sobelValues[i], maxSobelValue,
+						tolerance);
+			}
+		}
+	}
+
+	/**
+	 * Shows the given edges data, if this edge detector is verbose.
+	 */
+	void showIfVerbose(final IntFlatImage foundEdges) {
+		if (parameters.verbose) {
+			final ShortProcessor processor = foundEdges.toShortProcessor();
+
+			final String title = String.format(
+					"Sharped Edges with sobel matrix size %d",
+					parameters.sobelMatrixSize);
+
+			new ImagePlus(title, processor).show();
 		}
 	}
 }
@@ -0,0 +1,242 @@
+package craj;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Finds the edges of an image with several <tt>EdgeDetector</tt>s at once.
+ * <p>
+ * The image is walked once in strips of rows. The rows of a strip are read
+ * only once for all edge detectors: the maximum pixel value is searched once
+ * and the prefix sums of every row are shared by the Sobel-matrix sizes of
+ * all edge detectors, which write their Sobel values to their edges data. The
+ * maximum Sobel value of every edge detector is collected during this walk.
+ * <p>
+ * The normalization needs the maximum Sobel value of the whole image, so it
+ * is applied in a second walk over the edges data, which replaces the Sobel
+ * values of every strip in place while they are still in the cache. Every
+ * edge detector turns its maximum into a lookup table which maps its Sobel
+ * values to edge values, so the normalization and the edge detection
+ * tolerance cost a single lookup per pixel. The image is thus read once and
+ * the edges data of every edge detector are written twice. The edges data are
+ * the same as the ones of every single edge detector.
+ * <p>
+ * The edge values of edge detectors with an edge budget are counted in an
+ * additional walk, and their edge detection tolerance for the image is raised
+ * until their edge pixels fit into the budget.
+ */
+public class EdgeDetectorBank {
+
+	/**
+	 * the minimum count of rows of a strip which is calculated in parallel
+	 */
+	private static final int MIN_STRIP_HEIGHT = 32;
+
+	private final List<EdgeDetector> edgeDetectors;
+
+	/**
+	 * Construct an <tt>EdgeDetectorBank</tt> for the given edge detectors.
+	 * 
+	 * @param edgeDetectors
+	 *            the edge detectors which are applied to every image
+	 */
+	public EdgeDetectorBank(final List<EdgeDetector> edgeDetectors) {
+		this.edgeDetectors = edgeDetectors;
+	}
+
+	/**
+	 * Counts the edge values of the Sobel values of every edge detector with
+	 * an edge budget in strips of rows and replaces its tolerance with the
+	 * tolerance which keeps its edge pixels within the budget.
+	 */
+	private void applyEdgeBudgets(final List<IntFlatImage> foundEdges,
+			final int[] maxSobelValues, final ParallelStrips rowStrips,
+			final int width, final int height, final int[] tolerances) {
+		final int detectorCount = edgeDetectors.size();
+
+		final int[][] countingLookupTables = new int[detectorCount][];
+		for (int detector = 0; detector < detectorCount; detector++) {
+			if (edgeDetectors.get(detector).hasEdgeBudget()) {
+				countingLookupTables[detector] = edgeDetectors.get(detector)
+						.getEdgeValueLookupTable(maxSobelValues[detector], 0);
+			}
+		}
+
+		final int[][][] edgeValueCountsOfStrips = new int[rowStrips
+				.getStripCount()][detectorCount][];
+
+		rowStrips.invoke(new ParallelStrips.Strip() {
+			@Override
+			public void compute(final int stripIndex, final int fromRow,
+					final int toRow) {
+				for (int detector = 0; detector < detectorCount; detector++) {
+					final EdgeDetector edgeDetector = edgeDetectors
+							.get(detector);
+					if (!edgeDetector.hasEdgeBudget()) {
+						continue;
+					}
+
+					final int[] edgeValueCounts = new int[EdgeDetector.EDGE_VALUE_COUNT];
+					edgeDetector.countEdgeValues(
+							foundEdges.get(detector).pixels,
+							maxSobelValues[detector],
+							countingLookupTables[detector], edgeValueCounts,
+							fromRow * width, toRow * width);
+					edgeValueCountsOfStrips[stripIndex][detector] = edgeValueCounts;
+				}
+			}
+		});
+
+		for (int detector = 0; detector < detectorCount; detector++) {
+			final EdgeDetector edgeDetector = edgeDetectors.get(detector);
+			if (!edgeDetector.hasEdgeBudget()) {
+				continue;
+			}
+
+			final int[] edgeValueCounts = new int[EdgeDetector.EDGE_VALUE_COUNT];
+			for (final int[][] edgeValueCountsOfStrip : edgeValueCountsOfStrips) {
+				for (int edgeValue = 0; edgeValue < EdgeDetector.EDGE_VALUE_COUNT; edgeValue++) {
+					edgeValueCounts[edgeValue] += edgeValueCountsOfStrip[detector][edgeValue];
+				}
+			}
+
+			tolerances[detector] = edgeDetector.getEdgeBudgetTolerance(
+					edgeValueCounts, (long) width * height);
+		}
+	}
+
+	/**
+	 * Returns the edges data of every edge detector for the given image data
+	 * and writes the Sobel gradients to the given <tt>SobelGradient</tt>s.
+	 * 
+	 * @param imageData
+	 *            the grey image data in which the edges should be found
+	 * @param gradients
+	 *            for every edge detector the gradient with the same size as
+	 *            the image data its gradient is written to, or
+	 *            <code>null</code> if the gradient is not needed
+	 * @param forkJoinPool
+	 *            the pool the strips are calculated in, or <code>null</code> to
+	 *            calculate them in the calling thread
+	 * @return the edges data in the order of the edge detectors
+	 */
+	public List<IntFlatImage> getEdgesData(final FlatImage imageData,
+			final List<SobelGradient> gradients,
+			final ForkJoinPool forkJoinPool) {
+		return getEdgesData(imageData, gradients, forkJoinPool, null);
+	}
+
+	/**
+	 * Returns the edges data of every edge detector like
+	 * {@link #getEdgesData(FlatImage, List, ForkJoinPool)} and writes the edge
+	 * detection tolerance every edge detector applied to the given array. The
+	 * applied tolerance of an edge detector is higher than its configured
+	 * tolerance if the image has more edge pixels than its edge budget allows.
+	 * 
+	 * @param imageData
+	 *            the grey image data in which the edges should be found
+	 * @param gradients
+	 *            for every edge detector the gradient with the same size as
+	 *            the image data its gradient is written to, or
+	 *            <code>null</code> if the gradient is not needed
+	 * @param forkJoinPool
+	 *            the pool the strips are calculated in, or <code>null</code> to
+	 *            calculate them in the calling thread
+	 * @param appliedTolerances
+	 *            the array the applied edge detection tolerances are written
+	 *            to in the order of the edge detectors, or <code>null</code>
+	 * @return the edges data in the order of the edge detectors
+	 */
+	public List<IntFlatImage> getEdgesData(final FlatImage imageData,
+			final List<SobelGradient> gradients,
+			final ForkJoinPool forkJoinPool, final int[] appliedTolerances) {
+		final int detectorCount = edgeDetectors.size();
+
+		if (gradients.size() != detectorCount) {
+			throw new IllegalArgumentException(
+					"There has to be a gradient or null for every edge detector.");
+		}
+
+		final int width = imageData.width;
+		final int height = imageData.height;
+
+		final List<IntFlatImage> foundEdges = new ArrayList<>();
+		for (int detector = 0; detector < detectorCount; detector++) {
+			foundEdges.add(new IntFlatImage(width, height));
+		}
+
+		final List<PrefixSumSobel> sobels = new ArrayList<>();
+		final List<int[]> sobelValues = new ArrayList<>();
+		for (int detector = 0; detector < detectorCount; detector++) {
+			sobels.add(edgeDetectors.get(detector).getPrefixSumSobel());
+			sobelValues.add(foundEdges.get(detector).pixels);
+		}
+
+		final ParallelStrips rowStrips = new ParallelStrips(forkJoinPool,
+				height, EdgeDetectorBank.MIN_STRIP_HEIGHT);
+		final int[][] maxSobelValuesOfStrips = new int[rowStrips
+				.getStripCount()][];
+
+		rowStrips.invoke(new ParallelStrips.Strip() {
+			@Override
+			public void compute(final int stripIndex, final int fromRow,
+					final int toRow) {
+				maxSobelValuesOfStrips[stripIndex] = PrefixSumSobel
+						.calculateSobelValues(sobels, imageData, sobelValues,
+								gradients, fromRow, toRow);
+			}
+		});
+
+		final int[] maxSobelValues = new int[detectorCount];
+		final int[] tolerances = new int[detectorCount];
+		boolean anyEdgeBudget = false;
+		for (int detector = 0; detector < detectorCount; detector++) {
+			for (final int[] maxSobelValuesOfStrip : maxSobelValuesOfStrips) {
+				maxSobelValues[detector] = Math.max(maxSobelValues[detector],
+						maxSobelValuesOfStrip[detector]);
+			}
+
+			tolerances[detector] = edgeDetectors.get(detector)
+					.getEdgeDetectionTolerance();
+			anyEdgeBudget |= edgeDetectors.get(detector).hasEdgeBudget();
+		}
+
+		if (anyEdgeBudget) {
+			applyEdgeBudgets(foundEdges, maxSobelValues, rowStrips, width,
+					height, tolerances);
+		}
+
+		final int[][] lookupTables = new int[detectorCount][];
+		for (int detector = 0; detector < detectorCount; detector++) {
+			lookupTables[detector] = edgeDetectors.get(detector)
+					.getEdgeValueLookupTable(maxSobelValues[detector],
+							tolerances[detector]);
+		}
+
+		rowStrips.invoke(new ParallelStrips.Strip() {
+			@Override
+			public void compute(final int stripIndex, final int fromRow,
+					final int toRow) {
+				for (int detector = 0; detector < detectorCount; detector++) {
+					edgeDetectors.get(detector).mapEdgesData(
+							foundEdges.get(detector).pixels,
+							maxSobelValues[detector], lookupTables[detector],
+							tolerances[detector], fromRow * width,
+							toRow * width);
+				}
+			}
+		});
+
+		for (int detector = 0; detector < detectorCount; detector++) {
+			edgeDetectors.get(detector).showIfVerbose(foundEdges.get(detector));
+		}
+
+		if (appliedTolerances != null) {
+			System.arraycopy(tolerances, 0, appliedTolerances, 0,
+					detectorCount);
+		}
+
+		return foundEdges;
+	}
+}
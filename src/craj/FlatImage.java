@@ -0,0 +1,196 @@
+package craj;
+
+import ij.process.ByteProcessor;
+import ij.process.ColorProcessor;
+import ij.process.ImageProcessor;
+import ij.process.ShortProcessor;
+
+/**
+ * Holds the pixel data of an image in one flat, row-major primitive array. The
+ * pixel at the coordinate (x, y) is found at the index
+ * <code>y * stride + x</code> of the backing array.
+ * <p>
+ * In contrast to the column-major <code>int[][]</code> arrays returned by
+ * <code>ImageProcessor.getIntArray()</code> no object per column is allocated
+ * and the pixels of a row lie next to each other in memory. A
+ * <tt>FlatImage</tt> can wrap the pixel array of an <tt>ImageProcessor</tt>
+ * without copying it.
+ */
+public abstract class FlatImage {
+
+	/**
+	 * Wraps the pixel array of the given <tt>ImageProcessor</tt> without
+	 * copying it. Changes to the returned image are visible in the processor
+	 * and vice versa.
+	 * 
+	 * @param processor
+	 *            a <tt>ColorProcessor</tt>, <tt>ShortProcessor</tt> or
+	 *            <tt>ByteProcessor</tt>
+	 * @return a <tt>FlatImage</tt> backed by the pixels of the processor
+	 */
+	public static FlatImage wrap(final ImageProcessor processor) {
+		final int width = processor.getWidth();
+		final int height = processor.getHeight();
+
+		if (processor instanceof ColorProcessor) {
+			return new IntFlatImage(width, height, width,
+					(int[]) processor.getPixels());
+		} else if (processor instanceof ShortProcessor) {
+			return new ShortFlatImage(width, height, width,
+					(short[]) processor.getPixels());
+		} else if (processor instanceof ByteProcessor) {
+			return new ByteFlatImage(width, height, width,
+					(byte[]) processor.getPixels());
+		} else {
+			throw new IllegalArgumentException(
+					"Only color, short and byte processors can be wrapped.");
+		}
+	}
+
+	/**
+	 * the height of the image
+	 */
+	public final int height;
+
+	/**
+	 * the distance between the first pixels of two neighbouring rows in the
+	 * backing array
+	 */
+	public final int stride;
+
+	/**
+	 * the width of the image
+	 */
+	public final int width;
+
+	/**
+	 * Construct a <tt>FlatImage</tt> with the given dimensions.
+	 * 
+	 * @param width
+	 *            the width of the image
+	 * @param height
+	 *            the height of the image
+	 * @param stride
+	 *            the distance between two rows in the backing array, which
+	 *            has to be greater or equal the width
+	 * @param length
+	 *            the length of the backing array
+	 */
+	protected FlatImage(final int width, final int height, final int stride,
+			final int length) {
+		if (width <= 0 || height <= 0) {
+			throw new IllegalArgumentException(
+					"Width and height of the image can't be 0");
+		}
+		if (stride < width) {
+			throw new IllegalArgumentException(
+					"The stride can't be lower than the width.");
+		}
+		if (length < (height - 1) * stride + width) {
+			throw new IllegalArgumentException(
+					"The backing array is too short for the given dimensions.");
+		}
+
+		this.width = width;
+		this.height = height;
+		this.stride = stride;
+	}
+
+	/**
+	 * Returns the pixel value at the given index of the backing array.
+	 * 
+	 * @param index
+	 *            the index in the backing array
+	 * @return the pixel value, unsigned for short and byte data
+	 */
+	public abstract int get(int index);
+
+	/**
+	 * Returns the pixel value at the given coordinate.
+	 * 
+	 * @param x
+	 *            the x coordinate
+	 * @param y
+	 *            the y coordinate
+	 * @return the pixel value, unsigned for short and byte data
+	 */
+	public int get(final int x, final int y) {
+		return get(getIndex(x, y));
+	}
+
+	/**
+	 * Returns the index of the given coordinate in the backing array.
+	 * 
+	 * @param x
+	 *            the x coordinate
+	 * @param y
+	 *            the y coordinate
+	 * @return the index of the coordinate in the backing array
+	 */
+	public final int getIndex(final int x, final int y) {
+		return y * stride + x;
+	}
+
+	/**
+	 * Sets the pixel value at the given index of the backing array.
+	 * 
+	 * @param index
+	 *            the index in the backing array
+	 * @param value
+	 *            the new pixel value
+	 */
+	public abstract void set(int index, int value);
+
+	/**
+	 * Sets the pixel value at the given coordinate.
+	 * 
+	 * @param x
+	 *            the x coordinate
+	 * @param y
+	 *            the y coordinate
+	 * @param value
+	 *            the new pixel value
+	 */
+	public void set(final int x, final int y, final int value) {
+		set(getIndex(x, y), value);
+	}
+
+	/**
+	 * Returns a copy of the pixel data as a column-major 2D int array with the
+	 * dimensions [x=0..width-1][y=0..height-1], the same layout as
+	 * <code>ImageProcessor.getIntArray()</code>.
+	 * 
+	 * @return a copy of the pixel data as a column-major 2D int array
+	 */
+	public int[][] toIntArray() {
+		final int[][] intArray = new int[width][height];
+
+		for (int y = 0; y < height; y++) {
+			final int rowStart = y * stride;
+			for (int x = 0; x < width; x++) {
+				intArray[x][y] = get(rowStart + x);
+			}
+		}
+
+		return intArray;
+	}
+
+	/**
+	 * Returns a new <tt>ShortProcessor</tt> with a copy of the pixel data, for
+	 * example to show the image.
+	 * 
+	 * @return a <tt>ShortProcessor</tt> with a copy of the pixel data
+	 */
+	public ShortProcessor toShortProcessor() {
+		final ShortProcessor processor = new ShortProcessor(width, height);
+
+		for (int y = 0; y < height; y++) {
+			final int rowStart = y * stride;
+			for (int x = 0; x < width; x++) {
+				processor.set(x, y, get(rowStart + x));
+			}
+		}
+
+		return processor;
+	}
+}
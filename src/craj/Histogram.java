@@ -17,32 +17,44 @@ public class Histogram {
 	 *            an image-data array of pixel-values
 	 */
 	public Histogram(final int[][] imageData) {
-		final int width = imageData.length;
-		final int height = imageData[0].length;
+		this(IntFlatImage.fromIntArray(imageData));
+	}
 
-		pixelCount = width * height;
+	/**
+	 * Constructs an Histogram of the given flat image-data.
+	 * 
+	 * @param imageData
+	 *            the RGB pixel-values of the image
+	 */
+	public Histogram(final IntFlatImage imageData) {
+		pixelCount = imageData.width * imageData.height;
 
 		pixelValueSums = countPixelSums(imageData);
 	}
 
 	/**
 	 * Calculates the sum of red, green and blue pixel-values of all pixels in
-	 * the given array.
+	 * the given image.
 	 * 
 	 * @param imageData
-	 *            an array of pixels to calculate the sum of pixel-values
+	 *            an image of pixels to calculate the sum of pixel-values
 	 * @return the sum of red, green and blue pixel-values of all pixels
 	 */
-	private int[] countPixelSums(final int[][] imageData) {
+	private int[] countPixelSums(final IntFlatImage imageData) {
 
-		final int width = imageData.length;
-		final int height = imageData[0].length;
+		final int width = imageData.width;
+		final int height = imageData.height;
+		final int stride = imageData.stride;
+		final int[] pixels = imageData.pixels;
 
 		final int[] pixelValueSums = new int[256];
 
-		for (int x = 0; x < width; x++) {
-			for (int y = 0; y < height; y++) {
-				final int pixelValue = imageData[x][y];
+		for (int y = 0; y < height; y++) {
+			final int rowStart = y * stride;
+			final int rowEnd = rowStart + width;
+
+			for (int i = rowStart; i < rowEnd; i++) {
+				final int pixelValue = pixels[i];
 
 				final int red = (pixelValue & 0x00ff0000) >> 16;
 				final int green = (pixelValue & 0x0000ff00) >> 8;
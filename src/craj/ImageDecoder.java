@@ -0,0 +1,196 @@
+package craj;
+
+import ij.ImagePlus;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBuffer;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferInt;
+import java.awt.image.IndexColorModel;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.Iterator;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+
+/**
+ * Decodes image files straight into a {@link FlatImage}, without building an
+ * <tt>ImagePlus</tt> and its AWT image.
+ * <p>
+ * The decoded pixels are the same an <tt>ImagePlus</tt> of the image would
+ * hold: grey images become a {@link ByteFlatImage} and colour images an
+ * {@link IntFlatImage} of packed RGB values. The pixels of the common
+ * interleaved RGB rasters a JPEG decoder returns are packed directly from the
+ * raster, all other colour images are converted pixel by pixel by their colour
+ * model. Images with a colour palette and 16 bit grey images are still opened
+ * by <tt>ImagePlus</tt>, so their pixels keep its interpretation.
+ * <p>
+ * An image can be decoded subsampled, so only every n-th pixel of every n-th
+ * row is kept by the decoder. The full image is never held in memory and only
+ * the kept pixels are converted, which makes a scaled down preview of an image
+ * much cheaper than decoding the full image and scaling it down.
+ */
+public class ImageDecoder {
+
+	/**
+	 * Decodes the given encoded image in full resolution.
+	 * 
+	 * @param encodedImage
+	 *            the bytes of an image file
+	 * @return the decoded image
+	 * @throws IOException
+	 *             if the image can not be decoded
+	 */
+	public static FlatImage decode(final byte[] encodedImage)
+			throws IOException {
+		return ImageDecoder.decode(encodedImage, 1);
+	}
+
+	/**
+	 * Decodes the given encoded image.
+	 * 
+	 * @param encodedImage
+	 *            the bytes of an image file
+	 * @param subsampling
+	 *            the distance between two decoded pixels in both directions,
+	 *            1 to decode every pixel
+	 * @return the decoded image
+	 * @throws IOException
+	 *             if the image can not be decoded
+	 */
+	public static FlatImage decode(final byte[] encodedImage,
+			final int subsampling) throws IOException {
+		try (ImageInputStream input = ImageIO
+				.createImageInputStream(new ByteArrayInputStream(encodedImage))) {
+			return ImageDecoder.decode(input, subsampling);
+		}
+	}
+
+	/**
+	 * Decodes the given image file in full resolution.
+	 * 
+	 * @param imageFile
+	 *            the image file
+	 * @return the decoded image
+	 * @throws IOException
+	 *             if the file can not be read or decoded
+	 */
+	public static FlatImage decode(final File imageFile) throws IOException {
+		return ImageDecoder.decode(imageFile, 1);
+	}
+
+	/**
+	 * Decodes the given image file.
+	 * 
+	 * @param imageFile
+	 *            the image file
+	 * @param subsampling
+	 *            the distance between two decoded pixels in both directions,
+	 *            1 to decode every pixel
+	 * @return the decoded image
+	 * @throws IOException
+	 *             if the file can not be read or decoded
+	 */
+	public static FlatImage decode(final File imageFile, final int subsampling)
+			throws IOException {
+		if (!imageFile.canRead()) {
+			throw new IOException("Can't read input file " + imageFile);
+		}
+
+		try (ImageInputStream input = ImageIO.createImageInputStream(imageFile)) {
+			return ImageDecoder.decode(input, subsampling);
+		}
+	}
+
+	private static FlatImage decode(final ImageInputStream input,
+			final int subsampling) throws IOException {
+		if (subsampling < 1) {
+			throw new IllegalArgumentException(
+					"The subsampling has to be at least 1.");
+		}
+		if (input == null) {
+			throw new IOException("The image can not be read.");
+		}
+
+		final Iterator<ImageReader> imageReaders = ImageIO
+				.getImageReaders(input);
+		if (!imageReaders.hasNext()) {
+			throw new IOException("The image has no readable image format.");
+		}
+
+		final ImageReader imageReader = imageReaders.next();
+		try {
+			imageReader.setInput(input, true, true);
+
+			final ImageReadParam param = imageReader.getDefaultReadParam();
+			if (subsampling > 1) {
+				param.setSourceSubsampling(subsampling, subsampling, 0, 0);
+			}
+
+			return ImageDecoder.toFlatImage(imageReader.read(0, param));
+		} finally {
+			imageReader.dispose();
+		}
+	}
+
+	/**
+	 * Returns the pixels of the given image in a {@link FlatImage}.
+	 * 
+	 * @param image
+	 *            the decoded image
+	 * @return the pixels of the image as an <tt>ImagePlus</tt> would hold
+	 *         them
+	 */
+	public static FlatImage toFlatImage(final BufferedImage image) {
+		final int width = image.getWidth();
+		final int height = image.getHeight();
+		final int pixelCount = width * height;
+		final DataBuffer dataBuffer = image.getRaster().getDataBuffer();
+
+		switch (image.getType()) {
+		case BufferedImage.TYPE_BYTE_GRAY:
+			if (dataBuffer.getSize() == pixelCount) {
+				return new ByteFlatImage(width, height, width,
+						((DataBufferByte) dataBuffer).getData().clone());
+			}
+			break;
+
+		case BufferedImage.TYPE_3BYTE_BGR:
+			if (dataBuffer.getSize() == 3 * pixelCount) {
+				final byte[] bgr = ((DataBufferByte) dataBuffer).getData();
+				final int[] pixels = new int[pixelCount];
+				for (int pixel = 0, sample = 0; pixel < pixelCount; pixel++, sample += 3) {
+					pixels[pixel] = 0xff000000 | (bgr[sample + 2] & 0xff) << 16
+							| (bgr[sample + 1] & 0xff) << 8 | bgr[sample] & 0xff;
+				}
+				return new IntFlatImage(width, height, width, pixels);
+			}
+			break;
+
+		case BufferedImage.TYPE_INT_RGB:
+			if (dataBuffer.getSize() == pixelCount) {
+				final int[] rgb = ((DataBufferInt) dataBuffer).getData();
+				final int[] pixels = new int[pixelCount];
+				for (int pixel = 0; pixel < pixelCount; pixel++) {
+					pixels[pixel] = 0xff000000 | rgb[pixel];
+				}
+				return new IntFlatImage(width, height, width, pixels);
+			}
+			break;
+
+		case BufferedImage.TYPE_USHORT_GRAY:
+			return FlatImage.wrap(new ImagePlus("", image).getProcessor());
+		}
+
+		if (image.getColorModel() instanceof IndexColorModel) {
+			return FlatImage.wrap(new ImagePlus("", image).getProcessor());
+		}
+
+		return new IntFlatImage(width, height, width, image.getRGB(0, 0, width,
+				height, null, 0, width));
+	}
+}
@@ -0,0 +1,193 @@
+package craj;
+
+import ij.process.ColorProcessor;
+
+import java.awt.Rectangle;
+
+/**
+ * A {@link FlatImage} backed by an <code>int[]</code>. It is used for RGB
+ * image data as well as for the edges data and the result tables of the
+ * detection pipeline.
+ */
+public class IntFlatImage extends FlatImage {
+
+	/**
+	 * Creates an <tt>IntFlatImage</tt> with a copy of the pixel values of the
+	 * given image, for example to widen short or byte data to int data.
+	 * 
+	 * @param image
+	 *            the image to copy
+	 * @return a new <tt>IntFlatImage</tt> with a copy of the pixel values
+	 */
+	public static IntFlatImage copyOf(final FlatImage image) {
+		final int width = image.width;
+		final int height = image.height;
+
+		final IntFlatImage copy = new IntFlatImage(width, height);
+		final int[] pixels = copy.pixels;
+
+		for (int y = 0; y < height; y++) {
+			final int rowStart = y * image.stride;
+			final int copyRowStart = y * width;
+			for (int x = 0; x < width; x++) {
+				pixels[copyRowStart + x] = image.get(rowStart + x);
+			}
+		}
+
+		return copy;
+	}
+
+	/**
+	 * Creates an <tt>IntFlatImage</tt> with a copy of the pixel values of the
+	 * given area of the given image.
+	 * 
+	 * @param image
+	 *            the image to copy
+	 * @param area
+	 *            the area of the image to copy, which must lie inside the
+	 *            image
+	 * @return a new <tt>IntFlatImage</tt> with the size of the area
+	 */
+	public static IntFlatImage copyOf(final FlatImage image,
+			final Rectangle area) {
+		final int width = area.width;
+		final int height = area.height;
+
+		final IntFlatImage copy = new IntFlatImage(width, height);
+		final int[] pixels = copy.pixels;
+
+		for (int y = 0; y < height; y++) {
+			final int rowStart = image.getIndex(area.x, area.y + y);
+			final int copyRowStart = y * width;
+			for (int x = 0; x < width; x++) {
+				pixels[copyRowStart + x] = image.get(rowStart + x);
+			}
+		}
+
+		return copy;
+	}
+
+	/**
+	 * Creates an <tt>IntFlatImage</tt> with a copy of the given column-major
+	 * 2D int array as it is returned by <code>ImageProcessor.getIntArray()</code>.
+	 * 
+	 * @param intArray
+	 *            the column-major pixel data with the dimensions
+	 *            [x=0..width-1][y=0..height-1]
+	 * @return a new <tt>IntFlatImage</tt> with a copy of the pixel data
+	 */
+	public static IntFlatImage fromIntArray(final int[][] intArray) {
+		final int width = intArray.length;
+		final int height = intArray[0].length;
+
+		final IntFlatImage image = new IntFlatImage(width, height);
+		final int[] pixels = image.pixels;
+
+		for (int x = 0; x < width; x++) {
+			final int[] column = intArray[x];
+			for (int y = 0; y < height; y++) {
+				pixels[y * width + x] = column[y];
+			}
+		}
+
+		return image;
+	}
+
+	/**
+	 * the backing array of this image
+	 */
+	public final int[] pixels;
+
+	/**
+	 * Creates an <tt>IntFlatImage</tt> with a new zero filled backing array.
+	 * 
+	 * @param width
+	 *            the width of the image
+	 * @param height
+	 *            the height of the image
+	 */
+	public IntFlatImage(final int width, final int height) {
+		this(width, height, width, new int[width * height]);
+	}
+
+	/**
+	 * Creates an <tt>IntFlatImage</tt> which uses the given array as backing
+	 * array without copying it.
+	 * 
+	 * @param width
+	 *            the width of the image
+	 * @param height
+	 *            the height of the image
+	 * @param stride
+	 *            the distance between two rows in the backing array
+	 * @param pixels
+	 *            the backing array
+	 */
+	public IntFlatImage(final int width, final int height, final int stride,
+			final int[] pixels) {
+		super(width, height, stride, pixels.length);
+		this.pixels = pixels;
+	}
+
+	/**
+	 * Copies the pixels of this image into the given image. Both images need
+	 * the same width and height.
+	 * 
+	 * @param destination
+	 *            the image the pixels are copied to
+	 */
+	public void copyTo(final IntFlatImage destination) {
+		if (destination.width != width || destination.height != height) {
+			throw new IllegalArgumentException(
+					"Width and height of both images have to be equal.");
+		}
+
+		if (stride == width && destination.stride == width) {
+			System.arraycopy(pixels, 0, destination.pixels, 0, width * height);
+		} else {
+			for (int y = 0; y < height; y++) {
+				System.arraycopy(pixels, y * stride, destination.pixels, y
+						* destination.stride, width);
+			}
+		}
+	}
+
+	/**
+	 * Returns a copy of this image with a compact backing array.
+	 * 
+	 * @return a copy of this image
+	 */
+	public IntFlatImage duplicate() {
+		final IntFlatImage duplicate = new IntFlatImage(width, height);
+		copyTo(duplicate);
+		return duplicate;
+	}
+
+	@Override
+	public int get(final int index) {
+		return pixels[index];
+	}
+
+	@Override
+	public void set(final int index, final int value) {
+		pixels[index] = value;
+	}
+
+	/**
+	 * Returns a new <tt>ColorProcessor</tt> with a copy of the pixel data, for
+	 * example to show the image.
+	 * 
+	 * @return a <tt>ColorProcessor</tt> with a copy of the pixel data
+	 */
+	public ColorProcessor toColorProcessor() {
+		final ColorProcessor processor = new ColorProcessor(width, height);
+		final int[] processorPixels = (int[]) processor.getPixels();
+
+		for (int y = 0; y < height; y++) {
+			System.arraycopy(pixels, y * stride, processorPixels, y * width,
+					width);
+		}
+
+		return processor;
+	}
+}
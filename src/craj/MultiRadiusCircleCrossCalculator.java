@@ -0,0 +1,446 @@
+package craj;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * This class calculates the same cross values and cross counts as the
+ * {@link CircleCrossCalculator}, but for several reference circles at once.
+ * <p>
+ * The edge pixels of the edges image are collected only once. Then each edge
+ * pixel votes into the result tables of all reference circles of a band of
+ * reference circles in one pass, instead of scanning the whole edges image
+ * again for every reference circle. The band size limits the count of result
+ * tables which are held in memory at the same time.
+ * <p>
+ * If a <tt>SobelGradient</tt> of the edges is given, every edge pixel only
+ * votes for the circle pixels whose direction lies within an angular window
+ * around its gradient direction, see {@link CircleVotingOffsets}. The cross
+ * values and cross counts of real circle origins stay nearly the same, while
+ * most of the votes elsewhere are skipped.
+ */
+public class MultiRadiusCircleCrossCalculator {
+
+	/**
+	 * the minimum count of edge pixels of a partition which votes in parallel
+	 */
+	private static final int MIN_EDGE_PIXELS_PER_PARTITION = 2048;
+
+	/**
+	 * the minimum count of rows of a strip which is added up in parallel
+	 */
+	private static final int MIN_STRIP_HEIGHT = 32;
+
+	private static void addTo(final int[] source, final int sourceOffset,
+			final int[] target, final int targetOffset, final int length) {
+		for (int i = 0; i < length; i++) {
+			target[targetOffset + i] += source[sourceOffset + i];
+		}
+	}
+
+	/**
+	 * the count of votes cast by all calculated bands
+	 */
+	private long castVoteCount;
+
+	private final int directionBinWindow;
+
+	private final int[] edgePixelDirectionBins;
+	private final int[] edgePixelValues;
+	private final int[] edgePixelXs;
+	private final int[] edgePixelYs;
+
+	private final int height;
+
+	private final List<ReferenceCircle> referenceCircles;
+
+	private final int width;
+
+	/**
+	 * Create a <tt>MultiRadiusCircleCrossCalculator</tt> for the given
+	 * reference circles and the given edges data.
+	 * 
+	 * @param referenceCircles
+	 *            the reference circles for which result tables are calculated
+	 * @param edgesData
+	 *            the edges image data where for every edge pixel circles are
+	 *            drawn in the result tables
+	 */
+	public MultiRadiusCircleCrossCalculator(
+			final List<ReferenceCircle> referenceCircles,
+			final IntFlatImage edgesData) {
+		this(referenceCircles, edgesData, null, 0);
+	}
+
+	/**
+	 * Create a <tt>MultiRadiusCircleCrossCalculator</tt> for the given
+	 * reference circles and the given edges data, where every edge pixel only
+	 * votes in the direction of its gradient.
+	 * 
+	 * @param referenceCircles
+	 *            the reference circles for which result tables are calculated
+	 * @param edgesData
+	 *            the edges image data where for every edge pixel circles are
+	 *            drawn in the result tables
+	 * @param gradient
+	 *            the gradient of the edges image data, or <code>null</code> if
+	 *            every edge pixel should vote for the whole circle
+	 * @param angleTolerance
+	 *            the maximum difference in degrees between the gradient
+	 *            direction of an edge pixel and the direction of the circle
+	 *            pixels it votes for
+	 */
+	public MultiRadiusCircleCrossCalculator(
+			final List<ReferenceCircle> referenceCircles,
+			final IntFlatImage edgesData, final SobelGradient gradient,
+			final float angleTolerance) {
+		this.referenceCircles = referenceCircles;
+
+		width = edgesData.width;
+		height = edgesData.height;
+
+		if (gradient != null
+				&& (gradient.width != width || gradient.height != height)) {
+			throw new IllegalArgumentException(
+					"The gradient must have the same size as the edges data.");
+		}
+
+		final int edgePixelCount = countEdgePixels(edgesData);
+		edgePixelXs = new int[edgePixelCount];
+		edgePixelYs = new int[edgePixelCount];
+		edgePixelValues = new int[edgePixelCount];
+		collectEdgePixels(edgesData);
+
+		if (gradient != null) {
+			edgePixelDirectionBins = collectDirectionBins(gradient);
+			directionBinWindow = CircleVotingOffsets
+					.getDirectionBinWindow(angleTolerance);
+		} else {
+			edgePixelDirectionBins = null;
+			directionBinWindow = 0;
+		}
+	}
+
+	/**
+	 * Returns the direction bins of the gradients of all edge pixels, or -1 for
+	 * edge pixels without gradient, which vote for the whole circle.
+	 */
+	private int[] collectDirectionBins(final SobelGradient gradient) {
+		final int[] directionBins = new int[edgePixelValues.length];
+
+		for (int i = 0; i < directionBins.length; i++) {
+			final int index = edgePixelYs[i] * width + edgePixelXs[i];
+
+			if (gradient.isZero(index)) {
+				directionBins[i] = -1;
+			} else {
+				directionBins[i] = CircleVotingOffsets.getDirectionBin(gradient
+						.getDirection(index));
+			}
+		}
+
+		return directionBins;
+	}
+
+	private void collectEdgePixels(final IntFlatImage edgesData) {
+		int edgePixelIndex = 0;
+
+		for (int y = 0; y < height; y++) {
+			final int rowStart = edgesData.getIndex(0, y);
+			for (int x = 0; x < width; x++) {
+				final int edgesDataPixel = edgesData.pixels[rowStart + x];
+				if (edgesDataPixel != 0) {
+					edgePixelXs[edgePixelIndex] = x;
+					edgePixelYs[edgePixelIndex] = y;
+					edgePixelValues[edgePixelIndex] = edgesDataPixel;
+					edgePixelIndex++;
+				}
+			}
+		}
+	}
+
+	private int countEdgePixels(final IntFlatImage edgesData) {
+		int edgePixelCount = 0;
+
+		for (int y = 0; y < height; y++) {
+			final int rowStart = edgesData.getIndex(0, y);
+			for (int x = 0; x < width; x++) {
+				if (edgesData.pixels[rowStart + x] != 0) {
+					edgePixelCount++;
+				}
+			}
+		}
+
+		return edgePixelCount;
+	}
+
+	/**
+	 * Returns the count of votes the edge pixels cast for the circles of the
+	 * given band, including the votes outside of the result tables.
+	 */
+	private long countVotes(final CircleVotingKernel[] votingKernelsOfBand) {
+		long voteCount = 0;
+
+		for (final CircleVotingKernel votingKernel : votingKernelsOfBand) {
+			if (edgePixelDirectionBins == null) {
+				voteCount += (long) edgePixelValues.length
+						* votingKernel.getVoteCount(-1, 0);
+			} else {
+				for (final int directionBin : edgePixelDirectionBins) {
+					voteCount += votingKernel.getVoteCount(directionBin,
+							directionBinWindow);
+				}
+			}
+		}
+
+		return voteCount;
+	}
+
+	/**
+	 * Returns the count of votes the edge pixels cast for the circles of all
+	 * result tables calculated so far, including the votes outside of the
+	 * result tables.
+	 * 
+	 * @return the count of cast votes
+	 */
+	public long getCastVoteCount() {
+		return castVoteCount;
+	}
+
+	/**
+	 * Returns the count of edge pixels which vote for circles.
+	 * 
+	 * @return the count of edge pixels
+	 */
+	public int getEdgePixelCount() {
+		return edgePixelValues.length;
+	}
+
+	/**
+	 * Returns the result tables of all reference circles, calculated in one
+	 * pass over the edge pixels.
+	 * 
+	 * @return the result tables in the order of the reference circles
+	 */
+	public List<CircleCalculationResultTable> getResultTables() {
+		return getResultTables(0, referenceCircles.size());
+	}
+
+	/**
+	 * Returns the result tables of a band of reference circles, calculated in
+	 * one pass over the edge pixels.
+	 * 
+	 * @param fromIndex
+	 *            the index of the first reference circle of the band
+	 *            (inclusive)
+	 * @param toIndex
+	 *            the index of the last reference circle of the band
+	 *            (exclusive)
+	 * @return the result tables in the order of the reference circles
+	 */
+	public List<CircleCalculationResultTable> getResultTables(
+			final int fromIndex, final int toIndex) {
+		return getResultTables(fromIndex, toIndex, null);
+	}
+
+	/**
+	 * Returns the result tables of a band of reference circles like
+	 * {@link #getResultTables(int, int)}, but votes in parallel in the given
+	 * <tt>ForkJoinPool</tt>.
+	 * <p>
+	 * The edge pixels are divided into partitions of consecutive edge pixels.
+	 * Because the edge pixels are collected row by row, every partition only
+	 * votes into the rows of its edge pixels and the rows within the radius of
+	 * the largest circle around them. Every partition votes into its own
+	 * partial tables of these rows, which are then added up to the result
+	 * tables in strips of rows. The sums are the same as the ones of the
+	 * sequential calculation.
+	 * 
+	 * @param fromIndex
+	 *            the index of the first reference circle of the band
+	 *            (inclusive)
+	 * @param toIndex
+	 *            the index of the last reference circle of the band
+	 *            (exclusive)
+	 * @param forkJoinPool
+	 *            the pool the votes are calculated in, or <code>null</code> to
+	 *            calculate them in the calling thread
+	 * @return the result tables in the order of the reference circles
+	 */
+	public List<CircleCalculationResultTable> getResultTables(
+			final int fromIndex, final int toIndex,
+			final ForkJoinPool forkJoinPool) {
+		final int bandSize = toIndex - fromIndex;
+
+		final CircleVotingKernel[] votingKernelsOfBand = new CircleVotingKernel[bandSize];
+		int minOffsetY = 0;
+		int maxOffsetY = 0;
+		for (int band = 0; band < bandSize; band++) {
+			votingKernelsOfBand[band] = new CircleVotingKernel(referenceCircles
+					.get(fromIndex + band).getVotingOffsets(), width, height);
+
+			minOffsetY = Math.min(minOffsetY,
+					votingKernelsOfBand[band].getMinOffsetY());
+			maxOffsetY = Math.max(maxOffsetY,
+					votingKernelsOfBand[band].getMaxOffsetY());
+		}
+
+		final IntFlatImage[] crossValueImages = new IntFlatImage[bandSize];
+		final IntFlatImage[] crossCountImages = new IntFlatImage[bandSize];
+
+		for (int band = 0; band < bandSize; band++) {
+			crossValueImages[band] = new IntFlatImage(width, height);
+			crossCountImages[band] = new IntFlatImage(width, height);
+		}
+
+		// one partition per worker, because every partition needs its own
+		// partial tables
+		final ParallelStrips edgePixelPartitions = new ParallelStrips(
+				forkJoinPool, edgePixelValues.length,
+				MultiRadiusCircleCrossCalculator.MIN_EDGE_PIXELS_PER_PARTITION, 1);
+
+		if (edgePixelPartitions.getStripCount() == 1) {
+			final int[][] crossValuesOfBand = new int[bandSize][];
+			final int[][] crossCountsOfBand = new int[bandSize][];
+			for (int band = 0; band < bandSize; band++) {
+				crossValuesOfBand[band] = crossValueImages[band].pixels;
+				crossCountsOfBand[band] = crossCountImages[band].pixels;
+			}
+
+			voteForEdgePixels(0, edgePixelValues.length, votingKernelsOfBand,
+					crossValuesOfBand, crossCountsOfBand, 0);
+		} else {
+			voteInPartitions(edgePixelPartitions, votingKernelsOfBand,
+					minOffsetY, maxOffsetY, crossValueImages,
+					crossCountImages, forkJoinPool);
+		}
+
+		castVoteCount += countVotes(votingKernelsOfBand);
+
+		final List<CircleCalculationResultTable> resultTables = new ArrayList<>(
+				bandSize);
+		for (int band = 0; band < bandSize; band++) {
+			resultTables.add(new CircleCalculationResultTable(
+					crossValueImages[band], crossCountImages[band],
+					referenceCircles.get(fromIndex + band)));
+		}
+
+		return resultTables;
+	}
+
+	/**
+	 * Lets the edge pixels from the first to the last edge pixel vote into the
+	 * given tables of the reference circles of a band, which start at the
+	 * given row.
+	 */
+	private void voteForEdgePixels(final int fromEdgePixel,
+			final int toEdgePixel, final CircleVotingKernel[] votingKernelsOfBand,
+			final int[][] crossValuesOfBand, final int[][] crossCountsOfBand,
+			final int tableTopRow) {
+		final int bandSize = votingKernelsOfBand.length;
+
+		for (int i = fromEdgePixel; i < toEdgePixel; i++) {
+			final int x = edgePixelXs[i];
+			final int y = edgePixelYs[i];
+			final int edgesDataPixel = edgePixelValues[i];
+
+			final int directionBin = edgePixelDirectionBins != null ? edgePixelDirectionBins[i]
+					: -1;
+
+			for (int band = 0; band < bandSize; band++) {
+				final CircleVotingKernel votingKernel = votingKernelsOfBand[band];
+				final int[] crossValues = crossValuesOfBand[band];
+				final int[] crossCounts = crossCountsOfBand[band];
+
+				if (directionBin < 0) {
+					votingKernel.vote(x, y, edgesDataPixel, crossValues,
+							crossCounts, tableTopRow);
+				} else {
+					votingKernel.voteInDirection(x, y, edgesDataPixel,
+							directionBin, directionBinWindow, crossValues,
+							crossCounts, tableTopRow);
+				}
+			}
+		}
+	}
+
+	private void voteInPartitions(final ParallelStrips edgePixelPartitions,
+			final CircleVotingKernel[] votingKernelsOfBand,
+			final int minOffsetY, final int maxOffsetY,
+			final IntFlatImage[] crossValueImages,
+			final IntFlatImage[] crossCountImages,
+			final ForkJoinPool forkJoinPool) {
+		final int bandSize = votingKernelsOfBand.length;
+		final int partitionCount = edgePixelPartitions.getStripCount();
+
+		final int[] partialTopRows = new int[partitionCount];
+		final int[] partialBottomRows = new int[partitionCount];
+		final int[][][] partialCrossValues = new int[partitionCount][bandSize][];
+		final int[][][] partialCrossCounts = new int[partitionCount][bandSize][];
+
+		edgePixelPartitions.invoke(new ParallelStrips.Strip() {
+			@Override
+			public void compute(final int partition, final int fromEdgePixel,
+					final int toEdgePixel) {
+				if (fromEdgePixel == toEdgePixel) {
+					partialTopRows[partition] = 0;
+					partialBottomRows[partition] = -1;
+					return;
+				}
+
+				final int topRow = Math.max(0, edgePixelYs[fromEdgePixel]
+						+ minOffsetY);
+				final int bottomRow = Math.min(height - 1,
+						edgePixelYs[toEdgePixel - 1] + maxOffsetY);
+				final int partialLength = (bottomRow - topRow + 1) * width;
+
+				for (int band = 0; band < bandSize; band++) {
+					partialCrossValues[partition][band] = new int[partialLength];
+					partialCrossCounts[partition][band] = new int[partialLength];
+				}
+
+				voteForEdgePixels(fromEdgePixel, toEdgePixel,
+						votingKernelsOfBand, partialCrossValues[partition],
+						partialCrossCounts[partition], topRow);
+
+				partialTopRows[partition] = topRow;
+				partialBottomRows[partition] = bottomRow;
+			}
+		});
+
+		final ParallelStrips rowStrips = new ParallelStrips(forkJoinPool,
+				height, MultiRadiusCircleCrossCalculator.MIN_STRIP_HEIGHT);
+
+		rowStrips.invoke(new ParallelStrips.Strip() {
+			@Override
+			public void compute(final int stripIndex, final int fromRow,
+					final int toRow) {
+				for (int partition = 0; partition < partitionCount; partition++) {
+					final int topRow = Math.max(fromRow,
+							partialTopRows[partition]);
+					final int bottomRow = Math.min(toRow - 1,
+							partialBottomRows[partition]);
+
+					if (topRow > bottomRow) {
+						continue;
+					}
+
+					final int partialOffset = (topRow - partialTopRows[partition])
+							* width;
+					final int tableOffset = topRow * width;
+					final int length = (bottomRow - topRow + 1) * width;
+
+					for (int band = 0; band < bandSize; band++) {
+						addTo(partialCrossValues[partition][band],
+								partialOffset, crossValueImages[band].pixels,
+								tableOffset, length);
+						addTo(partialCrossCounts[partition][band],
+								partialOffset, crossCountImages[band].pixels,
+								tableOffset, length);
+					}
+				}
+			}
+		});
+	}
+}
@@ -0,0 +1,161 @@
+package craj;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Divides a range, usually the rows of an image, into consecutive strips and
+ * calculates them in parallel in a <tt>ForkJoinPool</tt>. Without a pool all
+ * strips are calculated one after another in the calling thread.
+ * <p>
+ * The strips are numbered from top to bottom, so results which are collected
+ * per strip can be merged in the same order a sequential calculation would
+ * produce them.
+ */
+public class ParallelStrips {
+
+	/**
+	 * The calculation of a single strip.
+	 */
+	public interface Strip {
+
+		/**
+		 * Calculates the given strip.
+		 * 
+		 * @param stripIndex
+		 *            the index of the strip between 0 and the strip count - 1
+		 * @param from
+		 *            the start of the strip (inclusive)
+		 * @param to
+		 *            the end of the strip (exclusive)
+		 */
+		void compute(int stripIndex, int from, int to);
+	}
+
+	private class StripAction extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+
+		private final int fromStrip;
+		private final Strip strip;
+		private final int toStrip;
+
+		private StripAction(final Strip strip, final int fromStrip,
+				final int toStrip) {
+			this.strip = strip;
+			this.fromStrip = fromStrip;
+			this.toStrip = toStrip;
+		}
+
+		@Override
+		protected void compute() {
+			if (toStrip - fromStrip == 1) {
+				strip.compute(fromStrip, getStripStart(fromStrip),
+						getStripStart(fromStrip + 1));
+			} else {
+				final int middleStrip = (fromStrip + toStrip) >>> 1;
+				invokeAll(new StripAction(strip, fromStrip, middleStrip),
+						new StripAction(strip, middleStrip, toStrip));
+			}
+		}
+	}
+
+	/**
+	 * the default count of strips per worker thread, so that strips with more
+	 * work than others do not leave the other workers idle
+	 */
+	private static final int STRIPS_PER_WORKER = 4;
+
+	private final ForkJoinPool forkJoinPool;
+
+	private final int length;
+
+	private final int stripCount;
+
+	/**
+	 * Divides the given length into strips for the given pool.
+	 * 
+	 * @param forkJoinPool
+	 *            the pool the strips are calculated in, or <code>null</code> if
+	 *            the strips should be calculated in the calling thread
+	 * @param length
+	 *            the length of the range, for example the height of an image
+	 * @param minStripLength
+	 *            the minimum length of a strip, to keep the overhead of a strip
+	 *            low compared to its work
+	 */
+	public ParallelStrips(final ForkJoinPool forkJoinPool, final int length,
+			final int minStripLength) {
+		this(forkJoinPool, length, minStripLength,
+				ParallelStrips.STRIPS_PER_WORKER);
+	}
+
+	/**
+	 * Divides the given length into strips for the given pool, with the given
+	 * count of strips per worker thread of the pool.
+	 * 
+	 * @param forkJoinPool
+	 *            the pool the strips are calculated in, or <code>null</code> if
+	 *            the strips should be calculated in the calling thread
+	 * @param length
+	 *            the length of the range, for example the height of an image
+	 * @param minStripLength
+	 *            the minimum length of a strip, to keep the overhead of a strip
+	 *            low compared to its work
+	 * @param stripsPerWorker
+	 *            the count of strips per worker thread
+	 */
+	public ParallelStrips(final ForkJoinPool forkJoinPool, final int length,
+			final int minStripLength, final int stripsPerWorker) {
+		this.forkJoinPool = forkJoinPool;
+		this.length = length;
+
+		if (forkJoinPool == null || length <= minStripLength) {
+			stripCount = 1;
+		} else {
+			stripCount = Math.max(
+					1,
+					Math.min(forkJoinPool.getParallelism()
+							* stripsPerWorker, length
+							/ Math.max(1, minStripLength)));
+		}
+	}
+
+	/**
+	 * Returns the count of strips.
+	 * 
+	 * @return the count of strips
+	 */
+	public int getStripCount() {
+		return stripCount;
+	}
+
+	/**
+	 * Returns the start of the given strip.
+	 * 
+	 * @param stripIndex
+	 *            the index of the strip, or the strip count for the end of the
+	 *            last strip
+	 * @return the start of the strip
+	 */
+	public int getStripStart(final int stripIndex) {
+		return (int) ((long) stripIndex * length / stripCount);
+	}
+
+	/**
+	 * Calculates all strips and returns after all of them are completed.
+	 * 
+	 * @param strip
+	 *            the calculation of a single strip
+	 */
+	public void invoke(final Strip strip) {
+		if (forkJoinPool == null || stripCount == 1) {
+			for (int stripIndex = 0; stripIndex < stripCount; stripIndex++) {
+				strip.compute(stripIndex, getStripStart(stripIndex),
+						getStripStart(stripIndex + 1));
+			}
+		} else {
+			forkJoinPool.invoke(new StripAction(strip, 0, stripCount));
+		}
+	}
+}
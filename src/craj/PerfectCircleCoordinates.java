@@ -28,7 +28,7 @@ public class PerfectCircleCoordinates {
 	 * 
 	 */
 	public static class DifferenceFromOrigin {
-		final byte x, y;
+		final int x, y;
 
 		/**
 		 * Create a DifferenceFromOrigin object with the specified x and y
@@ -39,7 +39,7 @@ public class PerfectCircleCoordinates {
 		 * @param y
 		 *            the y coordinate
 		 */
-		public DifferenceFromOrigin(final byte x, final byte y) {
+		public DifferenceFromOrigin(final int x, final int y) {
 			this.x = x;
 			this.y = y;
 		}
@@ -64,6 +64,29 @@ public class PerfectCircleCoordinates {
 			}
 		}
 
+		/**
+		 * Returns the x coordinate.
+		 * 
+		 * @return the x coordinate
+		 */
+		public int getX() {
+			return x;
+		}
+
+		/**
+		 * Returns the y coordinate.
+		 * 
+		 * @return the y coordinate
+		 */
+		public int getY() {
+			return y;
+		}
+
+		@Override
+		public int hashCode() {
+			return 31 * x + y;
+		}
+
 		@Override
 		public String toString() {
 			return String.format("X: %d Y: %d", x, y);
@@ -72,7 +95,9 @@ public class PerfectCircleCoordinates {
 
 	private final List<DifferenceFromOrigin> edgeDifferencesFromCircleOrigin;
 
-	private final Map<Byte, Byte> innerCircleLineBounds;
+	private final Map<Integer, Integer> innerCircleLineBounds;
+
+	private final int[] innerCircleLineBoundsByRow;
 
 	/**
 	 * Create a PerfectCircleCoordinates object from a <tt>ShortProcessor</tt>
@@ -86,17 +111,31 @@ public class PerfectCircleCoordinates {
 	 */
 	public PerfectCircleCoordinates(final ShortProcessor circle,
 			final boolean verbose) {
+		this(circle.getWidth(), calcEdgesCoordinateDifferencesFromCircleOrigin(
+				circle, verbose));
+	}
 
-		final int diameter = circle.getWidth();
-
-		edgeDifferencesFromCircleOrigin = calcEdgesCoordinateDifferencesFromCircleOrigin(
-				circle, verbose);
+	/**
+	 * Create a PerfectCircleCoordinates object from the already known edge
+	 * pixels of a circle, for example to load it from a file.
+	 * 
+	 * @param diameter
+	 *            the diameter of the circle
+	 * @param edgeDifferencesFromCircleOrigin
+	 *            the edge pixels of the circle around the origin in the order
+	 *            they were found in the drawn circle
+	 */
+	public PerfectCircleCoordinates(final int diameter,
+			final List<DifferenceFromOrigin> edgeDifferencesFromCircleOrigin) {
+		this.edgeDifferencesFromCircleOrigin = edgeDifferencesFromCircleOrigin;
 
 		innerCircleLineBounds = calcInnerCircleLineBounds(
 				edgeDifferencesFromCircleOrigin, diameter);
+		innerCircleLineBoundsByRow = calcInnerCircleLineBoundsByRow(
+				innerCircleLineBounds, diameter);
 	}
 
-	private List<DifferenceFromOrigin> calcEdgesCoordinateDifferencesFromCircleOrigin(
+	private static List<DifferenceFromOrigin> calcEdgesCoordinateDifferencesFromCircleOrigin(
 			final ShortProcessor circleImg, final boolean verbose) {
 
 		final ArrayList<DifferenceFromOrigin> coordinateDifferences = new ArrayList<DifferenceFromOrigin>();
@@ -112,8 +151,8 @@ public class PerfectCircleCoordinates {
 
 				if (circleImg.get(x, y) > 0) {
 
-					final byte xDifference = (byte) (x - origin);
-					final byte yDifference = (byte) (y - origin);
+					final int xDifference = x - origin;
+					final int yDifference = y - origin;
 
 					coordinateDifferences.add(new DifferenceFromOrigin(
 							xDifference, yDifference));
@@ -136,26 +175,27 @@ public class PerfectCircleCoordinates {
 		return coordinateDifferences;
 	}
 
-	private Map<Byte, Byte> calcInnerCircleLineBounds(
+	private Map<Integer, Integer> calcInnerCircleLineBounds(
 			final List<DifferenceFromOrigin> edgeDifferencesFromCircleOrigin,
 			final int diameter) {
 
-		final Map<Byte, Byte> innerCircleLineBounds = new HashMap<>();
+		final Map<Integer, Integer> innerCircleLineBounds = new HashMap<>();
 
 		final int radius = diameter / 2;
 		final int top = -radius + 1;
 		final int bottom = +radius - 1;
 
-		for (int y = top; y <= bottom; y++) {
-			for (int x = 0; x <= radius; x++) {
-
-				final DifferenceFromOrigin differenceFromOrigin = new DifferenceFromOrigin(
-						(byte) x, (byte) y);
-				final boolean isEdgePoint = edgeDifferencesFromCircleOrigin
-						.contains(differenceFromOrigin);
-				if (isEdgePoint) {
-					innerCircleLineBounds.put((byte) y, (byte) x);
-					break;
+		// the edge pixel with the lowest non-negative x of every inner row
+		for (final DifferenceFromOrigin edgeDifference : edgeDifferencesFromCircleOrigin) {
+			final int x = edgeDifference.x;
+			final int y = edgeDifference.y;
+
+			if (y >= top && y <= bottom && x >= 0 && x <= radius) {
+				final Integer rightFirstEdgePointForY = innerCircleLineBounds
+						.get(y);
+				if (rightFirstEdgePointForY == null
+						|| x < rightFirstEdgePointForY) {
+					innerCircleLineBounds.put(y, x);
 				}
 			}
 		}
@@ -163,6 +203,27 @@ public class PerfectCircleCoordinates {
 		return innerCircleLineBounds;
 	}
 
+	private int[] calcInnerCircleLineBoundsByRow(
+			final Map<Integer, Integer> innerCircleLineBounds, final int diameter) {
+
+		final int radius = diameter / 2;
+		final int top = -radius + 1;
+		final int bottom = +radius - 1;
+
+		final int[] innerCircleLineBoundsByRow = new int[Math.max(0, bottom
+				- top + 1)];
+
+		for (int y = top; y <= bottom; y++) {
+			final Integer rightFirstEdgePointForY = innerCircleLineBounds
+					.get(y);
+			if (rightFirstEdgePointForY != null) {
+				innerCircleLineBoundsByRow[y - top] = rightFirstEdgePointForY;
+			}
+		}
+
+		return innerCircleLineBoundsByRow;
+	}
+
 	/**
 	 * Returns the edges pixel data around the origin.
 	 * 
@@ -179,8 +240,19 @@ public class PerfectCircleCoordinates {
 	 * @return a map of the y coordinate and the corresponding right bound of
 	 *         that y coordinate
 	 */
-	public Map<Byte, Byte> getInnerCircleLineBounds() {
+	public Map<Integer, Integer> getInnerCircleLineBounds() {
 		return innerCircleLineBounds;
 	}
 
+	/**
+	 * Returns the same right bounds as {@link #getInnerCircleLineBounds()} as
+	 * an array indexed by row, where the index 0 is the top inner row of the
+	 * circle with the y coordinate <code>-diameter / 2 + 1</code>.
+	 * 
+	 * @return the right bounds of the inner circle rows from top to bottom
+	 */
+	public int[] getInnerCircleLineBoundsByRow() {
+		return innerCircleLineBoundsByRow;
+	}
+
 }
@@ -0,0 +1,516 @@
+package craj;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Calculates the same Sobel values as {@link SobelMatrix} for a whole image,
+ * but with a constant cost per pixel regardless of the size of the
+ * Sobel-matrix.
+ * <p>
+ * The weights of the generated Sobel-matrix only depend on the distances to
+ * the middle of the matrix. The weight of the x matrix for the offset (dx, dy)
+ * is <code>-sign(dy) * (|dy| + middle - |dx|)</code>, the y matrix is its
+ * transposition. Therefore the convolution can be decomposed into box sums and
+ * ramp sums of the rows and columns, which are all differences of prefix sums.
+ * <p>
+ * The prefix sums are calculated exactly with long values. Only the final
+ * squaring and the square root are done in float like in
+ * {@link SobelMatrix#getSobelValueForPixel(FlatImage, int, int)}, which makes
+ * both results equal as long as the float sums of the matrix loop are exact.
+ * That is the case as long as the sum of the absolute matrix weights times
+ * the maximum pixel value is lower than 2^24, for example for every matrix size
+ * up to 61 with 8 bit grey values. For other images the Sobel values are
+ * calculated with the matrix loop.
+ * <p>
+ * Several Sobel-matrix sizes can be calculated in one walk over the image,
+ * which shares the reading of the rows and their prefix sums.
+ * <p>
+ * Optionally the gradient of every pixel is written to a {@link SobelGradient}.
+ * The x matrix weights the rows above and below the pixel, so the sum of the x
+ * matrix is the negative gradient in y direction and the sum of the y matrix is
+ * the negative gradient in x direction.
+ */
+public class PrefixSumSobel {
+
+	/**
+	 * The calculation of the Sobel values of a strip of rows, which is given
+	 * the row prefix sums of one input row after another.
+	 */
+	private final class StripCalculation {
+
+		private final long[] boxRampSums;
+
+		private final long[] boxSums;
+
+		private final long[] columnDistanceSums;
+
+		private final long[] columnRampSums;
+
+		private final long[] columnSums;
+
+		private final int firstInputRow;
+
+		private final int firstOutputRow;
+
+		private final SobelGradient gradient;
+
+		private final FlatImage imageData;
+
+		private final int lastInputRow;
+
+		private int maxSobelValue;
+
+		private final long[] rampSums;
+
+		private final int ringSize;
+
+		private final int[] sobelValues;
+
+		private boolean sumsAreExactInFloat;
+
+		private final long[] verticalRampSums;
+
+		// Ring buffers of the vertical prefix sums. Slot i % ringSize holds the
+		// sums over all read rows lower than i.
+		private final long[] verticalSums;
+
+		private final int width;
+
+		StripCalculation(final FlatImage imageData, final int[] sobelValues,
+				final SobelGradient gradient, final int firstOutputRow,
+				final int lastOutputRow) {
+			this.imageData = imageData;
+			this.sobelValues = sobelValues;
+			this.gradient = gradient;
+			this.firstOutputRow = firstOutputRow;
+
+			width = imageData.width;
+			firstInputRow = firstOutputRow - middle;
+			lastInputRow = lastOutputRow + middle;
+			ringSize = sobelMatrixLength + 1;
+
+			verticalSums = new long[ringSize * width];
+			verticalRampSums = new long[ringSize * width];
+			boxSums = new long[ringSize * width];
+			boxRampSums = new long[ringSize * width];
+			rampSums = new long[ringSize * width];
+
+			columnSums = new long[width + 1];
+			columnRampSums = new long[width + 1];
+			columnDistanceSums = new long[width + 1];
+		}
+
+		/**
+		 * Adds the given input row, whose prefix sums of the pixel values and
+		 * of the pixel values multiplied with their x are given, and
+		 * calculates the output row which is complete afterwards.
+		 */
+		void addRow(final int row, final long[] rowSums,
+				final long[] rowRampSums) {
+			final int xStart = middle;
+			final int xEnd = width - middle;
+
+			final int previousSlot = (row % ringSize) * width;
+			final int slot = ((row + 1) % ringSize) * width;
+
+			for (int x = 0; x < width; x++) {
+				final long pixelValue = rowSums[x + 1] - rowSums[x];
+				verticalSums[slot + x] = verticalSums[previousSlot + x]
+						+ pixelValue;
+				verticalRampSums[slot + x] = verticalRampSums[previousSlot + x]
+						+ row * pixelValue;
+			}
+
+			for (int x = xStart; x < xEnd; x++) {
+				final long box = rowSums[x + middle + 1] - rowSums[x - middle];
+				final long ramp = rampSum(rowSums, rowRampSums, x);
+
+				boxSums[slot + x] = boxSums[previousSlot + x] + box;
+				boxRampSums[slot + x] = boxRampSums[previousSlot + x] + row
+						* box;
+				rampSums[slot + x] = rampSums[previousSlot + x] + ramp;
+			}
+
+			final int y = row - middle;
+			if (y < firstOutputRow) {
+				return;
+			}
+
+			// prefix rows y - middle, y, y + 1 and y + middle + 1
+			final int top = ((y - middle) % ringSize) * width;
+			final int upper = (y % ringSize) * width;
+			final int lower = ((y + 1) % ringSize) * width;
+			final int bottom = ((y + middle + 1) % ringSize) * width;
+
+			for (int x = 0; x < width; x++) {
+				final long column = verticalSums[bottom + x]
+						- verticalSums[top + x];
+				final long columnRamp = verticalRampSums[bottom + x]
+						- verticalRampSums[lower + x] - y
+						* (verticalSums[bottom + x] - verticalSums[lower + x])
+						+ y * (verticalSums[upper + x] - verticalSums[top + x])
+						- (verticalRampSums[upper + x] - verticalRampSums[top
+								+ x]);
+
+				columnSums[x + 1] = columnSums[x] + column;
+				columnRampSums[x + 1] = columnRampSums[x] + x * column;
+				columnDistanceSums[x + 1] = columnDistanceSums[x] + columnRamp;
+			}
+
+			final int outputRowStart = y * width;
+
+			for (int x = xStart; x < xEnd; x++) {
+				final long sumX = -weightedDifference(boxSums, boxRampSums,
+						rampSums, top + x, upper + x, lower + x, bottom + x, y);
+				final long sumY = -weightedDifference(columnSums,
+						columnRampSums, columnDistanceSums, x);
+
+				final int sobelValue;
+				if (sumsAreExactInFloat) {
+					sobelValue = toSobelValue(sumX, sumY);
+				} else {
+					sobelValue = sobelMatrix.getSobelValueForPixel(imageData, x,
+							y);
+				}
+
+				maxSobelValue = Math.max(maxSobelValue, sobelValue);
+
+				sobelValues[outputRowStart + x] = sobelValue;
+
+				if (gradient != null) {
+					gradient.gradientXs[outputRowStart + x] = -sumY;
+					gradient.gradientYs[outputRowStart + x] = -sumX;
+				}
+			}
+		}
+
+		/**
+		 * Decides if the sums are exact in float for the given maximum pixel
+		 * value of the input rows.
+		 */
+		void setMaxPixelValue(final long maxPixelValue) {
+			sumsAreExactInFloat = maxPixelValue
+					* absoluteWeightSum < PrefixSumSobel.MAX_EXACT_FLOAT_INTEGER;
+		}
+	}
+
+	private static final long MAX_EXACT_FLOAT_INTEGER = 1L << 24;
+
+	/**
+	 * Does the same as
+	 * {@link #calculateSobelValues(FlatImage, int[], SobelGradient, int, int)}
+	 * for several Sobel-matrix sizes at once. Every row of the strip and the
+	 * rows around it, which are needed by the largest Sobel-matrix, are read
+	 * only once: the maximum pixel value is searched once for all sizes and
+	 * the prefix sums of every row are calculated once and then used by every
+	 * size.
+	 * 
+	 * @param sobels
+	 *            the Sobel calculations of the Sobel-matrix sizes
+	 * @param imageData
+	 *            the grey image data to calculate the Sobel values for
+	 * @param sobelValues
+	 *            for every Sobel calculation a row-major array with a length of
+	 *            at least <code>width * height</code> its Sobel values are
+	 *            written to
+	 * @param gradients
+	 *            for every Sobel calculation the gradient with the same size
+	 *            as the image data its gradient is written to, or
+	 *            <code>null</code> if the gradient is not needed
+	 * @param fromRow
+	 *            the first row of the strip (inclusive)
+	 * @param toRow
+	 *            the last row of the strip (exclusive)
+	 * @return the maximum of the calculated Sobel values of the strip in the
+	 *         order of the Sobel calculations
+	 */
+	public static int[] calculateSobelValues(
+			final List<PrefixSumSobel> sobels, final FlatImage imageData,
+			final List<int[]> sobelValues, final List<SobelGradient> gradients,
+			final int fromRow, final int toRow) {
+		final int width = imageData.width;
+		final int height = imageData.height;
+		final int sobelCount = sobels.size();
+
+		final StripCalculation[] stripCalculations = new StripCalculation[sobelCount];
+		int firstInputRow = height;
+		int lastInputRow = -1;
+
+		for (int i = 0; i < sobelCount; i++) {
+			final SobelGradient gradient = gradients.get(i);
+			if (gradient != null
+					&& (gradient.width != width || gradient.height != height)) {
+				throw new IllegalArgumentException(
+						"The gradient must have the same size as the image data.");
+			}
+
+			final PrefixSumSobel sobel = sobels.get(i);
+			if (width < sobel.sobelMatrixLength
+					|| height < sobel.sobelMatrixLength) {
+				continue;
+			}
+
+			final int firstOutputRow = Math.max(sobel.middle, fromRow);
+			final int lastOutputRow = Math.min(height - sobel.middle, toRow) - 1;
+			if (firstOutputRow > lastOutputRow) {
+				continue;
+			}
+
+			final StripCalculation stripCalculation = sobel.new StripCalculation(
+					imageData, sobelValues.get(i), gradient, firstOutputRow,
+					lastOutputRow);
+			stripCalculations[i] = stripCalculation;
+
+			firstInputRow = Math.min(firstInputRow,
+					stripCalculation.firstInputRow);
+			lastInputRow = Math.max(lastInputRow,
+					stripCalculation.lastInputRow);
+		}
+
+		final int[] maxSobelValues = new int[sobelCount];
+		if (firstInputRow > lastInputRow) {
+			return maxSobelValues;
+		}
+
+		final long maxPixelValue = PrefixSumSobel.getMaxPixelValue(imageData,
+				firstInputRow, lastInputRow);
+		for (final StripCalculation stripCalculation : stripCalculations) {
+			if (stripCalculation != null) {
+				stripCalculation.setMaxPixelValue(maxPixelValue);
+			}
+		}
+
+		final long[] rowSums = new long[width + 1];
+		final long[] rowRampSums = new long[width + 1];
+
+		for (int row = firstInputRow; row <= lastInputRow; row++) {
+			final int rowStart = imageData.getIndex(0, row);
+
+			for (int x = 0; x < width; x++) {
+				final long pixelValue = imageData.get(rowStart + x);
+				rowSums[x + 1] = rowSums[x] + pixelValue;
+				rowRampSums[x + 1] = rowRampSums[x] + x * pixelValue;
+			}
+
+			for (final StripCalculation stripCalculation : stripCalculations) {
+				if (stripCalculation != null
+						&& row >= stripCalculation.firstInputRow
+						&& row <= stripCalculation.lastInputRow) {
+					stripCalculation.addRow(row, rowSums, rowRampSums);
+				}
+			}
+		}
+
+		for (int i = 0; i < sobelCount; i++) {
+			if (stripCalculations[i] != null) {
+				maxSobelValues[i] = stripCalculations[i].maxSobelValue;
+			}
+		}
+
+		return maxSobelValues;
+	}
+
+	private static long getMaxPixelValue(final FlatImage imageData,
+			final int firstRow, final int lastRow) {
+		final int width = imageData.width;
+
+		int maxPixelValue = 0;
+		for (int y = firstRow; y <= lastRow; y++) {
+			final int rowStart = imageData.getIndex(0, y);
+			for (int x = 0; x < width; x++) {
+				maxPixelValue = Math.max(maxPixelValue,
+						imageData.get(rowStart + x));
+			}
+		}
+
+		return maxPixelValue;
+	}
+
+	private final long absoluteWeightSum;
+
+	private final int middle;
+
+	private final SobelMatrix sobelMatrix;
+
+	private final int sobelMatrixLength;
+
+	/**
+	 * Construct a <tt>PrefixSumSobel</tt> object for the given length which
+	 * should always be greater or equal 3 and odd.
+	 * 
+	 * @param sobelMatrixLength
+	 *            the size of the Sobel-matix which should always be greater or
+	 *            equal 3 and odd.
+	 */
+	public PrefixSumSobel(final int sobelMatrixLength) {
+		sobelMatrix = new SobelMatrix(sobelMatrixLength);
+
+		this.sobelMatrixLength = sobelMatrixLength;
+		middle = sobelMatrix.getMiddle();
+		absoluteWeightSum = calculateAbsoluteWeightSum();
+	}
+
+	private long calculateAbsoluteWeightSum() {
+		long weightSum = 0;
+
+		for (int dx = -middle; dx <= middle; dx++) {
+			for (int dy = -middle; dy <= middle; dy++) {
+				if (dy != 0) {
+					weightSum += Math.abs(dy) + middle - Math.abs(dx);
+				}
+			}
+		}
+
+		return weightSum;
+	}
+
+	/**
+	 * Calculates the Sobel values for all pixels of the given image data,
+	 * which are at least the middle of the Sobel-matrix away from the image
+	 * border. The other pixels of <code>sobelValues</code> are not touched.
+	 * 
+	 * @param imageData
+	 *            the grey image data to calculate the Sobel values for
+	 * @param sobelValues
+	 *            a row-major array with a length of at least
+	 *            <code>width * height</code> the Sobel values are written to
+	 * @return the maximum of the calculated Sobel values
+	 */
+	public int calculateSobelValues(final FlatImage imageData,
+			final int[] sobelValues) {
+		return calculateSobelValues(imageData, sobelValues, null);
+	}
+
+	/**
+	 * Does the same as {@link #calculateSobelValues(FlatImage, int[])} and
+	 * additionally writes the gradient of the calculated pixels to the given
+	 * <tt>SobelGradient</tt>.
+	 * 
+	 * @param imageData
+	 *            the grey image data to calculate the Sobel values for
+	 * @param sobelValues
+	 *            a row-major array with a length of at least
+	 *            <code>width * height</code> the Sobel values are written to
+	 * @param gradient
+	 *            the gradient with the same size as the image data the
+	 *            gradient is written to, or <code>null</code> if the gradient
+	 *            is not needed
+	 * @return the maximum of the calculated Sobel values
+	 */
+	public int calculateSobelValues(final FlatImage imageData,
+			final int[] sobelValues, final SobelGradient gradient) {
+		return calculateSobelValues(imageData, sobelValues, gradient, 0,
+				imageData.height);
+	}
+
+	/**
+	 * Does the same as
+	 * {@link #calculateSobelValues(FlatImage, int[], SobelGradient)}, but only
+	 * for the pixels of the given strip of rows. Only the rows of the strip and
+	 * the rows within the middle of the Sobel-matrix around it are read, so
+	 * the strips of an image can be calculated in parallel.
+	 * 
+	 * @param imageData
+	 *            the grey image data to calculate the Sobel values for
+	 * @param sobelValues
+	 *            a row-major array with a length of at least
+	 *            <code>width * height</code> the Sobel values are written to
+	 * @param gradient
+	 *            the gradient with the same size as the image data the
+	 *            gradient is written to, or <code>null</code> if the gradient
+	 *            is not needed
+	 * @param fromRow
+	 *            the first row of the strip (inclusive)
+	 * @param toRow
+	 *            the last row of the strip (exclusive)
+	 * @return the maximum of the calculated Sobel values of the strip
+	 */
+	public int calculateSobelValues(final FlatImage imageData,
+			final int[] sobelValues, final SobelGradient gradient,
+			final int fromRow, final int toRow) {
+		return PrefixSumSobel.calculateSobelValues(Arrays.asList(this),
+				imageData, Arrays.asList(sobelValues),
+				Arrays.asList(gradient), fromRow, toRow)[0];
+	}
+
+	/**
+	 * Returns the matrix size this object was created for.
+	 * 
+	 * @return the size of the Sobel-matrix
+	 */
+	public int getSobelMatrixLength() {
+		return sobelMatrixLength;
+	}
+
+	/**
+	 * Returns the sum of <code>|i - center| * value(i)</code> over the window
+	 * around the center, calculated from the prefix sums of the values and of
+	 * <code>i * value(i)</code>.
+	 */
+	private long rampSum(final long[] sums, final long[] rampSums,
+			final int center) {
+		final long right = rampSums[center + middle + 1] - rampSums[center + 1]
+				- center * (sums[center + middle + 1] - sums[center + 1]);
+		final long left = center * (sums[center] - sums[center - middle])
+				- (rampSums[center] - rampSums[center - middle]);
+		return right + left;
+	}
+
+	private int toSobelValue(final long exactSumX, final long exactSumY) {
+		final float sumX = exactSumX;
+		final float sumY = exactSumY;
+
+		final float sumXSquare = sumX * sumX;
+		final float sumYSquare = sumY * sumY;
+
+		return (int) Math.sqrt(sumXSquare + sumYSquare);
+	}
+
+	/**
+	 * Returns the sum over k = 1..middle of
+	 * <code>(k + middle) * (box(c + k) - box(c - k)) - (ramp(c + k) - ramp(c - k))</code>
+	 * along a row, using the prefix sums of the box sums, the box sums
+	 * multiplied with their index and the ramp sums.
+	 */
+	private long weightedDifference(final long[] boxSums,
+			final long[] boxRampSums, final long[] rampSums, final int center) {
+		final int before = center - middle;
+		final int after = center + middle + 1;
+
+		final long positiveBox = boxRampSums[after] - boxRampSums[center + 1]
+				+ (long) (middle - center)
+				* (boxSums[after] - boxSums[center + 1]);
+		final long negativeBox = (long) (center + middle)
+				* (boxSums[center] - boxSums[before])
+				- (boxRampSums[center] - boxRampSums[before]);
+
+		final long positiveRamp = rampSums[after] - rampSums[center + 1];
+		final long negativeRamp = rampSums[center] - rampSums[before];
+
+		return positiveBox - negativeBox - (positiveRamp - negativeRamp);
+	}
+
+	/**
+	 * Does the same as {@link #weightedDifference(long[], long[], long[], int)}
+	 * along a column, where the prefix sums are found in the ring buffer slots
+	 * of the rows <code>center - middle</code>, <code>center</code>,
+	 * <code>center + 1</code> and <code>center + middle + 1</code>.
+	 */
+	private long weightedDifference(final long[] boxSums,
+			final long[] boxRampSums, final long[] rampSums, final int before,
+			final int center, final int centerPlusOne, final int after,
+			final int centerRow) {
+		final long positiveBox = boxRampSums[after]
+				- boxRampSums[centerPlusOne] + (long) (middle - centerRow)
+				* (boxSums[after] - boxSums[centerPlusOne]);
+		final long negativeBox = (long) (centerRow + middle)
+				* (boxSums[center] - boxSums[before])
+				- (boxRampSums[center] - boxRampSums[before]);
+
+		final long positiveRamp = rampSums[after] - rampSums[centerPlusOne];
+		final long negativeRamp = rampSums[center] - rampSums[before];
+
+		return positiveBox - negativeBox - (positiveRamp - negativeRamp);
+	}
+}
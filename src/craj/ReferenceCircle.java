@@ -48,10 +48,29 @@ public class ReferenceCircle {
 			this.countDifferenceTolerance = countDifferenceTolerance;
 			this.blackValueDifferenceTolerance = blackValueDifferenceTolerance;
 		}
+
+		/**
+		 * Returns the diameter of the to be created reference circle.
+		 * 
+		 * @return the diameter of the to be created reference circle
+		 */
+		public int getDiameter() {
+			return diameter;
+		}
 	}
 
+	/**
+	 * the smallest diameter a reference circle is scaled down to
+	 */
+	private static final int MIN_SCALED_DIAMETER = 3;
+
 	public static final int REFERENCE_BLACK_VALUE = 255;
 
+	private static int getMinValue(final int referenceValue,
+			final float differenceTolerance) {
+		return (int) Math.ceil(referenceValue * differenceTolerance);
+	}
+
 	/**
 	 * the diameter of the to be created reference circle
 	 */
@@ -75,6 +94,8 @@ public class ReferenceCircle {
 	 */
 	public final int minCrossValue;
 
+	private final ReferenceCircleParameters parameters;
+
 	private final PerfectCircleCoordinates perfectCircleCoordinates;
 
 	/**
@@ -86,6 +107,8 @@ public class ReferenceCircle {
 	 */
 	public final int referenceCrossValue;
 
+	private final CircleVotingOffsets votingOffsets;
+
 	/**
 	 * Construct a <tt>ReferenceCircle</tt> object with the given parameters
 	 * 
@@ -106,10 +129,13 @@ public class ReferenceCircle {
 			throw new IllegalArgumentException("Only odd diameters are allowed");
 		}
 
+		this.parameters = parameters;
+
 		final ShortProcessor perfectCircleEdges = drawPerfectCircleEdges(diameter);
 
 		perfectCircleCoordinates = new PerfectCircleCoordinates(
 				perfectCircleEdges, verbose);
+		votingOffsets = new CircleVotingOffsets(perfectCircleCoordinates);
 
 		if (verbose) {
 			final ImagePlus neuesFenster = new ImagePlus(
@@ -119,7 +145,7 @@ public class ReferenceCircle {
 		}
 
 		final CircleCrossCalculator crossCalculator = new CircleCrossCalculator(
-				this, perfectCircleEdges.getIntArray(),
+				this, IntFlatImage.copyOf(FlatImage.wrap(perfectCircleEdges)),
 				perfectCircleCoordinates);
 
 		final CircleCalculationResultTable resultTable = crossCalculator
@@ -128,17 +154,13 @@ public class ReferenceCircle {
 		referenceCrossValue = resultTable.getMaxCrossValue();
 		referenceCrossCount = resultTable.getMaxCrossCount();
 
-		final float valueDifferenceTolerance = parameters.valueDifferenceTolerance;
-		final float countDifferenceTolerance = parameters.countDifferenceTolerance;
-		final float blackValueDifferenceTolerance = parameters.blackValueDifferenceTolerance;
-
-		minCrossValue = (int) Math.ceil(referenceCrossValue
-				* valueDifferenceTolerance);
-		minCrossCount = (int) Math.ceil(referenceCrossCount
-				* countDifferenceTolerance);
-
-		minBlackValue = (int) Math.ceil(ReferenceCircle.REFERENCE_BLACK_VALUE
-				* blackValueDifferenceTolerance);
+		minCrossValue = ReferenceCircle.getMinValue(referenceCrossValue,
+				parameters.valueDifferenceTolerance);
+		minCrossCount = ReferenceCircle.getMinValue(referenceCrossCount,
+				parameters.countDifferenceTolerance);
+		minBlackValue = ReferenceCircle.getMinValue(
+				ReferenceCircle.REFERENCE_BLACK_VALUE,
+				parameters.blackValueDifferenceTolerance);
 
 		if (verbose) {
 			System.out.println("referenceCrossCount with diameter " + diameter
@@ -146,6 +168,50 @@ public class ReferenceCircle {
 		}
 	}
 
+	/**
+	 * Construct a <tt>ReferenceCircle</tt> object from already calculated
+	 * circle data, without drawing and calculating the perfect circle again.
+	 * Only the minimum values are calculated from the tolerances of the given
+	 * parameters.
+	 * 
+	 * @param parameters
+	 *            the parameters to create the <tt>ReferenceCircle</tt> object
+	 * @param perfectCircleCoordinates
+	 *            the coordinates of the perfect circle with the diameter of
+	 *            the parameters
+	 * @param votingOffsets
+	 *            the voting offsets of the perfect circle
+	 * @param referenceCrossValue
+	 *            the cross value of the perfect circle
+	 * @param referenceCrossCount
+	 *            the cross count of the perfect circle
+	 */
+	ReferenceCircle(final ReferenceCircleParameters parameters,
+			final PerfectCircleCoordinates perfectCircleCoordinates,
+			final CircleVotingOffsets votingOffsets,
+			final int referenceCrossValue, final int referenceCrossCount) {
+
+		if (checkDiameters(parameters.diameter)) {
+			diameter = parameters.diameter;
+		} else {
+			throw new IllegalArgumentException("Only odd diameters are allowed");
+		}
+
+		this.parameters = parameters;
+		this.perfectCircleCoordinates = perfectCircleCoordinates;
+		this.votingOffsets = votingOffsets;
+		this.referenceCrossValue = referenceCrossValue;
+		this.referenceCrossCount = referenceCrossCount;
+
+		minCrossValue = ReferenceCircle.getMinValue(referenceCrossValue,
+				parameters.valueDifferenceTolerance);
+		minCrossCount = ReferenceCircle.getMinValue(referenceCrossCount,
+				parameters.countDifferenceTolerance);
+		minBlackValue = ReferenceCircle.getMinValue(
+				ReferenceCircle.REFERENCE_BLACK_VALUE,
+				parameters.blackValueDifferenceTolerance);
+	}
+
 	private boolean checkDiameters(final int diameterToCheck) {
 		if (diameterToCheck % 2 == 0) {
 			return false;
@@ -182,4 +248,43 @@ public class ReferenceCircle {
 		return perfectCircleCoordinates;
 	}
 
+	/**
+	 * Creates a reference circle for an image which is scaled down by the
+	 * given factor. The diameter is divided by the factor and rounded up to
+	 * the next odd diameter, and all tolerances are multiplied with the given
+	 * tolerance factor, because circles in a scaled down image are less
+	 * accurate.
+	 * 
+	 * @param scale
+	 *            the factor the image is scaled down by
+	 * @param toleranceFactor
+	 *            the factor the tolerances are multiplied with
+	 * @param verbose
+	 *            a boolean which indicates if the methods of the scaled
+	 *            reference circle should show it's output
+	 * @return the scaled down reference circle
+	 */
+	public ReferenceCircle getScaledDown(final int scale,
+			final float toleranceFactor, final boolean verbose) {
+		final int scaledDiameter = Math.max(
+				ReferenceCircle.MIN_SCALED_DIAMETER, diameter / scale) | 1;
+
+		return new ReferenceCircle(new ReferenceCircleParameters(
+				scaledDiameter, parameters.valueDifferenceTolerance
+						* toleranceFactor, parameters.countDifferenceTolerance
+						* toleranceFactor,
+				parameters.blackValueDifferenceTolerance * toleranceFactor),
+				verbose);
+	}
+
+	/**
+	 * Returns the edge differences of the perfect circle sorted by their
+	 * direction, which are used to vote for this reference circle.
+	 * 
+	 * @return the <tt>CircleVotingOffsets</tt> for this reference circle.
+	 */
+	public CircleVotingOffsets getVotingOffsets() {
+		return votingOffsets;
+	}
+
 }
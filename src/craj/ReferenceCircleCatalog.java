@@ -0,0 +1,171 @@
+package craj;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import craj.PerfectCircleCoordinates.DifferenceFromOrigin;
+import craj.ReferenceCircle.ReferenceCircleParameters;
+
+/**
+ * Holds the precalculated data of reference circles by their diameter, so the
+ * perfect circle of a diameter is drawn and calculated only once.
+ * <p>
+ * The edge pixels, voting offsets and reference values of a diameter do not
+ * depend on the tolerances, so every further reference circle with the same
+ * diameter shares them and only calculates its minimum values. The catalog
+ * can be saved to a compact binary file, which holds the edge pixels as pairs
+ * of shorts and the reference values of every diameter, and loaded from it
+ * without drawing any circle.
+ */
+public class ReferenceCircleCatalog {
+
+	/**
+	 * the first bytes of a reference circle catalog file
+	 */
+	private static final int MAGIC_NUMBER = 0x52434331;
+
+	/**
+	 * the version of the file format
+	 */
+	private static final int VERSION = 2;
+
+	/**
+	 * Loads a catalog from a file which was written by {@link #save(File)}.
+	 * 
+	 * @param file
+	 *            the file to load the catalog from
+	 * @return the loaded catalog
+	 * @throws IOException
+	 *             if the file can not be read or is no reference circle
+	 *             catalog of the current version
+	 */
+	public static ReferenceCircleCatalog load(final File file)
+			throws IOException {
+		final ReferenceCircleCatalog catalog = new ReferenceCircleCatalog();
+
+		try (DataInputStream input = new DataInputStream(
+				new BufferedInputStream(new FileInputStream(file)))) {
+			if (input.readInt() != ReferenceCircleCatalog.MAGIC_NUMBER) {
+				throw new IOException(file + " is no reference circle catalog.");
+			}
+			if (input.readInt() != ReferenceCircleCatalog.VERSION) {
+				throw new IOException(file
+						+ " has an unsupported reference circle catalog version.");
+			}
+
+			final int circleCount = input.readInt();
+			for (int circle = 0; circle < circleCount; circle++) {
+				final int diameter = input.readInt();
+				final int referenceCrossValue = input.readInt();
+				final int referenceCrossCount = input.readInt();
+
+				final int edgePixelCount = input.readInt();
+				final List<DifferenceFromOrigin> edgeDifferences = new ArrayList<>(
+						edgePixelCount);
+				for (int edgePixel = 0; edgePixel < edgePixelCount; edgePixel++) {
+					final int x = input.readShort();
+					final int y = input.readShort();
+					edgeDifferences.add(new DifferenceFromOrigin(x, y));
+				}
+
+				final PerfectCircleCoordinates perfectCircleCoordinates = new PerfectCircleCoordinates(
+						diameter, edgeDifferences);
+
+				catalog.referenceCircles.put(diameter, new ReferenceCircle(
+						new ReferenceCircleParameters(diameter, 0, 0, 0),
+						perfectCircleCoordinates, new CircleVotingOffsets(
+								perfectCircleCoordinates), referenceCrossValue,
+						referenceCrossCount));
+			}
+		}
+
+		return catalog;
+	}
+
+	/**
+	 * the first reference circle of every diameter, whose data is shared by
+	 * the further reference circles with the same diameter
+	 */
+	private final Map<Integer, ReferenceCircle> referenceCircles = new TreeMap<>();
+
+	/**
+	 * Returns a reference circle with the given parameters. The perfect circle
+	 * is only drawn and calculated if the catalog does not contain its
+	 * diameter yet.
+	 * 
+	 * @param parameters
+	 *            the parameters of the reference circle
+	 * @return the reference circle
+	 */
+	public synchronized ReferenceCircle getReferenceCircle(
+			final ReferenceCircleParameters parameters) {
+		final ReferenceCircle knownReferenceCircle = referenceCircles
+				.get(parameters.getDiameter());
+
+		if (knownReferenceCircle == null) {
+			final ReferenceCircle referenceCircle = new ReferenceCircle(
+					parameters, false);
+			referenceCircles.put(parameters.getDiameter(), referenceCircle);
+			return referenceCircle;
+		}
+
+		return new ReferenceCircle(parameters,
+				knownReferenceCircle.getPerfectCircleCoordinates(),
+				knownReferenceCircle.getVotingOffsets(),
+				knownReferenceCircle.referenceCrossValue,
+				knownReferenceCircle.referenceCrossCount);
+	}
+
+	/**
+	 * Saves the edge pixels and reference values of every diameter of the
+	 * catalog to the given file.
+	 * 
+	 * @param file
+	 *            the file to save the catalog to
+	 * @throws IOException
+	 *             if the file can not be written
+	 */
+	public synchronized void save(final File file) throws IOException {
+		try (DataOutputStream output = new DataOutputStream(
+				new BufferedOutputStream(new FileOutputStream(file)))) {
+			output.writeInt(ReferenceCircleCatalog.MAGIC_NUMBER);
+			output.writeInt(ReferenceCircleCatalog.VERSION);
+			output.writeInt(referenceCircles.size());
+
+			for (final ReferenceCircle referenceCircle : referenceCircles
+					.values()) {
+				output.writeInt(referenceCircle.diameter);
+				output.writeInt(referenceCircle.referenceCrossValue);
+				output.writeInt(referenceCircle.referenceCrossCount);
+
+				final List<DifferenceFromOrigin> edgeDifferences = referenceCircle
+						.getPerfectCircleCoordinates()
+						.getEdgeDifferencesFromCircleOrigin();
+				output.writeInt(edgeDifferences.size());
+				for (final DifferenceFromOrigin edgeDifference : edgeDifferences) {
+					output.writeShort(edgeDifference.x);
+					output.writeShort(edgeDifference.y);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Returns the count of diameters the catalog holds.
+	 * 
+	 * @return the count of diameters the catalog holds
+	 */
+	public synchronized int size() {
+		return referenceCircles.size();
+	}
+}
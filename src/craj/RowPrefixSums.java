@@ -0,0 +1,68 @@
+package craj;
+
+/**
+ * Holds the prefix sums of every row of an image, so the sum of any horizontal
+ * line segment of the image can be calculated with one subtraction.
+ * <p>
+ * The prefix sums are calculated once per image and can then be used for the
+ * inner circle averages of all circle candidates of all reference circles.
+ */
+public class RowPrefixSums {
+
+	/**
+	 * the height of the image
+	 */
+	public final int height;
+
+	private final int rowLength;
+
+	private final long[] sums;
+
+	/**
+	 * the width of the image
+	 */
+	public final int width;
+
+	/**
+	 * Calculates the row prefix sums of the given image data.
+	 * 
+	 * @param imageData
+	 *            the image data to calculate the row prefix sums for
+	 */
+	public RowPrefixSums(final FlatImage imageData) {
+		width = imageData.width;
+		height = imageData.height;
+		rowLength = width + 1;
+
+		sums = new long[rowLength * height];
+
+		for (int y = 0; y < height; y++) {
+			final int sourceRowStart = imageData.getIndex(0, y);
+			final int rowStart = y * rowLength;
+
+			for (int x = 0; x < width; x++) {
+				sums[rowStart + x + 1] = sums[rowStart + x]
+						+ imageData.get(sourceRowStart + x);
+			}
+		}
+	}
+
+	/**
+	 * Returns the sum of the pixel values of the given row from the left x
+	 * coordinate to the right x coordinate, both inclusive.
+	 * 
+	 * @param y
+	 *            the row of the line segment
+	 * @param left
+	 *            the left x coordinate of the line segment, which must be
+	 *            inside the image
+	 * @param right
+	 *            the right x coordinate of the line segment, which must be
+	 *            inside the image and greater or equal <code>left</code>
+	 * @return the sum of the pixel values of the line segment
+	 */
+	public long getSum(final int y, final int left, final int right) {
+		final int rowStart = y * rowLength;
+		return sums[rowStart + right + 1] - sums[rowStart + left];
+	}
+}
@@ -0,0 +1,54 @@
+package craj;
+
+/**
+ * A {@link FlatImage} backed by a <code>short[]</code>. The pixel values are
+ * treated as unsigned 16 bit values like in <tt>ShortProcessor</tt>.
+ */
+public class ShortFlatImage extends FlatImage {
+
+	/**
+	 * the backing array of this image
+	 */
+	public final short[] pixels;
+
+	/**
+	 * Creates a <tt>ShortFlatImage</tt> with a new zero filled backing array.
+	 * 
+	 * @param width
+	 *            the width of the image
+	 * @param height
+	 *            the height of the image
+	 */
+	public ShortFlatImage(final int width, final int height) {
+		this(width, height, width, new short[width * height]);
+	}
+
+	/**
+	 * Creates a <tt>ShortFlatImage</tt> which uses the given array as backing
+	 * array without copying it.
+	 * 
+	 * @param width
+	 *            the width of the image
+	 * @param height
+	 *            the height of the image
+	 * @param stride
+	 *            the distance between two rows in the backing array
+	 * @param pixels
+	 *            the backing array
+	 */
+	public ShortFlatImage(final int width, final int height, final int stride,
+			final short[] pixels) {
+		super(width, height, stride, pixels.length);
+		this.pixels = pixels;
+	}
+
+	@Override
+	public int get(final int index) {
+		return pixels[index] & 0xffff;
+	}
+
+	@Override
+	public void set(final int index, final int value) {
+		pixels[index] = (short) value;
+	}
+}
@@ -0,0 +1,94 @@
+package craj;
+
+import java.awt.Rectangle;
+
+/**
+ * Holds the gradient of an image as calculated by the Sobel-matrix, which is
+ * usually discarded after the Sobel value is calculated from it.
+ * <p>
+ * The components are stored row-major without padding, so the index of a pixel
+ * is <code>y * width + x</code>. Pixels for which no Sobel value was calculated
+ * keep a zero gradient.
+ */
+public class SobelGradient {
+
+	/**
+	 * the gradient components in x direction
+	 */
+	public final float[] gradientXs;
+
+	/**
+	 * the gradient components in y direction
+	 */
+	public final float[] gradientYs;
+
+	/**
+	 * the height of the image the gradient belongs to
+	 */
+	public final int height;
+
+	/**
+	 * the width of the image the gradient belongs to
+	 */
+	public final int width;
+
+	/**
+	 * Creates a <tt>SobelGradient</tt> with a zero gradient for every pixel.
+	 * 
+	 * @param width
+	 *            the width of the image
+	 * @param height
+	 *            the height of the image
+	 */
+	public SobelGradient(final int width, final int height) {
+		this.width = width;
+		this.height = height;
+
+		gradientXs = new float[width * height];
+		gradientYs = new float[width * height];
+	}
+
+	/**
+	 * Returns a copy of the gradient of the given area of the image.
+	 * 
+	 * @param area
+	 *            the area to copy, which must lie inside the image
+	 * @return a new <tt>SobelGradient</tt> with the size of the area
+	 */
+	public SobelGradient copyOf(final Rectangle area) {
+		final SobelGradient copy = new SobelGradient(area.width, area.height);
+
+		for (int y = 0; y < area.height; y++) {
+			final int rowStart = (area.y + y) * width + area.x;
+			System.arraycopy(gradientXs, rowStart, copy.gradientXs, y
+					* area.width, area.width);
+			System.arraycopy(gradientYs, rowStart, copy.gradientYs, y
+					* area.width, area.width);
+		}
+
+		return copy;
+	}
+
+	/**
+	 * Returns the direction of the gradient at the given index.
+	 * 
+	 * @param index
+	 *            the row-major index of the pixel
+	 * @return the direction of the gradient in radians between -pi and pi
+	 */
+	public double getDirection(final int index) {
+		return Math.atan2(gradientYs[index], gradientXs[index]);
+	}
+
+	/**
+	 * Returns if the gradient at the given index is zero and therefore has no
+	 * direction.
+	 * 
+	 * @param index
+	 *            the row-major index of the pixel
+	 * @return <code>true</code> if both gradient components are zero
+	 */
+	public boolean isZero(final int index) {
+		return gradientXs[index] == 0 && gradientYs[index] == 0;
+	}
+}
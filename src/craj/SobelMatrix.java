@@ -111,6 +111,57 @@ public class SobelMatrix {
 		return sobelValueForPixel;
 	}
 
+	/**
+	 * Calculates the Sobel value for the given pixel in the given flat image
+	 * data. The result is the same as the one of
+	 * {@link #getSobelValueForPixel(int[][], int, int)} for the same pixel
+	 * data.
+	 * 
+	 * @param imageData
+	 *            the image data where the pixel for the calculation can be
+	 *            found
+	 * @param x
+	 *            the x coordinate of the pixel for the calculation in the
+	 *            source image
+	 * @param y
+	 *            the y coordinate of the pixel for the calculation in the
+	 *            source image
+	 * @return the calculated Sobel value for the specified pixel using the
+	 *         created Sobel-matrix
+	 */
+	public int getSobelValueForPixel(final FlatImage imageData, final int x,
+			final int y) {
+		final int middle = getMiddle();
+		final int stride = imageData.stride;
+
+		float sumX = 0;
+		float sumY = 0;
+
+		for (int xSobel = 0; xSobel < sobelMatrixLength; xSobel++) {
+			final int[] xMatrixColumn = xMatrix[xSobel];
+			final int[] yMatrixColumn = yMatrix[xSobel];
+
+			final int destX = x + xSobel - middle;
+			int destIndex = imageData.getIndex(destX, y - middle);
+
+			for (int ySobel = 0; ySobel < sobelMatrixLength; ySobel++) {
+				final int pixelValue = imageData.get(destIndex);
+
+				sumX += xMatrixColumn[ySobel] * pixelValue;
+				sumY += yMatrixColumn[ySobel] * pixelValue;
+
+				destIndex += stride;
+			}
+		}
+
+		final float sumXSquare = sumX * sumX;
+		final float sumYSquare = sumY * sumY;
+
+		final int sobelValueForPixel = (int) Math.sqrt(sumXSquare + sumYSquare);
+
+		return sobelValueForPixel;
+	}
+
 	private int[][] spinMatrixClockwise(final int[][] matrixToBeSpinned) {
 		final int length = matrixToBeSpinned.length;
 
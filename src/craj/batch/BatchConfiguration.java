@@ -0,0 +1,393 @@
+package craj.batch;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+
+import craj.CircleFindingSuppressor;
+import craj.CoarseCandidateSearch;
+import craj.ContrastEnhancer;
+import craj.EdgeDetector;
+import craj.EdgeDetector.EdgeDetectorParameter;
+import craj.ReferenceCircle;
+import craj.ReferenceCircle.ReferenceCircleParameters;
+import craj.ReferenceCircleCatalog;
+import craj.mapDigesterLocator.MapDigesterCircleFinder.MapDigesterCircleFinderParameter;
+import craj.mapDigesterLocator.MapDigesterLocator.MapDigesterLocatorParameter;
+import craj.mapDigesterLocator.MapDigesterLocatorForGMaps.MapDigesterLocatorForGMapsParameter;
+import craj.mapDigesterLocator.ProgressJournal;
+import craj.mapDigesterLocator.TileStore;
+import craj.mapDigesterLocator.UrlTileSource;
+
+/**
+ * Holds the configuration of a {@link MapDigesterLocatorBatch} run, which is
+ * read from a properties file, and creates the parameter objects of the
+ * locators from it.
+ * <p>
+ * Every key but <tt>imageDirectory</tt> and the area of the <tt>gmaps</tt>
+ * mode is optional, the defaults are the values of the
+ * <tt>MapDigesterLocatorPlugin</tt>. Nothing is ever shown, so all verbose
+ * flags are off.
+ * <ul>
+ * <li><tt>mode</tt>: <tt>files</tt> to search the images of the image
+ * directory or <tt>gmaps</tt> to fetch and search the tiles of an area</li>
+ * <li><tt>imageDirectory</tt>: the directory of the images</li>
+ * <li><tt>parallelism</tt>, <tt>resultQueueCapacity</tt>,
+ * <tt>notifyEvenWithoutFinding</tt>, <tt>verbosePrint</tt>: the parameters of
+ * the locator</li>
+ * <li><tt>dropResultsWhenFull</tt>: <code>true</code> to drop results instead
+ * of waiting for the output when the result queue is full</li>
+ * <li><tt>referenceCircle.diameters</tt>: the comma separated diameters of the
+ * reference circles</li>
+ * <li><tt>referenceCircle.valueDifferenceTolerance</tt>,
+ * <tt>referenceCircle.countDifferenceTolerance</tt>,
+ * <tt>referenceCircle.minBlackValue</tt>: the tolerances of all reference
+ * circles</li>
+ * <li><tt>referenceCircle.catalog</tt>: a {@link ReferenceCircleCatalog} file
+ * the reference circles are loaded from if it exists and saved to
+ * otherwise</li>
+ * <li><tt>edgeDetector.crossValue.sobelMatrixSize</tt>,
+ * <tt>edgeDetector.crossValue.tolerance</tt>,
+ * <tt>edgeDetector.blackValue.sobelMatrixSize</tt>,
+ * <tt>edgeDetector.blackValue.tolerance</tt>: the edge detectors</li>
+ * <li><tt>edgeDetector.crossValue.maxEdgePixelCount</tt>,
+ * <tt>edgeDetector.crossValue.maxEdgePixelFraction</tt>: the edge budget of
+ * the cross value edge detector, 0 for no limit</li>
+ * <li><tt>contrastEnhancers</tt>: the comma separated contrast enhancers, each
+ * as <tt>lowerBound:upperBound</tt></li>
+ * <li><tt>gradientVotingAngleTolerance</tt>: the gradient voting tolerance in
+ * degrees, 0 to turn it off</li>
+ * <li><tt>circleFindingSuppressor.maxCenterDistanceFactor</tt>: the factor of
+ * the suppressor, a negative value to keep all circle findings</li>
+ * <li><tt>coarseCandidateSearch.scale</tt>: the scale of the coarse candidate
+ * search, 0 to search the whole images in full resolution</li>
+ * <li><tt>gmaps.longitudeStart</tt>, <tt>gmaps.latitudeStart</tt>,
+ * <tt>gmaps.longitudeStop</tt>, <tt>gmaps.latitudeStop</tt>,
+ * <tt>gmaps.stepSize</tt>, <tt>gmaps.urlPattern</tt>, <tt>gmaps.zoom</tt>,
+ * <tt>gmaps.fetchConcurrency</tt>, <tt>gmaps.fetchAttemptCount</tt>: the area
+ * and source of the tiles</li>
+ * <li><tt>gmaps.tileStore</tt>, <tt>gmaps.decodedTileCacheBytes</tt>: the
+ * directory of a {@link TileStore} and the size of its decoded tile cache</li>
+ * <li><tt>gmaps.progressJournal</tt>: the file of a {@link ProgressJournal}
+ * to resume an aborted sweep, the outputs of a resumed sweep are rewritten and
+ * hold the journaled circle findings of the skipped tiles, too</li>
+ * <li><tt>output.csv</tt>, <tt>output.columnar</tt>: the files the circle
+ * findings are written to, at least one of them is required</li>
+ * </ul>
+ */
+public class BatchConfiguration {
+
+	private static final String DEFAULT_CONTRAST_ENHANCERS = "0.9:0.06";
+
+	private static final String DEFAULT_DIAMETERS = "27,29,31,33,35,37,39,41,43,45,47,49,51,53,55,57,59,61,63,65,67,69,71";
+
+	private static final String DEFAULT_URL_PATTERN = "http://maps.googleapis.com/maps/api/staticmap?center=%s,%s&zoom=18&size=640x640&maptype=satellite&sensor=false";
+
+	/**
+	 * Loads the configuration from the given properties file.
+	 * 
+	 * @param file
+	 *            the properties file
+	 * @return the loaded configuration
+	 * @throws IOException
+	 *             if the file can not be read
+	 */
+	public static BatchConfiguration load(final File file) throws IOException {
+		final Properties properties = new Properties();
+		try (InputStream input = new BufferedInputStream(new FileInputStream(
+				file))) {
+			properties.load(input);
+		}
+		return new BatchConfiguration(properties);
+	}
+
+	private final Properties properties;
+
+	/**
+	 * Construct a <tt>BatchConfiguration</tt> with the given properties.
+	 * 
+	 * @param properties
+	 *            the properties of the configuration
+	 */
+	public BatchConfiguration(final Properties properties) {
+		this.properties = properties;
+	}
+
+	/**
+	 * Creates the parameters of the circle finder. The reference circles are
+	 * taken from the given catalog.
+	 * 
+	 * @param referenceCircleCatalog
+	 *            the catalog the reference circles are taken from
+	 * @return the parameters of the circle finder
+	 */
+	public MapDigesterCircleFinderParameter createCircleFinderParameter(
+			final ReferenceCircleCatalog referenceCircleCatalog) {
+		final float valueDifferenceTolerance = getFloat(
+				"referenceCircle.valueDifferenceTolerance", 0.6f);
+		final float countDifferenceTolerance = getFloat(
+				"referenceCircle.countDifferenceTolerance", 0.7f);
+		final float minBlackValue = getFloat("referenceCircle.minBlackValue",
+				0.8f);
+
+		final List<ReferenceCircle> referenceCircles = new ArrayList<>();
+		for (final String diameter : getList("referenceCircle.diameters",
+				BatchConfiguration.DEFAULT_DIAMETERS)) {
+			referenceCircles.add(referenceCircleCatalog
+					.getReferenceCircle(new ReferenceCircleParameters(parseInt(
+							"referenceCircle.diameters", diameter),
+							valueDifferenceTolerance, countDifferenceTolerance,
+							minBlackValue)));
+		}
+
+		final EdgeDetector edgeDetectorForCrossValueCalculation = new EdgeDetector(
+				new EdgeDetectorParameter(getInt(
+						"edgeDetector.crossValue.sobelMatrixSize", 5), getInt(
+						"edgeDetector.crossValue.tolerance", 100), false,
+						getInt("edgeDetector.crossValue.maxEdgePixelCount", 0),
+						getFloat("edgeDetector.crossValue.maxEdgePixelFraction",
+								0)));
+		final EdgeDetector edgeDetectorForBlackValueCalculation = new EdgeDetector(
+				new EdgeDetectorParameter(getInt(
+						"edgeDetector.blackValue.sobelMatrixSize", 3), getInt(
+						"edgeDetector.blackValue.tolerance", 0), false));
+
+		final List<ContrastEnhancer> contrastEnhancerList = new ArrayList<>();
+		for (final String contrastEnhancer : getList("contrastEnhancers",
+				BatchConfiguration.DEFAULT_CONTRAST_ENHANCERS)) {
+			final String[] bounds = contrastEnhancer.split(":");
+			if (bounds.length != 2) {
+				throw new IllegalArgumentException(
+						"contrastEnhancers has to hold lowerBound:upperBound pairs, not "
+								+ contrastEnhancer);
+			}
+			contrastEnhancerList.add(new ContrastEnhancer(parseFloat(
+					"contrastEnhancers", bounds[0]), parseFloat(
+					"contrastEnhancers", bounds[1]), false));
+		}
+
+		final float maxCenterDistanceFactor = getFloat(
+				"circleFindingSuppressor.maxCenterDistanceFactor", 1f);
+		final CircleFindingSuppressor circleFindingSuppressor = maxCenterDistanceFactor >= 0 ? new CircleFindingSuppressor(
+				maxCenterDistanceFactor) : null;
+
+		final int coarseCandidateSearchScale = getInt(
+				"coarseCandidateSearch.scale", 0);
+		final CoarseCandidateSearch coarseCandidateSearch = coarseCandidateSearchScale > 0 ? new CoarseCandidateSearch(
+				referenceCircles, coarseCandidateSearchScale,
+				edgeDetectorForBlackValueCalculation,
+				edgeDetectorForCrossValueCalculation) : null;
+
+		return new MapDigesterCircleFinderParameter(
+				edgeDetectorForBlackValueCalculation,
+				edgeDetectorForCrossValueCalculation, contrastEnhancerList,
+				false, referenceCircles, getFloat(
+						"gradientVotingAngleTolerance", 0),
+				circleFindingSuppressor, coarseCandidateSearch);
+	}
+
+	/**
+	 * Creates the parameters of a locator for Google Maps tiles.
+	 * 
+	 * @param params
+	 *            the parameters of the locator
+	 * @param tileStore
+	 *            the tile store the tiles are kept in, or <code>null</code>
+	 * @param progressJournal
+	 *            the journal of the sweep, or <code>null</code>
+	 * @return the parameters of the locator for Google Maps tiles
+	 */
+	public MapDigesterLocatorForGMapsParameter createGMapsParameter(
+			final MapDigesterLocatorParameter params,
+			final TileStore tileStore, final ProgressJournal progressJournal) {
+		return new MapDigesterLocatorForGMapsParameter(params,
+				getRequiredFloat("gmaps.longitudeStart"),
+				getRequiredFloat("gmaps.latitudeStart"),
+				getRequiredFloat("gmaps.longitudeStop"),
+				getRequiredFloat("gmaps.latitudeStop"), getFloat(
+						"gmaps.stepSize", 0.0055f), new UrlTileSource(
+						properties.getProperty("gmaps.urlPattern",
+								BatchConfiguration.DEFAULT_URL_PATTERN)),
+				getInt("gmaps.fetchConcurrency", 4), getInt(
+						"gmaps.fetchAttemptCount", 3), tileStore, getInt(
+						"gmaps.zoom", 18), progressJournal);
+	}
+
+	/**
+	 * Creates the parameters of the locator.
+	 * 
+	 * @param mapDigesterCircleFinderParameters
+	 *            the parameters of the circle finder
+	 * @return the parameters of the locator
+	 */
+	public MapDigesterLocatorParameter createLocatorParameter(
+			final MapDigesterCircleFinderParameter mapDigesterCircleFinderParameters) {
+		return new MapDigesterLocatorParameter(getBoolean(
+				"notifyEvenWithoutFinding", false), false, getBoolean(
+				"verbosePrint", false), getRequiredFile("imageDirectory"),
+				mapDigesterCircleFinderParameters, getInt("parallelism", 0),
+				getInt("resultQueueCapacity", 1024), getBoolean(
+						"dropResultsWhenFull", false));
+	}
+
+	/**
+	 * Returns the boolean value of the given key.
+	 * 
+	 * @param key
+	 *            the key of the value
+	 * @param defaultValue
+	 *            the value if the key is missing
+	 * @return the value of the key
+	 */
+	public boolean getBoolean(final String key, final boolean defaultValue) {
+		final String value = properties.getProperty(key);
+		if (value == null) {
+			return defaultValue;
+		}
+		if (!value.trim().equalsIgnoreCase("true")
+				&& !value.trim().equalsIgnoreCase("false")) {
+			throw new IllegalArgumentException(key
+					+ " has to be true or false, not " + value);
+		}
+		return Boolean.parseBoolean(value.trim());
+	}
+
+	/**
+	 * Returns the file of the given key.
+	 * 
+	 * @param key
+	 *            the key of the file
+	 * @return the file, or <code>null</code> if the key is missing
+	 */
+	public File getFile(final String key) {
+		final String value = properties.getProperty(key);
+		return value == null || value.trim().isEmpty() ? null : new File(
+				value.trim());
+	}
+
+	/**
+	 * Returns the float value of the given key.
+	 * 
+	 * @param key
+	 *            the key of the value
+	 * @param defaultValue
+	 *            the value if the key is missing
+	 * @return the value of the key
+	 */
+	public float getFloat(final String key, final float defaultValue) {
+		final String value = properties.getProperty(key);
+		return value == null ? defaultValue : parseFloat(key, value);
+	}
+
+	/**
+	 * Returns the int value of the given key.
+	 * 
+	 * @param key
+	 *            the key of the value
+	 * @param defaultValue
+	 *            the value if the key is missing
+	 * @return the value of the key
+	 */
+	public int getInt(final String key, final int defaultValue) {
+		final String value = properties.getProperty(key);
+		return value == null ? defaultValue : parseInt(key, value);
+	}
+
+	private String[] getList(final String key, final String defaultValue) {
+		return properties.getProperty(key, defaultValue).trim()
+				.split("\\s*,\\s*");
+	}
+
+	/**
+	 * Returns the long value of the given key.
+	 * 
+	 * @param key
+	 *            the key of the value
+	 * @param defaultValue
+	 *            the value if the key is missing
+	 * @return the value of the key
+	 */
+	public long getLong(final String key, final long defaultValue) {
+		final String value = properties.getProperty(key);
+		if (value == null) {
+			return defaultValue;
+		}
+		try {
+			return Long.parseLong(value.trim());
+		} catch (final NumberFormatException e) {
+			throw new IllegalArgumentException(key
+					+ " has to be an integer, not " + value);
+		}
+	}
+
+	/**
+	 * Returns the file of the given key, which must not be missing.
+	 * 
+	 * @param key
+	 *            the key of the file
+	 * @return the file
+	 */
+	public File getRequiredFile(final String key) {
+		final File file = getFile(key);
+		if (file == null) {
+			throw new IllegalArgumentException(key + " is missing.");
+		}
+		return file;
+	}
+
+	/**
+	 * Returns the float value of the given key, which must not be missing.
+	 * 
+	 * @param key
+	 *            the key of the value
+	 * @return the value of the key
+	 */
+	public float getRequiredFloat(final String key) {
+		final String value = properties.getProperty(key);
+		if (value == null) {
+			throw new IllegalArgumentException(key + " is missing.");
+		}
+		return parseFloat(key, value);
+	}
+
+	/**
+	 * Returns whether the tiles of an area are fetched from Google Maps
+	 * instead of searching the images of the image directory.
+	 * 
+	 * @return <code>true</code> if the mode is <tt>gmaps</tt>
+	 */
+	public boolean isGMapsMode() {
+		final String mode = properties.getProperty("mode", "files").trim();
+		if (mode.equals("gmaps")) {
+			return true;
+		} else if (mode.equals("files")) {
+			return false;
+		} else {
+			throw new IllegalArgumentException(
+					"mode has to be files or gmaps, not " + mode);
+		}
+	}
+
+	private float parseFloat(final String key, final String value) {
+		try {
+			return Float.parseFloat(value.trim());
+		} catch (final NumberFormatException e) {
+			throw new IllegalArgumentException(key
+					+ " has to be a number, not " + value);
+		}
+	}
+
+	private int parseInt(final String key, final String value) {
+		try {
+			return Integer.parseInt(value.trim());
+		} catch (final NumberFormatException e) {
+			throw new IllegalArgumentException(key
+					+ " has to be an integer, not " + value);
+		}
+	}
+}
@@ -0,0 +1,231 @@
+package craj.batch;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.management.JMException;
+
+import craj.ReferenceCircleCatalog;
+import craj.mapDigesterLocator.CircleFindingSink;
+import craj.mapDigesterLocator.CircleFindingsPair;
+import craj.mapDigesterLocator.ColumnarCircleFindingSink;
+import craj.mapDigesterLocator.CsvCircleFindingSink;
+import craj.mapDigesterLocator.FileCircleFindingsPair;
+import craj.mapDigesterLocator.GmapsCoordinateCircleFindingsPair;
+import craj.mapDigesterLocator.LocatorMetrics;
+import craj.mapDigesterLocator.MapDigesterCircleFinder.MapDigesterCircleFinderParameter;
+import craj.mapDigesterLocator.MapDigesterLocator;
+import craj.mapDigesterLocator.MapDigesterLocator.MapDigesterLocatorParameter;
+import craj.mapDigesterLocator.MapDigesterLocatorForFiles;
+import craj.mapDigesterLocator.MapDigesterLocatorForGMaps;
+import craj.mapDigesterLocator.ProgressJournal;
+import craj.mapDigesterLocator.TileStore;
+
+/**
+ * Runs a locator without ImageJ and without any window, configured by a
+ * properties file, so it can be started by scheduled batch jobs on a server:
+ * <p>
+ * <code>java -cp bin:jars/* craj.batch.MapDigesterLocatorBatch locator.properties</code>
+ * <p>
+ * The keys of the properties file are described at
+ * {@link BatchConfiguration}. The circle findings are written to the
+ * configured CSV and columnar files. If a sweep is resumed from its progress
+ * journal, the files are rewritten with the journaled circle findings of the
+ * skipped tiles and the circle findings of the remaining ones. The exit code
+ * is 0 if all images were searched and all circle findings were written, 1 if
+ * a file could not be read or written, 2 if the configuration is invalid and 3
+ * if results were dropped because <tt>dropResultsWhenFull</tt> is set and the
+ * output could not keep up.
+ * <p>
+ * While the run goes on, its {@link LocatorMetrics} are registered as MBean
+ * with the name <tt>MapDigesterLocatorBatch</tt>, so the progress can be
+ * watched with a JMX client like <tt>jconsole</tt>.
+ */
+public class MapDigesterLocatorBatch {
+
+	/**
+	 * the exit code if results were dropped
+	 */
+	public static final int EXIT_DROPPED_RESULTS = 3;
+
+	/**
+	 * the exit code if the configuration is invalid
+	 */
+	public static final int EXIT_INVALID_CONFIGURATION = 2;
+
+	/**
+	 * the exit code if a file could not be read or written
+	 */
+	public static final int EXIT_IO_ERROR = 1;
+
+	/**
+	 * the exit code if the run was successful
+	 */
+	public static final int EXIT_SUCCESS = 0;
+
+	/**
+	 * the name of the MBean of the metrics of a run
+	 */
+	private static final String METRICS_NAME = "MapDigesterLocatorBatch";
+
+	private static <CircleFindingsPairType extends CircleFindingsPair> List<CircleFindingSink<CircleFindingsPairType>> createSinks(
+			final BatchConfiguration configuration) throws IOException {
+		final List<CircleFindingSink<CircleFindingsPairType>> sinks = new ArrayList<>();
+
+		final File csvFile = configuration.getFile("output.csv");
+		if (csvFile != null) {
+			sinks.add(new CsvCircleFindingSink<CircleFindingsPairType>(csvFile));
+		}
+
+		final File columnarFile = configuration.getFile("output.columnar");
+		if (columnarFile != null) {
+			sinks.add(new ColumnarCircleFindingSink<CircleFindingsPairType>(
+					columnarFile));
+		}
+
+		if (sinks.isEmpty()) {
+			throw new IllegalArgumentException(
+					"output.csv or output.columnar is required.");
+		}
+
+		return sinks;
+	}
+
+	/**
+	 * Runs the locator which is configured in the properties file of the
+	 * first argument and exits with the exit code of the run.
+	 * 
+	 * @param args
+	 *            the path of the properties file
+	 */
+	public static void main(final String[] args) {
+		// before any class of AWT is loaded
+		System.setProperty("java.awt.headless", "true");
+
+		if (args.length != 1) {
+			System.err
+					.println("Usage: java craj.batch.MapDigesterLocatorBatch <properties file>");
+			System.exit(MapDigesterLocatorBatch.EXIT_INVALID_CONFIGURATION);
+		}
+
+		int exitCode;
+		try {
+			exitCode = MapDigesterLocatorBatch.run(BatchConfiguration
+					.load(new File(args[0])));
+		} catch (final IllegalArgumentException e) {
+			System.err.println("Invalid configuration: " + e.getMessage());
+			exitCode = MapDigesterLocatorBatch.EXIT_INVALID_CONFIGURATION;
+		} catch (final IOException e) {
+			System.err.println("Error: " + e.getMessage());
+			exitCode = MapDigesterLocatorBatch.EXIT_IO_ERROR;
+		} catch (final InterruptedException e) {
+			System.err.println("Interrupted.");
+			exitCode = MapDigesterLocatorBatch.EXIT_IO_ERROR;
+		}
+
+		System.exit(exitCode);
+	}
+
+	/**
+	 * Runs the configured locator and writes its circle findings.
+	 * 
+	 * @param configuration
+	 *            the configuration of the run
+	 * @return the exit code of the run
+	 * @throws IOException
+	 *             if a file could not be read or written
+	 * @throws InterruptedException
+	 *             if the run was interrupted
+	 */
+	public static int run(final BatchConfiguration configuration)
+			throws IOException, InterruptedException {
+		final File catalogFile = configuration
+				.getFile("referenceCircle.catalog");
+		final ReferenceCircleCatalog referenceCircleCatalog = catalogFile != null
+				&& catalogFile.exists() ? ReferenceCircleCatalog
+				.load(catalogFile) : new ReferenceCircleCatalog();
+		final int knownDiameterCount = referenceCircleCatalog.size();
+
+		final MapDigesterCircleFinderParameter mapDigesterCircleFinderParameters = configuration
+				.createCircleFinderParameter(referenceCircleCatalog);
+		final MapDigesterLocatorParameter params = configuration
+				.createLocatorParameter(mapDigesterCircleFinderParameters);
+
+		if (catalogFile != null
+				&& referenceCircleCatalog.size() > knownDiameterCount) {
+			referenceCircleCatalog.save(catalogFile);
+		}
+
+		if (!configuration.isGMapsMode()) {
+			final List<CircleFindingSink<FileCircleFindingsPair>> sinks = MapDigesterLocatorBatch
+					.createSinks(configuration);
+
+			return MapDigesterLocatorBatch.run(new MapDigesterLocatorForFiles(
+					params), sinks);
+		}
+
+		final File tileStoreDir = configuration.getFile("gmaps.tileStore");
+		final File journalFile = configuration.getFile("gmaps.progressJournal");
+		final List<CircleFindingSink<GmapsCoordinateCircleFindingsPair>> sinks = MapDigesterLocatorBatch
+				.createSinks(configuration);
+
+		try (TileStore tileStore = tileStoreDir != null ? new TileStore(
+				tileStoreDir, configuration.getLong(
+						"gmaps.decodedTileCacheBytes", 0)) : null;
+				ProgressJournal progressJournal = journalFile != null ? new ProgressJournal(
+						journalFile) : null) {
+			return MapDigesterLocatorBatch.run(new MapDigesterLocatorForGMaps(
+					configuration.createGMapsParameter(params, tileStore,
+							progressJournal)), sinks);
+		}
+	}
+
+	private static <CircleFindingsPairType extends CircleFindingsPair> int run(
+			final MapDigesterLocator<CircleFindingsPairType> mapDigesterLocator,
+			final List<CircleFindingSink<CircleFindingsPairType>> sinks)
+			throws IOException, InterruptedException {
+		final long startTime = System.nanoTime();
+
+		for (final CircleFindingSink<CircleFindingsPairType> sink : sinks) {
+			mapDigesterLocator.addObserver(sink);
+		}
+
+		final LocatorMetrics metrics = mapDigesterLocator.getMetrics();
+		try {
+			metrics.registerMBean(MapDigesterLocatorBatch.METRICS_NAME);
+		} catch (final JMException e) {
+			System.err.println("The metrics are not available by JMX: " + e);
+		}
+
+		try {
+			mapDigesterLocator.start();
+			mapDigesterLocator.join();
+		} finally {
+			try {
+				metrics.unregisterMBean();
+			} catch (final JMException e) {
+				System.err.println("The metrics could not be unregistered: "
+						+ e);
+			}
+		}
+
+		long rowCount = 0;
+		for (final CircleFindingSink<CircleFindingsPairType> sink : sinks) {
+			sink.close();
+			rowCount = sink.getRowCount();
+		}
+
+		final long droppedResultCount = mapDigesterLocator
+				.getDroppedResultCount();
+		System.out.println(String.format(
+				"Wrote %d circle findings in %d s, dropped %d results.",
+				rowCount, (System.nanoTime() - startTime) / 1000000000L,
+				droppedResultCount));
+		System.out.println(metrics.getSnapshot());
+
+		return droppedResultCount > 0 ? MapDigesterLocatorBatch.EXIT_DROPPED_RESULTS
+				: MapDigesterLocatorBatch.EXIT_SUCCESS;
+	}
+}
@@ -0,0 +1,38 @@
+package craj.benchmark;
+
+/**
+ * A single benchmark which is measured by the {@link BenchmarkRunner}. The
+ * input data is prepared before, so {@link #run()} only holds the code to
+ * measure.
+ */
+public abstract class Benchmark {
+
+	private final String name;
+
+	/**
+	 * Construct a <tt>Benchmark</tt> with the given name.
+	 * 
+	 * @param name
+	 *            the name the results are reported with
+	 */
+	protected Benchmark(final String name) {
+		this.name = name;
+	}
+
+	/**
+	 * Returns the name the results are reported with.
+	 * 
+	 * @return the name of the benchmark
+	 */
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * Runs one operation of the benchmark. The result is consumed by the
+	 * runner, so the calculation can not be removed as dead code.
+	 * 
+	 * @return the result of the operation
+	 */
+	public abstract Object run();
+}
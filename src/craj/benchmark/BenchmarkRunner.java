@@ -0,0 +1,234 @@
+package craj.benchmark;
+
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Measures the throughput and the allocation rate of benchmarks.
+ * <p>
+ * Every benchmark first runs some warmup iterations, so the JIT compiler has
+ * compiled its code, and then the measurement iterations. An iteration runs
+ * the operation of the benchmark again and again until its time is over. The
+ * throughput is the count of operations per second, the allocation rate is
+ * the count of bytes the calling thread allocated per operation, so the
+ * benchmarks have to run their operations in the calling thread. The
+ * allocation rate is only measured if the JVM supports it, otherwise it is
+ * <tt>NaN</tt>.
+ */
+public class BenchmarkRunner {
+
+	/**
+	 * The throughput and allocation rate of a benchmark.
+	 */
+	public static class BenchmarkResult {
+
+		/**
+		 * the count of bytes the operations allocated, divided by the count
+		 * of operations, or <tt>NaN</tt> if it is not measured
+		 */
+		public final double allocatedBytesPerOperation;
+
+		/**
+		 * the name of the benchmark
+		 */
+		public final String name;
+
+		/**
+		 * the count of operations of the measurement iterations
+		 */
+		public final long operationCount;
+
+		/**
+		 * the count of operations per second of the measurement iterations
+		 */
+		public final double operationsPerSecond;
+
+		private BenchmarkResult(final String name, final long operationCount,
+				final double operationsPerSecond,
+				final double allocatedBytesPerOperation) {
+			this.name = name;
+			this.operationCount = operationCount;
+			this.operationsPerSecond = operationsPerSecond;
+			this.allocatedBytesPerOperation = allocatedBytesPerOperation;
+		}
+
+		@Override
+		public String toString() {
+			return String.format("%-56s %14.3f ops/s %16.0f B/op", name,
+					operationsPerSecond, allocatedBytesPerOperation);
+		}
+	}
+
+	private static final long DEFAULT_ITERATION_MILLIS = 1000;
+
+	private static final int DEFAULT_MEASUREMENT_ITERATION_COUNT = 5;
+
+	private static final int DEFAULT_WARMUP_ITERATION_COUNT = 3;
+
+	/**
+	 * Returns the bean which measures the allocated bytes of a thread, or
+	 * <code>null</code> if the JVM does not support it.
+	 */
+	private static com.sun.management.ThreadMXBean getAllocationBean() {
+		try {
+			final java.lang.management.ThreadMXBean threadBean = ManagementFactory
+					.getThreadMXBean();
+			if (!(threadBean instanceof com.sun.management.ThreadMXBean)) {
+				return null;
+			}
+
+			final com.sun.management.ThreadMXBean allocationBean = (com.sun.management.ThreadMXBean) threadBean;
+			if (!allocationBean.isThreadAllocatedMemorySupported()) {
+				return null;
+			}
+			allocationBean.setThreadAllocatedMemoryEnabled(true);
+
+			return allocationBean;
+		} catch (final LinkageError e) {
+			return null;
+		} catch (final UnsupportedOperationException e) {
+			return null;
+		}
+	}
+
+	private final com.sun.management.ThreadMXBean allocationBean = BenchmarkRunner
+			.getAllocationBean();
+
+	private final long iterationNanos;
+
+	private final int measurementIterationCount;
+
+	/**
+	 * the consumed results of the operations, which is volatile so the
+	 * results can not be removed as dead code
+	 */
+	private volatile int resultSink;
+
+	private final int warmupIterationCount;
+
+	/**
+	 * Construct a <tt>BenchmarkRunner</tt> with 3 warmup and 5 measurement
+	 * iterations of a second.
+	 */
+	public BenchmarkRunner() {
+		this(BenchmarkRunner.DEFAULT_WARMUP_ITERATION_COUNT,
+				BenchmarkRunner.DEFAULT_MEASUREMENT_ITERATION_COUNT,
+				BenchmarkRunner.DEFAULT_ITERATION_MILLIS);
+	}
+
+	/**
+	 * Construct a <tt>BenchmarkRunner</tt> with the given count and length of
+	 * the iterations.
+	 * 
+	 * @param warmupIterationCount
+	 *            the count of iterations which are not measured
+	 * @param measurementIterationCount
+	 *            the count of measured iterations
+	 * @param iterationMillis
+	 *            the minimum time of an iteration in milliseconds, every
+	 *            iteration runs at least one operation
+	 */
+	public BenchmarkRunner(final int warmupIterationCount,
+			final int measurementIterationCount, final long iterationMillis) {
+		if (warmupIterationCount < 0 || measurementIterationCount < 1) {
+			throw new IllegalArgumentException(
+					"At least one iteration has to be measured.");
+		}
+
+		this.warmupIterationCount = warmupIterationCount;
+		this.measurementIterationCount = measurementIterationCount;
+		iterationNanos = iterationMillis * 1000000L;
+	}
+
+	private long getAllocatedBytes() {
+		if (allocationBean == null) {
+			return 0;
+		}
+		return allocationBean.getThreadAllocatedBytes(Thread.currentThread()
+				.getId());
+	}
+
+	/**
+	 * Returns if the allocation rate is measured.
+	 * 
+	 * @return <code>true</code> if the JVM supports measuring the allocated
+	 *         bytes of a thread
+	 */
+	public boolean isAllocationMeasured() {
+		return allocationBean != null;
+	}
+
+	/**
+	 * Measures the given benchmark.
+	 * 
+	 * @param benchmark
+	 *            the benchmark to measure
+	 * @return the throughput and allocation rate of the benchmark
+	 */
+	public BenchmarkResult run(final Benchmark benchmark) {
+		for (int iteration = 0; iteration < warmupIterationCount; iteration++) {
+			runIteration(benchmark);
+		}
+
+		long operationCount = 0;
+		long nanos = 0;
+		final long allocatedBytesBefore = getAllocatedBytes();
+
+		for (int iteration = 0; iteration < measurementIterationCount; iteration++) {
+			final long startTime = System.nanoTime();
+			operationCount += runIteration(benchmark);
+			nanos += System.nanoTime() - startTime;
+		}
+
+		final long allocatedBytes = getAllocatedBytes() - allocatedBytesBefore;
+
+		return new BenchmarkResult(benchmark.getName(), operationCount,
+				operationCount * 1e9 / nanos,
+				allocationBean != null ? (double) allocatedBytes
+						/ operationCount : Double.NaN);
+	}
+
+	/**
+	 * Measures the given benchmarks one after the other and prints every
+	 * result as soon as it is measured.
+	 * 
+	 * @param benchmarks
+	 *            the benchmarks to measure
+	 * @param out
+	 *            the stream the results are printed to
+	 * @return the throughput and allocation rate of the benchmarks
+	 */
+	public List<BenchmarkResult> run(final List<Benchmark> benchmarks,
+			final PrintStream out) {
+		final List<BenchmarkResult> results = new ArrayList<>();
+
+		for (final Benchmark benchmark : benchmarks) {
+			final BenchmarkResult result = run(benchmark);
+			out.println(result);
+			results.add(result);
+		}
+
+		return results;
+	}
+
+	/**
+	 * Runs operations until the time of an iteration is over and returns
+	 * their count.
+	 */
+	private long runIteration(final Benchmark benchmark) {
+		final long startTime = System.nanoTime();
+		long operationCount = 0;
+		int sink = 0;
+
+		do {
+			sink ^= System.identityHashCode(benchmark.run());
+			operationCount++;
+		} while (System.nanoTime() - startTime < iterationNanos);
+
+		resultSink ^= sink;
+
+		return operationCount;
+	}
+}
@@ -0,0 +1,243 @@
+package craj.benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+
+import craj.ByteFlatImage;
+import craj.CircleCrossCalculator;
+import craj.CircleFinding;
+import craj.ContrastEnhancer;
+import craj.ContrastEnhancerBank;
+import craj.EdgeDetector;
+import craj.EdgeDetector.EdgeDetectorParameter;
+import craj.FlatImage;
+import craj.Histogram;
+import craj.ImageDecoder;
+import craj.IntFlatImage;
+import craj.ReferenceCircle;
+import craj.ReferenceCircle.ReferenceCircleParameters;
+import craj.ReferenceCircleCatalog;
+import craj.RowPrefixSums;
+import craj.SobelMatrix;
+import craj.batch.BatchConfiguration;
+import craj.mapDigesterLocator.MapDigesterCircleFinder;
+import craj.mapDigesterLocator.MapDigesterCircleFinder.MapDigesterCircleFinderParameter;
+
+/**
+ * Measures the throughput and allocation rate of the kernels of the circle
+ * detection on the bundled <tt>SelectedGoogleMaps</tt> tiles, so regressions
+ * and optimizations can be compared:
+ * <p>
+ * <code>java -cp bin:jars/* craj.benchmark.DetectionKernelBenchmarks [tileDirectory [nameFilter]]</code>
+ * <p>
+ * The tile directory is searched recursively for JPEG and PNG images and
+ * defaults to <tt>SelectedGoogleMaps</tt>. Only the benchmarks whose names
+ * contain the name filter are run. The kernels use the parameters of the
+ * <tt>MapDigesterLocatorPlugin</tt> and run in the calling thread, so the
+ * allocation rate covers all of their allocations. The kernels which only
+ * take one image calculate the first tile, the whole circle finder
+ * calculates one tile after the other.
+ */
+public class DetectionKernelBenchmarks {
+
+	/**
+	 * the diameter of the reference circle whose inner pixels are averaged
+	 */
+	private static final int AVERAGING_DIAMETER = 49;
+
+	private static final String DEFAULT_TILE_DIRECTORY = "SelectedGoogleMaps";
+
+	private static final int[] SOBEL_MATRIX_SIZES = { 3, 5, 7, 9 };
+
+	private static void addTiles(final File directory,
+			final List<FlatImage> tiles) throws IOException {
+		final File[] files = directory.listFiles();
+		if (files == null) {
+			throw new IOException(directory + " is no directory.");
+		}
+		Arrays.sort(files);
+
+		for (final File file : files) {
+			final String name = file.getName().toLowerCase();
+			if (file.isDirectory()) {
+				DetectionKernelBenchmarks.addTiles(file, tiles);
+			} else if (name.endsWith(".jpg") || name.endsWith(".png")) {
+				tiles.add(ImageDecoder.decode(file));
+			}
+		}
+	}
+
+	/**
+	 * Creates the benchmarks of the circle detection kernels for the given
+	 * tiles.
+	 * 
+	 * @param tiles
+	 *            the RGB tiles the kernels calculate, at least one
+	 * @return the benchmarks
+	 */
+	public static List<Benchmark> createBenchmarks(final List<FlatImage> tiles) {
+		final ReferenceCircleCatalog referenceCircleCatalog = new ReferenceCircleCatalog();
+		final MapDigesterCircleFinderParameter params = new BatchConfiguration(
+				new Properties())
+				.createCircleFinderParameter(referenceCircleCatalog);
+
+		final ContrastEnhancer contrastEnhancer = params.contrastEnhancerList
+				.get(0);
+		final IntFlatImage rgbTile = IntFlatImage.copyOf(tiles.get(0));
+		final ByteFlatImage greyTile = new ContrastEnhancerBank(
+				Arrays.asList(contrastEnhancer)).enhanceContrastToGrey(rgbTile)
+				.get(0);
+
+		final List<Benchmark> benchmarks = new ArrayList<>();
+
+		for (final int sobelMatrixSize : DetectionKernelBenchmarks.SOBEL_MATRIX_SIZES) {
+			final SobelMatrix sobelMatrix = new SobelMatrix(sobelMatrixSize);
+			benchmarks.add(new Benchmark(
+					"SobelMatrix.getSobelValueForPixel size=" + sobelMatrixSize) {
+				@Override
+				public Object run() {
+					final int middle = sobelMatrix.getMiddle();
+					int sobelValueSum = 0;
+					for (int y = middle; y < greyTile.height - middle; y++) {
+						for (int x = middle; x < greyTile.width - middle; x++) {
+							sobelValueSum += sobelMatrix.getSobelValueForPixel(
+									greyTile, x, y);
+						}
+					}
+					return sobelValueSum;
+				}
+			});
+		}
+
+		for (final int sobelMatrixSize : DetectionKernelBenchmarks.SOBEL_MATRIX_SIZES) {
+			final EdgeDetector edgeDetector = new EdgeDetector(
+					new EdgeDetectorParameter(sobelMatrixSize, 0, false));
+			benchmarks.add(new Benchmark("EdgeDetector.getEdgesData size="
+					+ sobelMatrixSize) {
+				@Override
+				public Object run() {
+					return edgeDetector.getEdgesData(greyTile);
+				}
+			});
+		}
+
+		final IntFlatImage crossValueEdgesData = params.edgeDetectorForCrossValueCalculation
+				.getEdgesData(greyTile);
+		for (final ReferenceCircle referenceCircle : params.referenceCircles) {
+			benchmarks.add(new Benchmark("CircleCrossCalculator diameter="
+					+ referenceCircle.diameter) {
+				@Override
+				public Object run() {
+					return new CircleCrossCalculator(referenceCircle,
+							crossValueEdgesData,
+							referenceCircle.getPerfectCircleCoordinates());
+				}
+			});
+		}
+
+		final IntFlatImage enhancedTile = new IntFlatImage(rgbTile.width,
+				rgbTile.height);
+		benchmarks.add(new Benchmark("ContrastEnhancer.enhanceContrast") {
+			@Override
+			public Object run() {
+				// the enhancer works in place, so every operation starts with
+				// a fresh copy of the tile
+				rgbTile.copyTo(enhancedTile);
+				contrastEnhancer.enhanceContrast(enhancedTile);
+				return enhancedTile;
+			}
+		});
+
+		benchmarks.add(new Benchmark("Histogram") {
+			@Override
+			public Object run() {
+				return new Histogram(rgbTile);
+			}
+		});
+
+		final RowPrefixSums blackValueEdgesRowPrefixSums = new RowPrefixSums(
+				params.edgeDetectorForBlackValueCalculation
+						.getEdgesData(greyTile));
+		final ReferenceCircle averagingReferenceCircle = referenceCircleCatalog
+				.getReferenceCircle(new ReferenceCircleParameters(
+						DetectionKernelBenchmarks.AVERAGING_DIAMETER, 0.6f, 0.7f,
+						0.8f));
+		benchmarks.add(new Benchmark("CircleFinding averaging diameter="
+				+ DetectionKernelBenchmarks.AVERAGING_DIAMETER) {
+			@Override
+			public Object run() {
+				float blackValueSum = 0;
+				for (int y = 0; y < blackValueEdgesRowPrefixSums.height; y++) {
+					for (int x = 0; x < blackValueEdgesRowPrefixSums.width; x++) {
+						blackValueSum += new CircleFinding(x, y,
+								averagingReferenceCircle,
+								blackValueEdgesRowPrefixSums, 0, 0).averagePixelBlackValue;
+					}
+				}
+				return blackValueSum;
+			}
+		});
+
+		final MapDigesterCircleFinder mapDigesterCircleFinder = new MapDigesterCircleFinder(
+				params);
+		benchmarks.add(new Benchmark(
+				"MapDigesterCircleFinder.getCircleCoordinates") {
+
+			private int nextTile;
+
+			@Override
+			public Object run() {
+				final FlatImage tile = tiles.get(nextTile);
+				nextTile = (nextTile + 1) % tiles.size();
+				return mapDigesterCircleFinder.getCircleCoordinates(tile);
+			}
+		});
+
+		return benchmarks;
+	}
+
+	/**
+	 * Runs the benchmarks and prints their results.
+	 * 
+	 * @param args
+	 *            the optional tile directory and name filter
+	 * @throws IOException
+	 *             if a tile can not be read
+	 */
+	public static void main(final String[] args) throws IOException {
+		System.setProperty("java.awt.headless", "true");
+
+		final File tileDirectory = new File(args.length > 0 ? args[0]
+				: DetectionKernelBenchmarks.DEFAULT_TILE_DIRECTORY);
+		final String nameFilter = args.length > 1 ? args[1] : "";
+
+		final List<FlatImage> tiles = new ArrayList<>();
+		DetectionKernelBenchmarks.addTiles(tileDirectory, tiles);
+		if (tiles.isEmpty()) {
+			throw new IOException("There are no tiles in " + tileDirectory
+					+ ".");
+		}
+
+		final List<Benchmark> benchmarks = new ArrayList<>();
+		for (final Benchmark benchmark : DetectionKernelBenchmarks
+				.createBenchmarks(tiles)) {
+			if (benchmark.getName().contains(nameFilter)) {
+				benchmarks.add(benchmark);
+			}
+		}
+
+		final BenchmarkRunner benchmarkRunner = new BenchmarkRunner();
+		if (!benchmarkRunner.isAllocationMeasured()) {
+			System.out
+					.println("The JVM does not measure allocations, the allocation rate is NaN.");
+		}
+		System.out.println(tiles.size() + " tiles, " + benchmarks.size()
+				+ " benchmarks");
+
+		benchmarkRunner.run(benchmarks, System.out);
+	}
+}
@@ -7,24 +7,31 @@ import ij.process.ImageProcessor;
 import java.awt.Color;
 import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
 
 import craj.CircleFinding;
+import craj.CircleFindingSuppressor;
 import craj.ContrastEnhancer;
 import craj.EdgeDetector;
 import craj.EdgeDetector.EdgeDetectorParameter;
 import craj.ReferenceCircle;
 import craj.ReferenceCircle.ReferenceCircleParameters;
+import craj.ReferenceCircleCatalog;
 import craj.mapDigesterLocator.MapDigesterCircleFinder;
 import craj.mapDigesterLocator.MapDigesterCircleFinder.MapDigesterCircleFinderParameter;
 
 public class MapDigesterLocatorPlugin implements PlugInFilter {
 
+	/**
+	 * the reference circles of every run share the data of their diameters
+	 */
+	private static final ReferenceCircleCatalog REFERENCE_CIRCLE_CATALOG = new ReferenceCircleCatalog();
+
 	@Override
 	public void run(final ImageProcessor ip) {
 
 		final float valueDifferenceTolerance = 0.60f;
 		final float countDifferenceTolerance = 0.70f;
-		final boolean verboseReferenceCircle = false;
 		final float minBlackValue = 0.80f;
 
 		final List<ReferenceCircle> referenceCircles = Arrays.asList(
@@ -33,98 +40,121 @@ public class MapDigesterLocatorPlugin implements PlugInFilter {
 
 
 
-				new ReferenceCircle(new ReferenceCircleParameters(27,
+				MapDigesterLocatorPlugin.REFERENCE_CIRCLE_CATALOG
+						.getReferenceCircle(new ReferenceCircleParameters(27,
 						valueDifferenceTolerance, countDifferenceTolerance,
-								minBlackValue), verboseReferenceCircle),
+								minBlackValue)),
 
-				new ReferenceCircle(new ReferenceCircleParameters(29,
+				MapDigesterLocatorPlugin.REFERENCE_CIRCLE_CATALOG
+						.getReferenceCircle(new ReferenceCircleParameters(29,
 						valueDifferenceTolerance, countDifferenceTolerance,
-								minBlackValue), verboseReferenceCircle),
+								minBlackValue)),
 
-				new ReferenceCircle(new ReferenceCircleParameters(31,
+				MapDigesterLocatorPlugin.REFERENCE_CIRCLE_CATALOG
+						.getReferenceCircle(new ReferenceCircleParameters(31,
 						valueDifferenceTolerance, countDifferenceTolerance,
-								minBlackValue), verboseReferenceCircle),
+								minBlackValue)),
 
-				new ReferenceCircle(new ReferenceCircleParameters(33,
+				MapDigesterLocatorPlugin.REFERENCE_CIRCLE_CATALOG
+						.getReferenceCircle(new ReferenceCircleParameters(33,
 						valueDifferenceTolerance, countDifferenceTolerance,
-								minBlackValue), verboseReferenceCircle),
+								minBlackValue)),
 
-				new ReferenceCircle(new ReferenceCircleParameters(35,
+				MapDigesterLocatorPlugin.REFERENCE_CIRCLE_CATALOG
+						.getReferenceCircle(new ReferenceCircleParameters(35,
 				valueDifferenceTolerance, countDifferenceTolerance,
-						minBlackValue), verboseReferenceCircle),
+						minBlackValue)),
 
-				new ReferenceCircle(new ReferenceCircleParameters(37,
+				MapDigesterLocatorPlugin.REFERENCE_CIRCLE_CATALOG
+						.getReferenceCircle(new ReferenceCircleParameters(37,
 
 				valueDifferenceTolerance, countDifferenceTolerance,
-						minBlackValue), verboseReferenceCircle),
-				new ReferenceCircle(new ReferenceCircleParameters(39,
+						minBlackValue)),
+				MapDigesterLocatorPlugin.REFERENCE_CIRCLE_CATALOG
+						.getReferenceCircle(new ReferenceCircleParameters(39,
 
 				valueDifferenceTolerance, countDifferenceTolerance,
-						minBlackValue), verboseReferenceCircle),
-				new ReferenceCircle(new ReferenceCircleParameters(41,
+						minBlackValue)),
+				MapDigesterLocatorPlugin.REFERENCE_CIRCLE_CATALOG
+						.getReferenceCircle(new ReferenceCircleParameters(41,
 
 				valueDifferenceTolerance, countDifferenceTolerance,
-						minBlackValue), verboseReferenceCircle),
-				new ReferenceCircle(new ReferenceCircleParameters(43,
+						minBlackValue)),
+				MapDigesterLocatorPlugin.REFERENCE_CIRCLE_CATALOG
+						.getReferenceCircle(new ReferenceCircleParameters(43,
 
 				valueDifferenceTolerance, countDifferenceTolerance,
-						minBlackValue), verboseReferenceCircle),
-				new ReferenceCircle(new ReferenceCircleParameters(45,
+						minBlackValue)),
+				MapDigesterLocatorPlugin.REFERENCE_CIRCLE_CATALOG
+						.getReferenceCircle(new ReferenceCircleParameters(45,
 
 				valueDifferenceTolerance, countDifferenceTolerance,
-						minBlackValue), verboseReferenceCircle),
+						minBlackValue)),
 
-				new ReferenceCircle(new ReferenceCircleParameters(47,
+				MapDigesterLocatorPlugin.REFERENCE_CIRCLE_CATALOG
+						.getReferenceCircle(new ReferenceCircleParameters(47,
 						valueDifferenceTolerance, countDifferenceTolerance,
-						minBlackValue), verboseReferenceCircle),
+						minBlackValue)),
 
-						new ReferenceCircle(new ReferenceCircleParameters(49,
+						MapDigesterLocatorPlugin.REFERENCE_CIRCLE_CATALOG
+						.getReferenceCircle(new ReferenceCircleParameters(49,
 								valueDifferenceTolerance, countDifferenceTolerance,
-								minBlackValue), verboseReferenceCircle),
+								minBlackValue)),
 
-								new ReferenceCircle(new ReferenceCircleParameters(51,
+								MapDigesterLocatorPlugin.REFERENCE_CIRCLE_CATALOG
+						.getReferenceCircle(new ReferenceCircleParameters(51,
 										valueDifferenceTolerance, countDifferenceTolerance,
-										minBlackValue), verboseReferenceCircle),
+										minBlackValue)),
 
-										new ReferenceCircle(new ReferenceCircleParameters(53,
+										MapDigesterLocatorPlugin.REFERENCE_CIRCLE_CATALOG
+						.getReferenceCircle(new ReferenceCircleParameters(53,
 												valueDifferenceTolerance, countDifferenceTolerance,
-												minBlackValue), verboseReferenceCircle),
+												minBlackValue)),
 
-												new ReferenceCircle(new ReferenceCircleParameters(55,
+												MapDigesterLocatorPlugin.REFERENCE_CIRCLE_CATALOG
+						.getReferenceCircle(new ReferenceCircleParameters(55,
 														valueDifferenceTolerance, countDifferenceTolerance,
-														minBlackValue), verboseReferenceCircle),
+														minBlackValue)),
 
-														new ReferenceCircle(new ReferenceCircleParameters(57,
+														MapDigesterLocatorPlugin.REFERENCE_CIRCLE_CATALOG
+						.getReferenceCircle(new ReferenceCircleParameters(57,
 																valueDifferenceTolerance, countDifferenceTolerance,
-																minBlackValue), verboseReferenceCircle),
+																minBlackValue)),
 
-																new ReferenceCircle(new ReferenceCircleParameters(59,
+																MapDigesterLocatorPlugin.REFERENCE_CIRCLE_CATALOG
+						.getReferenceCircle(new ReferenceCircleParameters(59,
 																		valueDifferenceTolerance, countDifferenceTolerance,
-																		minBlackValue), verboseReferenceCircle),
+																		minBlackValue)),
 
-																		new ReferenceCircle(new ReferenceCircleParameters(61,
+																		MapDigesterLocatorPlugin.REFERENCE_CIRCLE_CATALOG
+						.getReferenceCircle(new ReferenceCircleParameters(61,
 																				valueDifferenceTolerance, countDifferenceTolerance,
-																				minBlackValue), verboseReferenceCircle),
+																				minBlackValue)),
 
-																		new ReferenceCircle(new ReferenceCircleParameters(63,
+																		MapDigesterLocatorPlugin.REFERENCE_CIRCLE_CATALOG
+						.getReferenceCircle(new ReferenceCircleParameters(63,
 																				valueDifferenceTolerance, countDifferenceTolerance,
-																				minBlackValue), verboseReferenceCircle),
+																				minBlackValue)),
 
-																				new ReferenceCircle(new ReferenceCircleParameters(65,
+																				MapDigesterLocatorPlugin.REFERENCE_CIRCLE_CATALOG
+						.getReferenceCircle(new ReferenceCircleParameters(65,
 																						valueDifferenceTolerance, countDifferenceTolerance,
-																						minBlackValue), verboseReferenceCircle),
+																						minBlackValue)),
 
-																						new ReferenceCircle(new ReferenceCircleParameters(67,
+																						MapDigesterLocatorPlugin.REFERENCE_CIRCLE_CATALOG
+						.getReferenceCircle(new ReferenceCircleParameters(67,
 																								valueDifferenceTolerance, countDifferenceTolerance,
-																								minBlackValue), verboseReferenceCircle),
+																								minBlackValue)),
 
-																								new ReferenceCircle(new ReferenceCircleParameters(69,
+																								MapDigesterLocatorPlugin.REFERENCE_CIRCLE_CATALOG
+						.getReferenceCircle(new ReferenceCircleParameters(69,
 																										valueDifferenceTolerance, countDifferenceTolerance,
-																										minBlackValue), verboseReferenceCircle),
+																										minBlackValue)),
 
-																										new ReferenceCircle(new ReferenceCircleParameters(71,
+																										MapDigesterLocatorPlugin.REFERENCE_CIRCLE_CATALOG
+						.getReferenceCircle(new ReferenceCircleParameters(71,
 																												valueDifferenceTolerance, countDifferenceTolerance,
-																												minBlackValue), verboseReferenceCircle)
+																												minBlackValue))
 
 
 
@@ -159,12 +189,23 @@ public class MapDigesterLocatorPlugin implements PlugInFilter {
 		mapDigesterCircleFinderParameters = new MapDigesterCircleFinderParameter(
 				edgeDetectorForBlackValueCalculation,
 				edgeDetectorForCrossValueCalculation, contrastEnhancerList,
-				true, referenceCircles);
+				true, referenceCircles, 0, new CircleFindingSuppressor(1f));
+
+		// The plugin searches a single image, so all cores work on it
+		final int cores = Runtime.getRuntime().availableProcessors();
+		final ForkJoinPool forkJoinPool = cores > 1 ? new ForkJoinPool(cores)
+				: null;
 
 		final MapDigesterCircleFinder mapDigesterCircleFinder = new MapDigesterCircleFinder(
-				mapDigesterCircleFinderParameters);
-		final List<CircleFinding> circleFindings = mapDigesterCircleFinder
-				.getCircleCoordinates(ip);
+				mapDigesterCircleFinderParameters, forkJoinPool);
+		final List<CircleFinding> circleFindings;
+		try {
+			circleFindings = mapDigesterCircleFinder.getCircleCoordinates(ip);
+		} finally {
+			if (forkJoinPool != null) {
+				forkJoinPool.shutdown();
+			}
+		}
 
 		ip.setColor(Color.GREEN);
 
@@ -21,8 +21,19 @@ import craj.CircleFinding;
 public abstract class CircleFinderThread extends
 		GenericObservable<List<CircleFinding>> implements Runnable {
 
+	/**
+	 * the edge detection tolerance applied to the image, or -1 if it is not
+	 * known
+	 */
+	protected int appliedEdgeDetectionTolerance = -1;
 	protected List<CircleFinding> circleCoordinates = new ArrayList<>();
+	/**
+	 * whether the edge detection tolerance was raised for the image to keep it
+	 * within an edge budget
+	 */
+	protected boolean edgeBudgetCapped;
 	protected final File imageFile;
+	private volatile boolean readingFailed;
 
 	public CircleFinderThread(final File imageFile) {
 		super();
@@ -32,6 +43,17 @@ public abstract class CircleFinderThread extends
 	protected abstract List<CircleFinding> findCircleCoordinates()
 			throws IOException;
 
+	/**
+	 * Returns the edge detection tolerance which was applied to the image,
+	 * which is higher than the configured one if the image hit an edge
+	 * budget.
+	 * 
+	 * @return the applied edge detection tolerance, or -1 if it is not known
+	 */
+	public int getAppliedEdgeDetectionTolerance() {
+		return appliedEdgeDetectionTolerance;
+	}
+
 	/**
 	 * Returns the circle findings found in that image.
 	 * 
@@ -41,12 +63,33 @@ public abstract class CircleFinderThread extends
 		return circleCoordinates;
 	}
 
+	/**
+	 * Returns whether the image could not be read, so the circle findings are
+	 * empty without the image being searched.
+	 * 
+	 * @return <code>true</code> if the image could not be read
+	 */
+	public boolean hasFailed() {
+		return readingFailed;
+	}
+
+	/**
+	 * Returns whether the edge detection tolerance was raised for the image,
+	 * because it had more edge pixels than an edge budget allows.
+	 * 
+	 * @return <code>true</code> if the image hit an edge budget
+	 */
+	public boolean isEdgeBudgetCapped() {
+		return edgeBudgetCapped;
+	}
+
 	@Override
 	public void run() {
 
 		try {
 			circleCoordinates = findCircleCoordinates();
 		} catch (final IOException e) {
+			readingFailed = true;
 			System.err.println("Error reding Imagefile.");
 		}
 
@@ -0,0 +1,274 @@
+package craj.mapDigesterLocator;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import craj.CircleFinding;
+
+/**
+ * Holds a block of circle finding rows column by column, as they are stored
+ * in the file of a {@link ColumnarCircleFindingSink}.
+ * <p>
+ * Every column is a primitive array, so a block of rows needs no object per
+ * row and is written and read as a few large arrays of the same type, which
+ * compress well and can be scanned one column at a time. The file names are
+ * written once per block, the rows only refer to them by index.
+ */
+public class CircleFindingColumns {
+
+	/**
+	 * Reads the next block from the given stream.
+	 * 
+	 * @param input
+	 *            the stream to read the block from
+	 * @return the read block, or <code>null</code> at the end of the stream
+	 * @throws IOException
+	 *             if the block can not be read or is incomplete
+	 */
+	public static CircleFindingColumns read(final DataInputStream input)
+			throws IOException {
+		final int rowCount;
+		try {
+			rowCount = input.readInt();
+		} catch (final EOFException e) {
+			return null;
+		}
+
+		final CircleFindingColumns columns = new CircleFindingColumns(rowCount);
+		columns.rowCount = rowCount;
+
+		final String[] distinctFiles = new String[input.readInt()];
+		for (int file = 0; file < distinctFiles.length; file++) {
+			distinctFiles[file] = input.readUTF();
+		}
+		for (int row = 0; row < rowCount; row++) {
+			columns.files[row] = distinctFiles[input.readInt()];
+		}
+		CircleFindingColumns.readFloats(input, columns.latitudes, rowCount);
+		CircleFindingColumns.readFloats(input, columns.longitudes, rowCount);
+		CircleFindingColumns.readInts(input, columns.xs, rowCount);
+		CircleFindingColumns.readInts(input, columns.ys, rowCount);
+		CircleFindingColumns.readInts(input, columns.diameters, rowCount);
+		CircleFindingColumns.readInts(input, columns.crossValues, rowCount);
+		CircleFindingColumns.readInts(input, columns.crossCounts, rowCount);
+		CircleFindingColumns.readFloats(input, columns.blackValues, rowCount);
+		for (int row = 0; row < rowCount; row++) {
+			columns.edgeBudgetCapped[row] = input.readBoolean();
+		}
+		CircleFindingColumns.readInts(input, columns.edgeDetectionTolerances,
+				rowCount);
+
+		return columns;
+	}
+
+	private static void readFloats(final DataInputStream input,
+			final float[] column, final int rowCount) throws IOException {
+		for (int row = 0; row < rowCount; row++) {
+			column[row] = input.readFloat();
+		}
+	}
+
+	private static void readInts(final DataInputStream input,
+			final int[] column, final int rowCount) throws IOException {
+		for (int row = 0; row < rowCount; row++) {
+			column[row] = input.readInt();
+		}
+	}
+
+	private static void writeFloats(final DataOutputStream output,
+			final float[] column, final int rowCount) throws IOException {
+		for (int row = 0; row < rowCount; row++) {
+			output.writeFloat(column[row]);
+		}
+	}
+
+	private static void writeInts(final DataOutputStream output,
+			final int[] column, final int rowCount) throws IOException {
+		for (int row = 0; row < rowCount; row++) {
+			output.writeInt(column[row]);
+		}
+	}
+
+	/**
+	 * the black values of the rows
+	 */
+	public final float[] blackValues;
+
+	/**
+	 * the cross counts of the rows
+	 */
+	public final int[] crossCounts;
+
+	/**
+	 * the cross values of the rows
+	 */
+	public final int[] crossValues;
+
+	/**
+	 * the diameters of the rows
+	 */
+	public final int[] diameters;
+
+	/**
+	 * whether the images of the rows hit an edge budget
+	 */
+	public final boolean[] edgeBudgetCapped;
+
+	/**
+	 * the edge detection tolerances applied to the images of the rows, -1 if
+	 * not known
+	 */
+	public final int[] edgeDetectionTolerances;
+
+	/**
+	 * the names of the image-files of the rows, empty for tiles of a tile
+	 * store
+	 */
+	public final String[] files;
+
+	/**
+	 * the latitudes of the rows
+	 */
+	public final float[] latitudes;
+
+	/**
+	 * the longitudes of the rows
+	 */
+	public final float[] longitudes;
+
+	private int rowCount;
+
+	/**
+	 * the x coordinates of the rows
+	 */
+	public final int[] xs;
+
+	/**
+	 * the y coordinates of the rows
+	 */
+	public final int[] ys;
+
+	/**
+	 * Construct an empty <tt>CircleFindingColumns</tt> block.
+	 * 
+	 * @param capacity
+	 *            the count of rows the block can hold
+	 */
+	public CircleFindingColumns(final int capacity) {
+		files = new String[capacity];
+		latitudes = new float[capacity];
+		longitudes = new float[capacity];
+		xs = new int[capacity];
+		ys = new int[capacity];
+		diameters = new int[capacity];
+		crossValues = new int[capacity];
+		crossCounts = new int[capacity];
+		blackValues = new float[capacity];
+		edgeBudgetCapped = new boolean[capacity];
+		edgeDetectionTolerances = new int[capacity];
+	}
+
+	/**
+	 * Adds the row of the given circle finding.
+	 * 
+	 * @param file
+	 *            the name of the image-file the circle was found in, or an
+	 *            empty name
+	 * @param latitude
+	 *            the latitude of the image
+	 * @param longitude
+	 *            the longitude of the image
+	 * @param edgeBudgetCapped
+	 *            whether the image hit an edge budget
+	 * @param edgeDetectionTolerance
+	 *            the edge detection tolerance applied to the image, or -1 if
+	 *            it is not known
+	 * @param circleFinding
+	 *            the circle finding
+	 */
+	public void add(final String file, final float latitude,
+			final float longitude, final boolean edgeBudgetCapped,
+			final int edgeDetectionTolerance, final CircleFinding circleFinding) {
+		files[rowCount] = file;
+		latitudes[rowCount] = latitude;
+		longitudes[rowCount] = longitude;
+		xs[rowCount] = circleFinding.x;
+		ys[rowCount] = circleFinding.y;
+		diameters[rowCount] = circleFinding.referenceCircle.diameter;
+		crossValues[rowCount] = circleFinding.getPixelCrossValue();
+		crossCounts[rowCount] = circleFinding.getPixelCrossCount();
+		blackValues[rowCount] = circleFinding.averagePixelBlackValue;
+		this.edgeBudgetCapped[rowCount] = edgeBudgetCapped;
+		edgeDetectionTolerances[rowCount] = edgeDetectionTolerance;
+		rowCount++;
+	}
+
+	/**
+	 * Removes all rows.
+	 */
+	public void clear() {
+		rowCount = 0;
+	}
+
+	/**
+	 * Returns the count of rows in the block.
+	 * 
+	 * @return the count of rows in the block
+	 */
+	public int getRowCount() {
+		return rowCount;
+	}
+
+	/**
+	 * Returns whether the block can not hold any further row.
+	 * 
+	 * @return <code>true</code> if the block is full
+	 */
+	public boolean isFull() {
+		return rowCount == files.length;
+	}
+
+	/**
+	 * Writes the rows of the block column by column to the given stream.
+	 * 
+	 * @param output
+	 *            the stream to write the block to
+	 * @throws IOException
+	 *             if the block can not be written
+	 */
+	public void write(final DataOutputStream output) throws IOException {
+		output.writeInt(rowCount);
+
+		// the rows of an image are delivered together, so there are few
+		final Map<String, Integer> distinctFiles = new LinkedHashMap<>();
+		for (int row = 0; row < rowCount; row++) {
+			if (!distinctFiles.containsKey(files[row])) {
+				distinctFiles.put(files[row], distinctFiles.size());
+			}
+		}
+		output.writeInt(distinctFiles.size());
+		for (final String file : distinctFiles.keySet()) {
+			output.writeUTF(file);
+		}
+		for (int row = 0; row < rowCount; row++) {
+			output.writeInt(distinctFiles.get(files[row]));
+		}
+		CircleFindingColumns.writeFloats(output, latitudes, rowCount);
+		CircleFindingColumns.writeFloats(output, longitudes, rowCount);
+		CircleFindingColumns.writeInts(output, xs, rowCount);
+		CircleFindingColumns.writeInts(output, ys, rowCount);
+		CircleFindingColumns.writeInts(output, diameters, rowCount);
+		CircleFindingColumns.writeInts(output, crossValues, rowCount);
+		CircleFindingColumns.writeInts(output, crossCounts, rowCount);
+		CircleFindingColumns.writeFloats(output, blackValues, rowCount);
+		for (int row = 0; row < rowCount; row++) {
+			output.writeBoolean(edgeBudgetCapped[row]);
+		}
+		CircleFindingColumns.writeInts(output, edgeDetectionTolerances,
+				rowCount);
+	}
+}
@@ -0,0 +1,120 @@
+package craj.mapDigesterLocator;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+import craj.CircleFinding;
+
+/**
+ * Writes the circle findings delivered by a locator to a file, one row per
+ * circle finding, without holding them in memory.
+ * <p>
+ * Every row holds the name of the image-file the circle was found in, so the
+ * rows can be joined with the image directory, or an empty name for tiles of
+ * a {@link TileStore}. The latitude and longitude of a row are the coordinate
+ * of the image if it was fetched from Google Maps, which identifies the tile
+ * in the tile store and the progress journal, and <code>NaN</code> otherwise.
+ * Every row also holds whether its image hit an edge budget and the edge
+ * detection tolerance applied to it, so the rows of the capped images can be
+ * told apart. Images without circle findings write no row.
+ * <p>
+ * A locator delivers its results in its own dispatcher thread, so the workers
+ * which search the images only wait for the sink if its result queue is full,
+ * or drop the results then if the locator is configured to, see
+ * {@link MapDigesterLocator#getDroppedResultCount()}. The sink has to be
+ * closed after the locator is joined, so the buffered rows are written.
+ * 
+ * @param <CircleFindingsPairType>
+ *            the type of the results of the observed locator
+ */
+public abstract class CircleFindingSink<CircleFindingsPairType extends CircleFindingsPair>
+		implements GenericObserver<CircleFindingsPairType>, Closeable {
+
+	private IOException exception;
+
+	private long rowCount;
+
+	/**
+	 * Returns the count of written rows.
+	 * 
+	 * @return the count of written rows
+	 */
+	public synchronized long getRowCount() {
+		return rowCount;
+	}
+
+	/**
+	 * Throws the first exception which occurred while a row was written, so
+	 * the caller learns about rows which are missing in the file.
+	 * 
+	 * @throws IOException
+	 *             if a row could not be written
+	 */
+	protected synchronized void throwWriteException() throws IOException {
+		if (exception != null) {
+			throw exception;
+		}
+	}
+
+	@Override
+	public synchronized void update(
+			final GenericObservable<CircleFindingsPairType> oberservable,
+			final CircleFindingsPairType circleFindingsPair) {
+		// tiles in a tile store have no file of their own
+		final String file = circleFindingsPair.file != null ? circleFindingsPair.file
+				.getName() : "";
+
+		final float latitude, longitude;
+		if (circleFindingsPair instanceof GmapsCoordinateCircleFindingsPair) {
+			final GmapsCoordinateCircleFindingsPair gmapsCoordinateCircleFindingsPair = (GmapsCoordinateCircleFindingsPair) circleFindingsPair;
+			// lon = x, lat = y
+			latitude = gmapsCoordinateCircleFindingsPair.coordinate.y;
+			longitude = gmapsCoordinateCircleFindingsPair.coordinate.x;
+		} else {
+			latitude = Float.NaN;
+			longitude = Float.NaN;
+		}
+
+		if (exception != null) {
+			return;
+		}
+
+		try {
+			for (final CircleFinding circleFinding : circleFindingsPair.circleFindings) {
+				writeRow(file, latitude, longitude,
+						circleFindingsPair.edgeBudgetCapped,
+						circleFindingsPair.edgeDetectionTolerance,
+						circleFinding);
+				rowCount++;
+			}
+		} catch (final IOException e) {
+			exception = e;
+			System.err.println("Error writing the circle findings: " + e);
+		}
+	}
+
+	/**
+	 * Writes the row of the given circle finding.
+	 * 
+	 * @param file
+	 *            the name of the image-file the circle was found in, or an
+	 *            empty name
+	 * @param latitude
+	 *            the latitude of the image
+	 * @param longitude
+	 *            the longitude of the image
+	 * @param edgeBudgetCapped
+	 *            whether the image hit an edge budget
+	 * @param edgeDetectionTolerance
+	 *            the edge detection tolerance applied to the image, or -1 if
+	 *            it is not known
+	 * @param circleFinding
+	 *            the circle finding
+	 * @throws IOException
+	 *             if the row can not be written
+	 */
+	protected abstract void writeRow(String file, float latitude,
+			float longitude, boolean edgeBudgetCapped,
+			int edgeDetectionTolerance, CircleFinding circleFinding)
+			throws IOException;
+}
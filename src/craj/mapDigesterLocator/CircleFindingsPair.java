@@ -10,11 +10,21 @@ import craj.CircleFinding;
  * 
  * @author Alexander Johr u26865 m18927
  */
-abstract class CircleFindingsPair {
+public abstract class CircleFindingsPair {
 	/**
 	 * the file in which circles where found
 	 */
 	public final List<CircleFinding> circleFindings;
+	/**
+	 * whether the edge detection tolerance was raised for the image to keep it
+	 * within an edge budget
+	 */
+	public final boolean edgeBudgetCapped;
+	/**
+	 * the edge detection tolerance applied to the image, or -1 if it is not
+	 * known
+	 */
+	public final int edgeDetectionTolerance;
 	/**
 	 * the file in which circles where found
 	 */
@@ -30,7 +40,38 @@ abstract class CircleFindingsPair {
 	 */
 	public CircleFindingsPair(final File file,
 			final List<CircleFinding> circleFindings) {
+		this(file, circleFindings, false, -1);
+	}
+
+	/**
+	 * Construct an CircleFindingsPair with the given file and circle-findings
+	 * and the edge detection tolerance which was applied to the image.
+	 * 
+	 * @param file
+	 *            the file in which circles where found
+	 * @param circleFindings
+	 *            the circle findings in the file
+	 * @param edgeBudgetCapped
+	 *            whether the edge detection tolerance was raised for the
+	 *            image to keep it within an edge budget
+	 * @param edgeDetectionTolerance
+	 *            the edge detection tolerance applied to the image, or -1 if
+	 *            it is not known
+	 */
+	public CircleFindingsPair(final File file,
+			final List<CircleFinding> circleFindings,
+			final boolean edgeBudgetCapped, final int edgeDetectionTolerance) {
 		this.file = file;
 		this.circleFindings = circleFindings;
+		this.edgeBudgetCapped = edgeBudgetCapped;
+		this.edgeDetectionTolerance = edgeDetectionTolerance;
+	}
+
+	/**
+	 * Returns the path of the file in which circles where found.
+	 */
+	@Override
+	public String toString() {
+		return String.valueOf(file);
 	}
 }
\ No newline at end of file
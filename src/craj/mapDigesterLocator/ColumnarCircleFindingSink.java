@@ -0,0 +1,159 @@
+package craj.mapDigesterLocator;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import craj.CircleFinding;
+
+/**
+ * Writes the circle findings delivered by a locator to a compact binary file,
+ * whose rows are stored column by column in blocks of {@link #BLOCK_SIZE}
+ * rows.
+ * <p>
+ * The file starts with a magic number and the version of the format,
+ * followed by the blocks. Every block starts with its count of rows, followed
+ * by the column of the file names, which is stored as the distinct names of
+ * the block and the index of the name of every row, and the columns latitude,
+ * longitude (float), x, y, diameter, cross value, cross count (int), black
+ * value (float), edge budget capped (boolean) and edge detection tolerance
+ * (int). Only the block which is being filled is held in memory. The blocks can be read with
+ * {@link CircleFindingColumns#read(DataInputStream)} after the header is read
+ * by {@link #openForReading(File)}, or all at once with {@link #read(File)}.
+ * 
+ * @param <CircleFindingsPairType>
+ *            the type of the results of the observed locator
+ */
+public class ColumnarCircleFindingSink<CircleFindingsPairType extends CircleFindingsPair>
+		extends CircleFindingSink<CircleFindingsPairType> {
+
+	/**
+	 * the count of rows of a complete block
+	 */
+	public static final int BLOCK_SIZE = 4096;
+
+	/**
+	 * the first bytes of a columnar circle finding file
+	 */
+	private static final int MAGIC_NUMBER = 0x43464331;
+
+	/**
+	 * the version of the file format
+	 */
+	private static final int VERSION = 3;
+
+	/**
+	 * Opens the given file and reads its header, so its blocks can be read
+	 * one after another without holding the whole file in memory.
+	 * 
+	 * @param file
+	 *            the file written by a <tt>ColumnarCircleFindingSink</tt>
+	 * @return the stream positioned at the first block
+	 * @throws IOException
+	 *             if the file can not be read or has another format
+	 */
+	public static DataInputStream openForReading(final File file)
+			throws IOException {
+		final DataInputStream input = new DataInputStream(
+				new BufferedInputStream(new FileInputStream(file)));
+		try {
+			if (input.readInt() != ColumnarCircleFindingSink.MAGIC_NUMBER) {
+				throw new IOException(file + " is no circle finding file.");
+			}
+			if (input.readInt() != ColumnarCircleFindingSink.VERSION) {
+				throw new IOException(file
+						+ " has an unsupported circle finding file version.");
+			}
+		} catch (final IOException e) {
+			input.close();
+			throw e;
+		}
+		return input;
+	}
+
+	/**
+	 * Reads all blocks of the given file.
+	 * 
+	 * @param file
+	 *            the file written by a <tt>ColumnarCircleFindingSink</tt>
+	 * @return the blocks of the file
+	 * @throws IOException
+	 *             if the file can not be read or has another format
+	 */
+	public static List<CircleFindingColumns> read(final File file)
+			throws IOException {
+		final List<CircleFindingColumns> blocks = new ArrayList<>();
+
+		try (DataInputStream input = ColumnarCircleFindingSink
+				.openForReading(file)) {
+			CircleFindingColumns block;
+			while ((block = CircleFindingColumns.read(input)) != null) {
+				blocks.add(block);
+			}
+		}
+
+		return blocks;
+	}
+
+	private final CircleFindingColumns block = new CircleFindingColumns(
+			ColumnarCircleFindingSink.BLOCK_SIZE);
+
+	private final DataOutputStream output;
+
+	/**
+	 * Construct a <tt>ColumnarCircleFindingSink</tt> which writes to the
+	 * given file. An existing file is overwritten.
+	 * 
+	 * @param file
+	 *            the binary file
+	 * @throws IOException
+	 *             if the file can not be created
+	 */
+	public ColumnarCircleFindingSink(final File file) throws IOException {
+		output = new DataOutputStream(new BufferedOutputStream(
+				new FileOutputStream(file)));
+		output.writeInt(ColumnarCircleFindingSink.MAGIC_NUMBER);
+		output.writeInt(ColumnarCircleFindingSink.VERSION);
+	}
+
+	/**
+	 * Writes the last incomplete block and closes the file.
+	 * 
+	 * @throws IOException
+	 *             if the file can not be written or a row could not be
+	 *             written before
+	 */
+	@Override
+	public synchronized void close() throws IOException {
+		try {
+			if (block.getRowCount() > 0) {
+				block.write(output);
+				block.clear();
+			}
+		} finally {
+			output.close();
+		}
+		throwWriteException();
+	}
+
+	@Override
+	protected void writeRow(final String file, final float latitude,
+			final float longitude, final boolean edgeBudgetCapped,
+			final int edgeDetectionTolerance, final CircleFinding circleFinding)
+			throws IOException {
+		block.add(file, latitude, longitude, edgeBudgetCapped,
+				edgeDetectionTolerance, circleFinding);
+
+		if (block.isFull()) {
+			block.write(output);
+			block.clear();
+		}
+	}
+}
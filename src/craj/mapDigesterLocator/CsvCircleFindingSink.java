@@ -0,0 +1,100 @@
+package craj.mapDigesterLocator;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+
+import craj.CircleFinding;
+
+/**
+ * Writes the circle findings delivered by a locator to a UTF-8 CSV file with
+ * the columns <tt>file</tt>, <tt>latitude</tt>, <tt>longitude</tt>, <tt>x</tt>,
+ * <tt>y</tt>, <tt>diameter</tt>, <tt>crossValue</tt>, <tt>crossCount</tt>,
+ * <tt>blackValue</tt>, <tt>edgeBudgetCapped</tt> and
+ * <tt>edgeDetectionTolerance</tt>. The numbers are written independent of the locale, a
+ * file name with a comma or quote is quoted.
+ * 
+ * @param <CircleFindingsPairType>
+ *            the type of the results of the observed locator
+ */
+public class CsvCircleFindingSink<CircleFindingsPairType extends CircleFindingsPair>
+		extends CircleFindingSink<CircleFindingsPairType> {
+
+	/**
+	 * the size in characters of the buffer of the file
+	 */
+	private static final int BUFFER_SIZE = 64 * 1024;
+
+	/**
+	 * the first line of the file
+	 */
+	public static final String HEADER = "file,latitude,longitude,x,y,diameter,crossValue,crossCount,blackValue,edgeBudgetCapped,edgeDetectionTolerance";
+
+	private static void appendField(final StringBuilder row,
+			final String field) {
+		if (field.indexOf(',') < 0 && field.indexOf('"') < 0
+				&& field.indexOf('\n') < 0) {
+			row.append(field);
+		} else {
+			row.append('"').append(field.replace("\"", "\"\"")).append('"');
+		}
+	}
+
+	private final Writer writer;
+
+	/**
+	 * Construct a <tt>CsvCircleFindingSink</tt> which writes to the given
+	 * file. An existing file is overwritten.
+	 * 
+	 * @param file
+	 *            the CSV file
+	 * @throws IOException
+	 *             if the file can not be created
+	 */
+	public CsvCircleFindingSink(final File file) throws IOException {
+		writer = new BufferedWriter(new OutputStreamWriter(
+				new FileOutputStream(file), StandardCharsets.UTF_8),
+				CsvCircleFindingSink.BUFFER_SIZE);
+		writer.write(CsvCircleFindingSink.HEADER);
+		writer.write('\n');
+	}
+
+	/**
+	 * Writes the buffered rows and closes the file.
+	 * 
+	 * @throws IOException
+	 *             if the file can not be written or a row could not be
+	 *             written before
+	 */
+	@Override
+	public synchronized void close() throws IOException {
+		writer.close();
+		throwWriteException();
+	}
+
+	@Override
+	protected void writeRow(final String file, final float latitude,
+			final float longitude, final boolean edgeBudgetCapped,
+			final int edgeDetectionTolerance, final CircleFinding circleFinding)
+			throws IOException {
+		final StringBuilder row = new StringBuilder(64);
+		CsvCircleFindingSink.appendField(row, file);
+		row.append(',');
+		row.append(latitude).append(',');
+		row.append(longitude).append(',');
+		row.append(circleFinding.x).append(',');
+		row.append(circleFinding.y).append(',');
+		row.append(circleFinding.referenceCircle.diameter).append(',');
+		row.append(circleFinding.getPixelCrossValue()).append(',');
+		row.append(circleFinding.getPixelCrossCount()).append(',');
+		row.append(circleFinding.averagePixelBlackValue).append(',');
+		row.append(edgeBudgetCapped).append(',');
+		row.append(edgeDetectionTolerance).append('\n');
+
+		writer.append(row);
+	}
+}
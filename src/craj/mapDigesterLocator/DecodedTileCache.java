@@ -0,0 +1,131 @@
+package craj.mapDigesterLocator;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import craj.ByteFlatImage;
+import craj.FlatImage;
+import craj.ShortFlatImage;
+
+/**
+ * Holds the most recently used decoded tiles up to a maximum count of bytes,
+ * so tiles which are searched again do not have to be decoded again.
+ * <p>
+ * The least recently used tiles are removed first if the cache is full. The
+ * cached images are shared by everyone who gets them from the cache, so they
+ * must not be changed.
+ */
+public class DecodedTileCache {
+
+	/**
+	 * Returns the count of bytes of the pixels of the given image.
+	 * 
+	 * @param image
+	 *            the image whose size is needed
+	 * @return the count of bytes of the backing array of the image
+	 */
+	public static long getByteCount(final FlatImage image) {
+		final long pixelCount = (long) image.stride * image.height;
+
+		if (image instanceof ByteFlatImage) {
+			return pixelCount;
+		} else if (image instanceof ShortFlatImage) {
+			return 2 * pixelCount;
+		} else {
+			return 4 * pixelCount;
+		}
+	}
+
+	private long cachedByteCount;
+
+	private final LinkedHashMap<TileKey, FlatImage> images = new LinkedHashMap<>(
+			16, 0.75f, true);
+
+	private final long maxByteCount;
+
+	/**
+	 * Construct an empty <tt>DecodedTileCache</tt>.
+	 * 
+	 * @param maxByteCount
+	 *            the maximum count of bytes of all cached images
+	 */
+	public DecodedTileCache(final long maxByteCount) {
+		this.maxByteCount = maxByteCount;
+	}
+
+	/**
+	 * Returns the cached image of the given tile and marks it as the most
+	 * recently used one.
+	 * 
+	 * @param tileKey
+	 *            the key of the tile
+	 * @return the cached image, or <code>null</code> if the tile is not cached
+	 */
+	public synchronized FlatImage get(final TileKey tileKey) {
+		return images.get(tileKey);
+	}
+
+	/**
+	 * Returns the count of bytes of all cached images.
+	 * 
+	 * @return the count of bytes of all cached images
+	 */
+	public synchronized long getCachedByteCount() {
+		return cachedByteCount;
+	}
+
+	/**
+	 * Caches the image of the given tile and removes the least recently used
+	 * images until the cache is not too full anymore. An image which is larger
+	 * than the whole cache is not cached.
+	 * 
+	 * @param tileKey
+	 *            the key of the tile
+	 * @param image
+	 *            the decoded image of the tile
+	 */
+	public synchronized void put(final TileKey tileKey, final FlatImage image) {
+		final long byteCount = DecodedTileCache.getByteCount(image);
+		if (byteCount > maxByteCount) {
+			return;
+		}
+
+		final FlatImage replacedImage = images.put(tileKey, image);
+		if (replacedImage != null) {
+			cachedByteCount -= DecodedTileCache.getByteCount(replacedImage);
+		}
+		cachedByteCount += byteCount;
+
+		final Iterator<Map.Entry<TileKey, FlatImage>> leastRecentlyUsed = images
+				.entrySet().iterator();
+		while (cachedByteCount > maxByteCount) {
+			cachedByteCount -= DecodedTileCache.getByteCount(leastRecentlyUsed
+					.next().getValue());
+			leastRecentlyUsed.remove();
+		}
+	}
+
+	/**
+	 * Removes the cached image of the given tile, for example because the
+	 * tile was replaced.
+	 * 
+	 * @param tileKey
+	 *            the key of the tile
+	 */
+	public synchronized void remove(final TileKey tileKey) {
+		final FlatImage removedImage = images.remove(tileKey);
+		if (removedImage != null) {
+			cachedByteCount -= DecodedTileCache.getByteCount(removedImage);
+		}
+	}
+
+	/**
+	 * Returns the count of cached images.
+	 * 
+	 * @return the count of cached images
+	 */
+	public synchronized int size() {
+		return images.size();
+	}
+}
@@ -25,4 +25,26 @@ public class FileCircleFindingsPair extends CircleFindingsPair {
 			final List<CircleFinding> circleFindings) {
 		super(file, circleFindings);
 	}
+
+	/**
+	 * Construct an FileCircleFindingsPair with the given file and
+	 * circle-findings and the edge detection tolerance which was applied to
+	 * the image.
+	 * 
+	 * @param file
+	 *            the file in which circles where found
+	 * @param circleFindings
+	 *            the circle findings in the file
+	 * @param edgeBudgetCapped
+	 *            whether the edge detection tolerance was raised for the
+	 *            image to keep it within an edge budget
+	 * @param edgeDetectionTolerance
+	 *            the edge detection tolerance applied to the image, or -1 if
+	 *            it is not known
+	 */
+	public FileCircleFindingsPair(final File file,
+			final List<CircleFinding> circleFindings,
+			final boolean edgeBudgetCapped, final int edgeDetectionTolerance) {
+		super(file, circleFindings, edgeBudgetCapped, edgeDetectionTolerance);
+	}
 }
\ No newline at end of file
@@ -1,13 +1,22 @@
 package craj.mapDigesterLocator;
 
-import java.util.ArrayList;
+import java.util.concurrent.CopyOnWriteArrayList;
 
+/**
+ * An object which can be observed by <tt>GenericObserver</tt>s with the same
+ * <tt>ArgumentType</tt>.
+ * <p>
+ * The observers are held in a copy-on-write list, so the notification iterates
+ * over a snapshot of the observers without holding a lock, and observers can
+ * be added or deleted by other threads meanwhile. Several threads can notify
+ * the observers at the same time.
+ */
 public class GenericObservable<ArgumentType> {
-	private final ArrayList<GenericObserver<ArgumentType>> observerList;
+	private final CopyOnWriteArrayList<GenericObserver<ArgumentType>> observerList;
 
 	/** Construct an Observable with zero Observers. */
 	public GenericObservable() {
-		observerList = new ArrayList<>();
+		observerList = new CopyOnWriteArrayList<>();
 	}
 
 	/**
@@ -20,16 +29,11 @@ public class GenericObservable<ArgumentType> {
 	 * @throws NullPointerException
 	 *             if the parameter <CODE>observer</CODE> is null.
 	 */
-	public synchronized void addObserver(
-			final GenericObserver<ArgumentType> observer) {
+	public void addObserver(final GenericObserver<ArgumentType> observer) {
 		if (observer == null) {
 			throw new NullPointerException();
 		} else {
-			final boolean observerIsNotInList = !observerList
-					.contains(observer);
-			if (observerIsNotInList) {
-				observerList.add(observer);
-			}
+			observerList.addIfAbsent(observer);
 		}
 	}
 
@@ -39,7 +43,7 @@ public class GenericObservable<ArgumentType> {
 	 * 
 	 * @return the number of observers of this object.
 	 */
-	public synchronized int countObservers() {
+	public int countObservers() {
 		return observerList.size();
 	}
 
@@ -50,7 +54,7 @@ public class GenericObservable<ArgumentType> {
 	 * @param observer
 	 *            the observer to be deleted.
 	 */
-	public synchronized void deleteObserver(
+	public void deleteObserver(
 			final GenericObserver<ArgumentType> observer) {
 		observerList.remove(observer);
 	}
@@ -58,7 +62,7 @@ public class GenericObservable<ArgumentType> {
 	/**
 	 * Clears the observer list so that this object no longer has any observers.
 	 */
-	public synchronized void deleteObservers() {
+	public void deleteObservers() {
 		observerList.clear();
 	}
 
@@ -88,12 +92,12 @@ public class GenericObservable<ArgumentType> {
 	 * @see craj.mapDigesterLocator.GenericObserver#update(ObservableType,
 	 *      ArgumentType)
 	 */
-	public synchronized void notifyObservers(final ArgumentType argument) {
-		final int oberserverCount = observerList.size();
-		for (int i = oberserverCount - 1; i >= 0; i--) {
+	public void notifyObservers(final ArgumentType argument) {
+		final Object[] observers = observerList.toArray();
+		for (int i = observers.length - 1; i >= 0; i--) {
 
-			final GenericObserver<ArgumentType> currentObserver = observerList
-					.get(i);
+			@SuppressWarnings("unchecked")
+			final GenericObserver<ArgumentType> currentObserver = (GenericObserver<ArgumentType>) observers[i];
 			currentObserver.update(this, argument);
 		}
 	}
@@ -34,4 +34,43 @@ public class GmapsCoordinateCircleFindingsPair extends CircleFindingsPair {
 		super(file, circleFindings);
 		this.coordinate = coordinate;
 	}
+
+	/**
+	 * Construct an GmapsCoordinateCircleFindingsPair with the given file,
+	 * coordinate and circle-findings and the edge detection tolerance which
+	 * was applied to the image.
+	 * 
+	 * @param file
+	 *            the file in which circles where found
+	 * @param coordinate
+	 *            the coordinate of the file in which circles where found
+	 * @param circleFindings
+	 *            the circle findings in the file
+	 * @param edgeBudgetCapped
+	 *            whether the edge detection tolerance was raised for the
+	 *            image to keep it within an edge budget
+	 * @param edgeDetectionTolerance
+	 *            the edge detection tolerance applied to the image, or -1 if
+	 *            it is not known
+	 */
+	public GmapsCoordinateCircleFindingsPair(final File file,
+			final PVector coordinate, final List<CircleFinding> circleFindings,
+			final boolean edgeBudgetCapped, final int edgeDetectionTolerance) {
+		super(file, circleFindings, edgeBudgetCapped, edgeDetectionTolerance);
+		this.coordinate = coordinate;
+	}
+
+	/**
+	 * Returns the path of the file in which circles where found, or the
+	 * coordinate of the tile if it was not saved as file.
+	 */
+	@Override
+	public String toString() {
+		if (file != null) {
+			return super.toString();
+		}
+
+		return String.format("Lat: %s Lon: %s", Float.toString(coordinate.y),
+				Float.toString(coordinate.x));
+	}
 }
\ No newline at end of file
@@ -0,0 +1,383 @@
+package craj.mapDigesterLocator;
+
+import java.lang.management.ManagementFactory;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Counts the progress and the work of a locator run, to size sweeps and to
+ * find the stage which is the bottleneck on a machine.
+ * <p>
+ * A tile is first fetching, if it is announced before it is fetched, then
+ * queued until a worker is free, then processing and finally done. For every
+ * searched tile the latency of every {@link Stage} is recorded in a
+ * {@link MetricHistogram}, as well as its count of edge pixels, cast votes
+ * and circle candidates, and whether it hit the edge budget. The estimated
+ * remaining time is the count of tiles which are not done yet divided by the
+ * throughput since the first tile was started.
+ * <p>
+ * All methods can be called by many threads at once. The metrics can be read
+ * in a program with {@link #getSnapshot()} or by JMX clients after
+ * {@link #registerMBean(String)}.
+ */
+public class LocatorMetrics implements LocatorMetricsMXBean {
+
+	/**
+	 * The stages of the search of a tile.
+	 */
+	public static enum Stage {
+		/**
+		 * the decoding of the image-file or stored tile
+		 */
+		DECODE,
+		/**
+		 * the contrast enhancement of all contrast enhancers
+		 */
+		ENHANCE,
+		/**
+		 * the coarse candidate search, which is 0 if it is turned off
+		 */
+		COARSE_SEARCH,
+		/**
+		 * the edge detection and the row prefix sums of the edges
+		 */
+		EDGES,
+		/**
+		 * the voting of the edge pixels
+		 */
+		VOTE,
+		/**
+		 * the extraction and suppression of the circle findings
+		 */
+		EXTRACT
+	}
+
+	private static final String OBJECT_NAME_PATTERN = "craj.mapDigesterLocator:type=LocatorMetrics,name=%s";
+
+	private static double toMillis(final double nanos) {
+		return nanos / 1000000;
+	}
+
+	private final AtomicLong candidateCount = new AtomicLong();
+
+	private final MetricHistogram candidatesPerTile = new MetricHistogram();
+
+	private final AtomicLong castVoteCount = new AtomicLong();
+
+	private final AtomicLong doneTileCount = new AtomicLong();
+
+	private final AtomicLong edgeBudgetCappedTileCount = new AtomicLong();
+
+	private final AtomicLong edgePixelCount = new AtomicLong();
+
+	private final AtomicLong fetchingTileCount = new AtomicLong();
+
+	/**
+	 * the JMX name this metrics are registered with, or <code>null</code>
+	 */
+	private ObjectName objectName;
+
+	private final AtomicLong processingTileCount = new AtomicLong();
+
+	private final AtomicLong queuedTileCount = new AtomicLong();
+
+	private final Map<Stage, MetricHistogram> stageLatencies = new EnumMap<>(
+			Stage.class);
+
+	/**
+	 * the time the first tile was started, or 0 if no tile was started yet
+	 */
+	private final AtomicLong startTime = new AtomicLong();
+
+	/**
+	 * Construct empty <tt>LocatorMetrics</tt>.
+	 */
+	public LocatorMetrics() {
+		for (final Stage stage : Stage.values()) {
+			stageLatencies.put(stage, new MetricHistogram());
+		}
+	}
+
+	/**
+	 * Counts a tile which is announced but not fetched yet.
+	 */
+	public void addFetchingTile() {
+		fetchingTileCount.incrementAndGet();
+	}
+
+	/**
+	 * Counts a tile which waits for a free worker.
+	 */
+	public void addQueuedTile() {
+		queuedTileCount.incrementAndGet();
+	}
+
+	/**
+	 * Counts a processing tile as done.
+	 */
+	public void finishTile() {
+		processingTileCount.decrementAndGet();
+		doneTileCount.incrementAndGet();
+	}
+
+	@Override
+	public long getCandidateCount() {
+		return candidateCount.get();
+	}
+
+	/**
+	 * Returns the live histogram of the count of circle candidates per tile.
+	 * 
+	 * @return the histogram of the circle candidates per tile
+	 */
+	public MetricHistogram getCandidatesPerTile() {
+		return candidatesPerTile;
+	}
+
+	@Override
+	public long getCastVoteCount() {
+		return castVoteCount.get();
+	}
+
+	@Override
+	public long getDoneTileCount() {
+		return doneTileCount.get();
+	}
+
+	@Override
+	public long getEdgeBudgetCappedTileCount() {
+		return edgeBudgetCappedTileCount.get();
+	}
+
+	@Override
+	public long getEdgePixelCount() {
+		return edgePixelCount.get();
+	}
+
+	/**
+	 * Returns the estimated time until all tiles are searched.
+	 * 
+	 * @return the estimated remaining nanoseconds, or -1 if no tile is
+	 *         searched yet
+	 */
+	public long getEstimatedRemainingNanos() {
+		final long firstStartTime = startTime.get();
+		final long doneTiles = doneTileCount.get();
+		if (firstStartTime == 0 || doneTiles == 0) {
+			return -1;
+		}
+
+		final long remainingTiles = fetchingTileCount.get()
+				+ queuedTileCount.get() + processingTileCount.get();
+		final double nanosPerTile = (double) (System.nanoTime() - firstStartTime)
+				/ doneTiles;
+
+		return (long) (remainingTiles * nanosPerTile);
+	}
+
+	@Override
+	public long getEstimatedRemainingSeconds() {
+		final long estimatedRemainingNanos = getEstimatedRemainingNanos();
+		return estimatedRemainingNanos < 0 ? -1
+				: estimatedRemainingNanos / 1000000000L;
+	}
+
+	@Override
+	public long getFetchingTileCount() {
+		return fetchingTileCount.get();
+	}
+
+	@Override
+	public double getMeanCandidateCountPerTile() {
+		return candidatesPerTile.getMean();
+	}
+
+	@Override
+	public long getProcessingTileCount() {
+		return processingTileCount.get();
+	}
+
+	@Override
+	public long getQueuedTileCount() {
+		return queuedTileCount.get();
+	}
+
+	/**
+	 * Returns an unchanging copy of the metrics.
+	 * 
+	 * @return the metrics at the time of the call
+	 */
+	public LocatorMetricsSnapshot getSnapshot() {
+		final Map<Stage, MetricHistogram> stageLatencyCopies = new EnumMap<>(
+				Stage.class);
+		for (final Stage stage : Stage.values()) {
+			stageLatencyCopies.put(stage, stageLatencies.get(stage).copy());
+		}
+
+		return new LocatorMetricsSnapshot(fetchingTileCount.get(),
+				queuedTileCount.get(), processingTileCount.get(),
+				doneTileCount.get(), edgeBudgetCappedTileCount.get(),
+				edgePixelCount.get(),
+				castVoteCount.get(), candidateCount.get(),
+				candidatesPerTile.copy(), stageLatencyCopies,
+				getEstimatedRemainingNanos());
+	}
+
+	/**
+	 * Returns the live histogram of the latencies of the given stage in
+	 * nanoseconds.
+	 * 
+	 * @param stage
+	 *            the stage of the search of a tile
+	 * @return the histogram of the latencies of the stage
+	 */
+	public MetricHistogram getStageLatencies(final Stage stage) {
+		return stageLatencies.get(stage);
+	}
+
+	@Override
+	public Map<String, Double> getStageLatencyMeanMillis() {
+		final Map<String, Double> latencies = new LinkedHashMap<>();
+		for (final Stage stage : Stage.values()) {
+			latencies.put(stage.name(), LocatorMetrics
+					.toMillis(stageLatencies.get(stage).getMean()));
+		}
+		return latencies;
+	}
+
+	@Override
+	public Map<String, Double> getStageLatencyP50Millis() {
+		return getStageLatencyPercentileMillis(50);
+	}
+
+	private Map<String, Double> getStageLatencyPercentileMillis(
+			final double percentile) {
+		final Map<String, Double> latencies = new LinkedHashMap<>();
+		for (final Stage stage : Stage.values()) {
+			latencies.put(stage.name(), LocatorMetrics.toMillis(stageLatencies
+					.get(stage).getPercentile(percentile)));
+		}
+		return latencies;
+	}
+
+	@Override
+	public Map<String, Double> getStageLatencyP99Millis() {
+		return getStageLatencyPercentileMillis(99);
+	}
+
+	/**
+	 * Counts a searched tile which had more edge pixels than the edge budget
+	 * allows.
+	 */
+	public void recordEdgeBudgetCappedTile() {
+		edgeBudgetCappedTileCount.incrementAndGet();
+	}
+
+	/**
+	 * Records the work of a searched tile.
+	 * 
+	 * @param tileEdgePixelCount
+	 *            the count of edge pixels which voted for the circles
+	 * @param tileCastVoteCount
+	 *            the count of votes the edge pixels cast
+	 * @param tileCandidateCount
+	 *            the count of circle candidates before the suppression
+	 */
+	public void recordSearchedTile(final long tileEdgePixelCount,
+			final long tileCastVoteCount, final int tileCandidateCount) {
+		edgePixelCount.addAndGet(tileEdgePixelCount);
+		castVoteCount.addAndGet(tileCastVoteCount);
+		candidateCount.addAndGet(tileCandidateCount);
+		candidatesPerTile.record(tileCandidateCount);
+	}
+
+	/**
+	 * Records the latency of a stage of the search of a tile.
+	 * 
+	 * @param stage
+	 *            the stage of the search of a tile
+	 * @param nanos
+	 *            the latency in nanoseconds
+	 */
+	public void recordStageLatency(final Stage stage, final long nanos) {
+		stageLatencies.get(stage).record(nanos);
+	}
+
+	/**
+	 * Registers this metrics as MBean at the platform MBean server, so JMX
+	 * clients can read them. An MBean which was registered with the same name
+	 * before is replaced.
+	 * 
+	 * @param name
+	 *            the name of the locator run which is part of the JMX name
+	 * @return the JMX name of the MBean
+	 * @throws JMException
+	 *             if the MBean can not be registered
+	 */
+	public synchronized ObjectName registerMBean(final String name)
+			throws JMException {
+		unregisterMBean();
+
+		final MBeanServer mBeanServer = ManagementFactory
+				.getPlatformMBeanServer();
+		final ObjectName newObjectName = new ObjectName(String.format(
+				LocatorMetrics.OBJECT_NAME_PATTERN, ObjectName.quote(name)));
+
+		if (mBeanServer.isRegistered(newObjectName)) {
+			mBeanServer.unregisterMBean(newObjectName);
+		}
+		mBeanServer.registerMBean(this, newObjectName);
+		objectName = newObjectName;
+
+		return objectName;
+	}
+
+	/**
+	 * Counts a tile which was announced but will not be added.
+	 */
+	public void removeFetchingTile() {
+		fetchingTileCount.decrementAndGet();
+	}
+
+	/**
+	 * Counts a queued tile which was cancelled before it was started.
+	 */
+	public void removeQueuedTile() {
+		queuedTileCount.decrementAndGet();
+	}
+
+	/**
+	 * Counts a queued tile as processing.
+	 */
+	public void startTile() {
+		startTime.compareAndSet(0, System.nanoTime());
+		queuedTileCount.decrementAndGet();
+		processingTileCount.incrementAndGet();
+	}
+
+	/**
+	 * Unregisters the MBean registered by {@link #registerMBean(String)}, if
+	 * there is one.
+	 * 
+	 * @throws JMException
+	 *             if the MBean can not be unregistered
+	 */
+	public synchronized void unregisterMBean() throws JMException {
+		if (objectName == null) {
+			return;
+		}
+
+		final MBeanServer mBeanServer = ManagementFactory
+				.getPlatformMBeanServer();
+		if (mBeanServer.isRegistered(objectName)) {
+			mBeanServer.unregisterMBean(objectName);
+		}
+		objectName = null;
+	}
+}
@@ -0,0 +1,111 @@
+package craj.mapDigesterLocator;
+
+import java.util.Map;
+
+/**
+ * The attributes of the {@link LocatorMetrics} of a locator run, which are
+ * shown by JMX clients like <tt>jconsole</tt> while the run goes on.
+ */
+public interface LocatorMetricsMXBean {
+
+	/**
+	 * Returns the count of circle candidates of all searched tiles, before
+	 * overlapping candidates are suppressed.
+	 * 
+	 * @return the count of circle candidates
+	 */
+	long getCandidateCount();
+
+	/**
+	 * Returns the count of votes the edge pixels of all searched tiles cast
+	 * for the circles, including the votes outside of the tiles.
+	 * 
+	 * @return the count of cast votes
+	 */
+	long getCastVoteCount();
+
+	/**
+	 * Returns the count of tiles which are searched.
+	 * 
+	 * @return the count of searched tiles
+	 */
+	long getDoneTileCount();
+
+	/**
+	 * Returns the count of searched tiles which had more edge pixels than the
+	 * edge budget allows, so their edge detection tolerance was raised.
+	 * 
+	 * @return the count of tiles which hit the edge budget
+	 */
+	long getEdgeBudgetCappedTileCount();
+
+	/**
+	 * Returns the count of edge pixels of all searched tiles which vote for
+	 * the circles.
+	 * 
+	 * @return the count of edge pixels
+	 */
+	long getEdgePixelCount();
+
+	/**
+	 * Returns the estimated time until all tiles are searched, based on the
+	 * throughput so far.
+	 * 
+	 * @return the estimated remaining seconds, or -1 if no tile is searched
+	 *         yet
+	 */
+	long getEstimatedRemainingSeconds();
+
+	/**
+	 * Returns the count of tiles which are announced, but are still waiting
+	 * for their fetch or being fetched.
+	 * 
+	 * @return the count of fetching tiles
+	 */
+	long getFetchingTileCount();
+
+	/**
+	 * Returns the average count of circle candidates of a searched tile.
+	 * 
+	 * @return the average count of circle candidates per tile
+	 */
+	double getMeanCandidateCountPerTile();
+
+	/**
+	 * Returns the count of tiles which are being searched.
+	 * 
+	 * @return the count of processing tiles
+	 */
+	long getProcessingTileCount();
+
+	/**
+	 * Returns the count of tiles which wait for a free worker.
+	 * 
+	 * @return the count of queued tiles
+	 */
+	long getQueuedTileCount();
+
+	/**
+	 * Returns the average latency of every stage of the search of a tile.
+	 * 
+	 * @return the average latency in milliseconds by the name of the stage
+	 */
+	Map<String, Double> getStageLatencyMeanMillis();
+
+	/**
+	 * Returns the upper bound of the median latency of every stage of the
+	 * search of a tile.
+	 * 
+	 * @return the median latency in milliseconds by the name of the stage
+	 */
+	Map<String, Double> getStageLatencyP50Millis();
+
+	/**
+	 * Returns the upper bound of the 99th percentile of the latency of every
+	 * stage of the search of a tile.
+	 * 
+	 * @return the 99th percentile of the latency in milliseconds by the name
+	 *         of the stage
+	 */
+	Map<String, Double> getStageLatencyP99Millis();
+}
@@ -0,0 +1,128 @@
+package craj.mapDigesterLocator;
+
+import java.util.Map;
+
+import craj.mapDigesterLocator.LocatorMetrics.Stage;
+
+/**
+ * An unchanging copy of the {@link LocatorMetrics} of a locator run, taken
+ * by {@link LocatorMetrics#getSnapshot()}.
+ */
+public class LocatorMetricsSnapshot {
+
+	/**
+	 * the count of circle candidates of all searched tiles
+	 */
+	public final long candidateCount;
+
+	/**
+	 * the count of circle candidates per searched tile
+	 */
+	public final MetricHistogram candidatesPerTile;
+
+	/**
+	 * the count of votes the edge pixels of all searched tiles cast
+	 */
+	public final long castVoteCount;
+
+	/**
+	 * the count of searched tiles
+	 */
+	public final long doneTileCount;
+
+	/**
+	 * the count of searched tiles whose edge detection tolerance was raised to
+	 * keep their edge pixels within the edge budget
+	 */
+	public final long edgeBudgetCappedTileCount;
+
+	/**
+	 * the count of edge pixels of all searched tiles
+	 */
+	public final long edgePixelCount;
+
+	/**
+	 * the estimated time until all tiles are searched in nanoseconds, or -1 if
+	 * no tile was searched yet
+	 */
+	public final long estimatedRemainingNanos;
+
+	/**
+	 * the count of tiles which are announced but not fetched yet
+	 */
+	public final long fetchingTileCount;
+
+	/**
+	 * the count of tiles which are being searched
+	 */
+	public final long processingTileCount;
+
+	/**
+	 * the count of tiles which wait for a free worker
+	 */
+	public final long queuedTileCount;
+
+	private final Map<Stage, MetricHistogram> stageLatencies;
+
+	LocatorMetricsSnapshot(final long fetchingTileCount,
+			final long queuedTileCount, final long processingTileCount,
+			final long doneTileCount, final long edgeBudgetCappedTileCount,
+			final long edgePixelCount,
+			final long castVoteCount, final long candidateCount,
+			final MetricHistogram candidatesPerTile,
+			final Map<Stage, MetricHistogram> stageLatencies,
+			final long estimatedRemainingNanos) {
+		this.fetchingTileCount = fetchingTileCount;
+		this.queuedTileCount = queuedTileCount;
+		this.processingTileCount = processingTileCount;
+		this.doneTileCount = doneTileCount;
+		this.edgeBudgetCappedTileCount = edgeBudgetCappedTileCount;
+		this.edgePixelCount = edgePixelCount;
+		this.castVoteCount = castVoteCount;
+		this.candidateCount = candidateCount;
+		this.candidatesPerTile = candidatesPerTile;
+		this.stageLatencies = stageLatencies;
+		this.estimatedRemainingNanos = estimatedRemainingNanos;
+	}
+
+	/**
+	 * Returns the latencies of the given stage in nanoseconds.
+	 * 
+	 * @param stage
+	 *            the stage of the search of a tile
+	 * @return the histogram of the latencies of the stage
+	 */
+	public MetricHistogram getStageLatencies(final Stage stage) {
+		return stageLatencies.get(stage);
+	}
+
+	/**
+	 * Returns the count of tiles which are not searched yet.
+	 * 
+	 * @return the count of fetching, queued and processing tiles
+	 */
+	public long getRemainingTileCount() {
+		return fetchingTileCount + queuedTileCount + processingTileCount;
+	}
+
+	@Override
+	public String toString() {
+		final StringBuilder stages = new StringBuilder();
+		for (final Stage stage : Stage.values()) {
+			stages.append(String.format(", %s %.1f ms", stage.name()
+					.toLowerCase(), stageLatencies.get(stage).getMean() / 1000000));
+		}
+
+		final String edgeBudget = edgeBudgetCappedTileCount > 0 ? String
+				.format(", %d over the edge budget", edgeBudgetCappedTileCount)
+				: "";
+
+		return String.format(
+				"%d tiles done%s, %d processing, %d queued, %d fetching, about %s left%s",
+				doneTileCount, edgeBudget, processingTileCount,
+				queuedTileCount, fetchingTileCount,
+				estimatedRemainingNanos < 0 ? "unknown time" : String.format(
+						"%d s", estimatedRemainingNanos / 1000000000L),
+				stages);
+	}
+}
@@ -1,19 +1,30 @@
 package craj.mapDigesterLocator;
 
 import ij.ImagePlus;
-import ij.process.ColorProcessor;
 import ij.process.ImageProcessor;
-import ij.process.ShortProcessor;
 
+import java.awt.Rectangle;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
 
+import craj.ByteFlatImage;
 import craj.CircleCalculationResultTable;
-import craj.CircleCrossCalculator;
 import craj.CircleFinding;
+import craj.CircleFindingSuppressor;
+import craj.CoarseCandidateSearch;
 import craj.ContrastEnhancer;
+import craj.ContrastEnhancerBank;
 import craj.EdgeDetector;
+import craj.EdgeDetectorBank;
+import craj.FlatImage;
+import craj.IntFlatImage;
+import craj.MultiRadiusCircleCrossCalculator;
 import craj.ReferenceCircle;
+import craj.RowPrefixSums;
+import craj.SobelGradient;
+import craj.mapDigesterLocator.LocatorMetrics.Stage;
 
 public class MapDigesterCircleFinder {
 	/**
@@ -21,9 +32,26 @@ public class MapDigesterCircleFinder {
 	 * <tt>MapDigesterCircleFinderThread</tt>
 	 */
 	public static class MapDigesterCircleFinderParameter {
+		/**
+		 * the suppressor which removes the duplicate circle findings of a
+		 * circle, or <code>null</code> if all circle findings should be kept
+		 */
+		public final CircleFindingSuppressor circleFindingSuppressor;
+		/**
+		 * the search in a scaled down image which determines the areas that
+		 * are searched in full resolution, or <code>null</code> if the whole
+		 * image is searched in full resolution
+		 */
+		public final CoarseCandidateSearch coarseCandidateSearch;
 		public final List<ContrastEnhancer> contrastEnhancerList;
 		public final EdgeDetector edgeDetectorForBlackValueCalculation;
 		public final EdgeDetector edgeDetectorForCrossValueCalculation;
+		/**
+		 * the maximum difference in degrees between the gradient direction of
+		 * an edge pixel and the direction of the circle pixels it votes for,
+		 * or zero if every edge pixel votes for the whole circle
+		 */
+		public final float gradientVotingAngleTolerance;
 		public final List<ReferenceCircle> referenceCircles;
 		public final boolean verbose;
 
@@ -52,78 +80,490 @@ public class MapDigesterCircleFinder {
 				final List<ContrastEnhancer> contrastEnhancerList,
 				final boolean verbose,
 				final List<ReferenceCircle> referenceCircles) {
+			this(edgeDetectorForBlackValueCalculation,
+					edgeDetectorForCrossValueCalculation, contrastEnhancerList,
+					verbose, referenceCircles, 0);
+		}
+
+		/**
+		 * Construct an MapDigesterCircleFinderParameter object which lets
+		 * every edge pixel vote only in the direction of its gradient.
+		 * 
+		 * @param edgeDetectorForBlackValueCalculation
+		 *            an edge detector for the calculation of the inner areas of
+		 *            the circle-candidates
+		 * @param edgeDetectorForCrossValueCalculation
+		 *            an edge detector for the calculation of the crosses of the
+		 *            circles
+		 * @param contrastEnhancerList
+		 *            a list of contrast-enhancer which are all used to generate
+		 *            sharper edges for various images
+		 * @param verbose
+		 *            a boolean which determines if the calculated images should
+		 *            be shown
+		 * @param referenceCircles
+		 *            a list of reference-circles which are searched in the
+		 *            given image
+		 * @param gradientVotingAngleTolerance
+		 *            the maximum difference in degrees between the gradient
+		 *            direction of an edge pixel and the direction of the circle
+		 *            pixels it votes for, or zero if every edge pixel should
+		 *            vote for the whole circle
+		 */
+		public MapDigesterCircleFinderParameter(
+				final EdgeDetector edgeDetectorForBlackValueCalculation,
+				final EdgeDetector edgeDetectorForCrossValueCalculation,
+				final List<ContrastEnhancer> contrastEnhancerList,
+				final boolean verbose,
+				final List<ReferenceCircle> referenceCircles,
+				final float gradientVotingAngleTolerance) {
+			this(edgeDetectorForBlackValueCalculation,
+					edgeDetectorForCrossValueCalculation, contrastEnhancerList,
+					verbose, referenceCircles, gradientVotingAngleTolerance,
+					null);
+		}
+
+		/**
+		 * Construct an MapDigesterCircleFinderParameter object which removes
+		 * the duplicate circle findings of every circle with the given
+		 * suppressor.
+		 * 
+		 * @param edgeDetectorForBlackValueCalculation
+		 *            an edge detector for the calculation of the inner areas of
+		 *            the circle-candidates
+		 * @param edgeDetectorForCrossValueCalculation
+		 *            an edge detector for the calculation of the crosses of the
+		 *            circles
+		 * @param contrastEnhancerList
+		 *            a list of contrast-enhancer which are all used to generate
+		 *            sharper edges for various images
+		 * @param verbose
+		 *            a boolean which determines if the calculated images should
+		 *            be shown
+		 * @param referenceCircles
+		 *            a list of reference-circles which are searched in the
+		 *            given image
+		 * @param gradientVotingAngleTolerance
+		 *            the maximum difference in degrees between the gradient
+		 *            direction of an edge pixel and the direction of the circle
+		 *            pixels it votes for, or zero if every edge pixel should
+		 *            vote for the whole circle
+		 * @param circleFindingSuppressor
+		 *            the suppressor which removes the duplicate circle findings
+		 *            of all diameters and contrast enhancers, or
+		 *            <code>null</code> if all circle findings should be kept
+		 */
+		public MapDigesterCircleFinderParameter(
+				final EdgeDetector edgeDetectorForBlackValueCalculation,
+				final EdgeDetector edgeDetectorForCrossValueCalculation,
+				final List<ContrastEnhancer> contrastEnhancerList,
+				final boolean verbose,
+				final List<ReferenceCircle> referenceCircles,
+				final float gradientVotingAngleTolerance,
+				final CircleFindingSuppressor circleFindingSuppressor) {
+			this(edgeDetectorForBlackValueCalculation,
+					edgeDetectorForCrossValueCalculation, contrastEnhancerList,
+					verbose, referenceCircles, gradientVotingAngleTolerance,
+					circleFindingSuppressor, null);
+		}
+
+		/**
+		 * Construct an MapDigesterCircleFinderParameter object which searches
+		 * every image in a scaled down copy first and then only in the areas
+		 * around the circle findings of the scaled down copy in full
+		 * resolution.
+		 * 
+		 * @param edgeDetectorForBlackValueCalculation
+		 *            an edge detector for the calculation of the inner areas of
+		 *            the circle-candidates
+		 * @param edgeDetectorForCrossValueCalculation
+		 *            an edge detector for the calculation of the crosses of the
+		 *            circles
+		 * @param contrastEnhancerList
+		 *            a list of contrast-enhancer which are all used to generate
+		 *            sharper edges for various images
+		 * @param verbose
+		 *            a boolean which determines if the calculated images should
+		 *            be shown
+		 * @param referenceCircles
+		 *            a list of reference-circles which are searched in the
+		 *            given image
+		 * @param gradientVotingAngleTolerance
+		 *            the maximum difference in degrees between the gradient
+		 *            direction of an edge pixel and the direction of the circle
+		 *            pixels it votes for, or zero if every edge pixel should
+		 *            vote for the whole circle
+		 * @param circleFindingSuppressor
+		 *            the suppressor which removes the duplicate circle findings
+		 *            of all diameters and contrast enhancers, or
+		 *            <code>null</code> if all circle findings should be kept
+		 * @param coarseCandidateSearch
+		 *            the search in a scaled down image which determines the
+		 *            areas that are searched in full resolution, or
+		 *            <code>null</code> if the whole image should be searched in
+		 *            full resolution
+		 */
+		public MapDigesterCircleFinderParameter(
+				final EdgeDetector edgeDetectorForBlackValueCalculation,
+				final EdgeDetector edgeDetectorForCrossValueCalculation,
+				final List<ContrastEnhancer> contrastEnhancerList,
+				final boolean verbose,
+				final List<ReferenceCircle> referenceCircles,
+				final float gradientVotingAngleTolerance,
+				final CircleFindingSuppressor circleFindingSuppressor,
+				final CoarseCandidateSearch coarseCandidateSearch) {
 			this.edgeDetectorForBlackValueCalculation = edgeDetectorForBlackValueCalculation;
 			this.edgeDetectorForCrossValueCalculation = edgeDetectorForCrossValueCalculation;
 			this.contrastEnhancerList = contrastEnhancerList;
 			this.verbose = verbose;
 			this.referenceCircles = referenceCircles;
+			this.gradientVotingAngleTolerance = gradientVotingAngleTolerance;
+			this.circleFindingSuppressor = circleFindingSuppressor;
+			this.coarseCandidateSearch = coarseCandidateSearch;
+		}
+	}
+
+	/**
+	 * Collects the latencies of the stages and the work of the search of one
+	 * image, which are recorded in the metrics after the search.
+	 */
+	private static class SearchStatistics {
+
+		private long castVoteCount;
+
+		/**
+		 * whether an edge detector raised its edge detection tolerance to keep
+		 * the edge pixels of a grey image within its edge budget
+		 */
+		private boolean edgeBudgetCapped;
+
+		private long edgePixelCount;
+
+		private final long[] stageNanos = new long[Stage.values().length];
+
+		private void addStageNanos(final Stage stage, final long startTime) {
+			stageNanos[stage.ordinal()] += System.nanoTime() - startTime;
 		}
 	}
 
+	/**
+	 * the count of reference circles whose result tables are calculated in
+	 * one pass over the edge pixels
+	 */
+	private static final int REFERENCE_CIRCLE_BAND_SIZE = 8;
+
+	/**
+	 * the highest edge detection tolerance the edge detector for the cross
+	 * value calculation applied to the last searched image
+	 */
+	private int appliedEdgeDetectionTolerance;
+
+	/**
+	 * whether an edge detector raised its edge detection tolerance for the
+	 * last searched image to keep it within its edge budget
+	 */
+	private boolean edgeBudgetCapped;
+
+	private final ForkJoinPool forkJoinPool;
+
+	private final LocatorMetrics metrics;
+
 	private final MapDigesterCircleFinderParameter params;
 
 	public MapDigesterCircleFinder(final MapDigesterCircleFinderParameter params) {
+		this(params, null);
+	}
+
+	/**
+	 * Construct a MapDigesterCircleFinder which calculates a single image in
+	 * parallel in the given <tt>ForkJoinPool</tt>. The edge detection and the
+	 * search of circle findings are divided into strips of rows, the voting
+	 * into partitions of edge pixels. This is useful if there are less images
+	 * to search than processor cores, for example for a single large image.
+	 * The circle findings are the same as without a pool.
+	 * 
+	 * @param params
+	 *            the parameters which determine how the circles are searched
+	 * @param forkJoinPool
+	 *            the pool a single image is calculated in, or
+	 *            <code>null</code> to calculate it in the calling thread
+	 */
+	public MapDigesterCircleFinder(
+			final MapDigesterCircleFinderParameter params,
+			final ForkJoinPool forkJoinPool) {
+		this(params, forkJoinPool, null);
+	}
+
+	/**
+	 * Construct a MapDigesterCircleFinder like
+	 * {@link #MapDigesterCircleFinder(MapDigesterCircleFinderParameter, ForkJoinPool)}
+	 * , which records the latencies of the stages and the work of every
+	 * searched image in the given metrics.
+	 * 
+	 * @param params
+	 *            the parameters which determine how the circles are searched
+	 * @param forkJoinPool
+	 *            the pool a single image is calculated in, or
+	 *            <code>null</code> to calculate it in the calling thread
+	 * @param metrics
+	 *            the metrics of the locator run, or <code>null</code>
+	 */
+	public MapDigesterCircleFinder(
+			final MapDigesterCircleFinderParameter params,
+			final ForkJoinPool forkJoinPool, final LocatorMetrics metrics) {
 		this.params = params;
+		this.forkJoinPool = forkJoinPool;
+		this.metrics = metrics;
+	}
+
+	/**
+	 * Votes for the circles of all reference circles in the given search area
+	 * and adds the circle findings inside it to the given list. Only the edge
+	 * pixels within the radius of the largest reference circle around the
+	 * search area are needed, so the result tables only cover this area.
+	 */
+	private void addCircleFindings(final IntFlatImage crossValueEdgesData,
+			final SobelGradient gradient,
+			final RowPrefixSums blackValueEdgesRowPrefixSums,
+			final Rectangle searchArea,
+			final List<CircleFinding> circleCoordinates,
+			final SearchStatistics statistics) {
+		final long voteStartTime = System.nanoTime();
+
+		final List<ReferenceCircle> referenceCircles = params.referenceCircles;
+
+		final Rectangle imageArea = new Rectangle(crossValueEdgesData.width,
+				crossValueEdgesData.height);
+
+		final Rectangle tableArea;
+		final IntFlatImage tableEdgesData;
+		final SobelGradient tableGradient;
+		if (searchArea == null) {
+			tableArea = imageArea;
+			tableEdgesData = crossValueEdgesData;
+			tableGradient = gradient;
+		} else {
+			int maxDiameter = 0;
+			for (final ReferenceCircle referenceCircle : referenceCircles) {
+				maxDiameter = Math.max(maxDiameter, referenceCircle.diameter);
+			}
+
+			tableArea = new Rectangle(searchArea);
+			tableArea.grow(maxDiameter / 2 + 1, maxDiameter / 2 + 1);
+			tableArea.setBounds(tableArea.intersection(imageArea));
+
+			tableEdgesData = IntFlatImage.copyOf(crossValueEdgesData,
+					tableArea);
+			tableGradient = gradient != null ? gradient.copyOf(tableArea)
+					: null;
+		}
+
+		final MultiRadiusCircleCrossCalculator circleCrossCalculator = new MultiRadiusCircleCrossCalculator(
+				referenceCircles, tableEdgesData, tableGradient,
+				params.gradientVotingAngleTolerance);
+		statistics.addStageNanos(Stage.VOTE, voteStartTime);
+
+		final int referenceCircleCount = referenceCircles.size();
+		for (int bandStart = 0; bandStart < referenceCircleCount; bandStart += MapDigesterCircleFinder.REFERENCE_CIRCLE_BAND_SIZE) {
+			final int bandEnd = Math.min(referenceCircleCount, bandStart
+					+ MapDigesterCircleFinder.REFERENCE_CIRCLE_BAND_SIZE);
+
+			final long bandVoteStartTime = System.nanoTime();
+			final List<CircleCalculationResultTable> resultTables = circleCrossCalculator
+					.getResultTables(bandStart, bandEnd, forkJoinPool);
+			statistics.addStageNanos(Stage.VOTE, bandVoteStartTime);
+
+			final long extractStartTime = System.nanoTime();
+			for (final CircleCalculationResultTable resultTable : resultTables) {
+
+				if (params.verbose) {
+					final ImagePlus outputImage = resultTable
+							.getCalculationOutputImage();
+					outputImage.show();
+				}
+
+				final List<CircleFinding> circleFindingsForReferenceCircle = resultTable
+						.getCircleFindings(blackValueEdgesRowPrefixSums,
+								searchArea != null ? searchArea : imageArea,
+								tableArea.x, tableArea.y, forkJoinPool);
+				circleCoordinates.addAll(circleFindingsForReferenceCircle);
+			}
+			statistics.addStageNanos(Stage.EXTRACT, extractStartTime);
+		}
+
+		statistics.edgePixelCount += circleCrossCalculator
+				.getEdgePixelCount();
+		statistics.castVoteCount += circleCrossCalculator.getCastVoteCount();
+	}
+
+	/**
+	 * Returns the highest edge detection tolerance the edge detector for the
+	 * cross value calculation applied to the grey images of the last searched
+	 * image, which is higher than its configured tolerance if the edge budget
+	 * capped the image.
+	 * 
+	 * @return the applied edge detection tolerance of the last searched image
+	 */
+	public int getAppliedEdgeDetectionTolerance() {
+		return appliedEdgeDetectionTolerance;
 	}
 
+	/**
+	 * Finds the circles in the given image.
+	 * 
+	 * @param sourceImageData
+	 *            the image to find the circles in, which is not changed
+	 * @return the found circles
+	 */
 	public List<CircleFinding> getCircleCoordinates(
-			final ImageProcessor processor) {
+			final FlatImage sourceImageData) {
 		final List<ContrastEnhancer> contrastEnhancerList = params.contrastEnhancerList;
 
-		final EdgeDetector edgeDetectorForCrossValueCalculation = params.edgeDetectorForCrossValueCalculation;
-		final EdgeDetector edgeDetectorForBlackValueCalculation = params.edgeDetectorForBlackValueCalculation;
-		final List<ReferenceCircle> referenceCircles = params.referenceCircles;
+		final List<EdgeDetector> edgeDetectors = Arrays.asList(
+				params.edgeDetectorForCrossValueCalculation,
+				params.edgeDetectorForBlackValueCalculation);
+		final EdgeDetectorBank edgeDetectorBank = new EdgeDetectorBank(
+				edgeDetectors);
 		final boolean verbose = params.verbose;
+		final float gradientVotingAngleTolerance = params.gradientVotingAngleTolerance;
+		final CoarseCandidateSearch coarseCandidateSearch = params.coarseCandidateSearch;
 
 		final List<CircleFinding> circleCoordinates = new ArrayList<>();
+		final SearchStatistics statistics = new SearchStatistics();
+		int crossValueEdgeDetectionTolerance = params.edgeDetectorForCrossValueCalculation
+				.getEdgeDetectionTolerance();
 
-		final int width = processor.getWidth();
-		final int height = processor.getHeight();
-
-		for (final ContrastEnhancer contrastEnhancer : contrastEnhancerList) {
+		final int width = sourceImageData.width;
+		final int height = sourceImageData.height;
 
-			final ImageProcessor duplicateProcessor = processor.duplicate();
-			final int[][] imageData = duplicateProcessor.getIntArray();
-			contrastEnhancer.enhanceContrast(imageData);
+		final long enhanceStartTime = System.nanoTime();
+		final List<ByteFlatImage> greyImages = new ContrastEnhancerBank(
+				contrastEnhancerList).enhanceContrastToGrey(sourceImageData);
+		statistics.addStageNanos(Stage.ENHANCE, enhanceStartTime);
 
-			final ColorProcessor colorProcessor = new ColorProcessor(width,
-					height);
-			colorProcessor.setIntArray(imageData);
+		for (final FlatImage greyImageData : greyImages) {
 
 			if (verbose) {
-				new ImagePlus("After ContrastEnhancer", colorProcessor).show();
+				new ImagePlus("After ContrastEnhancer",
+						greyImageData.toShortProcessor()).show();
 			}
 
-			final ShortProcessor shortProcessor = colorProcessor
-					.convertToShortProcessor(true);
+			final List<Rectangle> searchAreas;
+			if (coarseCandidateSearch != null) {
+				final long searchStartTime = System.nanoTime();
+				searchAreas = coarseCandidateSearch.getSearchAreas(
+						greyImageData, forkJoinPool);
+				statistics.addStageNanos(Stage.COARSE_SEARCH, searchStartTime);
 
-			final int[][] crossValueEdgesData = edgeDetectorForCrossValueCalculation
-					.getEdgesData(shortProcessor);
-			final int[][] blackValueEdgesData = edgeDetectorForBlackValueCalculation
-					.getEdgesData(shortProcessor);
+				if (searchAreas.isEmpty()) {
+					continue;
+				}
+			} else {
+				searchAreas = null;
+			}
 
-			for (final ReferenceCircle referenceCircle : referenceCircles) {
+			final long edgesStartTime = System.nanoTime();
 
-				final CircleCrossCalculator circleCrossCalculator = new CircleCrossCalculator(
-						referenceCircle, crossValueEdgesData,
-						referenceCircle.getPerfectCircleCoordinates());
+			final SobelGradient gradient;
+			if (gradientVotingAngleTolerance > 0) {
+				gradient = new SobelGradient(width, height);
+			} else {
+				gradient = null;
+			}
 
-				final CircleCalculationResultTable resultTable;
-				resultTable = circleCrossCalculator.getResultTable();
+			final int[] appliedTolerances = new int[edgeDetectors.size()];
+			final List<IntFlatImage> edgesData = edgeDetectorBank
+					.getEdgesData(greyImageData,
+							Arrays.asList(gradient, (SobelGradient) null),
+							forkJoinPool, appliedTolerances);
+			crossValueEdgeDetectionTolerance = Math.max(
+					crossValueEdgeDetectionTolerance, appliedTolerances[0]);
 
-				if (verbose) {
-					final ImagePlus outputImage = resultTable
-							.getCalculationOutputImage();
-					outputImage.show();
+			for (int detector = 0; detector < edgeDetectors.size(); detector++) {
+				final int configuredTolerance = edgeDetectors.get(detector)
+						.getEdgeDetectionTolerance();
+				if (appliedTolerances[detector] > configuredTolerance) {
+					statistics.edgeBudgetCapped = true;
+
+					if (verbose) {
+						System.out.println(String.format(
+								"Edge budget hit, edge detection tolerance raised from %d to %d",
+								configuredTolerance, appliedTolerances[detector]));
+					}
 				}
+			}
 
-				final List<CircleFinding> circleFindingsForReferenceCircle = resultTable
-						.getCircleFindings(blackValueEdgesData);
-				circleCoordinates.addAll(circleFindingsForReferenceCircle);
+			final IntFlatImage crossValueEdgesData = edgesData.get(0);
+			final RowPrefixSums blackValueEdgesRowPrefixSums = new RowPrefixSums(
+					edgesData.get(1));
+			statistics.addStageNanos(Stage.EDGES, edgesStartTime);
+
+			if (searchAreas == null) {
+				addCircleFindings(crossValueEdgesData, gradient,
+						blackValueEdgesRowPrefixSums, null, circleCoordinates,
+						statistics);
+			} else {
+				for (final Rectangle searchArea : searchAreas) {
+					addCircleFindings(crossValueEdgesData, gradient,
+							blackValueEdgesRowPrefixSums, searchArea,
+							circleCoordinates, statistics);
+				}
+			}
+		}
 
+		appliedEdgeDetectionTolerance = crossValueEdgeDetectionTolerance;
+		edgeBudgetCapped = statistics.edgeBudgetCapped;
+
+		final int candidateCount = circleCoordinates.size();
+
+		final List<CircleFinding> circleFindings;
+		if (params.circleFindingSuppressor != null) {
+			final long suppressStartTime = System.nanoTime();
+			circleFindings = params.circleFindingSuppressor
+					.suppress(circleCoordinates);
+			statistics.addStageNanos(Stage.EXTRACT, suppressStartTime);
+		} else {
+			circleFindings = circleCoordinates;
+		}
+
+		if (metrics != null) {
+			for (final Stage stage : Stage.values()) {
+				if (stage != Stage.DECODE) {
+					metrics.recordStageLatency(stage,
+							statistics.stageNanos[stage.ordinal()]);
+				}
+			}
+			metrics.recordSearchedTile(statistics.edgePixelCount,
+					statistics.castVoteCount, candidateCount);
+			if (statistics.edgeBudgetCapped) {
+				metrics.recordEdgeBudgetCappedTile();
 			}
 		}
 
-		return circleCoordinates;
+		return circleFindings;
+	}
+
+	/**
+	 * Finds the circles in the image of the given processor.
+	 * 
+	 * @param processor
+	 *            a <tt>ColorProcessor</tt>, <tt>ShortProcessor</tt> or
+	 *            <tt>ByteProcessor</tt> with the image to find the circles in
+	 * @return the found circles
+	 */
+	public List<CircleFinding> getCircleCoordinates(
+			final ImageProcessor processor) {
+		return getCircleCoordinates(FlatImage.wrap(processor));
+	}
+
+	/**
+	 * Returns whether an edge detector raised its edge detection tolerance
+	 * for the last searched image, because the image had more edge pixels
+	 * than its edge budget allows.
+	 * 
+	 * @return <code>true</code> if the last searched image hit an edge budget
+	 */
+	public boolean isEdgeBudgetCapped() {
+		return edgeBudgetCapped;
 	}
 }
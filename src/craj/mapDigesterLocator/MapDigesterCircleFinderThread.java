@@ -3,14 +3,16 @@ package craj.mapDigesterLocator;
 import ij.ImagePlus;
 import ij.process.ImageProcessor;
 
-import java.awt.image.BufferedImage;
 import java.io.File;
 import java.io.IOException;
 import java.util.List;
-
-import javax.imageio.ImageIO;
+import java.util.concurrent.ForkJoinPool;
 
 import craj.CircleFinding;
+import craj.FlatImage;
+import craj.ImageDecoder;
+import craj.IntFlatImage;
+import craj.mapDigesterLocator.LocatorMetrics.Stage;
 import craj.mapDigesterLocator.MapDigesterCircleFinder.MapDigesterCircleFinderParameter;
 
 /**
@@ -22,8 +24,23 @@ import craj.mapDigesterLocator.MapDigesterCircleFinder.MapDigesterCircleFinderPa
  */
 public class MapDigesterCircleFinderThread extends CircleFinderThread {
 
+	private static ImageProcessor toProcessor(final FlatImage image) {
+		if (image instanceof IntFlatImage) {
+			return ((IntFlatImage) image).toColorProcessor();
+		}
+		return image.toShortProcessor();
+	}
+
+	private ForkJoinPool forkJoinPool;
+
+	private LocatorMetrics metrics;
+
 	private final MapDigesterCircleFinderParameter params;
 
+	private final TileKey tileKey;
+
+	private final TileStore tileStore;
+
 	/**
 	 * Constructs an MapDigesterCircleFinderThread for the given image-file and
 	 * parameters for the calculation
@@ -37,30 +54,79 @@ public class MapDigesterCircleFinderThread extends CircleFinderThread {
 			final MapDigesterCircleFinderParameter params) {
 		super(imageFile);
 		this.params = params;
+		tileStore = null;
+		tileKey = null;
+	}
+
+	/**
+	 * Constructs an MapDigesterCircleFinderThread for a tile of the given
+	 * tile store and parameters for the calculation
+	 * 
+	 * @param tileStore
+	 *            the tile store which holds the tile
+	 * @param tileKey
+	 *            the key of the tile in which circles should be found
+	 * @param params
+	 *            the constraints which determine how the circles are searched
+	 */
+	public MapDigesterCircleFinderThread(final TileStore tileStore,
+			final TileKey tileKey, final MapDigesterCircleFinderParameter params) {
+		super(null);
+		this.params = params;
+		this.tileStore = tileStore;
+		this.tileKey = tileKey;
 	}
 
 	@Override
 	protected List<CircleFinding> findCircleCoordinates() throws IOException {
+		final long decodeStartTime = System.nanoTime();
+		final FlatImage imageToFindDigesturesIn = tileStore != null ? tileStore
+				.getImage(tileKey) : ImageDecoder.decode(imageFile);
+		if (metrics != null) {
+			metrics.recordStageLatency(Stage.DECODE, System.nanoTime()
+					- decodeStartTime);
+		}
 
-		final BufferedImage imageFromDiscToFindDigesturesIn = ImageIO
-				.read(imageFile);
-
-		final ImagePlus imagePlus = new ImagePlus("Image To find Circles In",
-				imageFromDiscToFindDigesturesIn);
-
+		// the ImagePlus is only built to show the image
 		final boolean verbose = params.verbose;
 		if (verbose) {
-			imagePlus.show();
+			new ImagePlus("Image To find Circles In",
+					MapDigesterCircleFinderThread
+							.toProcessor(imageToFindDigesturesIn)).show();
 		}
 
-		final ImageProcessor processor = imagePlus.getProcessor();
-
 		final MapDigesterCircleFinder mapDigesterCircleFinder = new MapDigesterCircleFinder(
-				params);
+				params, forkJoinPool, metrics);
 
 		final List<CircleFinding> circleCoordinates = mapDigesterCircleFinder
-				.getCircleCoordinates(processor);
+				.getCircleCoordinates(imageToFindDigesturesIn);
+		appliedEdgeDetectionTolerance = mapDigesterCircleFinder
+				.getAppliedEdgeDetectionTolerance();
+		edgeBudgetCapped = mapDigesterCircleFinder.isEdgeBudgetCapped();
 
 		return circleCoordinates;
 	}
+
+	/**
+	 * Sets the pool the image is calculated in, if the image should be
+	 * calculated in parallel. Has to be called before the thread is started.
+	 * 
+	 * @param forkJoinPool
+	 *            the pool the image is calculated in, or <code>null</code> to
+	 *            calculate it in this thread only
+	 */
+	public void setForkJoinPool(final ForkJoinPool forkJoinPool) {
+		this.forkJoinPool = forkJoinPool;
+	}
+
+	/**
+	 * Sets the metrics the latencies of the stages and the work of the search
+	 * are recorded in. Has to be called before the thread is started.
+	 * 
+	 * @param metrics
+	 *            the metrics of the locator run, or <code>null</code>
+	 */
+	public void setLocatorMetrics(final LocatorMetrics metrics) {
+		this.metrics = metrics;
+	}
 }
@@ -4,18 +4,44 @@ import java.awt.Point;
 import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
 
 import craj.CircleFinding;
 import craj.mapDigesterLocator.MapDigesterCircleFinder.MapDigesterCircleFinderParameter;
 
 /**
- * This abstract class implements the functionality of creating as much as
- * {@link CircleFinderThread} objects as processor cores are available. It is
- * possible to wait for the completion of the calculation of all files with the
- * <code>wait</code>-method. If the calculation of an image completes, the
- * observing objects are notified with the circle findings.
+ * This abstract class implements the functionality of calculating the added
+ * images as tasks of a shared <tt>ForkJoinPool</tt>, which calculates as much
+ * images in parallel as the configured parallelism allows. It is possible to
+ * wait for the completion of the calculation of all files with the
+ * <code>join</code>-method, to cancel the remaining calculations with the
+ * <code>cancel</code>-method, and to get a <tt>Future</tt> for every image. If
+ * the calculation of an image completes, the observing objects are notified
+ * with the circle findings.
+ * <p>
+ * If there are less images than the parallelism, the remaining workers would
+ * be idle. Then the images themselves are calculated in parallel in the same
+ * <tt>ForkJoinPool</tt> as well, whose workers steal the work of the images.
+ * <p>
+ * The results are delivered to the observers by a {@link ResultDispatcher} in
+ * a dedicated thread, so the calculating threads only wait for slow observers
+ * if the result queue is full. Results are only dropped instead if the
+ * {@link MapDigesterLocatorParameter} asks for it.
+ * <p>
+ * The progress and the work of the calculation are counted in the
+ * {@link LocatorMetrics} of the locator, which can be read while the
+ * calculation goes on.
  * 
  * @author Alexander Johr u26865 m18927, Caroline Rhling u26864 m18926
  * 
@@ -31,9 +57,19 @@ public abstract class MapDigesterLocator<CircleFindingsPairType extends CircleFi
 	 * This class holds the parameter data for the <tt>MapDigesterLocator</tt>
 	 */
 	public static class MapDigesterLocatorParameter {
+
+		/**
+		 * the count of results which can wait for their delivery if no count
+		 * is given
+		 */
+		private static final int DEFAULT_RESULT_QUEUE_CAPACITY = 1024;
+
+		private final boolean dropResultsWhenFull;
 		protected final File imgDir;
-		private final MapDigesterCircleFinderParameter mapDigesterCircleFinderParameters;
+		protected final MapDigesterCircleFinderParameter mapDigesterCircleFinderParameters;
 		protected final boolean notifyEvenWithoutFinding;
+		private final int parallelism;
+		private final int resultQueueCapacity;
 		protected final boolean verbose, verbosePrint;
 
 		/**
@@ -60,28 +96,181 @@ public abstract class MapDigesterLocator<CircleFindingsPairType extends CircleFi
 				final boolean verbosePrint,
 				final File imgDir,
 				final MapDigesterCircleFinderParameter mapDigesterCircleFinderParameters) {
+			this(notifyEvenWithoutFinding, verbose, verbosePrint, imgDir,
+					mapDigesterCircleFinderParameters, 0);
+		}
+
+		/**
+		 * Construct a <tt>MapDigesterLocatorParameters</tt> parameter object
+		 * with a parallelism for the calculation of the images.
+		 * 
+		 * @param notifyEvenWithoutFinding
+		 *            a boolean which indicates if the searched image should be
+		 *            shown even if there was no circle finding
+		 * @param verbose
+		 *            a boolean which indicates if the methods of this class
+		 *            should show it's output
+		 * @param verbosePrint
+		 *            a boolean which indicates if the methods of this class
+		 *            should print it's output
+		 * @param imgDir
+		 *            the directory in which the image files can be found
+		 * @param mapDigesterCircleFinderParameters
+		 *            the parameter object for the calculation in the
+		 *            <tt>MapDigesterCircleFinderThread</tt>
+		 * @param parallelism
+		 *            the count of images which are calculated in parallel, or
+		 *            0 to use the count of available processor cores
+		 */
+		public MapDigesterLocatorParameter(
+				final boolean notifyEvenWithoutFinding,
+				final boolean verbose,
+				final boolean verbosePrint,
+				final File imgDir,
+				final MapDigesterCircleFinderParameter mapDigesterCircleFinderParameters,
+				final int parallelism) {
+			this(
+					notifyEvenWithoutFinding,
+					verbose,
+					verbosePrint,
+					imgDir,
+					mapDigesterCircleFinderParameters,
+					parallelism,
+					MapDigesterLocatorParameter.DEFAULT_RESULT_QUEUE_CAPACITY);
+		}
+
+		/**
+		 * Construct a <tt>MapDigesterLocatorParameters</tt> parameter object
+		 * with a parallelism for the calculation of the images and a capacity
+		 * for the results which wait for their delivery to the observers.
+		 * 
+		 * @param notifyEvenWithoutFinding
+		 *            a boolean which indicates if the searched image should be
+		 *            shown even if there was no circle finding
+		 * @param verbose
+		 *            a boolean which indicates if the methods of this class
+		 *            should show it's output
+		 * @param verbosePrint
+		 *            a boolean which indicates if the methods of this class
+		 *            should print it's output
+		 * @param imgDir
+		 *            the directory in which the image files can be found
+		 * @param mapDigesterCircleFinderParameters
+		 *            the parameter object for the calculation in the
+		 *            <tt>MapDigesterCircleFinderThread</tt>
+		 * @param parallelism
+		 *            the count of images which are calculated in parallel, or
+		 *            0 to use the count of available processor cores
+		 * @param resultQueueCapacity
+		 *            the count of results which can wait for their delivery to
+		 *            the observers before the calculating threads wait for the
+		 *            observers
+		 */
+		public MapDigesterLocatorParameter(
+				final boolean notifyEvenWithoutFinding,
+				final boolean verbose,
+				final boolean verbosePrint,
+				final File imgDir,
+				final MapDigesterCircleFinderParameter mapDigesterCircleFinderParameters,
+				final int parallelism, final int resultQueueCapacity) {
+			this(notifyEvenWithoutFinding, verbose, verbosePrint, imgDir,
+					mapDigesterCircleFinderParameters, parallelism,
+					resultQueueCapacity, false);
+		}
+
+		/**
+		 * Construct a <tt>MapDigesterLocatorParameters</tt> parameter object
+		 * with a parallelism for the calculation of the images, a capacity for
+		 * the results which wait for their delivery to the observers and
+		 * whether results are dropped if the observers can not keep up.
+		 * 
+		 * @param notifyEvenWithoutFinding
+		 *            a boolean which indicates if the searched image should be
+		 *            shown even if there was no circle finding
+		 * @param verbose
+		 *            a boolean which indicates if the methods of this class
+		 *            should show it's output
+		 * @param verbosePrint
+		 *            a boolean which indicates if the methods of this class
+		 *            should print it's output
+		 * @param imgDir
+		 *            the directory in which the image files can be found
+		 * @param mapDigesterCircleFinderParameters
+		 *            the parameter object for the calculation in the
+		 *            <tt>MapDigesterCircleFinderThread</tt>
+		 * @param parallelism
+		 *            the count of images which are calculated in parallel, or
+		 *            0 to use the count of available processor cores
+		 * @param resultQueueCapacity
+		 *            the count of results which can wait for their delivery to
+		 *            the observers
+		 * @param dropResultsWhenFull
+		 *            <code>false</code> if the calculating threads wait for
+		 *            the observers when the result queue is full, so no result
+		 *            is lost, or <code>true</code> if the results are dropped
+		 *            then and only counted, see
+		 *            {@link MapDigesterLocator#getDroppedResultCount()}
+		 */
+		public MapDigesterLocatorParameter(
+				final boolean notifyEvenWithoutFinding,
+				final boolean verbose,
+				final boolean verbosePrint,
+				final File imgDir,
+				final MapDigesterCircleFinderParameter mapDigesterCircleFinderParameters,
+				final int parallelism, final int resultQueueCapacity,
+				final boolean dropResultsWhenFull) {
+			if (parallelism < 0) {
+				throw new IllegalArgumentException(
+						"The parallelism must not be negative.");
+			}
+
 			this.notifyEvenWithoutFinding = notifyEvenWithoutFinding;
 			this.verbose = verbose;
 			this.verbosePrint = verbosePrint;
 			this.imgDir = imgDir;
 			this.mapDigesterCircleFinderParameters = mapDigesterCircleFinderParameters;
+			this.parallelism = parallelism;
+			this.resultQueueCapacity = resultQueueCapacity;
+			this.dropResultsWhenFull = dropResultsWhenFull;
 		}
 	}
 
-	private Object callerThread;
+	private final Condition allCalculationsAreDone;
+
+	/**
+	 * the calculations which are not completed yet, in the order they were
+	 * added
+	 */
+	private final Set<FutureTask<List<CircleFinding>>> calculations = new LinkedHashSet<>();
+
+	private volatile boolean cancelled;
 
 	protected Point[] circlePositionsInImage;
-	private final int cores;
-	private int currentThreadIndex;
+
+	/**
+	 * the finders which are added before the start, to hand them the pool
+	 */
+	private final ArrayList<MapDigesterCircleFinderThread> finderThreads = new ArrayList<>();
+
+	private ForkJoinPool forkJoinPool;
+
+	/**
+	 * guards the calculations, the pool and the count of remaining
+	 * calculations
+	 */
+	private final ReentrantLock lock = new ReentrantLock();
+
+	private final LocatorMetrics metrics = new LocatorMetrics();
+
+	private final int parallelism;
 
 	protected final MapDigesterLocatorParameter params;
-	private int runningThreadCount = 0;
 
-	private final ArrayList<Thread> runningThreads = new ArrayList<>();
+	private int remainingCalculationCount;
 
-	protected HashMap<CircleFinderThread, File> threadFileMap = new HashMap<>();
+	private final ResultDispatcher<CircleFindingsPairType> resultDispatcher;
 
-	protected int threadsRunning = 0;
+	protected Map<CircleFinderThread, File> threadFileMap = new ConcurrentHashMap<>();
 
 	/**
 	 * Create a {@link MapDigesterLocator} object with the given
@@ -100,78 +289,299 @@ public abstract class MapDigesterLocator<CircleFindingsPairType extends CircleFi
 
 		makeSureImgDirIsCreated(imgDir);
 
-		cores = getAvailableProcessorCount();
+		if (mapDigesterLocatorParameters.parallelism > 0) {
+			parallelism = mapDigesterLocatorParameters.parallelism;
+		} else {
+			parallelism = getAvailableProcessorCount();
+		}
+
+		allCalculationsAreDone = lock.newCondition();
+
+		resultDispatcher = new ResultDispatcher<>(this,
+				new GenericObserver<CircleFindingsPairType>() {
+					@Override
+					public void update(
+							final GenericObservable<CircleFindingsPairType> oberservable,
+							final CircleFindingsPairType circleFindingsPair) {
+						deliverToObservers(circleFindingsPair);
+					}
+				}, mapDigesterLocatorParameters.resultQueueCapacity,
+				"ResultDispatcherThread",
+				mapDigesterLocatorParameters.dropResultsWhenFull);
 	}
 
+	private CircleFinderThread addFinderToCalculationPipe(
+			final MapDigesterCircleFinderThread finderThread) {
+		finderThread.addObserver(this);
+		finderThread.setLocatorMetrics(metrics);
+
+		// whoever leaves the queue first counts the image, either the
+		// calculation or its cancellation
+		final AtomicBoolean leftQueue = new AtomicBoolean();
+
+		final FutureTask<List<CircleFinding>> calculation = new FutureTask<List<CircleFinding>>(
+				new Callable<List<CircleFinding>>() {
+					@Override
+					public List<CircleFinding> call() {
+						final boolean started = leftQueue.compareAndSet(false,
+								true);
+						if (started) {
+							metrics.startTile();
+						}
+						try {
+							finderThread.run();
+						} finally {
+							if (started) {
+								metrics.finishTile();
+							}
+						}
+						return finderThread.getCirclePositionsInImage();
+					}
+				}) {
+			@Override
+			protected void done() {
+				if (leftQueue.compareAndSet(false, true)) {
+					metrics.removeQueuedTile();
+				}
+
+				lock.lock();
+				try {
+					calculations.remove(this);
+				} finally {
+					lock.unlock();
+				}
+				finishCalculation();
+			}
+		};
+
+		metrics.addQueuedTile();
+
+		lock.lock();
+		try {
+			calculations.add(calculation);
+			remainingCalculationCount++;
+
+			if (cancelled) {
+				calculation.cancel(false);
+			} else if (forkJoinPool != null) {
+				forkJoinPool.execute(calculation);
+			} else {
+				finderThreads.add(finderThread);
+			}
+		} finally {
+			lock.unlock();
+		}
+
+		return finderThread;
+	}
+
+	/**
+	 * Adds the given image to the calculation. If the calculation is already
+	 * started, the image is calculated as soon as a worker is free. If the
+	 * calculation is cancelled, the image is not calculated at all.
+	 * 
+	 * @param imageFile
+	 *            the image-file in which circles should be found
+	 * @return the finder which searches the image and notifies this locator
+	 * @throws IOException
+	 */
 	protected CircleFinderThread addImageToCalculationPipe(final File imageFile)
 			throws IOException {
-		CircleFinderThread runnable = null;
-
 		final MapDigesterCircleFinderParameter mapDigesterCircleFinderParameters;
 		mapDigesterCircleFinderParameters = params.mapDigesterCircleFinderParameters;
 
-		runnable = new MapDigesterCircleFinderThread(imageFile,
-				mapDigesterCircleFinderParameters);
-		runnable.addObserver(this);
-
-		final Thread thread = new Thread(runnable, "CircleFinderThread "
-				+ runningThreads.size());
-		runningThreads.add(thread);
+		return addFinderToCalculationPipe(new MapDigesterCircleFinderThread(
+				imageFile, mapDigesterCircleFinderParameters));
+	}
 
-		increaseRunningThreadCount();
+	/**
+	 * Announces an image which is not added yet, for example because it is
+	 * still being fetched, so that {@link #join()} waits for it. Every call has
+	 * to be followed by a call of {@link #removePendingImage()} after the image
+	 * was added or could not be provided.
+	 */
+	protected void addPendingImage() {
+		metrics.addFetchingTile();
+
+		lock.lock();
+		try {
+			remainingCalculationCount++;
+		} finally {
+			lock.unlock();
+		}
+	}
 
-		return runnable;
+	/**
+	 * Adds the given tile of a tile store to the calculation like
+	 * {@link #addImageToCalculationPipe(File)} adds an image-file.
+	 * 
+	 * @param tileStore
+	 *            the tile store which holds the tile
+	 * @param tileKey
+	 *            the key of the tile in which circles should be found
+	 * @return the finder which searches the tile and notifies this locator
+	 */
+	protected CircleFinderThread addTileToCalculationPipe(
+			final TileStore tileStore, final TileKey tileKey) {
+		return addFinderToCalculationPipe(new MapDigesterCircleFinderThread(
+				tileStore, tileKey, params.mapDigesterCircleFinderParameters));
 	}
 
-	private boolean allInnerThreadsAreDone() {
-		final boolean allInnerThreadsAreDone = runningThreadCount == 0;
-		return allInnerThreadsAreDone;
+	/**
+	 * Cancels all calculations which are not completed yet. Images which are
+	 * already being calculated are completed, but their circle findings are
+	 * not delivered to the observers anymore.
+	 */
+	public void cancel() {
+		cancelled = true;
+
+		final List<FutureTask<List<CircleFinding>>> remainingCalculations;
+		lock.lock();
+		try {
+			finderThreads.clear();
+			// a cancelled calculation removes itself from the calculations
+			remainingCalculations = new ArrayList<>(calculations);
+		} finally {
+			lock.unlock();
+		}
+
+		for (final FutureTask<List<CircleFinding>> calculation : remainingCalculations) {
+			calculation.cancel(false);
+		}
+
+		shutdownForkJoinPool();
 	}
 
-	private synchronized void decreaseRunningThreadCount() {
-		runningThreadCount--;
+	private void deliverToObservers(
+			final CircleFindingsPairType circleFindingsPair) {
+		super.notifyObservers(circleFindingsPair);
+	}
 
+	private void finishCalculation() {
+		lock.lock();
+		try {
+			remainingCalculationCount--;
+			if (remainingCalculationCount == 0) {
+				allCalculationsAreDone.signalAll();
+			}
+		} finally {
+			lock.unlock();
+		}
 	}
 
 	private int getAvailableProcessorCount() {
 		return Runtime.getRuntime().availableProcessors();
 	}
 
-	protected synchronized void handleFinishedFinderThread(
+	/**
+	 * Returns the count of results which were not delivered to the observers,
+	 * because the observers were too slow and the result queue was full while
+	 * dropping results was enabled, or because a calculating thread was
+	 * interrupted while it waited for the observers.
+	 * 
+	 * @return the count of dropped results
+	 */
+	public long getDroppedResultCount() {
+		return resultDispatcher.getDroppedResultCount();
+	}
+
+	/**
+	 * Returns a <tt>Future</tt> of the circle findings of every added image
+	 * whose calculation is not completed yet, in the order the images were
+	 * added. Completed calculations are released, so that a long run does not
+	 * hold their circle findings.
+	 * 
+	 * @return the futures of the circle findings of the remaining images
+	 */
+	public List<Future<List<CircleFinding>>> getFutures() {
+		lock.lock();
+		try {
+			return new ArrayList<Future<List<CircleFinding>>>(calculations);
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Returns the metrics of the calculation, which are updated while the
+	 * calculation goes on.
+	 * 
+	 * @return the metrics of the calculation
+	 */
+	public LocatorMetrics getMetrics() {
+		return metrics;
+	}
+
+	/**
+	 * Returns the count of added images whose calculation is not completed
+	 * yet.
+	 * 
+	 * @return the count of remaining images
+	 */
+	public int getRemainingCalculationCount() {
+		lock.lock();
+		try {
+			return remainingCalculationCount;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	protected void handleFinishedFinderThread(
 			final CircleFinderThread finishedFinderThread,
 			final List<CircleFinding> circleCoordinates) {
 
-		threadsRunning--;
-
 		final boolean verbosePrint = params.verbosePrint;
 
 		if (verbosePrint) {
+			// the calculation of the finished image is completed after this
 			final String doneNotification = String.format(
 					"Done Calculating image, %d images to go.",
-					runningThreads.size());
+					getRemainingCalculationCount() - 1);
 			System.out.println(doneNotification);
+			System.out.println(metrics.getSnapshot());
+			System.out.println();
 		}
-
-		final boolean stillImagesToCalculate = !runningThreads.isEmpty();
-		if (stillImagesToCalculate) {
-			runningThreads.remove(0).start();
-		}
-
-		System.out.println();
 	}
 
-	private synchronized void increaseRunningThreadCount() {
-		runningThreadCount++;
+	/**
+	 * Returns if the calculations were cancelled.
+	 * 
+	 * @return <code>true</code> if {@link #cancel()} was called
+	 */
+	public boolean isCancelled() {
+		return cancelled;
 	}
 
 	/**
-	 * Waits for all calculation threads to complete.
+	 * Waits for all calculation threads to complete and for the delivery of
+	 * their results to the observers. Returns immediately if they are already
+	 * completed or were cancelled. No results are delivered afterwards. If
+	 * results were dropped, their count is printed to the error stream, and
+	 * can be read with {@link #getDroppedResultCount()}.
 	 * 
 	 * @throws InterruptedException
 	 */
-	public synchronized void join() throws InterruptedException {
-		callerThread = this;
-		callerThread.wait();
+	public void join() throws InterruptedException {
+		lock.lock();
+		try {
+			while (remainingCalculationCount > 0) {
+				allCalculationsAreDone.await();
+			}
+		} finally {
+			lock.unlock();
+		}
+
+		resultDispatcher.awaitDelivery();
+		resultDispatcher.shutdown();
+
+		final long droppedResultCount = getDroppedResultCount();
+		if (droppedResultCount > 0) {
+			System.err.println(droppedResultCount
+					+ " results were dropped and not delivered to the observers.");
+		}
+
+		shutdownForkJoinPool();
 	}
 
 	private void makeSureImgDirIsCreated(final File imgDir) {
@@ -180,21 +590,70 @@ public abstract class MapDigesterLocator<CircleFindingsPairType extends CircleFi
 		}
 	}
 
-	private synchronized void notifyCallingThread() {
-		callerThread.notify();
+	/**
+	 * Publishes the given result to the observers without waiting for them.
+	 * The observers are notified one after another in a dedicated thread. If
+	 * the observers are so slow that the result queue is full, this method
+	 * waits for them, or the result is dropped and counted if dropping
+	 * results is enabled. Results which are published after {@link #join()}
+	 * are dropped and counted, too.
+	 * 
+	 * @param circleFindingsPair
+	 *            the result to deliver to the observers
+	 * @see #getDroppedResultCount()
+	 */
+	@Override
+	public void notifyObservers(final CircleFindingsPairType circleFindingsPair) {
+		if (!resultDispatcher.publish(circleFindingsPair)) {
+			System.err.println("Dropped the findings of " + circleFindingsPair);
+		}
 	}
 
 	/**
-	 * Starts the calculation threads.
+	 * Withdraws an image announced by {@link #addPendingImage()}.
 	 */
-	public synchronized void start() {
-		startCalculating();
+	protected void removePendingImage() {
+		metrics.removeFetchingTile();
+		finishCalculation();
+	}
+
+	private void shutdownForkJoinPool() {
+		lock.lock();
+		try {
+			if (forkJoinPool != null) {
+				forkJoinPool.shutdown();
+			}
+		} finally {
+			lock.unlock();
+		}
 	}
 
-	private synchronized void startCalculating() {
-		for (currentThreadIndex = 0; currentThreadIndex < cores
-				&& !runningThreads.isEmpty(); currentThreadIndex++) {
-			runningThreads.remove(0).start();
+	/**
+	 * Starts the calculation threads.
+	 */
+	public void start() {
+		lock.lock();
+		try {
+			if (forkJoinPool != null || cancelled) {
+				return;
+			}
+
+			forkJoinPool = new ForkJoinPool(parallelism);
+
+			final boolean workersWouldBeIdle = parallelism > 1
+					&& remainingCalculationCount < parallelism;
+			if (workersWouldBeIdle) {
+				for (final MapDigesterCircleFinderThread finderThread : finderThreads) {
+					finderThread.setForkJoinPool(forkJoinPool);
+				}
+			}
+			finderThreads.clear();
+
+			for (final FutureTask<List<CircleFinding>> calculation : calculations) {
+				forkJoinPool.execute(calculation);
+			}
+		} finally {
+			lock.unlock();
 		}
 	}
 
@@ -203,13 +662,9 @@ public abstract class MapDigesterLocator<CircleFindingsPairType extends CircleFi
 			final GenericObservable<List<CircleFinding>> oberservable,
 			final List<CircleFinding> circleCoordinates) {
 
-		final CircleFinderThread finishedFinderThread = (CircleFinderThread) oberservable;
-		handleFinishedFinderThread(finishedFinderThread, circleCoordinates);
-
-		decreaseRunningThreadCount();
-
-		if (allInnerThreadsAreDone()) {
-			notifyCallingThread();
+		if (!cancelled) {
+			final CircleFinderThread finishedFinderThread = (CircleFinderThread) oberservable;
+			handleFinishedFinderThread(finishedFinderThread, circleCoordinates);
 		}
 	}
 }
@@ -69,7 +69,9 @@ public class MapDigesterLocatorForFiles extends
 		if (foundSomething || notifyEvenWithoutFinding) {
 			final File file = threadFileMap.remove(finishedFinderThread);
 			final FileCircleFindingsPair fileCircleFindingsPair = new FileCircleFindingsPair(
-					file, circleCoordinates);
+					file, circleCoordinates,
+					finishedFinderThread.isEdgeBudgetCapped(),
+					finishedFinderThread.getAppliedEdgeDetectionTolerance());
 
 			notifyObservers(fileCircleFindingsPair);
 		}
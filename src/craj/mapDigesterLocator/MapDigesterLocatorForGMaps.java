@@ -1,21 +1,47 @@
 package craj.mapDigesterLocator;
 
 import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
-import java.net.URL;
-import java.util.HashMap;
+import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.imageio.ImageIO;
 
 import processing.core.PVector;
 import craj.CircleFinding;
+import craj.mapDigesterLocator.ProgressJournal.ReplayHandler;
 
 /**
  * This class extends the MapDigesterLocator for the functionality to get all
  * images from Google Maps in the specified range between the given longitude
  * and latitude.
+ * <p>
+ * The images which are not on disc yet are fetched from a {@link TileSource}
+ * by a bounded count of fetch threads, and every fetch is retried a few times
+ * with a growing delay. Every fetched image is added to the calculation as
+ * soon as it is on disc, so the search for circles overlaps with the fetching
+ * of the remaining images once the locator is started.
+ * <p>
+ * If a {@link TileStore} is given, the images are kept in the store instead
+ * of one file per image, and the file of the delivered
+ * {@link GmapsCoordinateCircleFindingsPair} is <code>null</code>. If a
+ * {@link ProgressJournal} is given, every searched tile is recorded in it and
+ * the tiles it already holds are skipped, so an aborted sweep can be resumed.
+ * The circle findings of the skipped tiles are replayed from the journal when
+ * the locator is started, so the observers receive the circle findings of the
+ * whole sweep, even those which were lost in the aborted sweep before they
+ * reached its output.
  * 
  * @author Alexander Johr u26865 m18927, Caroline Rhling u26864 m18926
  * 
@@ -28,13 +54,29 @@ public class MapDigesterLocatorForGMaps extends
 	 * {@link MapDigesterLocatorForGMaps}
 	 */
 	public static class MapDigesterLocatorForGMapsParameter {
+
+		/**
+		 * the count of attempts to fetch a tile if no count is given
+		 */
+		private static final int DEFAULT_FETCH_ATTEMPT_COUNT = 3;
+
+		/**
+		 * the count of tiles which are fetched at once if no count is given
+		 */
+		private static final int DEFAULT_FETCH_CONCURRENCY = 4;
+
+		private final int fetchAttemptCount;
+		private final int fetchConcurrency;
 		private final float latitudeStart;
 		private final float latitudeStop;
 		private final float longitudeStart;
 		private final float longitudeStop;
-		private final String mapsImageUrlPattern;
 		private final MapDigesterLocatorParameter params;
+		private final ProgressJournal progressJournal;
 		private final float stepSize;
+		private final TileSource tileSource;
+		private final TileStore tileStore;
+		private final int zoom;
 
 		/**
 		 * 
@@ -62,28 +104,192 @@ public class MapDigesterLocatorForGMaps extends
 				final float longitudeStart, final float latitudeStart,
 				final float longitudeStop, final float latitudeStop,
 				final float stepSize, final String mapsImageUrlPattern) {
+			this(params, longitudeStart, latitudeStart, longitudeStop,
+					latitudeStop, stepSize,
+					new UrlTileSource(mapsImageUrlPattern),
+					MapDigesterLocatorForGMapsParameter.DEFAULT_FETCH_CONCURRENCY,
+					MapDigesterLocatorForGMapsParameter.DEFAULT_FETCH_ATTEMPT_COUNT);
+		}
+
+		/**
+		 * 
+		 * @param params
+		 *            the parameter object for the {@link MapDigesterLocator}
+		 * @param longitudeStart
+		 *            the start longitude
+		 * @param latitudeStart
+		 *            the start latitude
+		 * @param longitudeStop
+		 *            the stop longitude
+		 * @param latitudeStop
+		 *            the stop latitude
+		 * @param stepSize
+		 *            the step size in which between the start and stop of the
+		 *            longitude and latitude should be iterated
+		 * @param tileSource
+		 *            the source the tiles which are not on disc yet are
+		 *            fetched from
+		 * @param fetchConcurrency
+		 *            the count of tiles which are fetched at once
+		 * @param fetchAttemptCount
+		 *            the count of attempts to fetch a tile before it is
+		 *            skipped
+		 */
+		public MapDigesterLocatorForGMapsParameter(
+				final MapDigesterLocatorParameter params,
+				final float longitudeStart, final float latitudeStart,
+				final float longitudeStop, final float latitudeStop,
+				final float stepSize, final TileSource tileSource,
+				final int fetchConcurrency, final int fetchAttemptCount) {
+			this(params, longitudeStart, latitudeStart, longitudeStop,
+					latitudeStop, stepSize, tileSource, fetchConcurrency,
+					fetchAttemptCount, null, 0);
+		}
+
+		/**
+		 * 
+		 * @param params
+		 *            the parameter object for the {@link MapDigesterLocator}
+		 * @param longitudeStart
+		 *            the start longitude
+		 * @param latitudeStart
+		 *            the start latitude
+		 * @param longitudeStop
+		 *            the stop longitude
+		 * @param latitudeStop
+		 *            the stop latitude
+		 * @param stepSize
+		 *            the step size in which between the start and stop of the
+		 *            longitude and latitude should be iterated
+		 * @param tileSource
+		 *            the source the tiles which are not on disc yet are
+		 *            fetched from
+		 * @param fetchConcurrency
+		 *            the count of tiles which are fetched at once
+		 * @param fetchAttemptCount
+		 *            the count of attempts to fetch a tile before it is
+		 *            skipped
+		 * @param tileStore
+		 *            the tile store the tiles are kept in, or
+		 *            <code>null</code> to keep every tile in its own file in
+		 *            the image directory
+		 * @param zoom
+		 *            the zoom level of the tiles, which is part of their key in
+		 *            the tile store
+		 */
+		public MapDigesterLocatorForGMapsParameter(
+				final MapDigesterLocatorParameter params,
+				final float longitudeStart, final float latitudeStart,
+				final float longitudeStop, final float latitudeStop,
+				final float stepSize, final TileSource tileSource,
+				final int fetchConcurrency, final int fetchAttemptCount,
+				final TileStore tileStore, final int zoom) {
+			this(params, longitudeStart, latitudeStart, longitudeStop,
+					latitudeStop, stepSize, tileSource, fetchConcurrency,
+					fetchAttemptCount, tileStore, zoom, null);
+		}
+
+		/**
+		 * 
+		 * @param params
+		 *            the parameter object for the {@link MapDigesterLocator}
+		 * @param longitudeStart
+		 *            the start longitude
+		 * @param latitudeStart
+		 *            the start latitude
+		 * @param longitudeStop
+		 *            the stop longitude
+		 * @param latitudeStop
+		 *            the stop latitude
+		 * @param stepSize
+		 *            the step size in which between the start and stop of the
+		 *            longitude and latitude should be iterated
+		 * @param tileSource
+		 *            the source the tiles which are not on disc yet are
+		 *            fetched from
+		 * @param fetchConcurrency
+		 *            the count of tiles which are fetched at once
+		 * @param fetchAttemptCount
+		 *            the count of attempts to fetch a tile before it is
+		 *            skipped
+		 * @param tileStore
+		 *            the tile store the tiles are kept in, or
+		 *            <code>null</code> to keep every tile in its own file in
+		 *            the image directory
+		 * @param zoom
+		 *            the zoom level of the tiles, which is part of their key in
+		 *            the tile store and the progress journal
+		 * @param progressJournal
+		 *            the journal the searched tiles are recorded in and whose
+		 *            recorded tiles are skipped, or <code>null</code> to search
+		 *            every tile
+		 */
+		public MapDigesterLocatorForGMapsParameter(
+				final MapDigesterLocatorParameter params,
+				final float longitudeStart, final float latitudeStart,
+				final float longitudeStop, final float latitudeStop,
+				final float stepSize, final TileSource tileSource,
+				final int fetchConcurrency, final int fetchAttemptCount,
+				final TileStore tileStore, final int zoom,
+				final ProgressJournal progressJournal) {
+			if (fetchConcurrency < 1 || fetchAttemptCount < 1) {
+				throw new IllegalArgumentException(
+						"At least one tile has to be fetched at once, with at least one attempt.");
+			}
+
 			this.params = params;
 			this.longitudeStart = longitudeStart;
 			this.latitudeStart = latitudeStart;
 			this.longitudeStop = longitudeStop;
 			this.latitudeStop = latitudeStop;
 			this.stepSize = stepSize;
-			this.mapsImageUrlPattern = mapsImageUrlPattern;
+			this.tileSource = tileSource;
+			this.fetchConcurrency = fetchConcurrency;
+			this.fetchAttemptCount = fetchAttemptCount;
+			this.tileStore = tileStore;
+			this.zoom = zoom;
+			this.progressJournal = progressJournal;
 		}
 	}
 
+	/**
+	 * the delay in milliseconds before the second attempt to fetch a tile,
+	 * which is doubled for every further attempt
+	 */
+	private static final long FIRST_RETRY_DELAY = 250;
+
+	private final int fetchAttemptCount;
+
+	private final List<FutureTask<Void>> fetches = new ArrayList<>();
+
+	private final ExecutorService fetchExecutorService;
+
 	private final float longitudeStart, latitudeStart;
 
 	private final float longitudeStop, latitudeStop;
-	private final String mapsImageUrlPattern;
+
+	private final ProgressJournal progressJournal;
+
+	/**
+	 * the tiles which are skipped because the progress journal holds them and
+	 * whose circle findings are not replayed yet
+	 */
+	private final Set<TileKey> skippedTiles = new HashSet<>();
 
 	private final float stepSize;
 
-	private final HashMap<CircleFinderThread, PVector> threadCoordinateMap = new HashMap<>();
+	private final Map<CircleFinderThread, PVector> threadCoordinateMap = new ConcurrentHashMap<>();
+
+	private final TileSource tileSource;
+
+	private final TileStore tileStore;
+
+	private final int zoom;
 
 	/**
 	 * Create a {@link MapDigesterLocatorForGMaps} object with the given
-	 * {@link MapDigesterLocatorForGMapsParameter} parameter object.
+	 * {@link MapDigesterLocatorForGMapsParameter} parameter object. The
+	 * fetching of the images starts immediately.
 	 * 
 	 * @param params
 	 *            the {@link MapDigesterLocatorForGMapsParameter} parameter
@@ -109,28 +315,144 @@ public class MapDigesterLocatorForGMaps extends
 					"Start latitude must be higher then end latitude.");
 		}
 
-		mapsImageUrlPattern = params.mapsImageUrlPattern;
-
 		stepSize = params.stepSize;
 
+		tileSource = params.tileSource;
+		fetchAttemptCount = params.fetchAttemptCount;
+		tileStore = params.tileStore;
+		zoom = params.zoom;
+		progressJournal = params.progressJournal;
+
+		final AtomicInteger fetchThreadCount = new AtomicInteger();
+		fetchExecutorService = Executors.newFixedThreadPool(
+				params.fetchConcurrency, new ThreadFactory() {
+					@Override
+					public Thread newThread(final Runnable runnable) {
+						final Thread thread = new Thread(runnable,
+								"TileFetchThread "
+										+ fetchThreadCount.getAndIncrement());
+						thread.setDaemon(true);
+						return thread;
+					}
+				});
+
 		addAllImagesToCalculationPipe();
 	}
 
 	private void addAllImagesToCalculationPipe() {
 		for (float lon = longitudeStart; lon < longitudeStop; lon += stepSize) {
 			for (float lat = latitudeStart; lat > latitudeStop; lat -= stepSize) {
+				final float latitude = lat;
+				final float longitude = lon;
+
+				final TileKey tileKey = new TileKey(latitude, longitude, zoom);
+				if (progressJournal != null
+						&& progressJournal.isCompleted(tileKey)) {
+					skippedTiles.add(tileKey);
+					continue;
+				}
 
-				try {
-					final File imageFile = getMapImage(lat, lon);
-					final CircleFinderThread thread = addImageToCalculationPipe(imageFile);
-					// lon = x, lat = y
-					threadCoordinateMap.put(thread, new PVector(lon, lat));
-					threadFileMap.put(thread, imageFile);
-
-				} catch (final IOException e) {
-					System.err.println("No Image provided from Google!");
+				addPendingImage();
+
+				final FutureTask<Void> fetch = new FutureTask<Void>(
+						new Runnable() {
+							@Override
+							public void run() {
+								addFetchedImageToCalculationPipe(latitude,
+										longitude);
+							}
+						}, null) {
+					@Override
+					protected void done() {
+						removePendingImage();
+					}
+				};
+
+				fetches.add(fetch);
+				fetchExecutorService.execute(fetch);
+			}
+		}
+
+		fetchExecutorService.shutdown();
+
+		if (params.verbosePrint && !skippedTiles.isEmpty()) {
+			System.out.println("Skipped " + skippedTiles.size()
+					+ " tiles which are already searched.");
+		}
+	}
+
+	private void addFetchedImageToCalculationPipe(final float lat,
+			final float lon) {
+		if (tileStore != null) {
+			addFetchedTileToCalculationPipe(lat, lon);
+			return;
+		}
+
+		try {
+			final File imageFile = getMapImage(lat, lon);
+
+			// the finder must not finish before its coordinate is known
+			synchronized (this) {
+				final CircleFinderThread thread = addImageToCalculationPipe(imageFile);
+				// lon = x, lat = y
+				threadCoordinateMap.put(thread, new PVector(lon, lat));
+				threadFileMap.put(thread, imageFile);
+			}
+		} catch (final IOException e) {
+			System.err.println("No Image provided from Google!");
+		}
+	}
+
+	private void addFetchedTileToCalculationPipe(final float lat,
+			final float lon) {
+		final TileKey tileKey = new TileKey(lat, lon, zoom);
+		try {
+			putMapTile(tileKey);
+
+			// the finder must not finish before its coordinate is known
+			synchronized (this) {
+				final CircleFinderThread thread = addTileToCalculationPipe(
+						tileStore, tileKey);
+				// lon = x, lat = y
+				threadCoordinateMap.put(thread, new PVector(lon, lat));
+			}
+		} catch (final IOException e) {
+			System.err.println("No Image provided from Google!");
+		}
+	}
+
+	/**
+	 * Cancels the fetching of the images which are not fetched yet and all
+	 * calculations which are not completed yet.
+	 */
+	@Override
+	public void cancel() {
+		for (final FutureTask<Void> fetch : fetches) {
+			fetch.cancel(false);
+		}
+
+		super.cancel();
+	}
+
+	private BufferedImage fetchTile(final float x, final float y)
+			throws IOException {
+		long retryDelay = MapDigesterLocatorForGMaps.FIRST_RETRY_DELAY;
+
+		for (int attempt = 1;; attempt++) {
+			try {
+				return tileSource.getTile(x, y);
+			} catch (final IOException e) {
+				if (attempt >= fetchAttemptCount) {
+					throw e;
 				}
 
+				try {
+					Thread.sleep(retryDelay);
+				} catch (final InterruptedException interruptedException) {
+					Thread.currentThread().interrupt();
+					throw e;
+				}
+				retryDelay *= 2;
 			}
 		}
 	}
@@ -140,34 +462,38 @@ public class MapDigesterLocatorForGMaps extends
 		final File imgDir = params.imgDir;
 		final boolean verbosePrint = params.verbosePrint;
 
-		final File fileOnDisc = new File(imgDir, "X_" + Float.toHexString(x)
-				+ "Y_" + Float.toHexString(y) + ".jpg");
+		final File fileOnDisc = getMapImageFile(x, y);
 
-		// If it exists on disc, load it, request it from google otherwise
+		// If it exists on disc, load it, fetch it from the tile source otherwise
 		if (fileOnDisc.exists()) {
 			if (verbosePrint) {
 				System.out.println("Get from Disc: " + fileOnDisc.toPath());
 			}
 		} else {
-			final String requestUrl = String.format(mapsImageUrlPattern,
-					Float.toString(x), Float.toString(y));
-
 			if (verbosePrint) {
-				System.out.println("Get from Web: " + requestUrl);
+				System.out.println("Get from Web: " + x + ", " + y);
 			}
 
-			// Request from Google
-			BufferedImage responseImage;
+			final BufferedImage responseImage = fetchTile(x, y);
 
-			responseImage = ImageIO.read(new URL(requestUrl));
+			// Save on disc for further use, the file appears only when complete
+			final File partialFileOnDisc = new File(imgDir,
+					fileOnDisc.getName() + ".part");
+			ImageIO.write(responseImage, "jpg", partialFileOnDisc);
 
-			// Save on disc for further use
-			ImageIO.write(responseImage, "jpg", fileOnDisc);
+			if (!partialFileOnDisc.renameTo(fileOnDisc)) {
+				throw new IOException("Could not save " + fileOnDisc);
+			}
 		}
 
 		return fileOnDisc;
 	}
 
+	private File getMapImageFile(final float x, final float y) {
+		return new File(params.imgDir, "X_" + Float.toHexString(x) + "Y_"
+				+ Float.toHexString(y) + ".jpg");
+	}
+
 	@Override
 	protected void handleFinishedFinderThread(
 			final CircleFinderThread finishedFinderThread,
@@ -175,19 +501,131 @@ public class MapDigesterLocatorForGMaps extends
 		super.handleFinishedFinderThread(finishedFinderThread,
 				circleCoordinates);
 
-		final PVector foundedCoordinate = threadCoordinateMap
-				.remove(finishedFinderThread);
+		final PVector foundedCoordinate;
+		final File file;
+
+		// waits until the coordinate of the finder is put into the maps
+		synchronized (this) {
+			foundedCoordinate = threadCoordinateMap.remove(finishedFinderThread);
+			// tiles in a tile store have no file of their own
+			file = threadFileMap.remove(finishedFinderThread);
+		}
+
+		final boolean edgeBudgetCapped = finishedFinderThread
+				.isEdgeBudgetCapped();
+		final int edgeDetectionTolerance = finishedFinderThread
+				.getAppliedEdgeDetectionTolerance();
+
+		if (progressJournal != null && !finishedFinderThread.hasFailed()) {
+			try {
+				// lon = x, lat = y
+				progressJournal.append(new TileKey(foundedCoordinate.y,
+						foundedCoordinate.x, zoom), edgeBudgetCapped,
+						edgeDetectionTolerance, circleCoordinates);
+			} catch (final IOException e) {
+				System.err.println("Error writing the progress journal: " + e);
+			}
+		}
+
+		notifyObserversOfTile(file, foundedCoordinate, circleCoordinates,
+				edgeBudgetCapped, edgeDetectionTolerance);
+	}
 
-		final boolean foundSomething = circleCoordinates.size() != 0;
+	private void notifyObserversOfTile(final File file,
+			final PVector coordinate, final List<CircleFinding> circleFindings,
+			final boolean edgeBudgetCapped, final int edgeDetectionTolerance) {
+		final boolean foundSomething = circleFindings.size() != 0;
 		final boolean notifyEvenWithoutFinding = params.notifyEvenWithoutFinding;
 
 		if (foundSomething || notifyEvenWithoutFinding) {
-			final File file = threadFileMap.remove(finishedFinderThread);
 			final GmapsCoordinateCircleFindingsPair coordinateCircleFindingsPair = new GmapsCoordinateCircleFindingsPair(
-					file, foundedCoordinate, circleCoordinates);
+					file, coordinate, circleFindings, edgeBudgetCapped,
+					edgeDetectionTolerance);
 
 			notifyObservers(coordinateCircleFindingsPair);
 		}
 	}
 
+	/**
+	 * Makes sure the tile store holds the given tile. The tile is fetched from
+	 * the tile source and encoded as JPEG only if the store does not hold it
+	 * yet.
+	 */
+	private void putMapTile(final TileKey tileKey) throws IOException {
+		final boolean verbosePrint = params.verbosePrint;
+
+		if (tileStore.contains(tileKey)) {
+			if (verbosePrint) {
+				System.out.println("Get from Tile Store: " + tileKey);
+			}
+		} else {
+			if (verbosePrint) {
+				System.out.println("Get from Web: " + tileKey.latitude + ", "
+						+ tileKey.longitude);
+			}
+
+			final BufferedImage responseImage = fetchTile(tileKey.latitude,
+					tileKey.longitude);
+
+			final ByteArrayOutputStream encodedImage = new ByteArrayOutputStream();
+			ImageIO.write(responseImage, "jpg", encodedImage);
+			tileStore.put(tileKey, encodedImage.toByteArray());
+		}
+	}
+
+	/**
+	 * Delivers the circle findings of the skipped tiles from the progress
+	 * journal to the observers, once.
+	 */
+	private void replaySkippedTiles() {
+		final Set<TileKey> tilesToReplay;
+		synchronized (this) {
+			if (skippedTiles.isEmpty() || isCancelled()) {
+				return;
+			}
+			tilesToReplay = new HashSet<>(skippedTiles);
+			skippedTiles.clear();
+		}
+
+		try {
+			final int replayedTileCount = progressJournal.replay(
+					tilesToReplay,
+					params.mapDigesterCircleFinderParameters.referenceCircles,
+					new ReplayHandler() {
+						@Override
+						public void replayTile(final TileKey tileKey,
+								final boolean edgeBudgetCapped,
+								final int edgeDetectionTolerance,
+								final List<CircleFinding> circleFindings) {
+							// tiles in a tile store have no file of their own
+							final File file = tileStore != null ? null
+									: getMapImageFile(tileKey.latitude,
+											tileKey.longitude);
+							// lon = x, lat = y
+							notifyObserversOfTile(file, new PVector(
+									tileKey.longitude, tileKey.latitude),
+									circleFindings, edgeBudgetCapped,
+									edgeDetectionTolerance);
+						}
+					});
+
+			if (params.verbosePrint) {
+				System.out.println("Replayed the circle findings of "
+						+ replayedTileCount + " tiles from the journal.");
+			}
+		} catch (final IOException e) {
+			System.err.println("Error replaying the progress journal: " + e);
+		}
+	}
+
+	/**
+	 * Starts the calculation threads and delivers the circle findings of the
+	 * tiles which are skipped because the progress journal holds them.
+	 */
+	@Override
+	public void start() {
+		super.start();
+		replaySkippedTiles();
+	}
+
 }
@@ -0,0 +1,150 @@
+package craj.mapDigesterLocator;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Counts non-negative values, like latencies in nanoseconds or counts per
+ * tile, in buckets whose bounds are powers of two.
+ * <p>
+ * The values can be recorded by many threads at once without locks. The
+ * percentiles are the upper bounds of the buckets, so they are at most twice
+ * the real percentiles, which is enough to see which stage takes the most
+ * time. A {@link #copy()} does not change anymore, but it is taken while
+ * values are recorded, so its count may be a bit off from its buckets.
+ */
+public class MetricHistogram {
+
+	/**
+	 * the count of buckets, bucket <tt>b</tt> holds the values from
+	 * <tt>2^(b-1)</tt> to <tt>2^b - 1</tt> and bucket 0 the value 0
+	 */
+	private static final int BUCKET_COUNT = 64;
+
+	private static int getBucket(final long value) {
+		return Long.SIZE - Long.numberOfLeadingZeros(value);
+	}
+
+	private final AtomicLongArray bucketCounts = new AtomicLongArray(
+			MetricHistogram.BUCKET_COUNT);
+
+	private final AtomicLong count = new AtomicLong();
+
+	private final AtomicLong max = new AtomicLong();
+
+	private final AtomicLong sum = new AtomicLong();
+
+	/**
+	 * Returns a histogram with the values recorded so far, which does not
+	 * change when further values are recorded in this histogram.
+	 * 
+	 * @return a copy of this histogram
+	 */
+	public MetricHistogram copy() {
+		final MetricHistogram copy = new MetricHistogram();
+
+		for (int bucket = 0; bucket < MetricHistogram.BUCKET_COUNT; bucket++) {
+			copy.bucketCounts.set(bucket, bucketCounts.get(bucket));
+		}
+		copy.count.set(count.get());
+		copy.max.set(max.get());
+		copy.sum.set(sum.get());
+
+		return copy;
+	}
+
+	/**
+	 * Returns the count of recorded values.
+	 * 
+	 * @return the count of recorded values
+	 */
+	public long getCount() {
+		return count.get();
+	}
+
+	/**
+	 * Returns the largest recorded value.
+	 * 
+	 * @return the largest recorded value, or 0 if no value is recorded
+	 */
+	public long getMax() {
+		return max.get();
+	}
+
+	/**
+	 * Returns the average of the recorded values.
+	 * 
+	 * @return the average of the recorded values, or 0 if no value is
+	 *         recorded
+	 */
+	public double getMean() {
+		final long recordedCount = count.get();
+		return recordedCount > 0 ? (double) sum.get() / recordedCount : 0;
+	}
+
+	/**
+	 * Returns the upper bound of the bucket which holds the given percentile
+	 * of the recorded values, but at most the largest recorded value.
+	 * 
+	 * @param percentile
+	 *            the percentile from 0 to 100
+	 * @return the upper bound of the percentile, or 0 if no value is recorded
+	 */
+	public long getPercentile(final double percentile) {
+		if (percentile < 0 || percentile > 100) {
+			throw new IllegalArgumentException(
+					"The percentile has to be between 0 and 100.");
+		}
+
+		long recordedCount = 0;
+		for (int bucket = 0; bucket < MetricHistogram.BUCKET_COUNT; bucket++) {
+			recordedCount += bucketCounts.get(bucket);
+		}
+		if (recordedCount == 0) {
+			return 0;
+		}
+
+		final long rank = Math.max(1,
+				(long) Math.ceil(percentile / 100 * recordedCount));
+
+		long cumulativeCount = 0;
+		for (int bucket = 0; bucket < MetricHistogram.BUCKET_COUNT; bucket++) {
+			cumulativeCount += bucketCounts.get(bucket);
+			if (cumulativeCount >= rank) {
+				final long upperBound = bucket == 0 ? 0 : (1L << bucket) - 1;
+				return Math.min(upperBound, max.get());
+			}
+		}
+
+		return max.get();
+	}
+
+	/**
+	 * Returns the sum of the recorded values.
+	 * 
+	 * @return the sum of the recorded values
+	 */
+	public long getSum() {
+		return sum.get();
+	}
+
+	/**
+	 * Records the given value.
+	 * 
+	 * @param value
+	 *            the value to record, negative values are recorded as 0
+	 */
+	public void record(final long value) {
+		final long recordedValue = Math.max(0, value);
+
+		bucketCounts.incrementAndGet(MetricHistogram.getBucket(recordedValue));
+		sum.addAndGet(recordedValue);
+		count.incrementAndGet();
+
+		long currentMax = max.get();
+		while (recordedValue > currentMax
+				&& !max.compareAndSet(currentMax, recordedValue)) {
+			currentMax = max.get();
+		}
+	}
+}
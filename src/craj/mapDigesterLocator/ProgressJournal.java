@@ -0,0 +1,471 @@
+package craj.mapDigesterLocator;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.CRC32;
+
+import craj.CircleFinding;
+import craj.ReferenceCircle;
+import craj.ReferenceCircle.ReferenceCircleParameters;
+
+/**
+ * Records the tiles of a sweep which are completely searched, so a sweep which
+ * was aborted can be resumed without searching these tiles again.
+ * <p>
+ * The journal is an append-only file with one record per tile. A record holds
+ * the length and CRC32 checksum of its content, followed by the latitude,
+ * longitude and zoom level of the tile, whether it hit an edge budget and its
+ * applied edge detection tolerance, and its circle findings, each with its
+ * position, diameter, cross value, cross count and black value. A tile without
+ * any circle finding gets a record with no findings.
+ * <p>
+ * The records are written to the file as soon as they are appended, but they
+ * are only forced to the disc after a batch of records or after a short delay,
+ * so many workers can append without waiting for the disc. A crash can lose
+ * the records of the last batch, whose tiles are simply searched again. An
+ * incomplete or corrupt record at the end of the file is cut off when the
+ * journal is opened again.
+ * <p>
+ * The circle findings of the tiles which were recorded before the journal was
+ * opened can be read again with {@link #replay(Set, List, ReplayHandler)}, so
+ * a resumed sweep can deliver the circle findings of the skipped tiles, even
+ * if they were lost in the aborted sweep before they reached its output.
+ */
+public class ProgressJournal implements Closeable {
+
+	/**
+	 * Receives the circle findings of the tiles of a replayed journal.
+	 */
+	public static interface ReplayHandler {
+
+		/**
+		 * Receives the recorded circle findings of a completely searched tile.
+		 * 
+		 * @param tileKey
+		 *            the key of the tile
+		 * @param edgeBudgetCapped
+		 *            whether the tile hit an edge budget
+		 * @param edgeDetectionTolerance
+		 *            the edge detection tolerance applied to the tile, or -1
+		 *            if it is not known
+		 * @param circleFindings
+		 *            the circle findings of the tile, which may be empty
+		 */
+		void replayTile(TileKey tileKey, boolean edgeBudgetCapped,
+				int edgeDetectionTolerance, List<CircleFinding> circleFindings);
+	}
+
+	/**
+	 * the count of records after which the journal is forced to the disc if no
+	 * count is given
+	 */
+	private static final int DEFAULT_SYNC_BATCH_SIZE = 64;
+
+	/**
+	 * the delay in milliseconds after which appended records are forced to the
+	 * disc if no delay is given
+	 */
+	private static final long DEFAULT_SYNC_DELAY = 1000;
+
+	/**
+	 * the size of a finding in a record: x, y, diameter, cross value, cross
+	 * count and black value
+	 */
+	private static final int FINDING_LENGTH = 4 + 4 + 4 + 4 + 4 + 4;
+
+	/**
+	 * the size of the content of a record without its findings: latitude,
+	 * longitude, zoom, edge budget flag, edge detection tolerance and finding
+	 * count
+	 */
+	private static final int RECORD_HEADER_LENGTH = 4 + 4 + 4 + 1 + 4 + 4;
+
+	private static int getChecksum(final byte[] content, final int offset,
+			final int length) {
+		final CRC32 checksum = new CRC32();
+		checksum.update(content, offset, length);
+		return (int) checksum.getValue();
+	}
+
+	private final ReentrantLock appendLock = new ReentrantLock();
+
+	private final AtomicLong appendedRecordCount = new AtomicLong();
+
+	private final FileChannel channel;
+
+	private final Set<TileKey> completedTiles = Collections
+			.newSetFromMap(new ConcurrentHashMap<TileKey, Boolean>());
+
+	private final File file;
+
+	/**
+	 * the length of the complete records which were in the file when the
+	 * journal was opened
+	 */
+	private long replayableLength;
+
+	private final int syncBatchSize;
+
+	private volatile long syncedRecordCount;
+
+	private final ScheduledExecutorService syncExecutorService;
+
+	private final ReentrantLock syncLock = new ReentrantLock();
+
+	/**
+	 * Opens the journal in the given file with the default sync batch size
+	 * and delay, or creates it if the file does not exist yet.
+	 * 
+	 * @param file
+	 *            the file of the journal
+	 * @throws IOException
+	 *             if the journal can not be opened
+	 */
+	public ProgressJournal(final File file) throws IOException {
+		this(file, ProgressJournal.DEFAULT_SYNC_BATCH_SIZE,
+				ProgressJournal.DEFAULT_SYNC_DELAY);
+	}
+
+	/**
+	 * Opens the journal in the given file, or creates it if the file does not
+	 * exist yet.
+	 * 
+	 * @param file
+	 *            the file of the journal
+	 * @param syncBatchSize
+	 *            the count of appended records after which the journal is
+	 *            forced to the disc
+	 * @param syncDelay
+	 *            the delay in milliseconds after which appended records are
+	 *            forced to the disc, even if the batch is not full
+	 * @throws IOException
+	 *             if the journal can not be opened
+	 */
+	public ProgressJournal(final File file, final int syncBatchSize,
+			final long syncDelay) throws IOException {
+		if (syncBatchSize < 1 || syncDelay < 1) {
+			throw new IllegalArgumentException(
+					"The sync batch size and delay have to be positive.");
+		}
+
+		this.syncBatchSize = syncBatchSize;
+		this.file = file;
+
+		if (file.exists()) {
+			readRecords();
+		}
+
+		channel = new FileOutputStream(file, true).getChannel();
+
+		syncExecutorService = Executors
+				.newSingleThreadScheduledExecutor(new ThreadFactory() {
+					@Override
+					public Thread newThread(final Runnable runnable) {
+						final Thread thread = new Thread(runnable,
+								"ProgressJournalSyncThread");
+						thread.setDaemon(true);
+						return thread;
+					}
+				});
+		syncExecutorService.scheduleWithFixedDelay(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					sync();
+				} catch (final IOException e) {
+					System.err.println("Error syncing the progress journal: "
+							+ e);
+				}
+			}
+		}, syncDelay, syncDelay, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Records the given tile as completely searched with the given circle
+	 * findings and an unknown edge detection tolerance. The record is forced
+	 * to the disc with the next batch.
+	 * 
+	 * @param tileKey
+	 *            the key of the searched tile
+	 * @param circleFindings
+	 *            the circle findings of the tile, which may be empty
+	 * @throws IOException
+	 *             if the record can not be written
+	 */
+	public void append(final TileKey tileKey,
+			final List<CircleFinding> circleFindings) throws IOException {
+		append(tileKey, false, -1, circleFindings);
+	}
+
+	/**
+	 * Records the given tile as completely searched with the given circle
+	 * findings and the edge detection tolerance which was applied to it. The
+	 * record is forced to the disc with the next batch.
+	 * 
+	 * @param tileKey
+	 *            the key of the searched tile
+	 * @param edgeBudgetCapped
+	 *            whether the tile hit an edge budget
+	 * @param edgeDetectionTolerance
+	 *            the edge detection tolerance applied to the tile, or -1 if it
+	 *            is not known
+	 * @param circleFindings
+	 *            the circle findings of the tile, which may be empty
+	 * @throws IOException
+	 *             if the record can not be written
+	 */
+	public void append(final TileKey tileKey, final boolean edgeBudgetCapped,
+			final int edgeDetectionTolerance,
+			final List<CircleFinding> circleFindings) throws IOException {
+		final int contentLength = ProgressJournal.RECORD_HEADER_LENGTH
+				+ circleFindings.size() * ProgressJournal.FINDING_LENGTH;
+		final ByteBuffer record = ByteBuffer.allocate(4 + 4 + contentLength);
+		record.position(4 + 4);
+		record.putFloat(tileKey.latitude);
+		record.putFloat(tileKey.longitude);
+		record.putInt(tileKey.zoom);
+		record.put((byte) (edgeBudgetCapped ? 1 : 0));
+		record.putInt(edgeDetectionTolerance);
+		record.putInt(circleFindings.size());
+		for (final CircleFinding circleFinding : circleFindings) {
+			record.putInt(circleFinding.x);
+			record.putInt(circleFinding.y);
+			record.putInt(circleFinding.referenceCircle.diameter);
+			record.putInt(circleFinding.getPixelCrossValue());
+			record.putInt(circleFinding.getPixelCrossCount());
+			record.putFloat(circleFinding.averagePixelBlackValue);
+		}
+		record.putInt(0, contentLength);
+		record.putInt(4, ProgressJournal.getChecksum(record.array(), 4 + 4,
+				contentLength));
+		record.rewind();
+
+		final long recordCount;
+		appendLock.lock();
+		try {
+			while (record.hasRemaining()) {
+				channel.write(record);
+			}
+			recordCount = appendedRecordCount.incrementAndGet();
+		} finally {
+			appendLock.unlock();
+		}
+
+		completedTiles.add(tileKey);
+
+		if (recordCount - syncedRecordCount >= syncBatchSize) {
+			sync();
+		}
+	}
+
+	/**
+	 * Forces all appended records to the disc and closes the journal.
+	 */
+	@Override
+	public void close() throws IOException {
+		// the sync thread must not be interrupted, as an interrupt while it
+		// forces the channel closes the channel
+		syncExecutorService.shutdown();
+		try {
+			syncExecutorService.awaitTermination(Long.MAX_VALUE,
+					TimeUnit.MILLISECONDS);
+		} catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+
+		try {
+			sync();
+		} finally {
+			channel.close();
+		}
+	}
+
+	/**
+	 * Returns the count of tiles which are recorded as completely searched.
+	 * 
+	 * @return the count of completely searched tiles
+	 */
+	public int getCompletedTileCount() {
+		return completedTiles.size();
+	}
+
+	/**
+	 * Returns whether the given tile is recorded as completely searched.
+	 * 
+	 * @param tileKey
+	 *            the key of the tile
+	 * @return <code>true</code> if the tile does not have to be searched again
+	 */
+	public boolean isCompleted(final TileKey tileKey) {
+		return completedTiles.contains(tileKey);
+	}
+
+	/**
+	 * Reads the complete records of the journal file. The file is cut off
+	 * behind the last complete record.
+	 */
+	private void readRecords() throws IOException {
+		long validLength = 0;
+
+		try (DataInputStream input = new DataInputStream(
+				new BufferedInputStream(new FileInputStream(file)))) {
+			while (true) {
+				final int contentLength = input.readInt();
+				final int checksum = input.readInt();
+				if (contentLength < ProgressJournal.RECORD_HEADER_LENGTH
+						|| contentLength > file.length() - validLength) {
+					break;
+				}
+
+				final byte[] content = new byte[contentLength];
+				input.readFully(content);
+				if (ProgressJournal.getChecksum(content, 0, contentLength) != checksum) {
+					break;
+				}
+
+				final ByteBuffer record = ByteBuffer.wrap(content);
+				completedTiles.add(new TileKey(record.getFloat(), record
+						.getFloat(), record.getInt()));
+
+				validLength += 4 + 4 + contentLength;
+			}
+		} catch (final EOFException e) {
+			// the last record is incomplete
+		}
+
+		if (file.length() > validLength) {
+			try (RandomAccessFile truncatedFile = new RandomAccessFile(file,
+					"rw")) {
+				truncatedFile.setLength(validLength);
+			}
+		}
+
+		replayableLength = validLength;
+	}
+
+	/**
+	 * Passes the recorded circle findings of the given tiles to the given
+	 * handler, in the order the tiles were recorded. Only the records which
+	 * were in the journal when it was opened are replayed, and every tile only
+	 * once.
+	 * <p>
+	 * The journal only holds the diameter of the reference circle of a circle
+	 * finding, so the reference circle with the same diameter is taken from
+	 * the given reference circles. If there is none, a reference circle with
+	 * the diameter and without tolerances is created.
+	 * 
+	 * @param tileKeys
+	 *            the keys of the tiles to replay
+	 * @param referenceCircles
+	 *            the reference circles of the circle findings
+	 * @param handler
+	 *            the handler which receives the circle findings of the tiles
+	 * @return the count of replayed tiles
+	 * @throws IOException
+	 *             if the journal can not be read
+	 */
+	public int replay(final Set<TileKey> tileKeys,
+			final List<ReferenceCircle> referenceCircles,
+			final ReplayHandler handler) throws IOException {
+		final Map<Integer, ReferenceCircle> referenceCirclesByDiameter = new HashMap<>();
+		for (final ReferenceCircle referenceCircle : referenceCircles) {
+			referenceCirclesByDiameter.put(referenceCircle.diameter,
+					referenceCircle);
+		}
+
+		final Set<TileKey> replayedTiles = new HashSet<>();
+		long position = 0;
+
+		try (DataInputStream input = new DataInputStream(
+				new BufferedInputStream(new FileInputStream(file)))) {
+			// the records before this length are checked when opened
+			while (position < replayableLength) {
+				final int contentLength = input.readInt();
+				input.readInt();
+				final byte[] content = new byte[contentLength];
+				input.readFully(content);
+				position += 4 + 4 + contentLength;
+
+				final ByteBuffer record = ByteBuffer.wrap(content);
+				final TileKey tileKey = new TileKey(record.getFloat(),
+						record.getFloat(), record.getInt());
+				if (!tileKeys.contains(tileKey) || !replayedTiles.add(tileKey)) {
+					continue;
+				}
+
+				final boolean edgeBudgetCapped = record.get() != 0;
+				final int edgeDetectionTolerance = record.getInt();
+				final int findingCount = record.getInt();
+				final List<CircleFinding> circleFindings = new ArrayList<>(
+						findingCount);
+				for (int finding = 0; finding < findingCount; finding++) {
+					final int x = record.getInt();
+					final int y = record.getInt();
+					final int diameter = record.getInt();
+
+					ReferenceCircle referenceCircle = referenceCirclesByDiameter
+							.get(diameter);
+					if (referenceCircle == null) {
+						referenceCircle = new ReferenceCircle(
+								new ReferenceCircleParameters(diameter, 0, 0,
+										0), false);
+						referenceCirclesByDiameter.put(diameter,
+								referenceCircle);
+					}
+
+					circleFindings.add(new CircleFinding(x, y,
+							referenceCircle, record.getInt(), record.getInt(),
+							record.getFloat()));
+				}
+
+				handler.replayTile(tileKey, edgeBudgetCapped,
+						edgeDetectionTolerance, circleFindings);
+			}
+		}
+
+		return replayedTiles.size();
+	}
+
+	/**
+	 * Forces all appended records to the disc.
+	 * 
+	 * @throws IOException
+	 *             if the records can not be forced to the disc
+	 */
+	public void sync() throws IOException {
+		syncLock.lock();
+		try {
+			// every record counted here is already written to the channel
+			final long recordCount = appendedRecordCount.get();
+			if (recordCount > syncedRecordCount) {
+				channel.force(false);
+				syncedRecordCount = recordCount;
+			}
+		} finally {
+			syncLock.unlock();
+		}
+	}
+}
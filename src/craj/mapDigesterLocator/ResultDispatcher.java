@@ -0,0 +1,303 @@
+package craj.mapDigesterLocator;
+
+import java.util.ArrayList;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Delivers results to an observer in a dedicated consumer thread, so the
+ * threads which publish the results never wait for the observer.
+ * <p>
+ * The published results are held in a queue with a fixed capacity. This is the
+ * backpressure of the dispatcher: if the observer is so slow that the queue
+ * is full, {@link #publish(Object)} waits until there is room again, so no
+ * result is lost. Only a dispatcher which is constructed to drop results
+ * rejects the result instead, counts it as dropped and returns
+ * <code>false</code>, so the publisher never waits and decides what to do
+ * with it. The results are delivered in the order they were published.
+ * <p>
+ * A publisher which runs in a <tt>ForkJoinPool</tt> waits as managed blocker,
+ * so a slow observer does not use up the parallelism of the pool. After
+ * {@link #shutdown()} every result is rejected and counted as dropped.
+ * 
+ * @param <ArgumentType>
+ *            the type of the delivered results
+ */
+public class ResultDispatcher<ArgumentType> {
+
+	/**
+	 * Puts a result into the queue, and tells a <tt>ForkJoinPool</tt> in
+	 * which the publisher runs that it waits, so the pool can compensate the
+	 * waiting worker.
+	 */
+	private final class ResultPut implements ForkJoinPool.ManagedBlocker {
+
+		private boolean queued;
+
+		private final ArgumentType result;
+
+		ResultPut(final ArgumentType result) {
+			this.result = result;
+		}
+
+		@Override
+		public boolean block() throws InterruptedException {
+			if (!queued) {
+				results.put(result);
+				queued = true;
+			}
+			return true;
+		}
+
+		@Override
+		public boolean isReleasable() {
+			if (!queued) {
+				queued = results.offer(result);
+			}
+			return queued;
+		}
+	}
+
+	private final Condition allResultsAreDelivered;
+
+	private final Thread consumerThread;
+
+	/**
+	 * the lock of the count of results which are not delivered yet
+	 */
+	private final ReentrantLock deliveryLock = new ReentrantLock();
+
+	private final AtomicLong droppedResultCount = new AtomicLong();
+
+	/**
+	 * whether a result is dropped instead of waiting if the queue is full
+	 */
+	private final boolean dropWhenFull;
+
+	private final GenericObservable<ArgumentType> observable;
+
+	private final GenericObserver<ArgumentType> observer;
+
+	private final BlockingQueue<ArgumentType> results;
+
+	/**
+	 * whether the consumer thread is stopped, guarded by the delivery lock
+	 */
+	private boolean shutDown;
+
+	private int undeliveredResultCount;
+
+	/**
+	 * Construct a <tt>ResultDispatcher</tt> which delivers the results to the
+	 * given observer and starts its consumer thread. If the queue is full,
+	 * the publisher waits.
+	 * 
+	 * @param observable
+	 *            the observable which is passed to the observer with every
+	 *            result
+	 * @param observer
+	 *            the observer the results are delivered to
+	 * @param capacity
+	 *            the count of results which can wait for their delivery
+	 * @param threadName
+	 *            the name of the consumer thread
+	 */
+	public ResultDispatcher(final GenericObservable<ArgumentType> observable,
+			final GenericObserver<ArgumentType> observer, final int capacity,
+			final String threadName) {
+		this(observable, observer, capacity, threadName, false);
+	}
+
+	/**
+	 * Construct a <tt>ResultDispatcher</tt> which delivers the results to the
+	 * given observer and starts its consumer thread.
+	 * 
+	 * @param observable
+	 *            the observable which is passed to the observer with every
+	 *            result
+	 * @param observer
+	 *            the observer the results are delivered to
+	 * @param capacity
+	 *            the count of results which can wait for their delivery
+	 * @param threadName
+	 *            the name of the consumer thread
+	 * @param dropWhenFull
+	 *            <code>true</code> if a result is dropped when the queue is
+	 *            full, <code>false</code> if the publisher waits
+	 */
+	public ResultDispatcher(final GenericObservable<ArgumentType> observable,
+			final GenericObserver<ArgumentType> observer, final int capacity,
+			final String threadName, final boolean dropWhenFull) {
+		if (capacity < 1) {
+			throw new IllegalArgumentException(
+					"At least one result has to fit into the queue.");
+		}
+
+		this.observable = observable;
+		this.observer = observer;
+		this.dropWhenFull = dropWhenFull;
+
+		results = new ArrayBlockingQueue<>(capacity);
+		allResultsAreDelivered = deliveryLock.newCondition();
+
+		consumerThread = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				deliverResults();
+			}
+		}, threadName);
+		consumerThread.setDaemon(true);
+		consumerThread.start();
+	}
+
+	/**
+	 * Waits until all accepted results are delivered to the observer.
+	 * 
+	 * @throws InterruptedException
+	 */
+	public void awaitDelivery() throws InterruptedException {
+		deliveryLock.lock();
+		try {
+			while (undeliveredResultCount > 0) {
+				allResultsAreDelivered.await();
+			}
+		} finally {
+			deliveryLock.unlock();
+		}
+	}
+
+	private void deliverResults() {
+		while (true) {
+			final ArgumentType result;
+			try {
+				result = results.take();
+			} catch (final InterruptedException e) {
+				return;
+			}
+
+			try {
+				observer.update(observable, result);
+			} catch (final RuntimeException e) {
+				System.err.println("Error delivering result: " + e);
+			}
+
+			finishDelivery();
+		}
+	}
+
+	private void finishDelivery() {
+		finishDelivery(1);
+	}
+
+	private void finishDelivery(final int resultCount) {
+		deliveryLock.lock();
+		try {
+			undeliveredResultCount -= resultCount;
+			if (undeliveredResultCount == 0) {
+				allResultsAreDelivered.signalAll();
+			}
+		} finally {
+			deliveryLock.unlock();
+		}
+	}
+
+	/**
+	 * Returns the count of results which were rejected because the queue was
+	 * full, because the publisher was interrupted while it waited, or because
+	 * the dispatcher was shut down.
+	 * 
+	 * @return the count of dropped results
+	 */
+	public long getDroppedResultCount() {
+		return droppedResultCount.get();
+	}
+
+	/**
+	 * Publishes a result without waiting for its delivery. If the queue is
+	 * full, the result is dropped if the dispatcher drops results, otherwise
+	 * this method waits until the queue has room for the result.
+	 * 
+	 * @param result
+	 *            the result to deliver
+	 * @return <code>true</code> if the result will be delivered,
+	 *         <code>false</code> if it was dropped because the queue is full,
+	 *         the waiting thread was interrupted or the dispatcher is shut
+	 *         down
+	 */
+	public boolean publish(final ArgumentType result) {
+		deliveryLock.lock();
+		try {
+			if (shutDown) {
+				droppedResultCount.incrementAndGet();
+				return false;
+			}
+
+			if (dropWhenFull) {
+				if (!results.offer(result)) {
+					droppedResultCount.incrementAndGet();
+					return false;
+				}
+
+				undeliveredResultCount++;
+				return true;
+			}
+
+			// counted before it is queued, so awaitDelivery() waits for it
+			undeliveredResultCount++;
+		} finally {
+			deliveryLock.unlock();
+		}
+
+		// the lock is not held while waiting, the consumer needs it
+		try {
+			ForkJoinPool.managedBlock(new ResultPut(result));
+		} catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+			droppedResultCount.incrementAndGet();
+			finishDelivery();
+			return false;
+		}
+
+		// a result which was queued after the shutdown is never delivered
+		deliveryLock.lock();
+		try {
+			if (shutDown && results.remove(result)) {
+				droppedResultCount.incrementAndGet();
+				finishDelivery();
+				return false;
+			}
+		} finally {
+			deliveryLock.unlock();
+		}
+
+		return true;
+	}
+
+	/**
+	 * Stops the consumer thread. Results which are not delivered yet are
+	 * discarded and counted as dropped, so {@link #awaitDelivery()} should be
+	 * called before. Results which are published afterwards are rejected,
+	 * and publishers which wait for room in the queue stop waiting.
+	 */
+	public void shutdown() {
+		deliveryLock.lock();
+		try {
+			shutDown = true;
+
+			// makes room for the waiting publishers, which take their results
+			// out again
+			final int discardedResultCount = results
+					.drainTo(new ArrayList<ArgumentType>());
+			droppedResultCount.addAndGet(discardedResultCount);
+			finishDelivery(discardedResultCount);
+		} finally {
+			deliveryLock.unlock();
+		}
+
+		consumerThread.interrupt();
+	}
+}
@@ -0,0 +1,66 @@
+package craj.mapDigesterLocator;
+
+/**
+ * Identifies a map tile by its coordinate and zoom level.
+ */
+public class TileKey {
+
+	/**
+	 * the latitude of the tile
+	 */
+	public final float latitude;
+
+	/**
+	 * the longitude of the tile
+	 */
+	public final float longitude;
+
+	/**
+	 * the zoom level of the tile
+	 */
+	public final int zoom;
+
+	/**
+	 * Construct a <tt>TileKey</tt> for the given coordinate and zoom level.
+	 * 
+	 * @param latitude
+	 *            the latitude of the tile
+	 * @param longitude
+	 *            the longitude of the tile
+	 * @param zoom
+	 *            the zoom level of the tile
+	 */
+	public TileKey(final float latitude, final float longitude, final int zoom) {
+		this.latitude = latitude;
+		this.longitude = longitude;
+		this.zoom = zoom;
+	}
+
+	@Override
+	public boolean equals(final Object obj) {
+		if (obj instanceof TileKey) {
+			final TileKey other = (TileKey) obj;
+
+			return Float.floatToIntBits(latitude) == Float
+					.floatToIntBits(other.latitude)
+					&& Float.floatToIntBits(longitude) == Float
+							.floatToIntBits(other.longitude)
+					&& zoom == other.zoom;
+		} else {
+			return false;
+		}
+	}
+
+	@Override
+	public int hashCode() {
+		int hash = Float.floatToIntBits(latitude);
+		hash = 31 * hash + Float.floatToIntBits(longitude);
+		return 31 * hash + zoom;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("Lat: %s Lon: %s Zoom: %d",
+				Float.toString(latitude), Float.toString(longitude), zoom);
+	}
+}
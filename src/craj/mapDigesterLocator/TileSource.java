@@ -0,0 +1,29 @@
+package craj.mapDigesterLocator;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+
+/**
+ * Provides the map image of a tile at a given latitude and longitude. The
+ * {@link MapDigesterLocatorForGMaps} fetches the tiles which are not on disc
+ * yet from a <tt>TileSource</tt>, which can be exchanged, for example by a
+ * source reading local files in tests.
+ * <p>
+ * The tiles are fetched by several threads at once, so implementations have to
+ * be thread-safe.
+ */
+public interface TileSource {
+
+	/**
+	 * Returns the map image at the given coordinate.
+	 * 
+	 * @param latitude
+	 *            the latitude of the tile
+	 * @param longitude
+	 *            the longitude of the tile
+	 * @return the map image of the tile
+	 * @throws IOException
+	 *             if the tile could not be provided
+	 */
+	BufferedImage getTile(float latitude, float longitude) throws IOException;
+}
@@ -0,0 +1,349 @@
+package craj.mapDigesterLocator;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import craj.FlatImage;
+import craj.ImageDecoder;
+
+/**
+ * Stores the encoded images of map tiles packed into a few large segment files
+ * instead of one file per tile.
+ * <p>
+ * The directory of a store holds the segment files <tt>tiles-0.seg</tt>,
+ * <tt>tiles-1.seg</tt>, ... and the index file <tt>tiles.idx</tt>. A new
+ * segment is started when the current one would grow beyond
+ * {@link #MAX_SEGMENT_LENGTH}. The index is an append-only list of fixed size
+ * records, one per tile, with the latitude, longitude and zoom level of the
+ * tile followed by the segment, offset and length of its encoded image. It is
+ * read into memory when the store is opened, so looking up a tile does not
+ * touch the disc.
+ * <p>
+ * The image of a tile is written to its segment and forced to the disc before
+ * its index record is written, so an index record never points at an image
+ * which is not on the disc, even after a power loss. The index records are
+ * not forced, so a crash can lose the last records, whose tiles are simply
+ * fetched again: an incomplete record at the end of the index and records
+ * pointing behind the end of their segment are ignored when the store is
+ * opened again.
+ * <p>
+ * The images are read from the segments with positional reads, so many
+ * workers can read tiles at once. The threads which read tiles must not be
+ * interrupted, as an interrupt while reading closes the segment.
+ * <p>
+ * Optionally the store holds the most recently decoded images in a
+ * {@link DecodedTileCache}, so a tile which is searched again does not have to
+ * be decoded again.
+ */
+public class TileStore implements Closeable {
+
+	/**
+	 * the position of an encoded image in the segment files
+	 */
+	private static class TileLocation {
+		private final int length;
+
+		private final long offset;
+
+		private final int segment;
+
+		private TileLocation(final int segment, final long offset,
+				final int length) {
+			this.segment = segment;
+			this.offset = offset;
+			this.length = length;
+		}
+	}
+
+	private static final String INDEX_FILE_NAME = "tiles.idx";
+
+	/**
+	 * the size of an index record in bytes: latitude, longitude, zoom,
+	 * segment, offset and length
+	 */
+	private static final int INDEX_RECORD_LENGTH = 4 + 4 + 4 + 4 + 8 + 4;
+
+	/**
+	 * the length in bytes a segment file may not grow beyond, unless a single
+	 * image is larger
+	 */
+	public static final long MAX_SEGMENT_LENGTH = 256L * 1024 * 1024;
+
+	private static File getSegmentFile(final File storeDir, final int segment) {
+		return new File(storeDir, "tiles-" + segment + ".seg");
+	}
+
+	private final DecodedTileCache decodedTileCache;
+
+	private final Map<TileKey, TileLocation> index = new HashMap<>();
+
+	private final DataOutputStream indexOutput;
+
+	private final List<RandomAccessFile> segments = new ArrayList<>();
+
+	private final File storeDir;
+
+	/**
+	 * Opens the store in the given directory, or creates it if the directory
+	 * does not hold a store yet.
+	 * 
+	 * @param storeDir
+	 *            the directory of the store
+	 * @param maxCachedByteCount
+	 *            the maximum count of bytes of the cached decoded images, or 0
+	 *            to decode the images every time they are requested
+	 * @throws IOException
+	 *             if the store can not be opened
+	 */
+	public TileStore(final File storeDir, final long maxCachedByteCount)
+			throws IOException {
+		if (!storeDir.isDirectory() && !storeDir.mkdirs()) {
+			throw new IOException("Could not create the tile store " + storeDir);
+		}
+
+		this.storeDir = storeDir;
+		decodedTileCache = maxCachedByteCount > 0 ? new DecodedTileCache(
+				maxCachedByteCount) : null;
+
+		try {
+			for (int segment = 0; TileStore.getSegmentFile(storeDir, segment)
+					.exists(); segment++) {
+				segments.add(new RandomAccessFile(TileStore.getSegmentFile(
+						storeDir, segment), "rw"));
+			}
+			if (segments.isEmpty()) {
+				segments.add(new RandomAccessFile(TileStore.getSegmentFile(
+						storeDir, 0), "rw"));
+			}
+
+			final File indexFile = new File(storeDir, TileStore.INDEX_FILE_NAME);
+			readIndex(indexFile);
+
+			indexOutput = new DataOutputStream(new BufferedOutputStream(
+					new FileOutputStream(indexFile, true)));
+		} catch (final IOException e) {
+			closeSegments();
+			throw e;
+		}
+	}
+
+	/**
+	 * Closes the index and the segment files.
+	 */
+	@Override
+	public synchronized void close() throws IOException {
+		try {
+			indexOutput.close();
+		} finally {
+			closeSegments();
+		}
+	}
+
+	private void closeSegments() throws IOException {
+		IOException exception = null;
+		for (final RandomAccessFile segment : segments) {
+			try {
+				segment.close();
+			} catch (final IOException e) {
+				exception = e;
+			}
+		}
+		if (exception != null) {
+			throw exception;
+		}
+	}
+
+	/**
+	 * Returns whether the store holds the image of the given tile.
+	 * 
+	 * @param tileKey
+	 *            the key of the tile
+	 * @return <code>true</code> if the store holds the image of the tile
+	 */
+	public synchronized boolean contains(final TileKey tileKey) {
+		return index.containsKey(tileKey);
+	}
+
+	/**
+	 * Returns the cache of the decoded images.
+	 * 
+	 * @return the cache of the decoded images, or <code>null</code> if the
+	 *         store does not cache decoded images
+	 */
+	public DecodedTileCache getDecodedTileCache() {
+		return decodedTileCache;
+	}
+
+	/**
+	 * Reads the encoded image of the given tile from its segment.
+	 * 
+	 * @param tileKey
+	 *            the key of the tile
+	 * @return the encoded image, or <code>null</code> if the store does not
+	 *         hold the tile
+	 * @throws IOException
+	 *             if the segment can not be read
+	 */
+	public byte[] getEncodedImage(final TileKey tileKey) throws IOException {
+		final TileLocation tileLocation;
+		final FileChannel segment;
+		synchronized (this) {
+			tileLocation = index.get(tileKey);
+			if (tileLocation == null) {
+				return null;
+			}
+			segment = segments.get(tileLocation.segment).getChannel();
+		}
+
+		// a positional read does not move the position the writer seeks to
+		final ByteBuffer encodedImage = ByteBuffer
+				.allocate(tileLocation.length);
+		while (encodedImage.hasRemaining()) {
+			if (segment.read(encodedImage,
+					tileLocation.offset + encodedImage.position()) < 0) {
+				throw new EOFException("The image of the tile " + tileKey
+						+ " is incomplete.");
+			}
+		}
+		return encodedImage.array();
+	}
+
+	/**
+	 * Returns the decoded image of the given tile. The image is taken from the
+	 * cache if it was decoded before and is still cached. Cached images are
+	 * shared, so the returned image must not be changed.
+	 * 
+	 * @param tileKey
+	 *            the key of the tile
+	 * @return the decoded image of the tile
+	 * @throws IOException
+	 *             if the store does not hold the tile or its image can not be
+	 *             read or decoded
+	 */
+	public FlatImage getImage(final TileKey tileKey) throws IOException {
+		if (decodedTileCache != null) {
+			final FlatImage cachedImage = decodedTileCache.get(tileKey);
+			if (cachedImage != null) {
+				return cachedImage;
+			}
+		}
+
+		final byte[] encodedImage = getEncodedImage(tileKey);
+		if (encodedImage == null) {
+			throw new IOException("The tile store does not hold the tile "
+					+ tileKey);
+		}
+
+		final FlatImage image = ImageDecoder.decode(encodedImage);
+		if (decodedTileCache != null) {
+			decodedTileCache.put(tileKey, image);
+		}
+		return image;
+	}
+
+	/**
+	 * Appends the encoded image of the given tile to the current segment and
+	 * its record to the index. If the store already holds the tile, the new
+	 * image replaces the old one.
+	 * 
+	 * @param tileKey
+	 *            the key of the tile
+	 * @param encodedImage
+	 *            the encoded image of the tile, for example a JPEG file
+	 * @throws IOException
+	 *             if the image or its index record can not be written
+	 */
+	public synchronized void put(final TileKey tileKey,
+			final byte[] encodedImage) throws IOException {
+		RandomAccessFile segment = segments.get(segments.size() - 1);
+		if (segment.length() > 0
+				&& segment.length() + encodedImage.length > TileStore.MAX_SEGMENT_LENGTH) {
+			segment = new RandomAccessFile(TileStore.getSegmentFile(
+					storeDir, segments.size()), "rw");
+			segments.add(segment);
+		}
+
+		final TileLocation tileLocation = new TileLocation(
+				segments.size() - 1, segment.length(), encodedImage.length);
+		segment.seek(tileLocation.offset);
+		segment.write(encodedImage);
+		// the image has to be on the disc before the index points at it
+		segment.getChannel().force(false);
+
+		indexOutput.writeFloat(tileKey.latitude);
+		indexOutput.writeFloat(tileKey.longitude);
+		indexOutput.writeInt(tileKey.zoom);
+		indexOutput.writeInt(tileLocation.segment);
+		indexOutput.writeLong(tileLocation.offset);
+		indexOutput.writeInt(tileLocation.length);
+		indexOutput.flush();
+
+		index.put(tileKey, tileLocation);
+		if (decodedTileCache != null) {
+			decodedTileCache.remove(tileKey);
+		}
+	}
+
+	/**
+	 * Reads the complete records of the index file. An incomplete record at
+	 * the end of the file is cut off, so the next record is appended behind
+	 * the last complete one.
+	 */
+	private void readIndex(final File indexFile) throws IOException {
+		if (!indexFile.exists()) {
+			return;
+		}
+
+		final long recordCount = indexFile.length()
+				/ TileStore.INDEX_RECORD_LENGTH;
+
+		try (DataInputStream input = new DataInputStream(
+				new BufferedInputStream(new FileInputStream(indexFile)))) {
+			for (long record = 0; record < recordCount; record++) {
+				final TileKey tileKey = new TileKey(input.readFloat(),
+						input.readFloat(), input.readInt());
+				final TileLocation tileLocation = new TileLocation(
+						input.readInt(), input.readLong(), input.readInt());
+
+				if (tileLocation.segment < segments.size()
+						&& tileLocation.offset + tileLocation.length <= segments
+								.get(tileLocation.segment).length()) {
+					index.put(tileKey, tileLocation);
+				}
+			}
+		}
+
+		final long completeLength = recordCount
+				* TileStore.INDEX_RECORD_LENGTH;
+		if (indexFile.length() > completeLength) {
+			try (RandomAccessFile truncatedIndex = new RandomAccessFile(
+					indexFile, "rw")) {
+				truncatedIndex.setLength(completeLength);
+			}
+		}
+	}
+
+	/**
+	 * Returns the count of tiles the store holds.
+	 * 
+	 * @return the count of tiles the store holds
+	 */
+	public synchronized int size() {
+		return index.size();
+	}
+}
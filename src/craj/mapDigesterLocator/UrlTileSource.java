@@ -0,0 +1,42 @@
+package craj.mapDigesterLocator;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.net.URL;
+
+import javax.imageio.ImageIO;
+
+/**
+ * Requests the map images of the tiles from a web service like Google Maps.
+ */
+public class UrlTileSource implements TileSource {
+
+	private final String mapsImageUrlPattern;
+
+	/**
+	 * Construct an <tt>UrlTileSource</tt> for the given url pattern.
+	 * 
+	 * @param mapsImageUrlPattern
+	 *            the url pattern which is used with the
+	 *            <code>String.format</code>-method to generate a request-url
+	 *            with the latitude and longitude of a tile
+	 */
+	public UrlTileSource(final String mapsImageUrlPattern) {
+		this.mapsImageUrlPattern = mapsImageUrlPattern;
+	}
+
+	@Override
+	public BufferedImage getTile(final float latitude, final float longitude)
+			throws IOException {
+		final String requestUrl = String.format(mapsImageUrlPattern,
+				Float.toString(latitude), Float.toString(longitude));
+
+		final BufferedImage responseImage = ImageIO.read(new URL(requestUrl));
+
+		if (responseImage == null) {
+			throw new IOException("No image provided by " + requestUrl);
+		}
+
+		return responseImage;
+	}
+}
@@ -0,0 +1,38 @@
+package craj.test;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import craj.benchmark.Benchmark;
+import craj.benchmark.BenchmarkRunner;
+import craj.benchmark.BenchmarkRunner.BenchmarkResult;
+
+public class BenchmarkRunnerTest {
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testBenchmarkWithoutMeasurementIsRejected() {
+		new BenchmarkRunner(1, 0, 10);
+	}
+
+	@Test
+	public void testThroughputAndAllocationRateAreMeasured() {
+		final BenchmarkRunner benchmarkRunner = new BenchmarkRunner(1, 2, 20);
+
+		final BenchmarkResult result = benchmarkRunner.run(new Benchmark(
+				"allocate") {
+			@Override
+			public Object run() {
+				return new byte[4096];
+			}
+		});
+
+		Assert.assertEquals("allocate", result.name);
+		Assert.assertTrue(result.operationCount > 0);
+		Assert.assertTrue(result.operationsPerSecond > 0);
+		if (benchmarkRunner.isAllocationMeasured()) {
+			Assert.assertTrue(result.allocatedBytesPerOperation >= 4096);
+		} else {
+			Assert.assertTrue(Double.isNaN(result.allocatedBytesPerOperation));
+		}
+	}
+}
@@ -0,0 +1,72 @@
+package craj.test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import craj.CircleCalculationResultTable;
+import craj.CircleFinding;
+import craj.IntFlatImage;
+import craj.ReferenceCircle;
+import craj.ReferenceCircle.ReferenceCircleParameters;
+import craj.RowPrefixSums;
+
+public class CircleCalculationResultTableTest {
+
+	private static final int HEIGHT = 128;
+	private static final int WIDTH = 16;
+
+	private static void assertColumnMajor(final int[][] expectedCoordinates,
+			final List<CircleFinding> circleFindings) {
+		Assert.assertEquals(expectedCoordinates.length, circleFindings.size());
+		for (int i = 0; i < expectedCoordinates.length; i++) {
+			Assert.assertEquals(expectedCoordinates[i][0],
+					circleFindings.get(i).x);
+			Assert.assertEquals(expectedCoordinates[i][1],
+					circleFindings.get(i).y);
+		}
+	}
+
+	@Test
+	public void testFindingsAreReturnedColumnByColumn() {
+		final ReferenceCircle referenceCircle = new ReferenceCircle(
+				new ReferenceCircleParameters(5, 0.5f, 0.9f, 0.0f), false);
+
+		final int[][] crossValues = new int[WIDTH][HEIGHT];
+		final int[][] crossCounts = new int[WIDTH][HEIGHT];
+		final int[][] blackValueEdgesData = new int[WIDTH][HEIGHT];
+		for (final int[] column : blackValueEdgesData) {
+			Arrays.fill(column, 255);
+		}
+
+		// the findings lie in different strips of rows, and a finding of a
+		// lower strip lies left of the findings of the upper strips
+		final int[][] coordinates = { { 3, 100 }, { 8, 5 }, { 8, 70 },
+				{ 12, 40 } };
+		for (final int[] coordinate : coordinates) {
+			crossValues[coordinate[0]][coordinate[1]] = referenceCircle.referenceCrossValue;
+			crossCounts[coordinate[0]][coordinate[1]] = referenceCircle.referenceCrossCount;
+		}
+
+		final CircleCalculationResultTable resultTable = new CircleCalculationResultTable(
+				crossValues, crossCounts, referenceCircle);
+		final RowPrefixSums blackValueEdgesRowPrefixSums = new RowPrefixSums(
+				IntFlatImage.fromIntArray(blackValueEdgesData));
+
+		CircleCalculationResultTableTest.assertColumnMajor(coordinates,
+				resultTable.getCircleFindings(blackValueEdgesRowPrefixSums));
+
+		final ForkJoinPool forkJoinPool = new ForkJoinPool(4);
+		try {
+			CircleCalculationResultTableTest.assertColumnMajor(coordinates,
+					resultTable.getCircleFindings(
+							blackValueEdgesRowPrefixSums, forkJoinPool));
+		} finally {
+			forkJoinPool.shutdown();
+		}
+	}
+
+}
@@ -0,0 +1,118 @@
+package craj.test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import processing.core.PVector;
+import craj.CircleFinding;
+import craj.IntFlatImage;
+import craj.ReferenceCircle;
+import craj.ReferenceCircle.ReferenceCircleParameters;
+import craj.mapDigesterLocator.CircleFindingColumns;
+import craj.mapDigesterLocator.ColumnarCircleFindingSink;
+import craj.mapDigesterLocator.CsvCircleFindingSink;
+import craj.mapDigesterLocator.FileCircleFindingsPair;
+import craj.mapDigesterLocator.GmapsCoordinateCircleFindingsPair;
+
+public class CircleFindingSinkTest {
+
+	private static final ReferenceCircle REFERENCE_CIRCLE = new ReferenceCircle(
+			new ReferenceCircleParameters(13, 0.6f, 0.7f, 0.8f), false);
+
+	private static List<CircleFinding> createCircleFindings(final int count) {
+		final IntFlatImage sourceImageData = new IntFlatImage(40, 40);
+
+		final List<CircleFinding> circleFindings = new ArrayList<>();
+		for (int circleFinding = 0; circleFinding < count; circleFinding++) {
+			circleFindings.add(new CircleFinding(10 + circleFinding % 20, 12,
+					CircleFindingSinkTest.REFERENCE_CIRCLE, sourceImageData,
+					30 + circleFinding, 20));
+		}
+		return circleFindings;
+	}
+
+	@Test
+	public void testColumnarSinkWritesBlocks() throws IOException {
+		final File file = File.createTempFile("CircleFindings", ".bin");
+		final int circleFindingCount = ColumnarCircleFindingSink.BLOCK_SIZE + 10;
+
+		try (ColumnarCircleFindingSink<GmapsCoordinateCircleFindingsPair> sink = new ColumnarCircleFindingSink<>(
+				file)) {
+			sink.update(null, new GmapsCoordinateCircleFindingsPair(null,
+					new PVector(13.74f, 51.05f), Collections
+							.<CircleFinding> emptyList()));
+			sink.update(null, new GmapsCoordinateCircleFindingsPair(new File(
+					"X_tile.jpg"), new PVector(13.7455f, 51.05f),
+					CircleFindingSinkTest
+							.createCircleFindings(circleFindingCount), true,
+					140));
+		}
+
+		final List<CircleFindingColumns> blocks = ColumnarCircleFindingSink
+				.read(file);
+		Assert.assertEquals(2, blocks.size());
+		Assert.assertEquals(ColumnarCircleFindingSink.BLOCK_SIZE, blocks.get(0)
+				.getRowCount());
+		Assert.assertEquals(10, blocks.get(1).getRowCount());
+
+		final CircleFindingColumns lastBlock = blocks.get(1);
+		final int lastRow = 9;
+		Assert.assertEquals("X_tile.jpg", lastBlock.files[lastRow]);
+		Assert.assertEquals(51.05f, lastBlock.latitudes[lastRow], 0);
+		Assert.assertEquals(13.7455f, lastBlock.longitudes[lastRow], 0);
+		Assert.assertEquals(10 + (circleFindingCount - 1) % 20,
+				lastBlock.xs[lastRow]);
+		Assert.assertEquals(12, lastBlock.ys[lastRow]);
+		Assert.assertEquals(13, lastBlock.diameters[lastRow]);
+		Assert.assertEquals(30 + circleFindingCount - 1,
+				lastBlock.crossValues[lastRow]);
+		Assert.assertEquals(20, lastBlock.crossCounts[lastRow]);
+		Assert.assertTrue(lastBlock.edgeBudgetCapped[lastRow]);
+		Assert.assertEquals(140, lastBlock.edgeDetectionTolerances[lastRow]);
+
+		file.delete();
+	}
+
+	@Test
+	public void testCsvSinkWritesOneLinePerCircleFinding() throws IOException {
+		final File file = File.createTempFile("CircleFindings", ".csv");
+		final List<CircleFinding> circleFindings = CircleFindingSinkTest
+				.createCircleFindings(3);
+
+		try (CsvCircleFindingSink<FileCircleFindingsPair> sink = new CsvCircleFindingSink<>(
+				file)) {
+			sink.update(null, new FileCircleFindingsPair(file, circleFindings,
+					false, 100));
+			sink.update(null, new FileCircleFindingsPair(file, circleFindings
+					.subList(0, 1), true, 140));
+			sink.update(null, new FileCircleFindingsPair(new File(
+					"map \"a,b\".jpg"), circleFindings.subList(0, 1)));
+
+			Assert.assertEquals(5, sink.getRowCount());
+		}
+
+		final List<String> lines = Files.readAllLines(file.toPath(),
+				StandardCharsets.UTF_8);
+		Assert.assertEquals(6, lines.size());
+		Assert.assertEquals(CsvCircleFindingSink.HEADER, lines.get(0));
+		Assert.assertEquals(file.getName() + ",NaN,NaN,10,12,13,30,20,"
+				+ circleFindings.get(0).averagePixelBlackValue + ",false,100",
+				lines.get(1));
+		Assert.assertEquals(file.getName() + ",NaN,NaN,10,12,13,30,20,"
+				+ circleFindings.get(0).averagePixelBlackValue + ",true,140",
+				lines.get(4));
+		Assert.assertTrue(lines.get(5).startsWith(
+				"\"map \"\"a,b\"\".jpg\",NaN,NaN,10,12,13,30,20,"));
+		Assert.assertTrue(lines.get(5).endsWith(",false,-1"));
+
+		file.delete();
+	}
+}
@@ -0,0 +1,82 @@
+package craj.test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import craj.CircleFinding;
+import craj.CircleFindingSuppressor;
+import craj.IntFlatImage;
+import craj.ReferenceCircle;
+import craj.ReferenceCircle.ReferenceCircleParameters;
+import craj.RowPrefixSums;
+
+public class CircleFindingSuppressorTest {
+
+	private final ReferenceCircle largeReferenceCircle = new ReferenceCircle(
+			new ReferenceCircleParameters(11, 0.5f, 0.5f, 0.5f), false);
+
+	private final RowPrefixSums rowPrefixSums = new RowPrefixSums(
+			new IntFlatImage(100, 100));
+
+	private final ReferenceCircle smallReferenceCircle = new ReferenceCircle(
+			new ReferenceCircleParameters(9, 0.5f, 0.5f, 0.5f), false);
+
+	private CircleFinding createCircleFinding(final int x, final int y,
+			final ReferenceCircle referenceCircle, final int pixelCrossValue) {
+		return new CircleFinding(x, y, referenceCircle, rowPrefixSums,
+				pixelCrossValue, referenceCircle.referenceCrossCount);
+	}
+
+	@Test
+	public void testBlobIsReducedToBestCircleFinding() {
+		final int referenceCrossValue = smallReferenceCircle.referenceCrossValue;
+
+		final CircleFinding weaker = createCircleFinding(20, 20,
+				smallReferenceCircle, referenceCrossValue / 2);
+		final CircleFinding best = createCircleFinding(21, 20,
+				smallReferenceCircle, referenceCrossValue);
+		final CircleFinding otherDiameter = createCircleFinding(21, 21,
+				largeReferenceCircle,
+				largeReferenceCircle.referenceCrossValue / 2);
+
+		final List<CircleFinding> kept = new CircleFindingSuppressor(1f)
+				.suppress(Arrays.asList(weaker, best, otherDiameter));
+
+		Assert.assertEquals(Arrays.asList(best), kept);
+	}
+
+	@Test
+	public void testDistantCircleFindingsAreKeptInOrder() {
+		final int referenceCrossValue = smallReferenceCircle.referenceCrossValue;
+
+		final CircleFinding first = createCircleFinding(80, 10,
+				smallReferenceCircle, referenceCrossValue / 2);
+		final CircleFinding second = createCircleFinding(10, 10,
+				smallReferenceCircle, referenceCrossValue);
+		final CircleFinding touching = createCircleFinding(18, 10,
+				smallReferenceCircle, referenceCrossValue);
+
+		final List<CircleFinding> kept = new CircleFindingSuppressor(1f)
+				.suppress(Arrays.asList(first, second, touching));
+
+		Assert.assertEquals(Arrays.asList(first, second, touching), kept);
+	}
+
+	@Test
+	public void testDuplicatesOfSeveralContrastEnhancersAreMerged() {
+		final int referenceCrossValue = smallReferenceCircle.referenceCrossValue;
+
+		final CircleFinding firstEnhancer = createCircleFinding(50, 50,
+				smallReferenceCircle, referenceCrossValue);
+		final CircleFinding secondEnhancer = createCircleFinding(50, 50,
+				smallReferenceCircle, referenceCrossValue);
+
+		final List<CircleFinding> kept = new CircleFindingSuppressor(1f)
+				.suppress(Arrays.asList(firstEnhancer, secondEnhancer));
+
+		Assert.assertEquals(1, kept.size());
+	}
+}
@@ -0,0 +1,120 @@
+package craj.test;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import craj.CircleCalculationResultTable;
+import craj.CircleCrossCalculator;
+import craj.CircleVotingKernel;
+import craj.CircleVotingOffsets;
+import craj.IntFlatImage;
+import craj.ReferenceCircle;
+import craj.ReferenceCircle.ReferenceCircleParameters;
+
+public class CircleVotingKernelTest {
+
+	private final CircleVotingOffsets votingOffsets = new ReferenceCircle(
+			new ReferenceCircleParameters(9, 0.5f, 0.5f, 0.5f), false)
+			.getVotingOffsets();
+
+	@Test
+	public void testInteriorAndBorderEqualRangeCheckedVotes() {
+		final int width = 23;
+		final int height = 17;
+
+		final CircleVotingKernel votingKernel = new CircleVotingKernel(
+				votingOffsets, width, height);
+
+		for (int y = 0; y < height; y++) {
+			for (int x = 0; x < width; x++) {
+				final int[] crossValues = new int[width * height];
+				final int[] crossCounts = new int[width * height];
+				votingKernel.vote(x, y, 3, crossValues, crossCounts);
+
+				final int[] expectedCrossValues = new int[width * height];
+				final int[] expectedCrossCounts = new int[width * height];
+				for (int offset = 0; offset < votingOffsets.getOffsetCount(); offset++) {
+					final int xToSet = x + votingOffsets.offsetXs[offset];
+					final int yToSet = y + votingOffsets.offsetYs[offset];
+
+					if (xToSet >= 0 && xToSet < width && yToSet >= 0
+							&& yToSet < height) {
+						expectedCrossValues[yToSet * width + xToSet] += 3;
+						expectedCrossCounts[yToSet * width + xToSet]++;
+					}
+				}
+
+				Assert.assertArrayEquals(expectedCrossValues, crossValues);
+				Assert.assertArrayEquals(expectedCrossCounts, crossCounts);
+			}
+		}
+	}
+
+	@Test
+	public void testInteriorNeedsRadiusToBorder() {
+		final CircleVotingKernel votingKernel = new CircleVotingKernel(
+				votingOffsets, 30, 30);
+
+		Assert.assertTrue(votingKernel.isInterior(15, 15));
+		Assert.assertFalse(votingKernel.isInterior(0, 15));
+		Assert.assertFalse(votingKernel.isInterior(15, 29));
+	}
+
+	@Test
+	public void testTableSmallerThanCircleHasNoInterior() {
+		final CircleVotingKernel votingKernel = new CircleVotingKernel(
+				votingOffsets, 5, 5);
+
+		Assert.assertFalse(votingKernel.isInterior(2, 2));
+	}
+
+	@Test
+	public void testLargeCircleFindsItsOrigin() {
+		final int diameter = 301;
+		final int size = diameter + 40;
+		final int origin = size / 2;
+
+		final ReferenceCircle referenceCircle = new ReferenceCircle(
+				new ReferenceCircleParameters(diameter, 0.5f, 0.5f, 0.5f),
+				false);
+		final CircleVotingOffsets largeVotingOffsets = referenceCircle
+				.getVotingOffsets();
+
+		final IntFlatImage edgesData = new IntFlatImage(size, size);
+		for (int offset = 0; offset < largeVotingOffsets.getOffsetCount(); offset++) {
+			edgesData.pixels[(origin + largeVotingOffsets.offsetYs[offset])
+					* size + origin + largeVotingOffsets.offsetXs[offset]] = 255;
+		}
+
+		final CircleCalculationResultTable resultTable = new CircleCrossCalculator(
+				referenceCircle, edgesData,
+				referenceCircle.getPerfectCircleCoordinates()).getResultTable();
+		final int[] crossCounts = resultTable.getCrossCounts().pixels;
+
+		Assert.assertEquals(resultTable.getMaxCrossCount(), crossCounts[origin
+				* size + origin]);
+	}
+
+	@Test
+	public void testLargeCirclePerimeterIsSampledEvenly() {
+		final CircleVotingOffsets largeVotingOffsets = new ReferenceCircle(
+				new ReferenceCircleParameters(401, 0.5f, 0.5f, 0.5f), false)
+				.getVotingOffsets();
+
+		Assert.assertTrue(largeVotingOffsets.getOffsetCount() <= CircleVotingOffsets.MAX_OFFSET_COUNT);
+		Assert.assertTrue(largeVotingOffsets.getOffsetCount() > CircleVotingOffsets.MAX_OFFSET_COUNT / 2);
+
+		int emptyBinsInRow = 0;
+		int maxEmptyBinsInRow = 0;
+		for (int bin = 0; bin < CircleVotingOffsets.DIRECTION_BIN_COUNT; bin++) {
+			if (largeVotingOffsets.directionBinStarts[bin] == largeVotingOffsets.directionBinStarts[bin + 1]) {
+				emptyBinsInRow++;
+				maxEmptyBinsInRow = Math.max(maxEmptyBinsInRow, emptyBinsInRow);
+			} else {
+				emptyBinsInRow = 0;
+			}
+		}
+
+		Assert.assertTrue(maxEmptyBinsInRow <= 2);
+	}
+}
@@ -0,0 +1,83 @@
+package craj.test;
+
+import ij.process.ShortProcessor;
+
+import java.awt.Color;
+import java.awt.Rectangle;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import craj.CoarseCandidateSearch;
+import craj.EdgeDetector;
+import craj.EdgeDetector.EdgeDetectorParameter;
+import craj.FlatImage;
+import craj.IntFlatImage;
+import craj.ReferenceCircle;
+import craj.ReferenceCircle.ReferenceCircleParameters;
+
+public class CoarseCandidateSearchTest {
+
+	private static ShortProcessor createImage(final boolean withCircle) {
+		final ShortProcessor processor = new ShortProcessor(200, 160);
+		processor.setColor(Color.WHITE);
+		processor.fill();
+
+		if (withCircle) {
+			processor.setColor(Color.BLACK);
+			processor.fillOval(100, 60, 41, 41);
+		}
+
+		return processor;
+	}
+
+	private final CoarseCandidateSearch coarseCandidateSearch;
+
+	public CoarseCandidateSearchTest() {
+		final List<ReferenceCircle> referenceCircles = new ArrayList<>();
+		for (int diameter = 37; diameter <= 45; diameter += 2) {
+			referenceCircles.add(new ReferenceCircle(
+					new ReferenceCircleParameters(diameter, 0.6f, 0.6f, 0.6f),
+					false));
+		}
+
+		coarseCandidateSearch = new CoarseCandidateSearch(referenceCircles, 4,
+				new EdgeDetector(new EdgeDetectorParameter(3, 0, false)),
+				new EdgeDetector(new EdgeDetectorParameter(3, 100, false)));
+	}
+
+	@Test
+	public void testCircleLiesInSearchArea() {
+		final List<Rectangle> searchAreas = coarseCandidateSearch
+				.getSearchAreas(FlatImage.wrap(createImage(true)), null);
+
+		Assert.assertEquals(1, searchAreas.size());
+		Assert.assertTrue(searchAreas.get(0).contains(120, 80));
+	}
+
+	@Test
+	public void testEmptyImageHasNoSearchArea() {
+		final List<Rectangle> searchAreas = coarseCandidateSearch
+				.getSearchAreas(FlatImage.wrap(createImage(false)), null);
+
+		Assert.assertTrue(searchAreas.isEmpty());
+	}
+
+	@Test
+	public void testScaleDownAveragesBlocks() {
+		final IntFlatImage image = new IntFlatImage(5, 4);
+		for (int i = 0; i < image.pixels.length; i++) {
+			image.pixels[i] = i;
+		}
+
+		final IntFlatImage scaledImage = CoarseCandidateSearch.scaleDown(
+				image, 2);
+
+		Assert.assertEquals(2, scaledImage.width);
+		Assert.assertEquals(2, scaledImage.height);
+		Assert.assertArrayEquals(new int[] { 3, 5, 13, 15 },
+				scaledImage.pixels);
+	}
+}
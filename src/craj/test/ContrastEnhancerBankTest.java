@@ -0,0 +1,75 @@
+package craj.test;
+
+import ij.process.ColorProcessor;
+import ij.process.ShortProcessor;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import craj.ByteFlatImage;
+import craj.ContrastEnhancer;
+import craj.ContrastEnhancerBank;
+import craj.IntFlatImage;
+
+public class ContrastEnhancerBankTest {
+
+	private final List<ContrastEnhancer> contrastEnhancerList = Arrays.asList(
+			new ContrastEnhancer(0.5f, 0.25f, false), new ContrastEnhancer(
+					0.1f, 0.8f, false), new ContrastEnhancer(0.9f, 0.1f, false));
+
+	private final IntFlatImage imageData = new IntFlatImage(37, 23);
+
+	public ContrastEnhancerBankTest() {
+		final Random random = new Random(42);
+		for (int i = 0; i < imageData.pixels.length; i++) {
+			imageData.pixels[i] = random.nextInt(0x1000000);
+		}
+	}
+
+	@Test
+	public void testBankEqualsSingleEnhancers() {
+		final int[] sourcePixels = imageData.pixels.clone();
+
+		final List<IntFlatImage> enhancedImages = new ContrastEnhancerBank(
+				contrastEnhancerList).enhanceContrast(imageData);
+
+		Assert.assertArrayEquals(sourcePixels, imageData.pixels);
+		Assert.assertEquals(contrastEnhancerList.size(), enhancedImages.size());
+
+		for (int enhancer = 0; enhancer < contrastEnhancerList.size(); enhancer++) {
+			final IntFlatImage expectedImageData = imageData.duplicate();
+			contrastEnhancerList.get(enhancer).enhanceContrast(
+					expectedImageData);
+
+			Assert.assertArrayEquals(expectedImageData.pixels,
+					enhancedImages.get(enhancer).pixels);
+		}
+	}
+
+	@Test
+	public void testGreyImagesEqualShortProcessorConversion() {
+		final List<IntFlatImage> enhancedImages = new ContrastEnhancerBank(
+				contrastEnhancerList).enhanceContrast(imageData);
+		final List<ByteFlatImage> greyImages = new ContrastEnhancerBank(
+				contrastEnhancerList).enhanceContrastToGrey(imageData);
+
+		for (int enhancer = 0; enhancer < contrastEnhancerList.size(); enhancer++) {
+			final ShortProcessor expectedGreyImage = new ColorProcessor(
+					imageData.width, imageData.height,
+					enhancedImages.get(enhancer).pixels)
+					.convertToShortProcessor(true);
+
+			final ByteFlatImage greyImage = greyImages.get(enhancer);
+			for (int y = 0; y < imageData.height; y++) {
+				for (int x = 0; x < imageData.width; x++) {
+					Assert.assertEquals(expectedGreyImage.get(x, y),
+							greyImage.get(x, y));
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,139 @@
+package craj.test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import processing.core.PApplet;
+import craj.ByteFlatImage;
+import craj.EdgeDetector;
+import craj.EdgeDetector.EdgeDetectorParameter;
+import craj.EdgeDetectorBank;
+import craj.IntFlatImage;
+import craj.SobelGradient;
+import craj.SobelMatrix;
+
+public class EdgeDetectorBankTest {
+
+	private static int[] getExpectedEdgesData(final ByteFlatImage imageData,
+			final int sobelMatrixSize, final int edgeDetectionTolerance) {
+		final SobelMatrix sobelMatrix = new SobelMatrix(sobelMatrixSize);
+		final int middle = sobelMatrix.getMiddle();
+
+		final int width = imageData.width;
+		final int height = imageData.height;
+
+		final int[] sobelValues = new int[width * height];
+		int maxSobelValue = 0;
+		for (int y = middle; y < height - middle; y++) {
+			for (int x = middle; x < width - middle; x++) {
+				sobelValues[y * width + x] = sobelMatrix.getSobelValueForPixel(
+						imageData, x, y);
+				maxSobelValue = Math.max(maxSobelValue,
+						sobelValues[y * width + x]);
+			}
+		}
+
+		final int[] edgesData = new int[width * height];
+		for (int i = 0; i < edgesData.length; i++) {
+			final int mappedValue = (int) PApplet.map(sobelValues[i], 0,
+					maxSobelValue, 0, 255);
+			edgesData[i] = mappedValue >= edgeDetectionTolerance ? mappedValue
+					: 0;
+		}
+
+		return edgesData;
+	}
+
+	private static ByteFlatImage createNoiseImage() {
+		final ByteFlatImage imageData = new ByteFlatImage(41, 29);
+		final Random random = new Random(7);
+		for (int i = 0; i < imageData.pixels.length; i++) {
+			imageData.pixels[i] = (byte) random.nextInt(256);
+		}
+		return imageData;
+	}
+
+	private static int getEdgePixelCount(final int[] edgesData) {
+		int edgePixelCount = 0;
+		for (final int edgeValue : edgesData) {
+			if (edgeValue != 0) {
+				edgePixelCount++;
+			}
+		}
+		return edgePixelCount;
+	}
+
+	@Test
+	public void testBankEqualsSobelMatrix() {
+		final ByteFlatImage imageData = createNoiseImage();
+
+		final List<EdgeDetector> edgeDetectors = Arrays.asList(
+				new EdgeDetector(new EdgeDetectorParameter(5, 100, false)),
+				new EdgeDetector(new EdgeDetectorParameter(3, 0, false)));
+
+		final List<IntFlatImage> edgesData = new EdgeDetectorBank(
+				edgeDetectors).getEdgesData(imageData, Arrays.asList(
+				new SobelGradient(41, 29), (SobelGradient) null), null);
+
+		Assert.assertArrayEquals(getExpectedEdgesData(imageData, 5, 100),
+				edgesData.get(0).pixels);
+		Assert.assertArrayEquals(getExpectedEdgesData(imageData, 3, 0),
+				edgesData.get(1).pixels);
+	}
+
+	@Test
+	public void testEdgeBudgetRaisesTolerance() {
+		final ByteFlatImage imageData = createNoiseImage();
+		final int pixelCount = imageData.pixels.length;
+		final int maxEdgePixelCount = 120;
+
+		final List<EdgeDetector> edgeDetectors = Arrays.asList(
+				new EdgeDetector(new EdgeDetectorParameter(5, 100, false,
+						maxEdgePixelCount, 0)),
+				new EdgeDetector(new EdgeDetectorParameter(3, 0, false, 0,
+						0.1f)));
+
+		final int[] appliedTolerances = new int[2];
+		final List<IntFlatImage> edgesData = new EdgeDetectorBank(
+				edgeDetectors).getEdgesData(imageData,
+				Arrays.asList((SobelGradient) null, (SobelGradient) null),
+				null, appliedTolerances);
+
+		Assert.assertTrue(appliedTolerances[0] > 100);
+		Assert.assertTrue(appliedTolerances[1] > 0);
+		Assert.assertTrue(getEdgePixelCount(edgesData.get(0).pixels) <= maxEdgePixelCount);
+		Assert.assertTrue(getEdgePixelCount(edgesData.get(1).pixels) <= pixelCount / 10);
+		Assert.assertArrayEquals(
+				getExpectedEdgesData(imageData, 5, appliedTolerances[0]),
+				edgesData.get(0).pixels);
+		Assert.assertArrayEquals(
+				getExpectedEdgesData(imageData, 3, appliedTolerances[1]),
+				edgesData.get(1).pixels);
+	}
+
+	@Test
+	public void testEdgeBudgetWithinBudgetKeepsTolerance() {
+		final ByteFlatImage imageData = createNoiseImage();
+
+		final List<EdgeDetector> edgeDetectors = Arrays.asList(
+				new EdgeDetector(new EdgeDetectorParameter(5, 100, false,
+						imageData.pixels.length, 0)),
+				new EdgeDetector(new EdgeDetectorParameter(3, 0, false, 0, 1)));
+
+		final int[] appliedTolerances = new int[2];
+		final List<IntFlatImage> edgesData = new EdgeDetectorBank(
+				edgeDetectors).getEdgesData(imageData,
+				Arrays.asList((SobelGradient) null, (SobelGradient) null),
+				null, appliedTolerances);
+
+		Assert.assertArrayEquals(new int[] { 100, 0 }, appliedTolerances);
+		Assert.assertArrayEquals(getExpectedEdgesData(imageData, 5, 100),
+				edgesData.get(0).pixels);
+		Assert.assertArrayEquals(getExpectedEdgesData(imageData, 3, 0),
+				edgesData.get(1).pixels);
+	}
+}
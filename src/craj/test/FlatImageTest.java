@@ -0,0 +1,57 @@
+package craj.test;
+
+import ij.process.ColorProcessor;
+import ij.process.ShortProcessor;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import craj.FlatImage;
+import craj.IntFlatImage;
+
+public class FlatImageTest {
+
+	@Test
+	public void testIntArrayRoundTrip() {
+		final int[][] intArray = new int[][] { { 1, 2, 3 }, { 4, 5, 6 } };
+
+		final IntFlatImage image = IntFlatImage.fromIntArray(intArray);
+
+		Assert.assertEquals(2, image.width);
+		Assert.assertEquals(3, image.height);
+		Assert.assertEquals(4, image.get(1, 0));
+		Assert.assertEquals(3, image.get(0, 2));
+
+		final int[][] roundTrip = image.toIntArray();
+		for (int x = 0; x < intArray.length; x++) {
+			Assert.assertArrayEquals(intArray[x], roundTrip[x]);
+		}
+	}
+
+	@Test
+	public void testWrapColorProcessorWithoutCopy() {
+		final ColorProcessor processor = new ColorProcessor(4, 3);
+		processor.set(2, 1, 0x00123456);
+
+		final FlatImage image = FlatImage.wrap(processor);
+		Assert.assertEquals(0x00123456, image.get(2, 1));
+
+		image.set(3, 2, 0x00654321);
+		Assert.assertEquals(0x00654321, processor.get(3, 2));
+	}
+
+	@Test
+	public void testWrapShortProcessorIsUnsigned() {
+		final ShortProcessor processor = new ShortProcessor(3, 3);
+		processor.set(1, 1, 65535);
+
+		final FlatImage image = FlatImage.wrap(processor);
+		Assert.assertEquals(65535, image.get(1, 1));
+
+		final int[][] intArray = image.toIntArray();
+		final int[][] expectedIntArray = processor.getIntArray();
+		for (int x = 0; x < intArray.length; x++) {
+			Assert.assertArrayEquals(expectedIntArray[x], intArray[x]);
+		}
+	}
+}
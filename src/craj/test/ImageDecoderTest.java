@@ -0,0 +1,114 @@
+package craj.test;
+
+import ij.ImagePlus;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import javax.imageio.ImageIO;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import craj.ByteFlatImage;
+import craj.FlatImage;
+import craj.ImageDecoder;
+import craj.IntFlatImage;
+
+public class ImageDecoderTest {
+
+	private static void assertSamePixels(final FlatImage expected,
+			final FlatImage actual) {
+		Assert.assertEquals(expected.getClass(), actual.getClass());
+		Assert.assertEquals(expected.width, actual.width);
+		Assert.assertEquals(expected.height, actual.height);
+
+		for (int y = 0; y < expected.height; y++) {
+			for (int x = 0; x < expected.width; x++) {
+				Assert.assertEquals(expected.get(x, y), actual.get(x, y));
+			}
+		}
+	}
+
+	private static byte[] encode(final int imageType, final String formatName)
+			throws IOException {
+		final BufferedImage image = new BufferedImage(40, 30, imageType);
+		final Graphics2D graphics = image.createGraphics();
+		graphics.setColor(Color.LIGHT_GRAY);
+		graphics.fillRect(0, 0, 40, 30);
+		graphics.setColor(new Color(120, 60, 20));
+		graphics.fillOval(8, 6, 17, 17);
+		graphics.dispose();
+
+		final ByteArrayOutputStream encodedImage = new ByteArrayOutputStream();
+		ImageIO.write(image, formatName, encodedImage);
+		return encodedImage.toByteArray();
+	}
+
+	private static FlatImage openWithImagePlus(final byte[] encodedImage)
+			throws IOException {
+		return FlatImage.wrap(new ImagePlus("", ImageIO
+				.read(new ByteArrayInputStream(encodedImage))).getProcessor());
+	}
+
+	@Test
+	public void testColorJpegHasTheSamePixelsAsImagePlus() throws IOException {
+		final byte[] encodedImage = ImageDecoderTest.encode(
+				BufferedImage.TYPE_INT_RGB, "jpg");
+
+		final FlatImage image = ImageDecoder.decode(encodedImage);
+
+		Assert.assertTrue(image instanceof IntFlatImage);
+		ImageDecoderTest.assertSamePixels(
+				ImageDecoderTest.openWithImagePlus(encodedImage), image);
+	}
+
+	@Test
+	public void testColorPngHasTheSamePixelsAsImagePlus() throws IOException {
+		final byte[] encodedImage = ImageDecoderTest.encode(
+				BufferedImage.TYPE_INT_ARGB, "png");
+
+		ImageDecoderTest.assertSamePixels(
+				ImageDecoderTest.openWithImagePlus(encodedImage),
+				ImageDecoder.decode(encodedImage));
+	}
+
+	@Test
+	public void testGreyJpegIsDecodedToBytes() throws IOException {
+		final byte[] encodedImage = ImageDecoderTest.encode(
+				BufferedImage.TYPE_BYTE_GRAY, "jpg");
+
+		final FlatImage image = ImageDecoder.decode(encodedImage);
+
+		Assert.assertTrue(image instanceof ByteFlatImage);
+		ImageDecoderTest.assertSamePixels(
+				ImageDecoderTest.openWithImagePlus(encodedImage), image);
+	}
+
+	@Test
+	public void testSubsampledImageHoldsEveryNthPixel() throws IOException {
+		final byte[] encodedImage = ImageDecoderTest.encode(
+				BufferedImage.TYPE_INT_RGB, "png");
+
+		final FlatImage image = ImageDecoder.decode(encodedImage);
+		final FlatImage subsampledImage = ImageDecoder.decode(encodedImage, 4);
+
+		Assert.assertEquals(10, subsampledImage.width);
+		Assert.assertEquals(8, subsampledImage.height);
+		for (int y = 0; y < subsampledImage.height; y++) {
+			for (int x = 0; x < subsampledImage.width; x++) {
+				Assert.assertEquals(image.get(4 * x, 4 * y),
+						subsampledImage.get(x, y));
+			}
+		}
+	}
+
+	@Test(expected = IOException.class)
+	public void testUnreadableImageIsRejected() throws IOException {
+		ImageDecoder.decode(new byte[] { 1, 2, 3, 4 });
+	}
+}
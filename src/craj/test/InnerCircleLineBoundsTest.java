@@ -18,7 +18,7 @@ public class InnerCircleLineBoundsTest {
 	public static void setUpBeforeClass() throws Exception {
 	}
 
-	private Map<Byte, Byte> getInnerCircleLineBoundsForDiameter(
+	private Map<Integer, Integer> getInnerCircleLineBoundsForDiameter(
 			final int diameter) {
 		final ReferenceCircleParameters parameters = new ReferenceCircleParameters(
 				diameter, 0, 0, 0);
@@ -29,7 +29,7 @@ public class InnerCircleLineBoundsTest {
 
 		final List<DifferenceFromOrigin> edgeDifferencesFromCircleOrigin = perfectCircleCoordinates
 				.getEdgeDifferencesFromCircleOrigin();
-		final Map<Byte, Byte> innerCircleLineBounds = perfectCircleCoordinates
+		final Map<Integer, Integer> innerCircleLineBounds = perfectCircleCoordinates
 				.getInnerCircleLineBounds();
 
 		return innerCircleLineBounds;
@@ -59,4 +59,50 @@ public class InnerCircleLineBoundsTest {
 		Assert.assertEquals(output, "{0=4, 1=4, 2=3, 3=2, -3=2, -2=3, -1=4}");
 	}
 
+	@Test
+	public void testLineBoundsByRowEqualLineBounds() {
+		for (int diameter = 3; diameter <= 41; diameter += 2) {
+			final ReferenceCircleParameters parameters = new ReferenceCircleParameters(
+					diameter, 0, 0, 0);
+			final PerfectCircleCoordinates perfectCircleCoordinates = new ReferenceCircle(
+					parameters, false).getPerfectCircleCoordinates();
+
+			final Map<Integer, Integer> innerCircleLineBounds = perfectCircleCoordinates
+					.getInnerCircleLineBounds();
+			final int[] innerCircleLineBoundsByRow = perfectCircleCoordinates
+					.getInnerCircleLineBoundsByRow();
+
+			final int top = -(diameter / 2) + 1;
+			Assert.assertEquals(innerCircleLineBounds.size(),
+					innerCircleLineBoundsByRow.length);
+			for (int row = 0; row < innerCircleLineBoundsByRow.length; row++) {
+				Assert.assertEquals(
+						innerCircleLineBounds.get(top + row).intValue(),
+						innerCircleLineBoundsByRow[row]);
+			}
+		}
+	}
+
+	@Test
+	public void testLargeDiameterDoesNotWrapAround() {
+		final int diameter = 301;
+		final int radius = diameter / 2;
+		final PerfectCircleCoordinates perfectCircleCoordinates = new ReferenceCircle(
+				new ReferenceCircleParameters(diameter, 0, 0, 0), false)
+				.getPerfectCircleCoordinates();
+
+		for (final DifferenceFromOrigin edgeDifference : perfectCircleCoordinates
+				.getEdgeDifferencesFromCircleOrigin()) {
+			Assert.assertTrue(Math.abs(edgeDifference.getX()) <= radius);
+			Assert.assertTrue(Math.abs(edgeDifference.getY()) <= radius);
+		}
+
+		final Map<Integer, Integer> innerCircleLineBounds = perfectCircleCoordinates
+				.getInnerCircleLineBounds();
+		Assert.assertEquals(diameter - 2, innerCircleLineBounds.size());
+		Assert.assertEquals(radius, innerCircleLineBounds.get(0).intValue());
+		Assert.assertEquals(innerCircleLineBounds.get(-radius + 1),
+				innerCircleLineBounds.get(radius - 1));
+	}
+
 }
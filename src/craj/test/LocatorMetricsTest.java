@@ -0,0 +1,211 @@
+package craj.test;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import javax.imageio.ImageIO;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import craj.ContrastEnhancer;
+import craj.EdgeDetector;
+import craj.EdgeDetector.EdgeDetectorParameter;
+import craj.ReferenceCircle;
+import craj.ReferenceCircle.ReferenceCircleParameters;
+import craj.mapDigesterLocator.FileCircleFindingsPair;
+import craj.mapDigesterLocator.GenericObservable;
+import craj.mapDigesterLocator.GenericObserver;
+import craj.mapDigesterLocator.LocatorMetrics;
+import craj.mapDigesterLocator.LocatorMetrics.Stage;
+import craj.mapDigesterLocator.LocatorMetricsSnapshot;
+import craj.mapDigesterLocator.MapDigesterCircleFinder.MapDigesterCircleFinderParameter;
+import craj.mapDigesterLocator.MapDigesterLocator.MapDigesterLocatorParameter;
+import craj.mapDigesterLocator.MapDigesterLocatorForFiles;
+import craj.mapDigesterLocator.MetricHistogram;
+
+public class LocatorMetricsTest {
+
+	private static MapDigesterLocatorForFiles createLocator(
+			final int imageCount) throws IOException {
+		return LocatorMetricsTest.createLocator(imageCount, new EdgeDetector(
+				new EdgeDetectorParameter(5, 100, false)));
+	}
+
+	private static MapDigesterLocatorForFiles createLocator(
+			final int imageCount,
+			final EdgeDetector edgeDetectorForCrossValueCalculation)
+			throws IOException {
+		final File imgDir = File.createTempFile("LocatorMetrics", "");
+		imgDir.delete();
+		imgDir.mkdirs();
+		imgDir.deleteOnExit();
+
+		for (int image = 0; image < imageCount; image++) {
+			final BufferedImage bufferedImage = new BufferedImage(64, 48,
+					BufferedImage.TYPE_INT_RGB);
+			final Graphics2D graphics = bufferedImage.createGraphics();
+			graphics.setColor(Color.LIGHT_GRAY);
+			graphics.fillRect(0, 0, 64, 48);
+			graphics.setColor(Color.DARK_GRAY);
+			graphics.fillOval(10 + image, 10, 15, 15);
+			graphics.dispose();
+
+			final File imageFile = new File(imgDir, "image" + image + ".png");
+			ImageIO.write(bufferedImage, "png", imageFile);
+			imageFile.deleteOnExit();
+		}
+
+		final MapDigesterCircleFinderParameter mapDigesterCircleFinderParameters = new MapDigesterCircleFinderParameter(
+				new EdgeDetector(new EdgeDetectorParameter(3, 0, false)),
+				edgeDetectorForCrossValueCalculation,
+				Arrays.asList(new ContrastEnhancer(0.01f, 0.01f, false)), false,
+				Arrays.asList(new ReferenceCircle(
+						new ReferenceCircleParameters(15, 0.6f, 0.7f, 0.8f),
+						false)));
+
+		return new MapDigesterLocatorForFiles(new MapDigesterLocatorParameter(
+				true, false, false, imgDir, mapDigesterCircleFinderParameters,
+				2));
+	}
+
+	@Test
+	public void testCancelledImagesLeaveTheQueue() throws IOException,
+			InterruptedException {
+		final MapDigesterLocatorForFiles mapDigesterLocator = LocatorMetricsTest
+				.createLocator(3);
+
+		Assert.assertEquals(3, mapDigesterLocator.getMetrics()
+				.getQueuedTileCount());
+
+		mapDigesterLocator.cancel();
+		mapDigesterLocator.start();
+		mapDigesterLocator.join();
+
+		final LocatorMetricsSnapshot snapshot = mapDigesterLocator.getMetrics()
+				.getSnapshot();
+		Assert.assertEquals(0, snapshot.getRemainingTileCount());
+		Assert.assertEquals(0, snapshot.doneTileCount);
+		Assert.assertEquals(-1, snapshot.estimatedRemainingNanos);
+	}
+
+	@Test
+	public void testEdgeBudgetCappedImagesAreCounted() throws IOException,
+			InterruptedException {
+		final int imageCount = 3;
+		final int maxEdgePixelCount = 10;
+		final MapDigesterLocatorForFiles mapDigesterLocator = LocatorMetricsTest
+				.createLocator(imageCount, new EdgeDetector(
+						new EdgeDetectorParameter(5, 100, false,
+								maxEdgePixelCount, 0)));
+		final List<FileCircleFindingsPair> results = Collections
+				.synchronizedList(new ArrayList<FileCircleFindingsPair>());
+		mapDigesterLocator
+				.addObserver(new GenericObserver<FileCircleFindingsPair>() {
+					@Override
+					public void update(
+							final GenericObservable<FileCircleFindingsPair> oberservable,
+							final FileCircleFindingsPair circleFindingsPair) {
+						results.add(circleFindingsPair);
+					}
+				});
+
+		mapDigesterLocator.start();
+		mapDigesterLocator.join();
+
+		final LocatorMetricsSnapshot snapshot = mapDigesterLocator.getMetrics()
+				.getSnapshot();
+		Assert.assertEquals(imageCount, snapshot.edgeBudgetCappedTileCount);
+		Assert.assertTrue(snapshot.edgePixelCount <= imageCount
+				* maxEdgePixelCount);
+
+		// every image reports the tolerance its edge budget raised
+		Assert.assertEquals(imageCount, results.size());
+		for (final FileCircleFindingsPair result : results) {
+			Assert.assertTrue(result.edgeBudgetCapped);
+			Assert.assertTrue(result.edgeDetectionTolerance > 100);
+		}
+	}
+
+	@Test
+	public void testHistogramPercentilesAreBucketBounds() {
+		final MetricHistogram histogram = new MetricHistogram();
+		Assert.assertEquals(0, histogram.getPercentile(50));
+
+		histogram.record(1);
+		histogram.record(2);
+		histogram.record(3);
+		histogram.record(100);
+
+		Assert.assertEquals(4, histogram.getCount());
+		Assert.assertEquals(106, histogram.getSum());
+		Assert.assertEquals(26.5, histogram.getMean(), 0);
+		Assert.assertEquals(1, histogram.getPercentile(0));
+		Assert.assertEquals(3, histogram.getPercentile(50));
+		Assert.assertEquals(100, histogram.getPercentile(100));
+
+		final MetricHistogram copy = histogram.copy();
+		histogram.record(1000);
+		Assert.assertEquals(4, copy.getCount());
+		Assert.assertEquals(100, copy.getMax());
+	}
+
+	@Test
+	public void testMetricsAreReadableByJmx() throws JMException {
+		final LocatorMetrics metrics = new LocatorMetrics();
+		metrics.addQueuedTile();
+
+		final ObjectName objectName = metrics
+				.registerMBean("LocatorMetricsTest");
+		final MBeanServer mBeanServer = ManagementFactory
+				.getPlatformMBeanServer();
+		try {
+			Assert.assertEquals(1L,
+					mBeanServer.getAttribute(objectName, "QueuedTileCount"));
+			Assert.assertEquals(-1L, mBeanServer.getAttribute(objectName,
+					"EstimatedRemainingSeconds"));
+		} finally {
+			metrics.unregisterMBean();
+		}
+
+		Assert.assertFalse(mBeanServer.isRegistered(objectName));
+	}
+
+	@Test
+	public void testSearchedImagesAreCounted() throws IOException,
+			InterruptedException {
+		final int imageCount = 4;
+		final MapDigesterLocatorForFiles mapDigesterLocator = LocatorMetricsTest
+				.createLocator(imageCount);
+
+		mapDigesterLocator.start();
+		mapDigesterLocator.join();
+
+		final LocatorMetricsSnapshot snapshot = mapDigesterLocator.getMetrics()
+				.getSnapshot();
+		Assert.assertEquals(imageCount, snapshot.doneTileCount);
+		Assert.assertEquals(0, snapshot.getRemainingTileCount());
+		Assert.assertEquals(0, snapshot.estimatedRemainingNanos);
+		Assert.assertTrue(snapshot.edgePixelCount > 0);
+		Assert.assertTrue(snapshot.castVoteCount >= snapshot.edgePixelCount);
+		Assert.assertEquals(imageCount,
+				snapshot.candidatesPerTile.getCount());
+		Assert.assertEquals(0, snapshot.edgeBudgetCappedTileCount);
+
+		for (final Stage stage : Stage.values()) {
+			Assert.assertEquals(imageCount, snapshot.getStageLatencies(stage)
+					.getCount());
+		}
+	}
+}
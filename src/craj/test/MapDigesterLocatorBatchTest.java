@@ -0,0 +1,206 @@
+package craj.test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import craj.ReferenceCircleCatalog;
+import craj.batch.BatchConfiguration;
+import craj.batch.MapDigesterLocatorBatch;
+import craj.mapDigesterLocator.CsvCircleFindingSink;
+import craj.mapDigesterLocator.MapDigesterCircleFinder.MapDigesterCircleFinderParameter;
+
+public class MapDigesterLocatorBatchTest {
+
+	@Test
+	public void testDefaultsAreThoseOfThePlugin() {
+		final MapDigesterCircleFinderParameter params = new BatchConfiguration(
+				new Properties())
+				.createCircleFinderParameter(new ReferenceCircleCatalog());
+
+		Assert.assertEquals(23, params.referenceCircles.size());
+		Assert.assertEquals(27, params.referenceCircles.get(0).diameter);
+		Assert.assertEquals(71, params.referenceCircles.get(22).diameter);
+		Assert.assertEquals(1, params.contrastEnhancerList.size());
+		Assert.assertNotNull(params.circleFindingSuppressor);
+		Assert.assertNull(params.coarseCandidateSearch);
+		Assert.assertFalse(params.verbose);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testInvalidNumberIsRejected() {
+		final Properties properties = new Properties();
+		properties.setProperty("referenceCircle.diameters", "13, fifteen");
+
+		new BatchConfiguration(properties)
+				.createCircleFinderParameter(new ReferenceCircleCatalog());
+	}
+
+	@Test
+	public void testListsAreParsed() {
+		final Properties properties = new Properties();
+		properties.setProperty("referenceCircle.diameters", "13, 15,17");
+		properties.setProperty("contrastEnhancers", "0.5:0.25, 0.9:0.06");
+		properties.setProperty(
+				"circleFindingSuppressor.maxCenterDistanceFactor", "-1");
+		properties.setProperty("coarseCandidateSearch.scale", "2");
+
+		final MapDigesterCircleFinderParameter params = new BatchConfiguration(
+				properties)
+				.createCircleFinderParameter(new ReferenceCircleCatalog());
+
+		Assert.assertEquals(3, params.referenceCircles.size());
+		Assert.assertEquals(17, params.referenceCircles.get(2).diameter);
+		Assert.assertEquals(2, params.contrastEnhancerList.size());
+		Assert.assertNull(params.circleFindingSuppressor);
+		Assert.assertNotNull(params.coarseCandidateSearch);
+	}
+
+	@Test
+	public void testRunWritesTheCircleFindings() throws IOException,
+			InterruptedException {
+		final File imgDir = File.createTempFile("MapDigesterLocatorBatch", "");
+		imgDir.delete();
+		imgDir.mkdirs();
+
+		// a tile with one digester
+		final String imageName = "X_0x1.9e54fap5Y_0x1.5fe5a8p3.jpg";
+		Files.copy(new File("SelectedGoogleMaps/Test1", imageName).toPath(),
+				new File(imgDir, imageName).toPath());
+
+		final File csvFile = File.createTempFile("CircleFindings", ".csv");
+		final File catalogFile = File.createTempFile("ReferenceCircles",
+				".catalog");
+		catalogFile.delete();
+
+		final Properties properties = new Properties();
+		properties.setProperty("imageDirectory", imgDir.getPath());
+		properties.setProperty("parallelism", "2");
+		properties.setProperty("referenceCircle.diameters",
+				"35,37,39,41,43,45,47");
+		properties.setProperty("referenceCircle.valueDifferenceTolerance",
+				"0.66");
+		properties.setProperty("referenceCircle.countDifferenceTolerance",
+				"0.81");
+		properties.setProperty("referenceCircle.minBlackValue", "0.92");
+		properties.setProperty("contrastEnhancers",
+				"0.5:0.25, 0.25:0.5, 0.1:0.8, 0.9:0.06");
+		properties.setProperty(
+				"circleFindingSuppressor.maxCenterDistanceFactor", "-1");
+		properties.setProperty("referenceCircle.catalog", catalogFile.getPath());
+		properties.setProperty("output.csv", csvFile.getPath());
+
+		Assert.assertEquals(MapDigesterLocatorBatch.EXIT_SUCCESS,
+				MapDigesterLocatorBatch.run(new BatchConfiguration(properties)));
+
+		final List<String> lines = Files.readAllLines(csvFile.toPath(),
+				StandardCharsets.UTF_8);
+		Assert.assertEquals(2, lines.size());
+		Assert.assertEquals(CsvCircleFindingSink.HEADER, lines.get(0));
+		Assert.assertEquals(imageName
+				+ ",NaN,NaN,241,206,41,33567,153,236.0,false,100",
+				lines.get(1));
+
+		// the second run loads the reference circles from the catalog
+		Assert.assertEquals(7, ReferenceCircleCatalog.load(catalogFile).size());
+		Assert.assertEquals(MapDigesterLocatorBatch.EXIT_SUCCESS,
+				MapDigesterLocatorBatch.run(new BatchConfiguration(properties)));
+		Assert.assertEquals(lines, Files.readAllLines(csvFile.toPath(),
+				StandardCharsets.UTF_8));
+
+		for (final File file : imgDir.listFiles()) {
+			file.delete();
+		}
+		imgDir.delete();
+		csvFile.delete();
+		catalogFile.delete();
+	}
+
+	@Test
+	public void testResumedSweepKeepsTheCircleFindings() throws IOException,
+			InterruptedException {
+		final File imgDir = File.createTempFile("MapDigesterLocatorBatch", "");
+		imgDir.delete();
+		imgDir.mkdirs();
+
+		// two tiles with one digester each, so nothing is fetched
+		final File image = new File("SelectedGoogleMaps/Test1",
+				"X_0x1.9e54fap5Y_0x1.5fe5a8p3.jpg");
+		final String[] tileNames = {
+				"X_" + Float.toHexString(0.01f) + "Y_" + Float.toHexString(0f)
+						+ ".jpg",
+				"X_" + Float.toHexString(0f) + "Y_" + Float.toHexString(0f)
+						+ ".jpg" };
+		for (final String tileName : tileNames) {
+			Files.copy(image.toPath(), new File(imgDir, tileName).toPath());
+		}
+
+		final File csvFile = File.createTempFile("CircleFindings", ".csv");
+		final File journalFile = File.createTempFile("ProgressJournal",
+				".journal");
+		journalFile.delete();
+
+		final Properties properties = new Properties();
+		properties.setProperty("mode", "gmaps");
+		properties.setProperty("imageDirectory", imgDir.getPath());
+		properties.setProperty("gmaps.longitudeStart", "0");
+		properties.setProperty("gmaps.latitudeStart", "0.01");
+		properties.setProperty("gmaps.longitudeStop", "0.005");
+		properties.setProperty("gmaps.latitudeStop", "-0.005");
+		properties.setProperty("gmaps.stepSize", "0.01");
+		properties.setProperty("gmaps.progressJournal", journalFile.getPath());
+		properties.setProperty("referenceCircle.diameters",
+				"35,37,39,41,43,45,47");
+		properties.setProperty("referenceCircle.valueDifferenceTolerance",
+				"0.66");
+		properties.setProperty("referenceCircle.countDifferenceTolerance",
+				"0.81");
+		properties.setProperty("referenceCircle.minBlackValue", "0.92");
+		properties.setProperty("contrastEnhancers",
+				"0.5:0.25, 0.25:0.5, 0.1:0.8, 0.9:0.06");
+		properties.setProperty(
+				"circleFindingSuppressor.maxCenterDistanceFactor", "-1");
+		properties.setProperty("output.csv", csvFile.getPath());
+
+		Assert.assertEquals(MapDigesterLocatorBatch.EXIT_SUCCESS,
+				MapDigesterLocatorBatch.run(new BatchConfiguration(properties)));
+
+		final List<String> lines = Files.readAllLines(csvFile.toPath(),
+				StandardCharsets.UTF_8);
+		Assert.assertEquals(3, lines.size());
+		Collections.sort(lines);
+
+		// the resumed run skips all tiles and writes their journaled findings
+		Assert.assertEquals(MapDigesterLocatorBatch.EXIT_SUCCESS,
+				MapDigesterLocatorBatch.run(new BatchConfiguration(properties)));
+
+		final List<String> resumedLines = Files.readAllLines(
+				csvFile.toPath(), StandardCharsets.UTF_8);
+		Collections.sort(resumedLines);
+		Assert.assertEquals(lines, resumedLines);
+
+		for (final File file : imgDir.listFiles()) {
+			file.delete();
+		}
+		imgDir.delete();
+		csvFile.delete();
+		journalFile.delete();
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testRunWithoutOutputIsRejected() throws IOException,
+			InterruptedException {
+		final Properties properties = new Properties();
+		properties.setProperty("imageDirectory",
+				System.getProperty("java.io.tmpdir"));
+
+		MapDigesterLocatorBatch.run(new BatchConfiguration(properties));
+	}
+}
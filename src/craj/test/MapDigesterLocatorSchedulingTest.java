@@ -0,0 +1,153 @@
+package craj.test;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.imageio.ImageIO;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import craj.CircleFinding;
+import craj.ContrastEnhancer;
+import craj.EdgeDetector;
+import craj.EdgeDetector.EdgeDetectorParameter;
+import craj.ReferenceCircle;
+import craj.ReferenceCircle.ReferenceCircleParameters;
+import craj.mapDigesterLocator.FileCircleFindingsPair;
+import craj.mapDigesterLocator.GenericObservable;
+import craj.mapDigesterLocator.GenericObserver;
+import craj.mapDigesterLocator.MapDigesterCircleFinder.MapDigesterCircleFinderParameter;
+import craj.mapDigesterLocator.MapDigesterLocator.MapDigesterLocatorParameter;
+import craj.mapDigesterLocator.MapDigesterLocatorForFiles;
+
+public class MapDigesterLocatorSchedulingTest implements
+		GenericObserver<FileCircleFindingsPair> {
+
+	private static File createImageDirectory(final int imageCount)
+			throws IOException {
+		final File imgDir = File.createTempFile("MapDigesterLocator", "");
+		imgDir.delete();
+		imgDir.mkdirs();
+		imgDir.deleteOnExit();
+
+		for (int image = 0; image < imageCount; image++) {
+			final BufferedImage bufferedImage = new BufferedImage(64, 48,
+					BufferedImage.TYPE_INT_RGB);
+			final Graphics2D graphics = bufferedImage.createGraphics();
+			graphics.setColor(Color.LIGHT_GRAY);
+			graphics.fillRect(0, 0, 64, 48);
+			graphics.setColor(Color.DARK_GRAY);
+			graphics.fillOval(10 + image, 10, 15, 15);
+			graphics.dispose();
+
+			final File imageFile = new File(imgDir, "image" + image + ".png");
+			ImageIO.write(bufferedImage, "png", imageFile);
+			imageFile.deleteOnExit();
+		}
+
+		return imgDir;
+	}
+
+	private static MapDigesterLocatorForFiles createLocator(
+			final File imgDir, final int parallelism) {
+		final List<ReferenceCircle> referenceCircles = Arrays.asList(
+				new ReferenceCircle(new ReferenceCircleParameters(13, 0.6f,
+						0.7f, 0.8f), false), new ReferenceCircle(
+						new ReferenceCircleParameters(15, 0.6f, 0.7f, 0.8f),
+						false));
+
+		final MapDigesterCircleFinderParameter mapDigesterCircleFinderParameters = new MapDigesterCircleFinderParameter(
+				new EdgeDetector(new EdgeDetectorParameter(3, 0, false)),
+				new EdgeDetector(new EdgeDetectorParameter(5, 100, false)),
+				Arrays.asList(new ContrastEnhancer(0.5f, 0.25f, false)), false,
+				referenceCircles);
+
+		return new MapDigesterLocatorForFiles(new MapDigesterLocatorParameter(
+				true, false, false, imgDir, mapDigesterCircleFinderParameters,
+				parallelism));
+	}
+
+	private final AtomicInteger notificationCount = new AtomicInteger();
+
+	@Test
+	public void testCancelledLocatorJoinsWithoutNotifications()
+			throws IOException, InterruptedException {
+		final MapDigesterLocatorForFiles mapDigesterLocator = MapDigesterLocatorSchedulingTest
+				.createLocator(
+						MapDigesterLocatorSchedulingTest
+								.createImageDirectory(4), 2);
+		mapDigesterLocator.addObserver(this);
+		final List<Future<List<CircleFinding>>> futures = mapDigesterLocator
+				.getFutures();
+
+		mapDigesterLocator.cancel();
+		mapDigesterLocator.start();
+		mapDigesterLocator.join();
+
+		Assert.assertTrue(mapDigesterLocator.isCancelled());
+		Assert.assertEquals(0, mapDigesterLocator.getRemainingCalculationCount());
+		Assert.assertEquals(0, notificationCount.get());
+		for (final Future<List<CircleFinding>> future : futures) {
+			Assert.assertTrue(future.isCancelled());
+		}
+		Assert.assertTrue(mapDigesterLocator.getFutures().isEmpty());
+	}
+
+	@Test
+	public void testEmptyLocatorJoinsImmediately() throws IOException,
+			InterruptedException {
+		final MapDigesterLocatorForFiles mapDigesterLocator = MapDigesterLocatorSchedulingTest
+				.createLocator(
+						MapDigesterLocatorSchedulingTest
+								.createImageDirectory(0), 0);
+
+		mapDigesterLocator.start();
+		mapDigesterLocator.join();
+
+		Assert.assertTrue(mapDigesterLocator.getFutures().isEmpty());
+	}
+
+	@Test
+	public void testJoinWaitsForAllImages() throws Exception {
+		final int imageCount = 6;
+		final MapDigesterLocatorForFiles mapDigesterLocator = MapDigesterLocatorSchedulingTest
+				.createLocator(MapDigesterLocatorSchedulingTest
+						.createImageDirectory(imageCount), 2);
+		mapDigesterLocator.addObserver(this);
+
+		final List<Future<List<CircleFinding>>> futures = mapDigesterLocator
+				.getFutures();
+		Assert.assertEquals(imageCount, futures.size());
+
+		mapDigesterLocator.start();
+		mapDigesterLocator.join();
+
+		Assert.assertEquals(imageCount, notificationCount.get());
+		Assert.assertEquals(0, mapDigesterLocator.getRemainingCalculationCount());
+
+		for (final Future<List<CircleFinding>> future : futures) {
+			Assert.assertTrue(future.isDone());
+			Assert.assertNotNull(future.get());
+		}
+		// the completed calculations are released
+		Assert.assertTrue(mapDigesterLocator.getFutures().isEmpty());
+
+		// all calculations are done, so a further join must not wait
+		mapDigesterLocator.join();
+	}
+
+	@Override
+	public void update(
+			final GenericObservable<FileCircleFindingsPair> oberservable,
+			final FileCircleFindingsPair circleFindingsPair) {
+		notificationCount.incrementAndGet();
+	}
+}
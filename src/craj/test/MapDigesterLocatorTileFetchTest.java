@@ -0,0 +1,454 @@
+package craj.test;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import craj.CircleFinding;
+import craj.ContrastEnhancer;
+import craj.EdgeDetector;
+import craj.EdgeDetector.EdgeDetectorParameter;
+import craj.IntFlatImage;
+import craj.ReferenceCircle;
+import craj.ReferenceCircle.ReferenceCircleParameters;
+import craj.mapDigesterLocator.GenericObservable;
+import craj.mapDigesterLocator.GenericObserver;
+import craj.mapDigesterLocator.GmapsCoordinateCircleFindingsPair;
+import craj.mapDigesterLocator.MapDigesterCircleFinder.MapDigesterCircleFinderParameter;
+import craj.mapDigesterLocator.MapDigesterLocator.MapDigesterLocatorParameter;
+import craj.mapDigesterLocator.MapDigesterLocatorForGMaps;
+import craj.mapDigesterLocator.MapDigesterLocatorForGMaps.MapDigesterLocatorForGMapsParameter;
+import craj.mapDigesterLocator.ProgressJournal;
+import craj.mapDigesterLocator.TileKey;
+import craj.mapDigesterLocator.TileSource;
+import craj.mapDigesterLocator.TileStore;
+
+public class MapDigesterLocatorTileFetchTest implements
+		GenericObserver<GmapsCoordinateCircleFindingsPair> {
+
+	/**
+	 * Stands in for the map server: draws the tiles instead of downloading
+	 * them and fails the first request of every tile.
+	 */
+	private static class FlakyTileSource implements TileSource {
+
+		private final AtomicInteger concurrentRequestCount = new AtomicInteger();
+
+		private final AtomicInteger maxConcurrentRequestCount = new AtomicInteger();
+
+		private final Map<String, Integer> requestCounts = new ConcurrentHashMap<>();
+
+		private final AtomicInteger tileCount = new AtomicInteger();
+
+		@Override
+		public BufferedImage getTile(final float latitude,
+				final float longitude) throws IOException {
+			final int concurrentRequests = concurrentRequestCount
+					.incrementAndGet();
+			try {
+				synchronized (this) {
+					maxConcurrentRequestCount.set(Math.max(
+							maxConcurrentRequestCount.get(), concurrentRequests));
+				}
+
+				final String tile = latitude + "/" + longitude;
+				final Integer requestCount = requestCounts.get(tile);
+				requestCounts.put(tile, requestCount == null ? 1
+						: requestCount + 1);
+				if (requestCount == null) {
+					throw new IOException("The first request fails.");
+				}
+
+				Thread.sleep(20);
+
+				final BufferedImage tileImage = new BufferedImage(48, 48,
+						BufferedImage.TYPE_INT_RGB);
+				final Graphics2D graphics = tileImage.createGraphics();
+				graphics.setColor(Color.LIGHT_GRAY);
+				graphics.fillRect(0, 0, 48, 48);
+				graphics.dispose();
+
+				tileCount.incrementAndGet();
+				return tileImage;
+			} catch (final InterruptedException e) {
+				throw new IOException(e);
+			} finally {
+				concurrentRequestCount.decrementAndGet();
+			}
+		}
+	}
+
+	private static final float LATITUDE_START = 0.02f;
+
+	private static final float LATITUDE_STOP = 0f;
+
+	private static final float LONGITUDE_START = 0f;
+
+	private static final float LONGITUDE_STOP = 0.03f;
+
+	private static final float STEP_SIZE = 0.01f;
+
+	private static final int ZOOM = 18;
+
+	private static int getGridTileCount() {
+		return MapDigesterLocatorTileFetchTest.getGridTileKeys().size();
+	}
+
+	private static Set<TileKey> getGridTileKeys() {
+		final Set<TileKey> tileKeys = new HashSet<>();
+		for (float lon = MapDigesterLocatorTileFetchTest.LONGITUDE_START; lon < MapDigesterLocatorTileFetchTest.LONGITUDE_STOP; lon += MapDigesterLocatorTileFetchTest.STEP_SIZE) {
+			for (float lat = MapDigesterLocatorTileFetchTest.LATITUDE_START; lat > MapDigesterLocatorTileFetchTest.LATITUDE_STOP; lat -= MapDigesterLocatorTileFetchTest.STEP_SIZE) {
+				tileKeys.add(new TileKey(lat, lon,
+						MapDigesterLocatorTileFetchTest.ZOOM));
+			}
+		}
+		return tileKeys;
+	}
+
+	private final AtomicInteger notificationCount = new AtomicInteger();
+
+	private final Map<TileKey, List<CircleFinding>> notifiedTiles = new ConcurrentHashMap<>();
+
+	private MapDigesterLocatorForGMaps createLocator(final File imgDir,
+			final TileSource tileSource) {
+		return createLocator(imgDir, tileSource, null, null);
+	}
+
+	private MapDigesterLocatorForGMaps createLocator(final File imgDir,
+			final TileSource tileSource, final TileStore tileStore,
+			final ProgressJournal progressJournal) {
+		return createLocator(imgDir, tileSource, tileStore, progressJournal,
+				false);
+	}
+
+	private MapDigesterLocatorForGMaps createLocator(final File imgDir,
+			final TileSource tileSource, final TileStore tileStore,
+			final ProgressJournal progressJournal,
+			final boolean dropResultsWhenFull) {
+		final MapDigesterCircleFinderParameter mapDigesterCircleFinderParameters = new MapDigesterCircleFinderParameter(
+				new EdgeDetector(new EdgeDetectorParameter(3, 0, false)),
+				new EdgeDetector(new EdgeDetectorParameter(5, 100, false)),
+				Arrays.asList(new ContrastEnhancer(0.5f, 0.25f, false)), false,
+				Arrays.asList(new ReferenceCircle(
+						new ReferenceCircleParameters(13, 0.6f, 0.7f, 0.8f),
+						false)));
+
+		final MapDigesterLocatorParameter params = new MapDigesterLocatorParameter(
+				true, false, false, imgDir, mapDigesterCircleFinderParameters, 2,
+				1, dropResultsWhenFull);
+
+		final MapDigesterLocatorForGMaps mapDigesterLocatorForGMaps = new MapDigesterLocatorForGMaps(
+				new MapDigesterLocatorForGMapsParameter(params,
+						MapDigesterLocatorTileFetchTest.LONGITUDE_START,
+						MapDigesterLocatorTileFetchTest.LATITUDE_START,
+						MapDigesterLocatorTileFetchTest.LONGITUDE_STOP,
+						MapDigesterLocatorTileFetchTest.LATITUDE_STOP,
+						MapDigesterLocatorTileFetchTest.STEP_SIZE, tileSource,
+						2, 2, tileStore, MapDigesterLocatorTileFetchTest.ZOOM,
+						progressJournal));
+		mapDigesterLocatorForGMaps.addObserver(this);
+
+		return mapDigesterLocatorForGMaps;
+	}
+
+	@Test
+	public void testTilesAreFetchedWithRetriesAndCachedOnDisc()
+			throws IOException, InterruptedException {
+		final File imgDir = File.createTempFile("MapDigesterLocatorForGMaps",
+				"");
+		imgDir.delete();
+
+		final int gridTileCount = MapDigesterLocatorTileFetchTest
+				.getGridTileCount();
+
+		final FlakyTileSource tileSource = new FlakyTileSource();
+		final MapDigesterLocatorForGMaps mapDigesterLocatorForGMaps = createLocator(
+				imgDir, tileSource);
+		mapDigesterLocatorForGMaps.start();
+		mapDigesterLocatorForGMaps.join();
+
+		Assert.assertEquals(gridTileCount, tileSource.tileCount.get());
+		Assert.assertTrue(tileSource.maxConcurrentRequestCount.get() <= 2);
+		Assert.assertEquals(gridTileCount, notificationCount.get());
+		Assert.assertEquals(0,
+				mapDigesterLocatorForGMaps.getRemainingCalculationCount());
+
+		// the second sweep finds every tile on disc
+		final FlakyTileSource unusedTileSource = new FlakyTileSource();
+		final MapDigesterLocatorForGMaps secondMapDigesterLocatorForGMaps = createLocator(
+				imgDir, unusedTileSource);
+		secondMapDigesterLocatorForGMaps.start();
+		secondMapDigesterLocatorForGMaps.join();
+
+		Assert.assertEquals(0, unusedTileSource.requestCounts.size());
+		Assert.assertEquals(2 * gridTileCount, notificationCount.get());
+
+		for (final File file : imgDir.listFiles()) {
+			file.delete();
+		}
+		imgDir.delete();
+	}
+
+	@Test
+	public void testSearchedTilesAreSkippedWhenResumed() throws IOException,
+			InterruptedException {
+		final File imgDir = File.createTempFile("MapDigesterLocatorForGMaps",
+				"");
+		imgDir.delete();
+		final File journalFile = File.createTempFile("ProgressJournal",
+				".journal");
+		journalFile.delete();
+
+		final int gridTileCount = MapDigesterLocatorTileFetchTest
+				.getGridTileCount();
+
+		try (ProgressJournal progressJournal = new ProgressJournal(journalFile)) {
+			final MapDigesterLocatorForGMaps mapDigesterLocatorForGMaps = createLocator(
+					imgDir, new FlakyTileSource(), null, progressJournal);
+			mapDigesterLocatorForGMaps.start();
+			mapDigesterLocatorForGMaps.join();
+
+			Assert.assertEquals(gridTileCount,
+					progressJournal.getCompletedTileCount());
+		}
+
+		// the resumed sweep neither fetches nor searches any tile, but
+		// replays them from the journal
+		try (ProgressJournal progressJournal = new ProgressJournal(journalFile)) {
+			final FlakyTileSource unusedTileSource = new FlakyTileSource();
+			final MapDigesterLocatorForGMaps resumedMapDigesterLocatorForGMaps = createLocator(
+					imgDir, unusedTileSource, null, progressJournal);
+			resumedMapDigesterLocatorForGMaps.start();
+			resumedMapDigesterLocatorForGMaps.join();
+
+			Assert.assertEquals(0, unusedTileSource.requestCounts.size());
+			Assert.assertEquals(2 * gridTileCount, notificationCount.get());
+			Assert.assertTrue(resumedMapDigesterLocatorForGMaps.getFutures()
+					.isEmpty());
+		}
+
+		for (final File file : imgDir.listFiles()) {
+			file.delete();
+		}
+		imgDir.delete();
+		journalFile.delete();
+	}
+
+	@Test
+	public void testDroppedResultsAreReplayedWhenResumed() throws IOException,
+			InterruptedException {
+		final File imgDir = File.createTempFile("MapDigesterLocatorForGMaps",
+				"");
+		imgDir.delete();
+		final File journalFile = File.createTempFile("ProgressJournal",
+				".journal");
+		journalFile.delete();
+
+		final Set<TileKey> gridTileKeys = MapDigesterLocatorTileFetchTest
+				.getGridTileKeys();
+
+		try (ProgressJournal progressJournal = new ProgressJournal(journalFile)) {
+			final MapDigesterLocatorForGMaps mapDigesterLocatorForGMaps = createLocator(
+					imgDir, new FlakyTileSource(), null, progressJournal, true);
+
+			// the output hangs until all tiles are searched, so all but the
+			// first two results are dropped
+			final CountDownLatch outputRelease = new CountDownLatch(1);
+			mapDigesterLocatorForGMaps
+					.addObserver(new GenericObserver<GmapsCoordinateCircleFindingsPair>() {
+						@Override
+						public void update(
+								final GenericObservable<GmapsCoordinateCircleFindingsPair> oberservable,
+								final GmapsCoordinateCircleFindingsPair circleFindingsPair) {
+							try {
+								outputRelease.await();
+							} catch (final InterruptedException e) {
+								Thread.currentThread().interrupt();
+							}
+						}
+					});
+
+			mapDigesterLocatorForGMaps.start();
+			while (mapDigesterLocatorForGMaps.getRemainingCalculationCount() > 0) {
+				Thread.sleep(10);
+			}
+			outputRelease.countDown();
+			mapDigesterLocatorForGMaps.join();
+
+			Assert.assertEquals(gridTileKeys.size() - 2,
+					mapDigesterLocatorForGMaps.getDroppedResultCount());
+			Assert.assertEquals(gridTileKeys.size(),
+					progressJournal.getCompletedTileCount());
+		}
+
+		notifiedTiles.clear();
+
+		// the resumed sweep delivers every tile, including the dropped ones
+		try (ProgressJournal progressJournal = new ProgressJournal(journalFile)) {
+			final MapDigesterLocatorForGMaps resumedMapDigesterLocatorForGMaps = createLocator(
+					imgDir, new FlakyTileSource(), null, progressJournal);
+			resumedMapDigesterLocatorForGMaps.start();
+			resumedMapDigesterLocatorForGMaps.join();
+
+			Assert.assertEquals(gridTileKeys, notifiedTiles.keySet());
+		}
+
+		for (final File file : imgDir.listFiles()) {
+			file.delete();
+		}
+		imgDir.delete();
+		journalFile.delete();
+	}
+
+	@Test
+	public void testFindingsOfAnAbortedSweepAreReplayed() throws IOException,
+			InterruptedException {
+		final File imgDir = File.createTempFile("MapDigesterLocatorForGMaps",
+				"");
+		imgDir.delete();
+		final File journalFile = File.createTempFile("ProgressJournal",
+				".journal");
+		journalFile.delete();
+
+		final ReferenceCircle referenceCircle = new ReferenceCircle(
+				new ReferenceCircleParameters(13, 0.6f, 0.7f, 0.8f), false);
+		final IntFlatImage sourceImageData = new IntFlatImage(48, 48);
+		final Set<TileKey> gridTileKeys = MapDigesterLocatorTileFetchTest
+				.getGridTileKeys();
+
+		// the aborted sweep recorded every tile, but was killed before the
+		// circle findings reached its output
+		try (ProgressJournal progressJournal = new ProgressJournal(journalFile)) {
+			int tile = 0;
+			for (final TileKey tileKey : gridTileKeys) {
+				progressJournal.append(tileKey, Arrays.asList(
+						new CircleFinding(10 + tile, 12, referenceCircle,
+								sourceImageData, 30 + tile, 20),
+						new CircleFinding(25, 20 + tile, referenceCircle,
+								sourceImageData, 28, 19 + tile)));
+				tile++;
+			}
+		}
+
+		try (ProgressJournal progressJournal = new ProgressJournal(journalFile)) {
+			final MapDigesterLocatorForGMaps resumedMapDigesterLocatorForGMaps = createLocator(
+					imgDir, new FlakyTileSource(), null, progressJournal);
+			resumedMapDigesterLocatorForGMaps.start();
+			resumedMapDigesterLocatorForGMaps.join();
+		}
+
+		Assert.assertEquals(gridTileKeys, notifiedTiles.keySet());
+
+		int tile = 0;
+		for (final TileKey tileKey : gridTileKeys) {
+			final List<CircleFinding> circleFindings = notifiedTiles
+					.get(tileKey);
+			Assert.assertEquals(2, circleFindings.size());
+			Assert.assertEquals(10 + tile, circleFindings.get(0).x);
+			Assert.assertEquals(30 + tile, circleFindings.get(0)
+					.getPixelCrossValue());
+			Assert.assertEquals(20 + tile, circleFindings.get(1).y);
+			Assert.assertEquals(19 + tile, circleFindings.get(1)
+					.getPixelCrossCount());
+			Assert.assertEquals(13,
+					circleFindings.get(1).referenceCircle.diameter);
+			tile++;
+		}
+
+		imgDir.delete();
+		journalFile.delete();
+	}
+
+	@Test
+	public void testTilesAreFetchedOnceIntoTheTileStore() throws IOException,
+			InterruptedException {
+		final File imgDir = File.createTempFile("MapDigesterLocatorForGMaps",
+				"");
+		imgDir.delete();
+		final File storeDir = new File(imgDir, "tiles");
+
+		final int gridTileCount = MapDigesterLocatorTileFetchTest
+				.getGridTileCount();
+
+		try (TileStore tileStore = new TileStore(storeDir, 1024 * 1024)) {
+			final FlakyTileSource tileSource = new FlakyTileSource();
+			final MapDigesterLocatorForGMaps mapDigesterLocatorForGMaps = createLocator(
+					imgDir, tileSource, tileStore, null);
+			mapDigesterLocatorForGMaps.start();
+			mapDigesterLocatorForGMaps.join();
+
+			Assert.assertEquals(gridTileCount, tileSource.tileCount.get());
+			Assert.assertEquals(gridTileCount, tileStore.size());
+			Assert.assertEquals(gridTileCount, notificationCount.get());
+
+			// the second sweep finds every tile decoded in the cache
+			final FlakyTileSource unusedTileSource = new FlakyTileSource();
+			final MapDigesterLocatorForGMaps secondMapDigesterLocatorForGMaps = createLocator(
+					imgDir, unusedTileSource, tileStore, null);
+			secondMapDigesterLocatorForGMaps.start();
+			secondMapDigesterLocatorForGMaps.join();
+
+			Assert.assertEquals(0, unusedTileSource.requestCounts.size());
+			Assert.assertEquals(2 * gridTileCount, notificationCount.get());
+			Assert.assertEquals(gridTileCount, tileStore
+					.getDecodedTileCache().size());
+		}
+
+		for (final File file : storeDir.listFiles()) {
+			file.delete();
+		}
+		storeDir.delete();
+		imgDir.delete();
+	}
+
+	@Test
+	public void testUnavailableTilesAreSkipped() throws IOException,
+			InterruptedException {
+		final File imgDir = File.createTempFile("MapDigesterLocatorForGMaps",
+				"");
+		imgDir.delete();
+
+		final TileSource unavailableTileSource = new TileSource() {
+			@Override
+			public BufferedImage getTile(final float latitude,
+					final float longitude) throws IOException {
+				throw new IOException("The server is down.");
+			}
+		};
+
+		final MapDigesterLocatorForGMaps mapDigesterLocatorForGMaps = createLocator(
+				imgDir, unavailableTileSource);
+		mapDigesterLocatorForGMaps.start();
+		mapDigesterLocatorForGMaps.join();
+
+		Assert.assertEquals(0, notificationCount.get());
+		Assert.assertTrue(mapDigesterLocatorForGMaps.getFutures().isEmpty());
+
+		imgDir.delete();
+	}
+
+	@Override
+	public void update(
+			final GenericObservable<GmapsCoordinateCircleFindingsPair> oberservable,
+			final GmapsCoordinateCircleFindingsPair circleFindingsPair) {
+		notificationCount.incrementAndGet();
+		// lon = x, lat = y
+		notifiedTiles.put(new TileKey(circleFindingsPair.coordinate.y,
+				circleFindingsPair.coordinate.x,
+				MapDigesterLocatorTileFetchTest.ZOOM),
+				circleFindingsPair.circleFindings);
+	}
+}
@@ -0,0 +1,170 @@
+package craj.test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import craj.CircleCalculationResultTable;
+import craj.CircleCrossCalculator;
+import craj.IntFlatImage;
+import craj.MultiRadiusCircleCrossCalculator;
+import craj.ReferenceCircle;
+import craj.ReferenceCircle.ReferenceCircleParameters;
+import craj.SobelGradient;
+
+public class MultiRadiusCircleCrossCalculatorTest {
+
+	private final List<ReferenceCircle> referenceCircles = new ArrayList<ReferenceCircle>();
+
+	public MultiRadiusCircleCrossCalculatorTest() {
+		for (int diameter = 5; diameter <= 21; diameter += 4) {
+			referenceCircles.add(new ReferenceCircle(
+					new ReferenceCircleParameters(diameter, 0.5f, 0.5f, 0.5f),
+					false));
+		}
+	}
+
+	private void assertResultTablesEqual(
+			final CircleCalculationResultTable expected,
+			final CircleCalculationResultTable actual) {
+		Assert.assertArrayEquals(expected.getCrossValues().pixels,
+				actual.getCrossValues().pixels);
+		Assert.assertArrayEquals(expected.getCrossCounts().pixels,
+				actual.getCrossCounts().pixels);
+	}
+
+	private IntFlatImage createRandomEdges(final int width, final int height) {
+		final Random random = new Random(42);
+		final IntFlatImage edges = new IntFlatImage(width, height);
+
+		for (int i = 0; i < width * height; i++) {
+			if (random.nextInt(10) == 0) {
+				edges.pixels[i] = 1 + random.nextInt(255);
+			}
+		}
+
+		return edges;
+	}
+
+	private SobelGradient createRandomGradient(final int width,
+			final int height) {
+		final Random random = new Random(7);
+		final SobelGradient gradient = new SobelGradient(width, height);
+
+		for (int i = 0; i < width * height; i++) {
+			gradient.gradientXs[i] = random.nextInt(201) - 100;
+			gradient.gradientYs[i] = random.nextInt(201) - 100;
+		}
+
+		return gradient;
+	}
+
+	private int sum(final int[] values) {
+		int sum = 0;
+		for (final int value : values) {
+			sum += value;
+		}
+		return sum;
+	}
+
+	@Test
+	public void testDirectionalEqualsCircleCrossCalculator() {
+		final IntFlatImage edges = createRandomEdges(61, 47);
+		final SobelGradient gradient = createRandomGradient(61, 47);
+
+		final List<CircleCalculationResultTable> directionalResultTables = new MultiRadiusCircleCrossCalculator(
+				referenceCircles, edges, gradient, 15).getResultTables();
+		final List<CircleCalculationResultTable> fullResultTables = new MultiRadiusCircleCrossCalculator(
+				referenceCircles, edges).getResultTables();
+
+		for (int i = 0; i < referenceCircles.size(); i++) {
+			final ReferenceCircle referenceCircle = referenceCircles.get(i);
+			final CircleCalculationResultTable expected = new CircleCrossCalculator(
+					referenceCircle, edges,
+					referenceCircle.getPerfectCircleCoordinates(), gradient, 15)
+					.getResultTable();
+
+			assertResultTablesEqual(expected, directionalResultTables.get(i));
+
+			final int directionalVotes = sum(directionalResultTables.get(i)
+					.getCrossCounts().pixels);
+			final int fullVotes = sum(fullResultTables.get(i).getCrossCounts().pixels);
+			Assert.assertTrue(directionalVotes > 0);
+			Assert.assertTrue(directionalVotes < fullVotes);
+		}
+	}
+
+	@Test
+	public void testEqualsCircleCrossCalculator() {
+		final IntFlatImage edges = createRandomEdges(61, 47);
+
+		final MultiRadiusCircleCrossCalculator multiRadiusCalculator = new MultiRadiusCircleCrossCalculator(
+				referenceCircles, edges);
+
+		final List<CircleCalculationResultTable> allResultTables = multiRadiusCalculator
+				.getResultTables();
+		final List<CircleCalculationResultTable> bandResultTables = multiRadiusCalculator
+				.getResultTables(1, 3);
+
+		for (int i = 0; i < referenceCircles.size(); i++) {
+			final ReferenceCircle referenceCircle = referenceCircles.get(i);
+			final CircleCalculationResultTable expected = new CircleCrossCalculator(
+					referenceCircle, edges,
+					referenceCircle.getPerfectCircleCoordinates())
+					.getResultTable();
+
+			assertResultTablesEqual(expected, allResultTables.get(i));
+			if (i >= 1 && i < 3) {
+				assertResultTablesEqual(expected, bandResultTables.get(i - 1));
+			}
+		}
+	}
+
+	@Test
+	public void testParallelEqualsSequential() {
+		final IntFlatImage edges = createRandomEdges(320, 280);
+		final SobelGradient gradient = createRandomGradient(320, 280);
+		final ForkJoinPool forkJoinPool = new ForkJoinPool(4);
+
+		try {
+			for (final SobelGradient gradientOrNull : new SobelGradient[] {
+					null, gradient }) {
+				final MultiRadiusCircleCrossCalculator calculator = new MultiRadiusCircleCrossCalculator(
+						referenceCircles, edges, gradientOrNull, 15);
+
+				final List<CircleCalculationResultTable> sequentialResultTables = calculator
+						.getResultTables(0, referenceCircles.size(), null);
+				final List<CircleCalculationResultTable> parallelResultTables = calculator
+						.getResultTables(0, referenceCircles.size(),
+								forkJoinPool);
+
+				for (int i = 0; i < referenceCircles.size(); i++) {
+					assertResultTablesEqual(sequentialResultTables.get(i),
+							parallelResultTables.get(i));
+				}
+			}
+		} finally {
+			forkJoinPool.shutdown();
+		}
+	}
+
+	@Test
+	public void testWideAngleToleranceVotesWholeCircle() {
+		final IntFlatImage edges = createRandomEdges(61, 47);
+		final SobelGradient gradient = createRandomGradient(61, 47);
+
+		final List<CircleCalculationResultTable> directionalResultTables = new MultiRadiusCircleCrossCalculator(
+				referenceCircles, edges, gradient, 90).getResultTables();
+		final List<CircleCalculationResultTable> fullResultTables = new MultiRadiusCircleCrossCalculator(
+				referenceCircles, edges).getResultTables();
+
+		for (int i = 0; i < referenceCircles.size(); i++) {
+			assertResultTablesEqual(fullResultTables.get(i),
+					directionalResultTables.get(i));
+		}
+	}
+}
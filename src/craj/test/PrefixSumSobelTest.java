@@ -0,0 +1,180 @@
+package craj.test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import craj.PrefixSumSobel;
+import craj.ShortFlatImage;
+import craj.SobelGradient;
+import craj.SobelMatrix;
+
+public class PrefixSumSobelTest {
+
+	private ShortFlatImage createRandomImage(final int width, final int height,
+			final int maxPixelValue, final long seed) {
+		final Random random = new Random(seed);
+		final ShortFlatImage image = new ShortFlatImage(width, height);
+
+		for (int i = 0; i < width * height; i++) {
+			image.set(i, random.nextInt(maxPixelValue + 1));
+		}
+
+		return image;
+	}
+
+	private void testEqualsSobelMatrix(final ShortFlatImage image,
+			final int sobelMatrixSize) {
+		final int width = image.width;
+		final int height = image.height;
+
+		final SobelMatrix sobelMatrix = new SobelMatrix(sobelMatrixSize);
+		final PrefixSumSobel prefixSumSobel = new PrefixSumSobel(
+				sobelMatrixSize);
+
+		final int[] sobelValues = new int[width * height];
+		final int maxSobelValue = prefixSumSobel.calculateSobelValues(image,
+				sobelValues);
+
+		final int middle = sobelMatrix.getMiddle();
+		int expectedMaxSobelValue = 0;
+
+		for (int y = 0; y < height; y++) {
+			for (int x = 0; x < width; x++) {
+				final boolean isInside = x >= middle && x < width - middle
+						&& y >= middle && y < height - middle;
+
+				int expectedSobelValue = 0;
+				if (isInside) {
+					expectedSobelValue = sobelMatrix.getSobelValueForPixel(
+							image, x, y);
+				}
+				expectedMaxSobelValue = Math.max(expectedMaxSobelValue,
+						expectedSobelValue);
+
+				final String message = String.format(
+						"size %d at x=%d y=%d", sobelMatrixSize, x, y);
+				Assert.assertEquals(message, expectedSobelValue,
+						sobelValues[y * width + x]);
+			}
+		}
+
+		Assert.assertEquals(expectedMaxSobelValue, maxSobelValue);
+	}
+
+	@Test
+	public void testGradientOfVerticalEdge() {
+		final ShortFlatImage image = new ShortFlatImage(9, 7);
+		for (int y = 0; y < image.height; y++) {
+			for (int x = 5; x < image.width; x++) {
+				image.set(x, y, 200);
+			}
+		}
+
+		final SobelGradient gradient = new SobelGradient(9, 7);
+		final int[] sobelValues = new int[9 * 7];
+		new PrefixSumSobel(3).calculateSobelValues(image, sobelValues,
+				gradient);
+
+		final int index = 3 * 9 + 4;
+		Assert.assertTrue(gradient.gradientXs[index] > 0);
+		Assert.assertEquals(0, gradient.gradientYs[index], 0);
+		Assert.assertEquals(sobelValues[index], gradient.gradientXs[index], 0);
+		Assert.assertTrue(gradient.isZero(0));
+	}
+
+	@Test
+	public void testGreyImagesAllSizes() {
+		for (int sobelMatrixSize = 3; sobelMatrixSize <= 9; sobelMatrixSize += 2) {
+			testEqualsSobelMatrix(createRandomImage(37, 23, 255, sobelMatrixSize),
+					sobelMatrixSize);
+		}
+	}
+
+	@Test
+	public void testImageSmallerThanMatrix() {
+		testEqualsSobelMatrix(createRandomImage(4, 12, 255, 1), 5);
+	}
+
+	@Test
+	public void testSeveralSizesEqualSingleSizes() {
+		final ShortFlatImage image = createRandomImage(31, 40, 255, 5);
+		final List<PrefixSumSobel> prefixSumSobels = Arrays.asList(
+				new PrefixSumSobel(3), new PrefixSumSobel(9),
+				new PrefixSumSobel(5));
+
+		final List<int[]> sobelValues = new ArrayList<>();
+		final List<SobelGradient> gradients = new ArrayList<>();
+		for (int i = 0; i < prefixSumSobels.size(); i++) {
+			sobelValues.add(new int[31 * 40]);
+			gradients.add(i == 0 ? null : new SobelGradient(31, 40));
+		}
+
+		final int[] maxSobelValues = new int[prefixSumSobels.size()];
+		for (int fromRow = 0; fromRow < 40; fromRow += 6) {
+			final int[] maxSobelValuesOfStrip = PrefixSumSobel
+					.calculateSobelValues(prefixSumSobels, image, sobelValues,
+							gradients, fromRow, Math.min(40, fromRow + 6));
+			for (int i = 0; i < maxSobelValues.length; i++) {
+				maxSobelValues[i] = Math.max(maxSobelValues[i],
+						maxSobelValuesOfStrip[i]);
+			}
+		}
+
+		for (int i = 0; i < prefixSumSobels.size(); i++) {
+			final int[] expectedSobelValues = new int[31 * 40];
+			final SobelGradient expectedGradient = new SobelGradient(31, 40);
+			Assert.assertEquals(prefixSumSobels.get(i).calculateSobelValues(
+					image, expectedSobelValues, expectedGradient),
+					maxSobelValues[i]);
+			Assert.assertArrayEquals(expectedSobelValues, sobelValues.get(i));
+
+			final SobelGradient gradient = gradients.get(i);
+			for (int pixel = 0; gradient != null
+					&& pixel < expectedSobelValues.length; pixel++) {
+				Assert.assertEquals(expectedGradient.gradientXs[pixel],
+						gradient.gradientXs[pixel], 0);
+				Assert.assertEquals(expectedGradient.gradientYs[pixel],
+						gradient.gradientYs[pixel], 0);
+			}
+		}
+	}
+
+	@Test
+	public void testShortImageUsesExactFallback() {
+		testEqualsSobelMatrix(createRandomImage(20, 21, 65535, 2), 9);
+	}
+
+	@Test
+	public void testStripsEqualWholeImage() {
+		final ShortFlatImage image = createRandomImage(31, 40, 255, 4);
+		final PrefixSumSobel prefixSumSobel = new PrefixSumSobel(7);
+
+		final int[] expectedSobelValues = new int[31 * 40];
+		final SobelGradient expectedGradient = new SobelGradient(31, 40);
+		final int expectedMaxSobelValue = prefixSumSobel.calculateSobelValues(
+				image, expectedSobelValues, expectedGradient);
+
+		final int[] sobelValues = new int[31 * 40];
+		final SobelGradient gradient = new SobelGradient(31, 40);
+		int maxSobelValue = 0;
+		for (int fromRow = 0; fromRow < 40; fromRow += 6) {
+			maxSobelValue = Math.max(maxSobelValue, prefixSumSobel
+					.calculateSobelValues(image, sobelValues, gradient,
+							fromRow, Math.min(40, fromRow + 6)));
+		}
+
+		Assert.assertEquals(expectedMaxSobelValue, maxSobelValue);
+		Assert.assertArrayEquals(expectedSobelValues, sobelValues);
+		for (int i = 0; i < sobelValues.length; i++) {
+			Assert.assertEquals(expectedGradient.gradientXs[i],
+					gradient.gradientXs[i], 0);
+			Assert.assertEquals(expectedGradient.gradientYs[i],
+					gradient.gradientYs[i], 0);
+		}
+	}
+}
@@ -0,0 +1,235 @@
+package craj.test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import craj.CircleFinding;
+import craj.IntFlatImage;
+import craj.ReferenceCircle;
+import craj.ReferenceCircle.ReferenceCircleParameters;
+import craj.mapDigesterLocator.ProgressJournal;
+import craj.mapDigesterLocator.ProgressJournal.ReplayHandler;
+import craj.mapDigesterLocator.TileKey;
+
+public class ProgressJournalTest {
+
+	private static File createJournalFile() throws IOException {
+		final File journalFile = File.createTempFile("ProgressJournal",
+				".journal");
+		journalFile.delete();
+		return journalFile;
+	}
+
+	private static List<CircleFinding> createCircleFindings() {
+		final ReferenceCircle referenceCircle = new ReferenceCircle(
+				new ReferenceCircleParameters(13, 0.6f, 0.7f, 0.8f), false);
+		final IntFlatImage sourceImageData = new IntFlatImage(40, 40);
+
+		return Arrays.asList(new CircleFinding(10, 12, referenceCircle,
+				sourceImageData, 30, 20), new CircleFinding(25, 20,
+				referenceCircle, sourceImageData, 28, 19));
+	}
+
+	@Test
+	public void testCompletedTilesAreFoundAfterReopening() throws IOException {
+		final File journalFile = ProgressJournalTest.createJournalFile();
+		final TileKey tileWithFindings = new TileKey(51.05f, 13.74f, 18);
+		final TileKey tileWithoutFindings = new TileKey(51.0445f, 13.74f, 18);
+
+		try (ProgressJournal progressJournal = new ProgressJournal(journalFile)) {
+			progressJournal.append(tileWithFindings,
+					ProgressJournalTest.createCircleFindings());
+			progressJournal.append(tileWithoutFindings,
+					Collections.<CircleFinding> emptyList());
+
+			Assert.assertTrue(progressJournal.isCompleted(tileWithFindings));
+		}
+
+		try (ProgressJournal progressJournal = new ProgressJournal(journalFile)) {
+			Assert.assertEquals(2, progressJournal.getCompletedTileCount());
+			Assert.assertTrue(progressJournal.isCompleted(tileWithFindings));
+			Assert.assertTrue(progressJournal.isCompleted(tileWithoutFindings));
+			Assert.assertFalse(progressJournal.isCompleted(new TileKey(51.05f,
+					13.74f, 17)));
+		}
+
+		journalFile.delete();
+	}
+
+	@Test
+	public void testIncompleteRecordIsCutOff() throws IOException {
+		final File journalFile = ProgressJournalTest.createJournalFile();
+		final TileKey firstTile = new TileKey(51.05f, 13.74f, 18);
+		final TileKey secondTile = new TileKey(51.05f, 13.7455f, 18);
+
+		try (ProgressJournal progressJournal = new ProgressJournal(journalFile)) {
+			progressJournal.append(firstTile,
+					ProgressJournalTest.createCircleFindings());
+		}
+		final long completeLength = journalFile.length();
+
+		// a crash while the record of a further tile was written
+		try (FileOutputStream journal = new FileOutputStream(journalFile, true)) {
+			journal.write(new byte[] { 0, 0, 0, 40, 1, 2, 3, 4, 5, 6 });
+		}
+
+		try (ProgressJournal progressJournal = new ProgressJournal(journalFile)) {
+			Assert.assertEquals(1, progressJournal.getCompletedTileCount());
+			Assert.assertEquals(completeLength, journalFile.length());
+
+			progressJournal.append(secondTile,
+					Collections.<CircleFinding> emptyList());
+		}
+
+		try (ProgressJournal progressJournal = new ProgressJournal(journalFile)) {
+			Assert.assertEquals(2, progressJournal.getCompletedTileCount());
+			Assert.assertTrue(progressJournal.isCompleted(secondTile));
+		}
+
+		journalFile.delete();
+	}
+
+	@Test
+	public void testManyWorkersAppendAtOnce() throws IOException,
+			InterruptedException {
+		final File journalFile = ProgressJournalTest.createJournalFile();
+		final int workerCount = 8;
+		final int tilesPerWorker = 100;
+		final List<CircleFinding> circleFindings = ProgressJournalTest
+				.createCircleFindings();
+		final List<IOException> exceptions = Collections
+				.synchronizedList(new ArrayList<IOException>());
+
+		try (final ProgressJournal progressJournal = new ProgressJournal(
+				journalFile, 16, 10)) {
+			final CountDownLatch start = new CountDownLatch(1);
+			final List<Thread> workers = new ArrayList<>();
+			for (int worker = 0; worker < workerCount; worker++) {
+				final int row = worker;
+				final Thread thread = new Thread(new Runnable() {
+					@Override
+					public void run() {
+						try {
+							start.await();
+							for (int column = 0; column < tilesPerWorker; column++) {
+								progressJournal.append(
+										new TileKey(row, column, 18),
+										column % 2 == 0 ? circleFindings
+												: Collections
+														.<CircleFinding> emptyList());
+							}
+						} catch (final IOException e) {
+							exceptions.add(e);
+						} catch (final InterruptedException e) {
+							Thread.currentThread().interrupt();
+						}
+					}
+				});
+				thread.start();
+				workers.add(thread);
+			}
+
+			start.countDown();
+			for (final Thread worker : workers) {
+				worker.join();
+			}
+		}
+
+		Assert.assertTrue(exceptions.isEmpty());
+
+		try (ProgressJournal progressJournal = new ProgressJournal(journalFile)) {
+			Assert.assertEquals(workerCount * tilesPerWorker,
+					progressJournal.getCompletedTileCount());
+		}
+
+		journalFile.delete();
+	}
+
+	@Test
+	public void testFindingsAreReplayedAfterReopening() throws IOException {
+		final File journalFile = ProgressJournalTest.createJournalFile();
+		final TileKey tileWithFindings = new TileKey(51.05f, 13.74f, 18);
+		final TileKey tileWithoutFindings = new TileKey(51.0445f, 13.74f, 18);
+		final TileKey notRequestedTile = new TileKey(51.039f, 13.74f, 18);
+		final TileKey laterTile = new TileKey(51.05f, 13.7455f, 18);
+		final List<CircleFinding> circleFindings = ProgressJournalTest
+				.createCircleFindings();
+
+		try (ProgressJournal progressJournal = new ProgressJournal(journalFile)) {
+			progressJournal.append(tileWithFindings, true, 140, circleFindings);
+			progressJournal.append(tileWithoutFindings,
+					Collections.<CircleFinding> emptyList());
+			progressJournal.append(notRequestedTile, circleFindings);
+		}
+
+		final Map<TileKey, List<CircleFinding>> replayedTiles = new HashMap<>();
+		final Map<TileKey, Integer> replayedTolerances = new HashMap<>();
+		final Set<TileKey> cappedTiles = new HashSet<>();
+		try (ProgressJournal progressJournal = new ProgressJournal(journalFile)) {
+			// recorded after opening, so it is not replayed
+			progressJournal.append(laterTile, circleFindings);
+
+			final int replayedTileCount = progressJournal.replay(
+					new HashSet<>(Arrays.asList(tileWithFindings,
+							tileWithoutFindings, laterTile)),
+					Collections.<ReferenceCircle> emptyList(),
+					new ReplayHandler() {
+						@Override
+						public void replayTile(final TileKey tileKey,
+								final boolean edgeBudgetCapped,
+								final int edgeDetectionTolerance,
+								final List<CircleFinding> replayedFindings) {
+							replayedTiles.put(tileKey, replayedFindings);
+							replayedTolerances.put(tileKey,
+									edgeDetectionTolerance);
+							if (edgeBudgetCapped) {
+								cappedTiles.add(tileKey);
+							}
+						}
+					});
+
+			Assert.assertEquals(2, replayedTileCount);
+		}
+
+		Assert.assertEquals(2, replayedTiles.size());
+		Assert.assertTrue(replayedTiles.get(tileWithoutFindings).isEmpty());
+		Assert.assertEquals(140, (int) replayedTolerances.get(tileWithFindings));
+		Assert.assertEquals(-1,
+				(int) replayedTolerances.get(tileWithoutFindings));
+		Assert.assertEquals(Collections.singleton(tileWithFindings),
+				cappedTiles);
+
+		final List<CircleFinding> replayedFindings = replayedTiles
+				.get(tileWithFindings);
+		Assert.assertEquals(circleFindings.size(), replayedFindings.size());
+		for (int finding = 0; finding < circleFindings.size(); finding++) {
+			final CircleFinding circleFinding = circleFindings.get(finding);
+			final CircleFinding replayedFinding = replayedFindings.get(finding);
+			Assert.assertEquals(circleFinding.x, replayedFinding.x);
+			Assert.assertEquals(circleFinding.y, replayedFinding.y);
+			Assert.assertEquals(circleFinding.referenceCircle.diameter,
+					replayedFinding.referenceCircle.diameter);
+			Assert.assertEquals(circleFinding.getPixelCrossValue(),
+					replayedFinding.getPixelCrossValue());
+			Assert.assertEquals(circleFinding.getPixelCrossCount(),
+					replayedFinding.getPixelCrossCount());
+			Assert.assertEquals(circleFinding.averagePixelBlackValue,
+					replayedFinding.averagePixelBlackValue, 0);
+		}
+
+		journalFile.delete();
+	}
+}
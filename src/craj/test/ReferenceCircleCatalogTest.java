@@ -0,0 +1,116 @@
+package craj.test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import craj.ReferenceCircle;
+import craj.ReferenceCircle.ReferenceCircleParameters;
+import craj.ReferenceCircleCatalog;
+
+public class ReferenceCircleCatalogTest {
+
+	private static void assertSameCircle(final ReferenceCircle expected,
+			final ReferenceCircle actual) {
+		Assert.assertEquals(expected.diameter, actual.diameter);
+		Assert.assertEquals(expected.referenceCrossValue,
+				actual.referenceCrossValue);
+		Assert.assertEquals(expected.referenceCrossCount,
+				actual.referenceCrossCount);
+		Assert.assertEquals(expected.minCrossValue, actual.minCrossValue);
+		Assert.assertEquals(expected.minCrossCount, actual.minCrossCount);
+		Assert.assertEquals(expected.minBlackValue, actual.minBlackValue);
+
+		Assert.assertEquals(expected.getPerfectCircleCoordinates()
+				.getEdgeDifferencesFromCircleOrigin(), actual
+				.getPerfectCircleCoordinates()
+				.getEdgeDifferencesFromCircleOrigin());
+		Assert.assertEquals(expected.getPerfectCircleCoordinates()
+				.getInnerCircleLineBounds(), actual
+				.getPerfectCircleCoordinates().getInnerCircleLineBounds());
+		Assert.assertArrayEquals(expected.getPerfectCircleCoordinates()
+				.getInnerCircleLineBoundsByRow(), actual
+				.getPerfectCircleCoordinates().getInnerCircleLineBoundsByRow());
+
+		Assert.assertArrayEquals(expected.getVotingOffsets().offsetXs,
+				actual.getVotingOffsets().offsetXs);
+		Assert.assertArrayEquals(expected.getVotingOffsets().offsetYs,
+				actual.getVotingOffsets().offsetYs);
+		Assert.assertArrayEquals(
+				expected.getVotingOffsets().directionBinStarts,
+				actual.getVotingOffsets().directionBinStarts);
+	}
+
+	@Test
+	public void testCatalogCirclesEqualCalculatedCircles() {
+		final ReferenceCircleCatalog catalog = new ReferenceCircleCatalog();
+
+		for (int diameter = 3; diameter <= 61; diameter += 2) {
+			final ReferenceCircleParameters parameters = new ReferenceCircleParameters(
+					diameter, 0.6f, 0.7f, 0.8f);
+
+			ReferenceCircleCatalogTest.assertSameCircle(new ReferenceCircle(
+					parameters, false), catalog.getReferenceCircle(parameters));
+		}
+	}
+
+	@Test
+	public void testCirclesWithSameDiameterShareTheirData() {
+		final ReferenceCircleCatalog catalog = new ReferenceCircleCatalog();
+
+		final ReferenceCircle looseReferenceCircle = catalog
+				.getReferenceCircle(new ReferenceCircleParameters(31, 0.5f,
+						0.5f, 0.5f));
+		final ReferenceCircleParameters strictParameters = new ReferenceCircleParameters(
+				31, 0.9f, 0.9f, 0.9f);
+		final ReferenceCircle strictReferenceCircle = catalog
+				.getReferenceCircle(strictParameters);
+
+		Assert.assertEquals(1, catalog.size());
+		Assert.assertSame(looseReferenceCircle.getVotingOffsets(),
+				strictReferenceCircle.getVotingOffsets());
+		Assert.assertSame(looseReferenceCircle.getPerfectCircleCoordinates(),
+				strictReferenceCircle.getPerfectCircleCoordinates());
+
+		ReferenceCircleCatalogTest.assertSameCircle(new ReferenceCircle(
+				strictParameters, false), strictReferenceCircle);
+	}
+
+	@Test
+	public void testSavedCatalogLoadsEqualCircles() throws IOException {
+		final ReferenceCircleCatalog catalog = new ReferenceCircleCatalog();
+		for (final int diameter : Arrays.asList(5, 27, 49, 125)) {
+			catalog.getReferenceCircle(new ReferenceCircleParameters(diameter,
+					0.6f, 0.7f, 0.8f));
+		}
+
+		final File file = File.createTempFile("referenceCircles", ".bin");
+		file.deleteOnExit();
+
+		catalog.save(file);
+		final ReferenceCircleCatalog loadedCatalog = ReferenceCircleCatalog
+				.load(file);
+
+		Assert.assertEquals(catalog.size(), loadedCatalog.size());
+
+		for (final int diameter : Arrays.asList(5, 27, 49, 125)) {
+			final ReferenceCircleParameters parameters = new ReferenceCircleParameters(
+					diameter, 0.65f, 0.75f, 0.85f);
+
+			ReferenceCircleCatalogTest.assertSameCircle(
+					catalog.getReferenceCircle(parameters),
+					loadedCatalog.getReferenceCircle(parameters));
+		}
+	}
+
+	@Test(expected = IOException.class)
+	public void testOtherFilesAreRejected() throws IOException {
+		final File file = File.createTempFile("referenceCircles", ".bin");
+		file.deleteOnExit();
+
+		ReferenceCircleCatalog.load(file);
+	}
+}
@@ -0,0 +1,194 @@
+package craj.test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import craj.mapDigesterLocator.GenericObservable;
+import craj.mapDigesterLocator.GenericObserver;
+import craj.mapDigesterLocator.ResultDispatcher;
+
+public class ResultDispatcherTest {
+
+	private final List<Integer> deliveredResults = Collections
+			.synchronizedList(new ArrayList<Integer>());
+
+	private final GenericObservable<Integer> observable = new GenericObservable<>();
+
+	private final CountDownLatch observerRelease = new CountDownLatch(1);
+
+	private final CountDownLatch observerStarted = new CountDownLatch(1);
+
+	private final GenericObserver<Integer> slowObserver = new GenericObserver<Integer>() {
+		@Override
+		public void update(final GenericObservable<Integer> oberservable,
+				final Integer result) {
+			observerStarted.countDown();
+			try {
+				observerRelease.await();
+			} catch (final InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			deliveredResults.add(result);
+		}
+	};
+
+	@Test
+	public void testPublisherDoesNotWaitForSlowObserver()
+			throws InterruptedException {
+		final ResultDispatcher<Integer> resultDispatcher = new ResultDispatcher<>(
+				observable, slowObserver, 2, "ResultDispatcherTest", true);
+
+		// the observer takes the first result and waits
+		Assert.assertTrue(resultDispatcher.publish(0));
+		observerStarted.await();
+
+		// the queue holds two more results, the next one is dropped
+		Assert.assertTrue(resultDispatcher.publish(1));
+		Assert.assertTrue(resultDispatcher.publish(2));
+		Assert.assertFalse(resultDispatcher.publish(3));
+		Assert.assertEquals(1, resultDispatcher.getDroppedResultCount());
+
+		observerRelease.countDown();
+		resultDispatcher.awaitDelivery();
+
+		Assert.assertEquals(Arrays.asList(0, 1, 2), deliveredResults);
+
+		resultDispatcher.shutdown();
+	}
+
+	@Test
+	public void testPublisherWaitsForSlowObserverByDefault()
+			throws InterruptedException {
+		final ResultDispatcher<Integer> resultDispatcher = new ResultDispatcher<>(
+				observable, slowObserver, 2, "ResultDispatcherTest");
+
+		// the observer takes the first result and waits
+		Assert.assertTrue(resultDispatcher.publish(0));
+		observerStarted.await();
+
+		// the queue holds two more results, the next publisher waits
+		Assert.assertTrue(resultDispatcher.publish(1));
+		Assert.assertTrue(resultDispatcher.publish(2));
+
+		final CountDownLatch published = new CountDownLatch(1);
+		final Thread publisher = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				if (resultDispatcher.publish(3)) {
+					published.countDown();
+				}
+			}
+		});
+		publisher.start();
+
+		Assert.assertFalse(published.await(200, TimeUnit.MILLISECONDS));
+
+		observerRelease.countDown();
+		publisher.join();
+		resultDispatcher.awaitDelivery();
+
+		Assert.assertEquals(0, published.getCount());
+		Assert.assertEquals(0, resultDispatcher.getDroppedResultCount());
+		Assert.assertEquals(Arrays.asList(0, 1, 2, 3), deliveredResults);
+
+		resultDispatcher.shutdown();
+	}
+
+	@Test
+	public void testShutdownRejectsWaitingAndLaterPublishers()
+			throws InterruptedException {
+		final ResultDispatcher<Integer> resultDispatcher = new ResultDispatcher<>(
+				observable, slowObserver, 1, "ResultDispatcherTest");
+
+		// the observer takes the first result and waits, the queue is full
+		Assert.assertTrue(resultDispatcher.publish(0));
+		observerStarted.await();
+		Assert.assertTrue(resultDispatcher.publish(1));
+
+		final AtomicBoolean publishedWhileWaiting = new AtomicBoolean(true);
+		final Thread publisher = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				publishedWhileWaiting.set(resultDispatcher.publish(2));
+			}
+		});
+		publisher.start();
+		while (publisher.getState() != Thread.State.WAITING) {
+			Thread.sleep(1);
+		}
+
+		resultDispatcher.shutdown();
+		publisher.join();
+
+		Assert.assertFalse(publishedWhileWaiting.get());
+		Assert.assertFalse(resultDispatcher.publish(3));
+		Assert.assertEquals(3, resultDispatcher.getDroppedResultCount());
+		resultDispatcher.awaitDelivery();
+		Assert.assertFalse(deliveredResults.contains(2));
+		Assert.assertFalse(deliveredResults.contains(3));
+	}
+
+	@Test
+	public void testWaitingPublisherDoesNotBlockItsPool() throws Exception {
+		final ResultDispatcher<Integer> resultDispatcher = new ResultDispatcher<>(
+				observable, slowObserver, 1, "ResultDispatcherTest");
+
+		// the observer takes the first result and waits, the queue is full
+		Assert.assertTrue(resultDispatcher.publish(0));
+		observerStarted.await();
+		Assert.assertTrue(resultDispatcher.publish(1));
+
+		final ForkJoinPool forkJoinPool = new ForkJoinPool(1);
+		final Future<Boolean> waitingPublish = forkJoinPool
+				.submit(new Callable<Boolean>() {
+					@Override
+					public Boolean call() {
+						return resultDispatcher.publish(2);
+					}
+				});
+
+		// the pool compensates the waiting publisher with another worker
+		final Future<Boolean> otherTask = forkJoinPool
+				.submit(new Callable<Boolean>() {
+					@Override
+					public Boolean call() {
+						return true;
+					}
+				});
+		Assert.assertTrue(otherTask.get(10, TimeUnit.SECONDS));
+		Assert.assertFalse(waitingPublish.isDone());
+
+		observerRelease.countDown();
+		Assert.assertTrue(waitingPublish.get());
+		resultDispatcher.awaitDelivery();
+
+		Assert.assertEquals(Arrays.asList(0, 1, 2), deliveredResults);
+
+		forkJoinPool.shutdown();
+		resultDispatcher.shutdown();
+	}
+
+	@Test
+	public void testAwaitDeliveryWithoutResultsReturnsImmediately()
+			throws InterruptedException {
+		final ResultDispatcher<Integer> resultDispatcher = new ResultDispatcher<>(
+				observable, slowObserver, 1, "ResultDispatcherTest");
+
+		resultDispatcher.awaitDelivery();
+
+		Assert.assertTrue(deliveredResults.isEmpty());
+
+		resultDispatcher.shutdown();
+	}
+}
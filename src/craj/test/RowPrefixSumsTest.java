@@ -0,0 +1,34 @@
+package craj.test;
+
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import craj.IntFlatImage;
+import craj.RowPrefixSums;
+
+public class RowPrefixSumsTest {
+
+	@Test
+	public void testSumsEqualLineSums() {
+		final Random random = new Random(3);
+		final IntFlatImage image = new IntFlatImage(13, 9);
+		for (int i = 0; i < image.pixels.length; i++) {
+			image.pixels[i] = random.nextInt(256);
+		}
+
+		final RowPrefixSums rowPrefixSums = new RowPrefixSums(image);
+
+		for (int y = 0; y < image.height; y++) {
+			for (int left = 0; left < image.width; left++) {
+				long expectedSum = 0;
+				for (int right = left; right < image.width; right++) {
+					expectedSum += image.get(right, y);
+					Assert.assertEquals(expectedSum,
+							rowPrefixSums.getSum(y, left, right));
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,200 @@
+package craj.test;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+import javax.imageio.ImageIO;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import craj.FlatImage;
+import craj.IntFlatImage;
+import craj.mapDigesterLocator.DecodedTileCache;
+import craj.mapDigesterLocator.TileKey;
+import craj.mapDigesterLocator.TileStore;
+
+public class TileStoreTest {
+
+	private static File createStoreDirectory() throws IOException {
+		final File storeDir = File.createTempFile("TileStore", "");
+		storeDir.delete();
+		return storeDir;
+	}
+
+	private static void deleteStoreDirectory(final File storeDir) {
+		for (final File file : storeDir.listFiles()) {
+			file.delete();
+		}
+		storeDir.delete();
+	}
+
+	private static byte[] encodeTile(final Color color) throws IOException {
+		final BufferedImage tileImage = new BufferedImage(32, 24,
+				BufferedImage.TYPE_INT_RGB);
+		final Graphics2D graphics = tileImage.createGraphics();
+		graphics.setColor(color);
+		graphics.fillRect(0, 0, 32, 24);
+		graphics.dispose();
+
+		final ByteArrayOutputStream encodedTile = new ByteArrayOutputStream();
+		ImageIO.write(tileImage, "png", encodedTile);
+		return encodedTile.toByteArray();
+	}
+
+	@Test
+	public void testDecodedTilesAreCached() throws IOException {
+		final File storeDir = TileStoreTest.createStoreDirectory();
+		final TileKey tileKey = new TileKey(51.05f, 13.74f, 18);
+
+		try (TileStore tileStore = new TileStore(storeDir, 1024 * 1024)) {
+			tileStore.put(tileKey, TileStoreTest.encodeTile(Color.RED));
+
+			final FlatImage tileImage = tileStore.getImage(tileKey);
+			Assert.assertEquals(32, tileImage.width);
+			Assert.assertEquals(24, tileImage.height);
+			Assert.assertEquals(0xff0000,
+					((IntFlatImage) tileImage).get(5, 5) & 0xffffff);
+
+			Assert.assertSame(tileImage, tileStore.getImage(tileKey));
+			Assert.assertEquals(32 * 24 * 4, tileStore.getDecodedTileCache()
+					.getCachedByteCount());
+		}
+
+		TileStoreTest.deleteStoreDirectory(storeDir);
+	}
+
+	@Test
+	public void testLeastRecentlyUsedTileIsEvicted() {
+		final IntFlatImage image = new IntFlatImage(10, 10);
+		final TileKey first = new TileKey(0, 0, 18);
+		final TileKey second = new TileKey(0, 1, 18);
+		final TileKey third = new TileKey(0, 2, 18);
+
+		final DecodedTileCache decodedTileCache = new DecodedTileCache(
+				2 * DecodedTileCache.getByteCount(image));
+		decodedTileCache.put(first, image);
+		decodedTileCache.put(second, image);
+
+		// the first tile is used again, so the second one is evicted
+		Assert.assertNotNull(decodedTileCache.get(first));
+		decodedTileCache.put(third, image);
+
+		Assert.assertEquals(2, decodedTileCache.size());
+		Assert.assertNotNull(decodedTileCache.get(first));
+		Assert.assertNull(decodedTileCache.get(second));
+		Assert.assertNotNull(decodedTileCache.get(third));
+		Assert.assertEquals(2 * DecodedTileCache.getByteCount(image),
+				decodedTileCache.getCachedByteCount());
+
+		// an image larger than the whole cache is not cached
+		decodedTileCache.put(second, new IntFlatImage(20, 20));
+		Assert.assertNull(decodedTileCache.get(second));
+		Assert.assertEquals(2, decodedTileCache.size());
+	}
+
+	@Test
+	public void testReadsBetweenWritesDoNotMoveTheWriter() throws IOException {
+		final File storeDir = TileStoreTest.createStoreDirectory();
+		final Color[] colors = { Color.RED, Color.GREEN, Color.BLUE,
+				Color.YELLOW };
+
+		try (TileStore tileStore = new TileStore(storeDir, 0)) {
+			for (int i = 0; i < colors.length; i++) {
+				tileStore.put(new TileKey(0, i, 18),
+						TileStoreTest.encodeTile(colors[i]));
+				// read the first tile, which lies before the written ones
+				Assert.assertArrayEquals(TileStoreTest.encodeTile(colors[0]),
+						tileStore.getEncodedImage(new TileKey(0, 0, 18)));
+			}
+		}
+
+		try (TileStore tileStore = new TileStore(storeDir, 0)) {
+			for (int i = 0; i < colors.length; i++) {
+				Assert.assertArrayEquals(TileStoreTest.encodeTile(colors[i]),
+						tileStore.getEncodedImage(new TileKey(0, i, 18)));
+			}
+		}
+
+		TileStoreTest.deleteStoreDirectory(storeDir);
+	}
+
+	@Test
+	public void testTilesAreFoundAfterReopening() throws IOException {
+		final File storeDir = TileStoreTest.createStoreDirectory();
+		final TileKey redTileKey = new TileKey(51.05f, 13.74f, 18);
+		final TileKey blueTileKey = new TileKey(51.05f, 13.75f, 18);
+		final byte[] redTile = TileStoreTest.encodeTile(Color.RED);
+		final byte[] blueTile = TileStoreTest.encodeTile(Color.BLUE);
+
+		try (TileStore tileStore = new TileStore(storeDir, 0)) {
+			tileStore.put(redTileKey, redTile);
+			tileStore.put(blueTileKey, blueTile);
+			Assert.assertNull(tileStore.getDecodedTileCache());
+		}
+
+		try (TileStore tileStore = new TileStore(storeDir, 0)) {
+			Assert.assertEquals(2, tileStore.size());
+			Assert.assertTrue(tileStore.contains(redTileKey));
+			Assert.assertFalse(tileStore.contains(new TileKey(51.05f, 13.74f,
+					17)));
+			Assert.assertArrayEquals(redTile,
+					tileStore.getEncodedImage(redTileKey));
+			Assert.assertArrayEquals(blueTile,
+					tileStore.getEncodedImage(blueTileKey));
+			Assert.assertNull(tileStore.getEncodedImage(new TileKey(0, 0, 18)));
+		}
+
+		TileStoreTest.deleteStoreDirectory(storeDir);
+	}
+
+	@Test
+	public void testIncompleteIndexRecordIsIgnored() throws IOException {
+		final File storeDir = TileStoreTest.createStoreDirectory();
+		final TileKey redTileKey = new TileKey(51.05f, 13.74f, 18);
+		final TileKey blueTileKey = new TileKey(51.05f, 13.75f, 18);
+		final byte[] redTile = TileStoreTest.encodeTile(Color.RED);
+		final byte[] blueTile = TileStoreTest.encodeTile(Color.BLUE);
+
+		try (TileStore tileStore = new TileStore(storeDir, 0)) {
+			tileStore.put(redTileKey, redTile);
+		}
+
+		// a crash while the index record of a further tile was written
+		try (FileOutputStream index = new FileOutputStream(new File(storeDir,
+				"tiles.idx"), true)) {
+			index.write(new byte[] { 1, 2, 3, 4, 5 });
+		}
+
+		try (TileStore tileStore = new TileStore(storeDir, 0)) {
+			Assert.assertEquals(1, tileStore.size());
+			tileStore.put(blueTileKey, blueTile);
+		}
+
+		try (TileStore tileStore = new TileStore(storeDir, 0)) {
+			Assert.assertEquals(2, tileStore.size());
+			Assert.assertArrayEquals(redTile,
+					tileStore.getEncodedImage(redTileKey));
+			Assert.assertArrayEquals(blueTile,
+					tileStore.getEncodedImage(blueTileKey));
+		}
+
+		TileStoreTest.deleteStoreDirectory(storeDir);
+	}
+
+	@Test(expected = IOException.class)
+	public void testMissingTileCanNotBeDecoded() throws IOException {
+		final File storeDir = TileStoreTest.createStoreDirectory();
+
+		try (TileStore tileStore = new TileStore(storeDir, 0)) {
+			tileStore.getImage(new TileKey(0, 0, 18));
+		} finally {
+			TileStoreTest.deleteStoreDirectory(storeDir);
+		}
+	}
+}